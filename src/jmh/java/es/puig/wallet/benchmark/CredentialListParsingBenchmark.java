@@ -0,0 +1,144 @@
+package es.puig.wallet.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.CredentialsBasicInfo;
+import es.puig.wallet.domain.service.impl.DataServiceImpl;
+import es.puig.wallet.domain.util.ApplicationConstants;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the data-binding implementation of the credential listing that was used before
+ * ({@code readValue} into {@link CredentialEntity} records plus a {@code convertValue} per credential) with the
+ * streaming parser of {@link DataServiceImpl#getUserVCsInJson(String)}, for wallets of different sizes.
+ * <p>
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+public class CredentialListParsingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int credentials;
+
+    private ObjectMapper objectMapper;
+    private DataServiceImpl dataService;
+    private String credentialsJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        dataService = new DataServiceImpl(objectMapper, new SecureRandomSource(new SecureRandomProperties(null)));
+        credentialsJson = objectMapper.writeValueAsString(buildCredentialEntities(credentials));
+    }
+
+    @Benchmark
+    public List<CredentialsBasicInfo> dataBinding() throws JsonProcessingException {
+        List<CredentialEntity> entities = objectMapper.readValue(credentialsJson, new TypeReference<>() {
+        });
+        List<CredentialsBasicInfo> credentialsInfo = new ArrayList<>();
+        for (CredentialEntity credential : entities) {
+            List<String> availableFormats = new ArrayList<>();
+            availableFormats.add(ApplicationConstants.VC_JSON);
+            if (credential.jwtCredentialAttribute() != null) {
+                availableFormats.add(ApplicationConstants.JWT_VC);
+            }
+            if (credential.cwtCredentialAttribute() != null) {
+                availableFormats.add(ApplicationConstants.VC_CWT);
+            }
+            JsonNode jsonCredential = objectMapper.convertValue(credential.jsonCredentialAttribute().value(), JsonNode.class);
+            ZonedDateTime expirationDate = jsonCredential.has(ApplicationConstants.EXPIRATION_DATE)
+                    ? ZonedDateTime.parse(jsonCredential.get(ApplicationConstants.EXPIRATION_DATE).asText())
+                    : null;
+            credentialsInfo.add(CredentialsBasicInfo.builder()
+                    .id(credential.id())
+                    .vcType(credential.credentialTypeAttribute().value())
+                    .credentialStatus(credential.credentialStatusAttribute().credentialStatus())
+                    .availableFormats(availableFormats)
+                    .credentialSubject(jsonCredential.get(ApplicationConstants.CREDENTIAL_SUBJECT))
+                    .expirationDate(expirationDate)
+                    .build());
+        }
+        return credentialsInfo;
+    }
+
+    @Benchmark
+    public List<CredentialsBasicInfo> streamingParser() {
+        return dataService.getUserVCsInJson(credentialsJson).block();
+    }
+
+    /**
+     * Builds LEARCredentialEmployee entities as stored by the wallet, each one holding its json_vc and a signed
+     * jwt_vc of a realistic size.
+     */
+    private ArrayNode buildCredentialEntities(int count) {
+        Random random = new Random(42);
+        ArrayNode entities = objectMapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            byte[] signature = new byte[2048];
+            random.nextBytes(signature);
+            String jwt = "eyJhbGciOiJFUzI1NiJ9." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+
+            ObjectNode mandatee = objectMapper.createObjectNode()
+                    .put("id", "did:key:zDnaeUcW7pAV2xfcEMRsi3tsgYSYkLEf8mbSCZ7YFhKDu6XcR" + i)
+                    .put("first_name", "Jhon")
+                    .put("last_name", "Doe")
+                    .put("email", "jhon.doe" + i + "@example.com");
+            ObjectNode mandate = objectMapper.createObjectNode();
+            mandate.put("id", "urn:uuid:" + i);
+            mandate.set("mandatee", mandatee);
+            mandate.set("mandator", objectMapper.createObjectNode()
+                    .put("organization", "Example Org")
+                    .put("organizationIdentifier", "VATES-A12345678"));
+            ArrayNode powers = mandate.putArray("power");
+            for (int p = 0; p < 3; p++) {
+                ObjectNode power = powers.addObject().put("id", "power-" + p).put("tmf_domain", "DOME");
+                power.putArray("tmf_action").add("Execute").add("Create");
+            }
+
+            ObjectNode vc = objectMapper.createObjectNode();
+            vc.putArray("@context").add("https://www.w3.org/2018/credentials/v1");
+            vc.put("id", "urn:uuid:credential-" + i);
+            vc.putArray("type").add("VerifiableCredential").add("LEARCredentialEmployee");
+            vc.put("issuer", "did:elsi:VATES-Q0000000J");
+            vc.put("issuanceDate", "2024-04-21T09:29:30Z");
+            vc.put("expirationDate", "2025-04-21T09:29:30Z");
+            vc.set("credentialSubject", objectMapper.createObjectNode().set("mandate", mandate));
+
+            ObjectNode entity = entities.addObject();
+            entity.put("id", ApplicationConstants.CREDENTIAL_ENTITY_PREFIX + "credential-" + i);
+            entity.put("type", ApplicationConstants.CREDENTIAL_TYPE);
+            entity.set("status", property("VALID"));
+            entity.set("credentialType", objectMapper.createObjectNode()
+                    .put("type", ApplicationConstants.PROPERTY_TYPE)
+                    .set("value", objectMapper.createArrayNode().add("VerifiableCredential").add("LEARCredentialEmployee")));
+            entity.set(ApplicationConstants.JWT_VC, property(jwt));
+            entity.set(ApplicationConstants.VC_JSON, objectMapper.createObjectNode()
+                    .put("type", ApplicationConstants.PROPERTY_TYPE)
+                    .set("value", vc));
+            entity.set("belongsTo", objectMapper.createObjectNode()
+                    .put("type", ApplicationConstants.RELATIONSHIP_TYPE)
+                    .put("object", ApplicationConstants.USER_ENTITY_PREFIX + "benchmark"));
+        }
+        return entities;
+    }
+
+    private ObjectNode property(String value) {
+        return objectMapper.createObjectNode()
+                .put("type", ApplicationConstants.PROPERTY_TYPE)
+                .put("value", value);
+    }
+
+}
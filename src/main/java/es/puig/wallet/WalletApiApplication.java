@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
@@ -17,6 +18,7 @@ public class WalletApiApplication {
 			JsonMapper.builder()
 					.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
 					.serializationInclusion(JsonInclude.Include.NON_NULL)
+					.addModule(new JavaTimeModule())
 					.build();
 
 	public static void main(String[] args) {
@@ -1,21 +1,34 @@
 package es.puig.wallet.application.port;
 
+import es.puig.wallet.domain.model.BrokerEntity;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface BrokerService {
 
-    Mono<Void> postEntity(String processId, String requestBody);
+    Mono<Void> postEntity(String processId, BrokerEntity entity);
+    Mono<Void> upsertEntity(String processId, BrokerEntity entity);
 
     Mono<Optional<String>> getEntityById(String processId, String id);
     Mono<String> getAllCredentialsByUserId(String processId, String userId);
+    Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset);
+    Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset);
     Mono<String> getCredentialByIdAndUserId(String processId, String credentialId, String  userId);
     Mono<Void> deleteCredentialByIdAndUserId(String processId, String credentialId, String  userId);
     Mono<String> getCredentialByCredentialTypeAndUserId(String processId, String credentialType, String  userId);
     Mono<String> getTransactionThatIsLinkedToACredential(String processId, String credentialId);
 
-    Mono<Void> updateEntity(String processId, String id, String requestBody);
+    Mono<Void> updateEntity(String processId, String id, BrokerEntity entity);
     Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId);
+    Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId);
+    Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes);
+    Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes);
+
+    Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities);
+    Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities);
+    Mono<Void> batchDeleteEntities(String processId, List<String> ids);
 
 }
@@ -9,4 +9,21 @@ public interface VaultService {
     Mono<KeyVaultSecret> getSecretByKey(String key);
     Mono<Void> deleteSecretByKey(String key);
 
+    /**
+     * Keeps the secret in memory, where {@link #getSecretByKey(String)} finds it, until it is committed to the vault
+     * or discarded. A secret not committed in time is discarded, so an abandoned flow never writes to the vault.
+     * Staged secrets are never dropped to make room for new ones: when too many are staged, the new one is refused.
+     */
+    Mono<Void> stageSecret(String key, KeyVaultSecret secret);
+
+    /**
+     * Writes the staged secret to the vault.
+     */
+    Mono<Void> commitSecret(String key);
+
+    /**
+     * Forgets the secret if it is still staged, committed secrets are left untouched.
+     */
+    void discardSecret(String key);
+
 }
@@ -4,13 +4,19 @@ import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.application.workflow.data.DataWorkflow;
 import es.puig.wallet.domain.model.CredentialsBasicInfo;
+import es.puig.wallet.domain.model.EntityAttribute;
 import es.puig.wallet.domain.service.DataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
 
 @Slf4j
 @Service
@@ -23,23 +29,109 @@ public class DataWorkflowImpl implements DataWorkflow {
 
     /**
      * Retrieves a list of basic information about the verifiable credentials (VCs) associated with a given user ID.
+     * The list is read from the credential summary entity of the user with a single fetch by id. While the summary
+     * is missing or not complete yet, the VCs are read from the credential entities instead and the summary is
+     * rebuilt from them for the next requests.
      *
      * @param processId A unique identifier for the process, used for logging and tracking.
      * @param userId    The unique identifier of the user whose VCs are to be retrieved.
      */
     @Override
     public Mono<List<CredentialsBasicInfo>> getAllCredentialsByUserId(String processId, String userId) {
-        return brokerService.getAllCredentialsByUserId(processId, userId)
-                .flatMap(dataService::getUserVCsInJson)
+        return brokerService.getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)
+                .flatMap(summaryEntity -> summaryEntity
+                        .map(dataService::getUserVCsFromCredentialSummary)
+                        .orElseGet(Mono::empty))
+                .switchIfEmpty(Mono.defer(() -> rebuildCredentialSummary(processId, userId)))
                 .doOnSuccess(list -> log.info("Retrieved VCs in JSON for userId: {}", userId))
                 .onErrorResume(Mono::error);
     }
 
+    /**
+     * Reads every VC of the user from the credential entities and stores them as the complete credential summary.
+     * A failure storing the summary does not fail the request, the summary is rebuilt again on the next one.
+     */
+    private Mono<List<CredentialsBasicInfo>> rebuildCredentialSummary(String processId, String userId) {
+        return streamAllCredentialsByUserId(processId, userId)
+                .collectList()
+                .flatMap(credentials -> dataService.buildCompleteCredentialSummaryEntity(userId, credentials)
+                        .flatMap(summaryEntity -> brokerService.upsertEntity(processId, summaryEntity))
+                        .doOnSuccess(result -> log.info("ProcessId: {} - Credential summary rebuilt for userId: {}", processId, userId))
+                        .then(Mono.defer(() -> removeDeletedCredentials(processId, userId, credentials)
+                                .onErrorResume(e -> markCredentialSummaryIncomplete(processId, userId).thenReturn(credentials))))
+                        .onErrorResume(e -> {
+                            log.warn("ProcessId: {} - Error storing the credential summary of userId: {}", processId, userId, e);
+                            return Mono.just(credentials);
+                        }));
+    }
+
+    /**
+     * The summary is stored without check-and-set, so a VC deleted during the rebuild, after it was read but before
+     * the summary was stored, would be left in a complete summary. The VCs are read again once the summary is stored
+     * and the instances of the ones gone are removed; a VC deleted later on has its instance removed by the deletion.
+     * When the VCs cannot be read again, the summary is marked as not complete.
+     */
+    private Mono<List<CredentialsBasicInfo>> removeDeletedCredentials(String processId, String userId, List<CredentialsBasicInfo> credentials) {
+        return streamAllCredentialsByUserId(processId, userId)
+                .map(CredentialsBasicInfo::id)
+                .collect(Collectors.toSet())
+                .flatMap(storedIds -> Flux.fromIterable(credentials)
+                        .filter(credential -> !storedIds.contains(credential.id()))
+                        .concatMap(credential -> brokerService.deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credential.id()))
+                        .then(Mono.fromCallable(() -> credentials.stream()
+                                .filter(credential -> storedIds.contains(credential.id()))
+                                .toList())));
+    }
+
+    /**
+     * Retrieves one page of basic information about the verifiable credentials of a given user.
+     * The page size is capped to the largest page the broker is asked for. The page is read from the read replica of
+     * the broker when there is one, it is only shown and never written back.
+     *
+     * @param processId A unique identifier for the process, used for logging and tracking.
+     * @param userId    The unique identifier of the user whose VCs are to be retrieved.
+     * @param limit     The maximum number of VCs of the page.
+     * @param offset    The number of VCs to skip before the first one of the page.
+     */
+    @Override
+    public Flux<CredentialsBasicInfo> getCredentialsPageByUserId(String processId, String userId, int limit, int offset) {
+        return brokerService.getCredentialsPageByUserIdFromReadReplica(processId, userId, Math.min(limit, MAX_CREDENTIALS_PAGE_SIZE), offset)
+                .flatMap(dataService::getUserVCsInJson)
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    /**
+     * Streams every verifiable credential of a given user, requesting the next page to the broker only once
+     * the previous one has been received, so the first VCs are emitted before the whole wallet has been read.
+     * The pages are read from the primary broker, they also rebuild the credential summary of the user.
+     *
+     * @param processId A unique identifier for the process, used for logging and tracking.
+     * @param userId    The unique identifier of the user whose VCs are to be retrieved.
+     */
+    @Override
+    public Flux<CredentialsBasicInfo> streamAllCredentialsByUserId(String processId, String userId) {
+        return fetchCredentialsPage(processId, userId, CREDENTIALS_PAGE_SIZE, 0)
+                .expand(page -> page.credentials().size() < CREDENTIALS_PAGE_SIZE
+                        ? Mono.empty()
+                        : fetchCredentialsPage(processId, userId, CREDENTIALS_PAGE_SIZE, page.offset() + CREDENTIALS_PAGE_SIZE))
+                .concatMapIterable(CredentialsPage::credentials)
+                .doOnComplete(() -> log.info("Streamed VCs in JSON for userId: {}", userId));
+    }
+
+    private Mono<CredentialsPage> fetchCredentialsPage(String processId, String userId, int limit, int offset) {
+        return brokerService.getCredentialsPageByUserId(processId, userId, limit, offset)
+                .flatMap(dataService::getUserVCsInJson)
+                .map(credentials -> new CredentialsPage(offset, credentials));
+    }
+
     /**
      * Deletes a specific verifiable credential (VC) by its ID for a given user.
      * This method first retrieves the requested credential associated with the user. If the credential is found, it then
      * extracts the Decentralized Identifier (DID) from the VC, deletes the secret key associated with the DID
-     * in the vault, and finally deletes the VC itself.
+     * in the vault, and finally deletes the instance of the VC in the credential summary of the user and the VC
+     * itself. The instance goes first: a VC left without its instance is listed again once the summary is rebuilt,
+     * so when the VC cannot be deleted the summary is marked as not complete. Once the VC is deleted its instance is
+     * removed again, a summary rebuilt meanwhile may have stored it back.
      *
      * @param processId    A unique identifier for the process, used for logging and tracking.
      * @param credentialId The unique identifier of the credential to be deleted.
@@ -51,9 +143,29 @@ public class DataWorkflowImpl implements DataWorkflow {
         return brokerService.getCredentialByIdAndUserId(processId,credentialId,userId)
                 .flatMap(dataService::extractDidFromVerifiableCredential)
                 .flatMap(vaultService::deleteSecretByKey)
-                .then(brokerService.deleteCredentialByIdAndUserId(processId, credentialId, userId))
+                .then(Mono.defer(() -> brokerService.deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credentialId)))
+                .then(Mono.defer(() -> brokerService.deleteCredentialByIdAndUserId(processId, credentialId, userId)
+                        .onErrorResume(e -> markCredentialSummaryIncomplete(processId, userId).then(Mono.error(e)))))
+                .then(Mono.defer(() -> brokerService.deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credentialId)
+                        .onErrorResume(e -> markCredentialSummaryIncomplete(processId, userId))))
                 .doOnSuccess(list -> log.info("Delete VC with Id: {}", credentialId))
                 .onErrorResume(Mono::error);
     }
 
+    /**
+     * Makes the next listing rebuild the credential summary from the credential entities. A failure is only logged,
+     * the error of the deletion is the one reported.
+     */
+    private Mono<Void> markCredentialSummaryIncomplete(String processId, String userId) {
+        return brokerService.updateEntityAttributes(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId,
+                        Map.of(COMPLETE, new EntityAttribute<>(PROPERTY_TYPE, false)))
+                .onErrorResume(e -> {
+                    log.warn("ProcessId: {} - Error marking the credential summary of userId: {} as not complete", processId, userId, e);
+                    return Mono.empty();
+                });
+    }
+
+    private record CredentialsPage(int offset, List<CredentialsBasicInfo> credentials) {
+    }
+
 }
@@ -4,18 +4,22 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.application.port.BrokerService;
+import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.application.workflow.issuance.CredentialIssuanceCommonWorkflow;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.*;
+import es.puig.wallet.infrastructure.broker.util.KnownUserCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
-import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
 import static es.puig.wallet.domain.util.ApplicationUtils.extractResponseType;
 import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
 
@@ -33,7 +37,9 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
     private final ProofJWTService proofJWTService;
     private final SignerService signerService;
     private final BrokerService brokerService;
+    private final VaultService vaultService;
     private final DataService dataService;
+    private final KnownUserCache knownUserCache;
     private final EbsiIdTokenService ebsiIdTokenService;
     private final EbsiVpTokenService ebsiVpTokenService;
     private final EbsiAuthorisationService ebsiAuthorisationService;
@@ -64,19 +70,19 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
     /**
      * Orchestrates the flow to obtain a credential with a pre-authorized code.
      * 1. Obtains a pre-authorized token.
-     * 2. Generates and saves a key pair.
+     * 2. Generates a key pair, kept in memory until a credential is obtained.
      * 3. Builds and signs a credential request.
-     * 4. Retrieves the credential.
-     * 5. Processes the user entity based on the obtained credential and DID.
+     * 4. Retrieves the credentials, saving each one as soon as it is obtained.
+     * 5. Commits the key pair to the vault right before the first credential is saved.
      */
     private Mono<Void> getCredentialWithPreAuthorizedCode(String processId, String authorizationToken, CredentialOffer credentialOffer, AuthorisationServerMetadata authorisationServerMetadata, CredentialIssuerMetadata credentialIssuerMetadata) {
         log.info("ProcessId: {} - Getting Credential with Pre-Authorized Code", processId);
-        return generateDid().flatMap(did ->
+        return withDid(did ->
                 getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)
                         .flatMapMany(tokenResponse -> Flux.fromIterable(credentialOffer.credentials())
-                                .concatMap(credential -> getCredential(processId, authorizationToken, tokenResponse, credentialIssuerMetadata, did, tokenResponse.cNonce(), credential))
+                                .concatMap(credential -> getCredential(processId, tokenResponse, credentialIssuerMetadata, did, tokenResponse.cNonce(), credential))
                         )
-                        .then());
+                        .as(credentialResponses -> saveCredentialsAndCommitDid(processId, authorizationToken, did, credentialResponses)));
     }
 
     /**
@@ -84,12 +90,12 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
      */
     private Mono<Void> getCredentialWithPreAuthorizedCodeDomeProfile(String processId, String authorizationToken, CredentialOffer credentialOffer, AuthorisationServerMetadata authorisationServerMetadata, CredentialIssuerMetadata credentialIssuerMetadata) {
         log.info("ProcessId: {} - Getting Dome Profile Credential with Pre-Authorized Code", processId);
-        return generateDid().flatMap(did ->
+        return withDid(did ->
                 getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)
                 .flatMap(tokenResponse -> retrieveCredentialFormatFromCredentialIssuerMetadataByCredentialConfigurationId(credentialOffer.credentialConfigurationsIds().get(0),credentialIssuerMetadata)
                         .flatMap( format -> buildAndSignCredentialRequest(tokenResponse.cNonce(), did, credentialIssuerMetadata.credentialIssuer())
                                 .flatMap(jwt -> credentialService.getCredential(jwt,tokenResponse,credentialIssuerMetadata,format,null))
-                                .flatMap(credentialResponse -> persistTransactionIdAndProcessUserEntityForDomeProfile(processId,authorizationToken,credentialResponse,tokenResponse,credentialIssuerMetadata))
+                                .flatMap(credentialResponse -> persistTransactionIdAndProcessUserEntityForDomeProfile(processId,authorizationToken,did,credentialResponse,tokenResponse,credentialIssuerMetadata))
                 )));
     }
 
@@ -99,8 +105,7 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
      * requiring the user to go through an authorization code flow to obtain the credential.
      */
     private Mono<Void> getCredentialWithAuthorizedCode(String processId, String authorizationToken, CredentialOffer credentialOffer, AuthorisationServerMetadata authorisationServerMetadata, CredentialIssuerMetadata credentialIssuerMetadata) {
-        return generateDid()
-                .flatMap(did -> ebsiAuthorisationService.getRequestWithOurGeneratedCodeVerifier(processId, credentialOffer, authorisationServerMetadata, credentialIssuerMetadata, did)
+        return withDid(did -> ebsiAuthorisationService.getRequestWithOurGeneratedCodeVerifier(processId, credentialOffer, authorisationServerMetadata, credentialIssuerMetadata, did)
                         .flatMap(tuple -> extractResponseType(tuple.getT1())
                                 .flatMap(responseType -> {
                                     if ("id_token".equals(responseType)) {
@@ -114,9 +119,9 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
                                 .flatMap(params -> ebsiAuthorisationService.sendTokenRequest(tuple.getT2(), did, authorisationServerMetadata, params)))
                         // get Credentials
                         .flatMapMany(tokenResponse -> Flux.fromIterable(credentialOffer.credentials())
-                                .concatMap(credential -> getCredential(processId, authorizationToken, tokenResponse, credentialIssuerMetadata, did, tokenResponse.cNonce(), credential))
+                                .concatMap(credential -> getCredential(processId, tokenResponse, credentialIssuerMetadata, did, tokenResponse.cNonce(), credential))
                         )
-                        .then());
+                        .as(credentialResponses -> saveCredentialsAndCommitDid(processId, authorizationToken, did, credentialResponses)));
     }
 
     /**
@@ -128,12 +133,34 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
     }
 
     /**
-     * Generates a new ES256r1 EC key pair for signing requests.
-     * The generated key pair is then saved in a vault for secure storage and later retrieval.
-     * The method returns a map containing key pair details, including the DID.
+     * Generates a new ES256r1 EC key pair for signing requests and runs the flow with its DID.
+     * The private key is only staged: the flow commits it to the vault before a credential is stored with it, and
+     * whatever is still staged when the flow ends, because it failed or was cancelled before, is discarded without
+     * ever reaching the vault. Once committed there is nothing left to discard.
      */
-    private Mono<String> generateDid() {
-        return didKeyGeneratorService.generateDidKey();
+    private Mono<Void> withDid(Function<String, Mono<Void>> flow) {
+        return didKeyGeneratorService.generateDidKey()
+                .flatMap(did -> flow.apply(did)
+                        .doFinally(signal -> vaultService.discardSecret(did)));
+    }
+
+    /**
+     * Saves each credential as soon as the issuer returns it, so the ones already issued are kept when a later one of
+     * the offer fails, and commits the key pair of the DID to the vault right before the first one is saved. When no
+     * credential is obtained, the key pair never reaches the vault.
+     */
+    private Mono<Void> saveCredentialsAndCommitDid(String processId, String authorizationToken, String did, Flux<CredentialResponse> credentialResponses) {
+        return credentialResponses
+                .index()
+                .concatMap(indexedResponse -> saveCredential(processId, authorizationToken, did, indexedResponse.getT2(), indexedResponse.getT1() == 0)
+                        .thenReturn(indexedResponse.getT1()))
+                .count()
+                .doOnNext(saved -> {
+                    if (saved == 0) {
+                        log.warn("ProcessId: {} - No credential obtained, the key pair of the DID is not stored", processId);
+                    }
+                })
+                .then();
     }
 
     /**
@@ -146,63 +173,84 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
     }
 
     /**
-     * Processes the user entity based on the credential response.
-     * If the user entity exists, it is updated with the new credential.
-     * If not, a new user entity is created and then updated with the credential.
+     * Persists the credential of the user in a single batch upsert, committing the key pair of the DID first when
+     * asked to. Neither the user nor the credential are looked up beforehand: the upsert creates the missing entities
+     * and merges the new credential formats and credential summary instances into the existing ones.
      */
-    private Mono<Void> saveCredential(String processId, String authorizationToken, CredentialResponse credentialResponse) {
-        log.info("ProcessId: {} - Processing User Entity", processId);
+    private Mono<Void> saveCredential(String processId, String authorizationToken, String did, CredentialResponse credentialResponse, boolean commitDid) {
+        log.info("ProcessId: {} - Saving credential", processId);
         return getUserIdFromToken(authorizationToken)
-                .flatMap(userId -> brokerService.getEntityById(processId, USER_ENTITY_PREFIX + userId)
-                        .flatMap(optionalEntity -> optionalEntity
-                                .map(entity -> persistCredential(processId, userId, credentialResponse))
-                                .orElseGet(() -> createUserEntity(processId, userId)
-                                        .then(persistCredential(processId,userId,credentialResponse)))
-                        )
-                );
+                .flatMap(userId -> buildCredentialEntity(processId, userId, credentialResponse)
+                        .flatMap(credentialEntity -> {
+                            Mono<Void> persist = persistEntities(processId, userId, List.of(credentialEntity), List.of());
+                            return commitDid ? commitDidAndPersist(processId, did, credentialEntity.id(), persist) : persist;
+                        }));
     }
 
     /**
-     * Updates the user entity with the DID information.
-     * Following the update, a second operation is triggered to save the VC (Verifiable Credential) to the entity.
-     * This process involves saving the DID, updating the entity, retrieving the updated entity, saving the VC, and finally updating the entity again with the VC information.
+     * Commits the key pair of the DID to the vault before the credential issued to it is stored, so a stored
+     * credential never lacks its key. When storing fails the key is deleted again, unless the credential turns out to
+     * be stored all the same, as after a timed out write: a key left unused in the vault is the lesser evil, as is the
+     * one of a flow cancelled between both writes.
      */
-    private Mono<Void> persistCredential(String processId, String userId, CredentialResponse credentialResponse) {
-        log.info("ProcessId: {} - Updating User Entity", processId);
-        return Mono.defer(() -> {
-                    // Check if transactionId is present and choose the appropriate method to save the VC
-                    if (credentialResponse.transactionId() == null) {
-                        return dataService.saveVC(processId,userId, credentialResponse);
-                    } else {
-                        return dataService.saveDOMEUnsignedCredential(userId, credentialResponse.credential());
-                    }
-                })
-                .flatMap(credentialEntity -> brokerService.postEntity(processId, credentialEntity))
-                .then();
+    private Mono<Void> commitDidAndPersist(String processId, String did, String credentialId, Mono<Void> persist) {
+        return Mono.defer(() -> vaultService.commitSecret(did))
+                .then(persist.onErrorResume(e -> deleteDidUnlessStored(processId, did, credentialId)
+                        .then(Mono.error(e))));
     }
 
+    private Mono<Void> deleteDidUnlessStored(String processId, String did, String credentialId) {
+        return brokerService.getEntityById(processId, credentialId)
+                .flatMap(stored -> stored.isPresent() ? Mono.<Void>empty() : vaultService.deleteSecretByKey(did))
+                .onErrorResume(e -> {
+                    log.warn("ProcessId: {} - The key pair of {} is kept in the vault, its credential may be stored: {}", processId, did, e.getMessage());
+                    return Mono.empty();
+                });
+    }
 
     /**
-     * Handles the creation of a new user entity if it does not exist.
-     * This involves creating the user, posting the entity, saving the DID to the entity, updating the entity with the DID, retrieving the updated entity, saving the VC, and performing a final update with the VC information.
+     * Builds the credential entity to be stored, choosing between a signed credential and a DOME unsigned
+     * credential depending on the presence of a transactionId.
      */
-    private Mono<Void> createUserEntity(String processId, String userId) {
-        log.info("ProcessId: {} - Creating and Updating User Entity", processId);
-        return dataService.createUserEntity(userId)
-                .flatMap(createdUserId -> brokerService.postEntity(processId, createdUserId));
+    private Mono<CredentialEntity> buildCredentialEntity(String processId, String userId, CredentialResponse credentialResponse) {
+        return Mono.defer(() -> {
+            if (credentialResponse.transactionId() == null) {
+                return dataService.saveVC(processId, userId, credentialResponse);
+            } else {
+                return dataService.saveDOMEUnsignedCredential(userId, credentialResponse.credential());
+            }
+        });
     }
 
+    /**
+     * Upserts the given credential entities, their related entities and the credential summary instances of the
+     * credentials in one round trip. The user entity is only added to the batch while the user is not known to be
+     * stored in the broker yet.
+     */
+    private Mono<Void> persistEntities(String processId, String userId, List<CredentialEntity> credentialEntities, List<? extends BrokerEntity> relatedEntities) {
+        return dataService.buildCredentialSummaryEntity(userId, credentialEntities)
+                .flatMap(summaryEntity -> {
+                    List<BrokerEntity> batch = new ArrayList<>(credentialEntities.size() + relatedEntities.size() + 2);
+                    batch.addAll(credentialEntities);
+                    batch.addAll(relatedEntities);
+                    batch.add(summaryEntity);
+                    if (knownUserCache.isKnown(userId)) {
+                        return brokerService.batchUpsertEntities(processId, batch);
+                    }
+                    return dataService.createUserEntity(userId)
+                            .flatMap(userEntity -> {
+                                batch.add(0, userEntity);
+                                return brokerService.batchUpsertEntities(processId, batch);
+                            })
+                            .doOnSuccess(result -> knownUserCache.markKnown(userId));
+                });
+    }
 
-    private Mono<String> getCredential(String processId, String authorizationToken, TokenResponse tokenResponse, CredentialIssuerMetadata credentialIssuerMetadata, String did, String nonce, CredentialOffer.Credential credential) {
+    private Mono<CredentialResponse> getCredential(String processId, TokenResponse tokenResponse, CredentialIssuerMetadata credentialIssuerMetadata, String did, String nonce, CredentialOffer.Credential credential) {
         return Mono.defer(() -> buildAndSignCredentialRequest(nonce, did, credentialIssuerMetadata.credentialIssuer())
-                .flatMap(jwt -> credentialService.getCredential(jwt, tokenResponse, credentialIssuerMetadata, credential.format(), credential.types()))
-                .flatMap(credentialResponse -> {
-                    String newNonce = credentialResponse.c_nonce() != null ? credentialResponse.c_nonce() : nonce;
-                    return saveCredential(processId, authorizationToken, credentialResponse)
-                            .thenReturn(newNonce);  // Return the new nonce for the next iteration
-                }))
+                .flatMap(jwt -> credentialService.getCredential(jwt, tokenResponse, credentialIssuerMetadata, credential.format(), credential.types())))
                 .onErrorResume(e -> {
-                    log.error("Error while getting the credential at index {}", e.getMessage());
+                    log.error("ProcessId: {} - Error while getting the credential at index {}", processId, e.getMessage());
                     return Mono.empty(); // Continue with next credential even in case of error
                 });
     }
@@ -214,19 +262,26 @@ public class CredentialIssuanceCommonWorkflowImpl implements CredentialIssuanceC
                 .switchIfEmpty(Mono.error(new NoSuchElementException("No configuration found for ID: " + credentialConfigurationId)));
     }
 
-    private Mono<Void> persistTransactionIdAndProcessUserEntityForDomeProfile(String processId, String authorizationToken, CredentialResponse credential, TokenResponse tokenResponse, CredentialIssuerMetadata credentialIssuerMetadata) {
-        return saveCredential(processId, authorizationToken, credential)
-                .then(Mono.defer(() -> {
-                    try {
-                        JsonNode credentialJson = objectMapper.readTree(credential.credential());
-                        String credentialId = credentialJson.get("id").asText();
-                        return dataService.saveTransaction(credentialId, credential.transactionId(), tokenResponse.accessToken(), credentialIssuerMetadata.deferredCredentialEndpoint());
-                    } catch (JsonProcessingException e) {
-                        log.error("Error deserializing credential for transaction saving", e);
-                        return Mono.error(new RuntimeException("Failed to deserialize credential JSON", e));
-                    }
-                }))
-                .flatMap(transactionEntity -> brokerService.postEntity(processId, transactionEntity));
+    /**
+     * Stores the unsigned credential of the DOME profile and the transaction needed to request the signed one later,
+     * together with the user entity, in a single batch upsert, once the key pair of the DID is committed.
+     */
+    private Mono<Void> persistTransactionIdAndProcessUserEntityForDomeProfile(String processId, String authorizationToken, String did, CredentialResponse credential, TokenResponse tokenResponse, CredentialIssuerMetadata credentialIssuerMetadata) {
+        log.info("ProcessId: {} - Saving DOME unsigned credential and transaction", processId);
+        return getUserIdFromToken(authorizationToken)
+                .flatMap(userId -> buildCredentialEntity(processId, userId, credential)
+                        .flatMap(credentialEntity -> Mono.defer(() -> {
+                                    try {
+                                        JsonNode credentialJson = objectMapper.readTree(credential.credential());
+                                        String credentialId = credentialJson.get("id").asText();
+                                        return dataService.saveTransaction(credentialId, credential.transactionId(), tokenResponse.accessToken(), credentialIssuerMetadata.deferredCredentialEndpoint());
+                                    } catch (JsonProcessingException e) {
+                                        log.error("Error deserializing credential for transaction saving", e);
+                                        return Mono.error(new RuntimeException("Failed to deserialize credential JSON", e));
+                                    }
+                                })
+                                .flatMap(transactionEntity -> commitDidAndPersist(processId, did, credentialEntity.id(),
+                                        persistEntities(processId, userId, List.of(credentialEntity), List.of(transactionEntity))))));
     }
 
 }
@@ -2,6 +2,7 @@ package es.puig.wallet.application.workflow.issuance.impl;
 
 import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.application.workflow.issuance.CredentialIssuanceEbsiWorkflow;
+import es.puig.wallet.infrastructure.broker.util.KnownUserCache;
 import es.puig.wallet.infrastructure.ebsi.config.EbsiConfig;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.*;
@@ -10,7 +11,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
+import java.util.List;
+
 import static es.puig.wallet.domain.util.ApplicationUtils.extractResponseType;
 import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
 @Slf4j
@@ -25,6 +27,7 @@ public class CredentialIssuanceEbsiWorkflowImpl implements CredentialIssuanceEbs
     private final CredentialService credentialService;
     private final DataService dataService;
     private final BrokerService brokerService;
+    private final KnownUserCache knownUserCache;
     private final PreAuthorizedService preAuthorizedService;
     private final EbsiIdTokenService ebsiIdTokenService;
     private final EbsiVpTokenService ebsiVpTokenService;
@@ -103,43 +106,22 @@ public class CredentialIssuanceEbsiWorkflowImpl implements CredentialIssuanceEbs
     }
 
     /**
-     * Processes the user entity based on the credential response.
-     * If the user entity exists, it is updated with the new credential.
-     * If not, a new user entity is created and then updated with the credential.
+     * Persists the credential of the user and its credential summary instance with a single batch upsert.
+     * The user entity is sent in the same batch only while the user is not known to be stored in the broker yet.
      */
     private Mono<Void> saveCredential(String processId, String authorizationToken, CredentialResponse credentialResponse) {
-        log.info("ProcessId: {} - Processing User Entity", processId);
+        log.info("ProcessId: {} - Saving credential", processId);
         return getUserIdFromToken(authorizationToken)
-                .flatMap(userId -> brokerService.getEntityById(processId, USER_ENTITY_PREFIX + userId)
-                        .flatMap(optionalEntity -> optionalEntity
-                                .map(entity -> persistCredential(processId, userId, credentialResponse))
-                                .orElseGet(() -> createUserEntity(processId, userId)
-                                        .then(persistCredential(processId,userId,credentialResponse)))
-                        )
-                );
-    }
-
-    /**
-     * Updates the user entity with the DID information.
-     * Following the update, a second operation is triggered to save the VC (Verifiable Credential) to the entity.
-     * This process involves saving the DID, updating the entity, retrieving the updated entity, saving the VC, and finally updating the entity again with the VC information.
-     */
-    private Mono<Void> persistCredential(String processId, String userId, CredentialResponse credentialResponse) {
-        log.info("ProcessId: {} - Updating User Entity", processId);
-        return dataService.saveVC(processId,userId, credentialResponse)
-                .flatMap(credentialEntity -> brokerService.postEntity(processId, credentialEntity))
-                .then();
-    }
-
-
-    /**
-     * Handles the creation of a new user entity if it does not exist.
-     * This involves creating the user, posting the entity, saving the DID to the entity, updating the entity with the DID, retrieving the updated entity, saving the VC, and performing a final update with the VC information.
-     */
-    private Mono<Void> createUserEntity(String processId, String userId) {
-        log.info("ProcessId: {} - Creating and Updating User Entity", processId);
-        return dataService.createUserEntity(userId)
-                .flatMap(createdUserId -> brokerService.postEntity(processId, createdUserId));
+                .flatMap(userId -> dataService.saveVC(processId, userId, credentialResponse)
+                        .flatMap(credentialEntity -> dataService.buildCredentialSummaryEntity(userId, List.of(credentialEntity))
+                                .flatMap(summaryEntity -> {
+                                    if (knownUserCache.isKnown(userId)) {
+                                        return brokerService.batchUpsertEntities(processId, List.of(credentialEntity, summaryEntity));
+                                    }
+                                    return dataService.createUserEntity(userId)
+                                            .flatMap(userEntity -> brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, summaryEntity)))
+                                            .doOnSuccess(result -> knownUserCache.markKnown(userId));
+                                })));
     }
 
     /**
@@ -1,6 +1,5 @@
 package es.puig.wallet.application.workflow.issuance.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.application.port.BrokerService;
@@ -47,18 +46,18 @@ public class DeferredCredentialDomeProfileWorkflowImpl implements DeferredCreden
                                             if (credentialResponse.transactionId() == null){
                                                 return brokerService.getCredentialByIdAndUserId(processId,credentialId,userId)
                                                         .flatMap(credentialEntity -> dataService.updateVCEntityWithSignedFormat(credentialEntity,credentialResponse))
-                                                        .flatMap(updatedEntity -> brokerService.updateEntity(processId,credentialId,updatedEntity))
+                                                        // Only the signed format and the status are sent for the credential, the json_vc is left as stored
+                                                        .flatMap(updatedEntity -> Mono.when(
+                                                                dataService.buildSignedFormatAttributes(credentialResponse)
+                                                                        .flatMap(attributes -> brokerService.appendEntityAttributes(processId, updatedEntity.id(), attributes)),
+                                                                dataService.buildCredentialSummaryEntity(userId, List.of(updatedEntity))
+                                                                        .flatMap(summaryEntity -> brokerService.upsertEntity(processId, summaryEntity))))
                                                         .then(brokerService.deleteTransactionByTransactionId(processId,transaction.id()));
                                             }
                                             else {
-                                                try {
-                                                    return dataService.updateTransactionWithNewTransactionId(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(transaction),credentialResponse.transactionId())
-                                                            .flatMap(updatedEntity -> brokerService.updateEntity(processId,transaction.id(),updatedEntity))
-                                                            .then(Mono.error(new CredentialNotAvailableException("The signed credential it's not available yet")));
-                                                }
-                                                catch (JsonProcessingException e) {
-                                                    return Mono.error(new RuntimeException("Error processing : " + transactionEntity));
-                                                }
+                                                return dataService.buildTransactionDataWithNewTransactionId(transaction,credentialResponse.transactionId())
+                                                        .flatMap(attributes -> brokerService.updateEntityAttributes(processId,transaction.id(),attributes))
+                                                        .then(Mono.error(new CredentialNotAvailableException("The signed credential it's not available yet")));
                                             }
                                         });
                             }
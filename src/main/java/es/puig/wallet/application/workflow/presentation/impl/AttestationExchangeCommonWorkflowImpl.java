@@ -9,17 +9,15 @@ import es.puig.wallet.domain.model.CredentialsBasicInfo;
 import es.puig.wallet.domain.model.VcSelectorRequest;
 import es.puig.wallet.domain.model.VcSelectorResponse;
 import es.puig.wallet.domain.service.*;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
-import java.util.UUID;
 
 import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
 
@@ -28,12 +26,15 @@ import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
 @RequiredArgsConstructor
 public class AttestationExchangeCommonWorkflowImpl implements AttestationExchangeCommonWorkflow {
 
+    private static final int NONCE_LENGTH = 16;
+
     private final AuthorizationRequestService authorizationRequestService;
     private final AuthorizationResponseService authorizationResponseService;
     private final VerifierValidationService verifierValidationService;
     private final DataService dataService;
     private final BrokerService brokerService;
     private final PresentationService presentationService;
+    private final SecureRandomSource secureRandomSource;
 
     @Override
     public Mono<VcSelectorRequest> processAuthorizationRequest(String processId, String authorizationToken, String qrContent) {
@@ -93,15 +94,8 @@ public class AttestationExchangeCommonWorkflowImpl implements AttestationExchang
                 .then();
     }
 
-    private static Mono<String> generateNonce() {
-        return Mono.fromCallable(() -> {
-            UUID randomUUID = UUID.randomUUID();
-            ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[16]);
-            byteBuffer.putLong(randomUUID.getMostSignificantBits());
-            byteBuffer.putLong(randomUUID.getLeastSignificantBits());
-            byte[] uuidBytes = byteBuffer.array();
-            return Base64.getUrlEncoder().withoutPadding().encodeToString(uuidBytes);
-        });
+    private Mono<String> generateNonce() {
+        return Mono.fromCallable(() -> secureRandomSource.nextBase64Url(NONCE_LENGTH));
     }
 
     private static Mono<String> generateAudience() {
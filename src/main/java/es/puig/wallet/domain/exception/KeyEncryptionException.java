@@ -0,0 +1,7 @@
+package es.puig.wallet.domain.exception;
+
+public class KeyEncryptionException extends RuntimeException {
+    public KeyEncryptionException(String message) {
+        super(message);
+    }
+}
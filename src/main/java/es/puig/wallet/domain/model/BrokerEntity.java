@@ -0,0 +1,13 @@
+package es.puig.wallet.domain.model;
+
+/**
+ * An NGSI-LD entity the wallet writes to the context broker. Entities are handed to the broker typed and are only
+ * serialized once, when the request body is written.
+ */
+public interface BrokerEntity {
+
+    String id();
+
+    String type();
+
+}
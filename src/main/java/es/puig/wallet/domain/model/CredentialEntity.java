@@ -2,6 +2,7 @@ package es.puig.wallet.domain.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import es.puig.wallet.domain.util.ApplicationConstants;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Builder;
 
@@ -14,10 +15,14 @@ public record CredentialEntity(
         @JsonProperty("credentialType") CredentialTypeAttribute credentialTypeAttribute,
         @JsonProperty("jwt_vc") CredentialAttribute jwtCredentialAttribute,
         @JsonProperty("cwt_vc") CredentialAttribute cwtCredentialAttribute,
+        // Lightweight markers of the stored signed formats, so list queries can tell which formats are
+        // available without fetching the signed payloads.
+        @JsonProperty(ApplicationConstants.HAS_JWT_VC) CredentialAttribute jwtFormatMarker,
+        @JsonProperty(ApplicationConstants.HAS_CWT_VC) CredentialAttribute cwtFormatMarker,
         // This field is required and must always be present as it contains the JSON
         // representation of the credential, which is necessary to visualize the credential's
         // data in the frontend.
         @JsonProperty("json_vc") @NotBlank CredentialAttribute jsonCredentialAttribute,
         @JsonProperty("belongsTo") RelationshipAttribute relationshipAttribute
-) {
+) implements BrokerEntity {
 }
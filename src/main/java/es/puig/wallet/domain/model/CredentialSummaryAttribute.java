@@ -0,0 +1,14 @@
+package es.puig.wallet.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record CredentialSummaryAttribute(
+        @JsonProperty("type") String type,
+        @JsonProperty("datasetId") String datasetId,
+        @JsonProperty("value") CredentialsBasicInfo value
+) {
+}
@@ -0,0 +1,26 @@
+package es.puig.wallet.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+// A null attribute in an upsert would remove the complete marker of the stored summary
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CredentialSummaryEntity(
+        @JsonProperty("id") String id,
+        @JsonProperty("type") String type,
+        // One instance per credential of the user, identified by the id of the credential entity as datasetId.
+        // The broker returns a single instance as an object instead of an array.
+        @JsonProperty("credentials")
+        @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+        List<CredentialSummaryAttribute> credentials,
+        // Only present once the summary has been rebuilt from every credential entity of the user
+        @JsonProperty("complete") EntityAttribute<Boolean> complete
+) implements BrokerEntity {
+}
@@ -0,0 +1,15 @@
+package es.puig.wallet.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record EncryptedKeyAttribute(
+        @JsonProperty("wrapped_key") String wrappedKey,
+        @JsonProperty("wrapping_iv") String wrappingIv,
+        @JsonProperty("ciphertext") String ciphertext,
+        @JsonProperty("iv") String iv
+){
+}
@@ -0,0 +1,20 @@
+package es.puig.wallet.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+/**
+ * The private key of a DID encrypted under a data encryption key of its own, which is in turn wrapped by the master
+ * key of the wallet, stored in the broker next to the credentials of its owner.
+ */
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record EncryptedKeyEntity(
+        @JsonProperty("id") String id,
+        @JsonProperty("type") String type,
+
+        @JsonProperty("encryptedKey") EntityAttribute<EncryptedKeyAttribute> encryptedKeyAttribute,
+        @JsonProperty("belongsTo") RelationshipAttribute relationshipAttribute
+) implements BrokerEntity {
+}
@@ -12,5 +12,5 @@ public record TransactionEntity (
 
         @JsonProperty("transactionData") EntityAttribute<TransactionDataAttribute> transactionDataAttribute,
         @JsonProperty("linkedTo") RelationshipAttribute relationshipAttribute
-){
+) implements BrokerEntity {
 }
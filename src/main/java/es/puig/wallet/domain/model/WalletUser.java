@@ -9,5 +9,5 @@ import lombok.Builder;
 public record WalletUser(
         @JsonProperty("id") String id,
         @JsonProperty("type") String type
-) {
+) implements BrokerEntity {
 }
@@ -1,21 +1,26 @@
 package es.puig.wallet.domain.service;
 
-import es.puig.wallet.domain.model.CredentialResponse;
-import es.puig.wallet.domain.model.CredentialsBasicInfo;
+import es.puig.wallet.domain.model.*;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
 
 public interface DataService {
 
-    Mono<String> createUserEntity(String id);
-    Mono<String> saveVC(String processId, String userId, CredentialResponse credential);
+    Mono<WalletUser> createUserEntity(String id);
+    Mono<CredentialEntity> saveVC(String processId, String userId, CredentialResponse credential);
     Mono<List<CredentialsBasicInfo>> getUserVCsInJson(String userEntity);
     Mono<String> getVerifiableCredentialOnRequestedFormat(String credentialEntityJson, String format);
     Mono<String> extractDidFromVerifiableCredential(String credentialJson);
-    Mono<String> saveDOMEUnsignedCredential(String userId, String credentialJson);
+    Mono<CredentialEntity> saveDOMEUnsignedCredential(String userId, String credentialJson);
 
-    Mono<String> saveTransaction(String credentialId, String transactionId, String accessToken, String deferredEndpoint);
-    Mono<String> updateVCEntityWithSignedFormat(String credentialEntity, CredentialResponse signedCredential);
-    Mono<String> updateTransactionWithNewTransactionId(String transactionEntity, String transactionId);
+    Mono<TransactionEntity> saveTransaction(String credentialId, String transactionId, String accessToken, String deferredEndpoint);
+    Mono<CredentialEntity> updateVCEntityWithSignedFormat(String credentialEntity, CredentialResponse signedCredential);
+    Mono<Map<String, Object>> buildSignedFormatAttributes(CredentialResponse signedCredential);
+    Mono<Map<String, Object>> buildTransactionDataWithNewTransactionId(TransactionEntity transactionEntity, String transactionId);
+
+    Mono<CredentialSummaryEntity> buildCredentialSummaryEntity(String userId, List<CredentialEntity> credentialEntities);
+    Mono<CredentialSummaryEntity> buildCompleteCredentialSummaryEntity(String userId, List<CredentialsBasicInfo> credentials);
+    Mono<List<CredentialsBasicInfo>> getUserVCsFromCredentialSummary(String credentialSummaryEntity);
 }
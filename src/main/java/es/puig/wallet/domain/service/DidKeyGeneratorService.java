@@ -4,5 +4,11 @@ import reactor.core.publisher.Mono;
 
 public interface DidKeyGeneratorService {
     Mono<String> generateDidKeyJwkJcsPub();
+
+    /**
+     * Generates a did:key whose private key is only staged in the vault service: the caller commits it once the
+     * DID is bound to a credential, or discards it.
+     */
     Mono<String> generateDidKey();
+
 }
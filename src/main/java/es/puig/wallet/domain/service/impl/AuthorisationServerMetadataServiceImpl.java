@@ -6,7 +6,8 @@ import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.model.AuthorisationServerMetadata;
 import es.puig.wallet.domain.model.CredentialIssuerMetadata;
 import es.puig.wallet.domain.service.AuthorisationServerMetadataService;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,7 +20,7 @@ import reactor.core.publisher.Mono;
 public class AuthorisationServerMetadataServiceImpl implements AuthorisationServerMetadataService {
     private final ObjectMapper objectMapper;
     private final AppConfig appConfig;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
     @Override
     public Mono<AuthorisationServerMetadata> getAuthorizationServerMetadataFromCredentialIssuerMetadata(String processId, CredentialIssuerMetadata credentialIssuerMetadata) {
@@ -42,7 +43,7 @@ public class AuthorisationServerMetadataServiceImpl implements AuthorisationServ
         else {
             authServer = credentialIssuerMetadata.credentialIssuer();
         }
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                 .get()
                 .uri(authServer + "/.well-known/openid-configuration")
                 .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_APPLICATION_JSON)
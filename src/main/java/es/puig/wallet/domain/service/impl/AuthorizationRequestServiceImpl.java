@@ -3,7 +3,8 @@ package es.puig.wallet.domain.service.impl;
 import com.nimbusds.jose.JWSObject;
 import es.puig.wallet.domain.model.AuthorizationRequest;
 import es.puig.wallet.domain.service.AuthorizationRequestService;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +15,7 @@ import reactor.core.publisher.Mono;
 @Service
 @RequiredArgsConstructor
 public class AuthorizationRequestServiceImpl implements AuthorizationRequestService {
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
     @Override
     public Mono<String> getAuthorizationRequestFromVcLoginRequest(String processId, String qrContent, String authorizationToken) {
@@ -29,7 +30,7 @@ public class AuthorizationRequestServiceImpl implements AuthorizationRequestServ
     }
 
     private Mono<String> getJwtAuthorizationRequest(String authorizationRequestUri, String authorizationToken) {
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.VERIFIER)
                 .get()
                 .uri(authorizationRequestUri)
                 .header(ApplicationConstants.HEADER_AUTHORIZATION, ApplicationConstants.BEARER + authorizationToken)
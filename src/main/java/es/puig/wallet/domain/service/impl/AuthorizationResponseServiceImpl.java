@@ -9,7 +9,8 @@ import com.nimbusds.jwt.JWTParser;
 import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.AuthorizationResponseService;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -36,7 +37,7 @@ public class AuthorizationResponseServiceImpl implements AuthorizationResponseSe
 
     private final ObjectMapper objectMapper;
 
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
     @Override
     public Mono<String> buildAndPostAuthorizationResponseWithVerifiablePresentation(String processId, VcSelectorResponse vcSelectorResponse, String verifiablePresentation, String authorizationToken) throws JsonProcessingException {
@@ -53,7 +54,7 @@ public class AuthorizationResponseServiceImpl implements AuthorizationResponseSe
         String body = "vp_token=" + vpToken;
 
         String urlWithState = vcSelectorResponse.redirectUri() + "?state=" + vcSelectorResponse.state();
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.VERIFIER)
                 .post()
                 .uri(urlWithState)
                 .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_URL_ENCODED_FORM)
@@ -188,7 +189,7 @@ public class AuthorizationResponseServiceImpl implements AuthorizationResponseSe
                 .map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8))
                 .collect(Collectors.joining("&"));
         // Post request
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.VERIFIER)
                 .post()
                 .uri(vcSelectorResponse.redirectUri())
                 .contentType(org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED)
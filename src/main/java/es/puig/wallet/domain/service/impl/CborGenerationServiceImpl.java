@@ -8,6 +8,7 @@ import com.nimbusds.jose.shaded.gson.JsonObject;
 import com.nimbusds.jose.shaded.gson.JsonParser;
 import com.upokecenter.cbor.CBORObject;
 import es.puig.wallet.domain.service.CborGenerationService;
+import es.puig.wallet.infrastructure.core.util.CryptoScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.minvws.encoding.Base45;
@@ -25,18 +26,14 @@ import java.util.zip.DeflaterInputStream;
 @Slf4j
 public class CborGenerationServiceImpl implements CborGenerationService {
     private final ObjectMapper objectMapper;
+    private final CryptoScheduler cryptoScheduler;
 
     @Override
     public Mono<String> generateCbor(String processId, String content) throws ParseException {
         return generateCborFromJson(content)
                 .doOnSuccess(cbor -> log.info("ProcessID: {} - Cbor generated correctly: {}", processId, cbor))
-                .flatMap(cbor -> {
-                    try {
-                        return generateCOSEBytesFromCBOR(cbor);
-                    } catch (CoseException e) {
-                        return Mono.error(new RuntimeException());
-                    }
-                })
+                .flatMap(cbor -> cryptoScheduler.run("cose-sign", () -> generateCOSEBytesFromCBOR(cbor))
+                        .onErrorMap(CoseException.class, RuntimeException::new))
                 .flatMap(this::compressAndConvertToBase45FromCOSE);
     }
 
@@ -67,7 +64,7 @@ public class CborGenerationServiceImpl implements CborGenerationService {
         return Mono.just(vpJsonObject.toString());
     }
 
-    private Mono<byte[]> generateCOSEBytesFromCBOR(byte[] cbor) throws CoseException {
+    private byte[] generateCOSEBytesFromCBOR(byte[] cbor) throws CoseException {
         OneKey oneKey = OneKey.generateKey(AlgorithmID.ECDSA_256);
         OneKey publicKey = oneKey.PublicKey();
 
@@ -77,7 +74,7 @@ public class CborGenerationServiceImpl implements CborGenerationService {
         msg.SetContent(cbor);
         msg.sign(oneKey);
 
-        return Mono.just(msg.EncodeToBytes());
+        return msg.EncodeToBytes();
     }
 
     private Mono<String> compressAndConvertToBase45FromCOSE(byte[] cose) {
@@ -7,7 +7,8 @@ import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.model.CredentialIssuerMetadata;
 import es.puig.wallet.domain.model.CredentialOffer;
 import es.puig.wallet.domain.service.CredentialIssuerMetadataService;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,7 +23,7 @@ public class CredentialIssuerMetadataServiceImpl implements CredentialIssuerMeta
     private final ObjectMapper objectMapper;
     private final AppConfig appConfig;
 
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
     @Override
     public Mono<CredentialIssuerMetadata> getCredentialIssuerMetadataFromCredentialOffer(String processId, CredentialOffer credentialOffer) {
@@ -39,7 +40,7 @@ public class CredentialIssuerMetadataServiceImpl implements CredentialIssuerMeta
     }
 
     private Mono<String> getCredentialIssuerMetadata(String credentialIssuerURL) {
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.ISSUER)
                 .get()
                 .uri(credentialIssuerURL)
                 .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_APPLICATION_JSON)
@@ -7,7 +7,8 @@ import es.puig.wallet.domain.exception.FailedCommunicationException;
 import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.model.CredentialOffer;
 import es.puig.wallet.domain.service.CredentialOfferService;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -26,7 +27,7 @@ import java.util.List;
 public class CredentialOfferServiceImpl implements CredentialOfferService {
 
     private final ObjectMapper objectMapper;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
     @Override
     public Mono<CredentialOffer> getCredentialOfferFromCredentialOfferUri(String processId, String credentialOfferUri) {
         return parseCredentialOfferUri(credentialOfferUri)
@@ -55,7 +56,7 @@ public class CredentialOfferServiceImpl implements CredentialOfferService {
     }
     private Mono<String> getCredentialOffer(String credentialOfferUri) {
         log.info("CredentialOfferServiceImpl - getCredentialOffer invoked");
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.ISSUER)
                 .get()
                 .uri(credentialOfferUri)
                 .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_APPLICATION_JSON)
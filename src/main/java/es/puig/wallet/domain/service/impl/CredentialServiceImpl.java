@@ -5,7 +5,8 @@ import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.exception.FailedSerializingException;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.CredentialService;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,7 +25,7 @@ import java.util.List;
 public class CredentialServiceImpl implements CredentialService {
 
     private final ObjectMapper objectMapper;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
     @Override
     public Mono<CredentialResponse> getCredential(String jwt, TokenResponse tokenResponse, CredentialIssuerMetadata credentialIssuerMetadata, String format, List<String> types) {
@@ -84,7 +85,7 @@ public class CredentialServiceImpl implements CredentialService {
 
     private Mono<CredentialResponse> handleDeferredCredential(String acceptanceToken, CredentialIssuerMetadata credentialIssuerMetadata) {
         // Logic to handle the deferred credential request using acceptanceToken
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.ISSUER)
                 .post()
                 .uri(credentialIssuerMetadata.deferredCredentialEndpoint())
                 .header(ApplicationConstants.HEADER_AUTHORIZATION, ApplicationConstants.BEARER + acceptanceToken)
@@ -128,7 +129,7 @@ public class CredentialServiceImpl implements CredentialService {
                                         String credentialEndpoint,
                                         Object credentialRequest) {
         try {
-            return webClient.centralizedWebClient()
+            return webClientFactory.webClient(HttpDestination.ISSUER)
                     .post()
                     .uri(credentialEndpoint)
                     .contentType(MediaType.APPLICATION_JSON)
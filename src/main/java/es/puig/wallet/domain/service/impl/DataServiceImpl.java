@@ -1,19 +1,24 @@
 package es.puig.wallet.domain.service.impl;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.nimbusds.jwt.SignedJWT;
 import com.upokecenter.cbor.CBORObject;
-import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.exception.NoSuchVerifiableCredentialException;
 import es.puig.wallet.domain.exception.ParseErrorException;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.DataService;
 import es.puig.wallet.domain.util.ApplicationConstants;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.minvws.encoding.Base45;
@@ -27,6 +32,7 @@ import reactor.core.publisher.Mono;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.ZonedDateTime;
@@ -41,8 +47,12 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class DataServiceImpl implements DataService {
 
+    // Pattern for "2025-04-02 09:23:22.637345122 +0000 UTC"
+    private static final Pattern UTC_DATE_TIME_PATTERN = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}) (\\d{2}:\\d{2}:\\d{2}\\.\\d+) \\+0000 UTC");
+    private static final CredentialAttribute FORMAT_AVAILABLE = new CredentialAttribute(ApplicationConstants.PROPERTY_TYPE, true);
+
     private final ObjectMapper objectMapper;
-    private final BrokerService brokerService;
+    private final SecureRandomSource secureRandomSource;
 
     /**
      * Creates a new UserEntity.
@@ -50,28 +60,14 @@ public class DataServiceImpl implements DataService {
      * @param id The unique identifier for the user.
      */
     @Override
-    public Mono<String> createUserEntity(String id) {
+    public Mono<WalletUser> createUserEntity(String id) {
         // Construct the UserEntity
         WalletUser walletUser = WalletUser.builder().id(ApplicationConstants.USER_ENTITY_PREFIX + id).type(ApplicationConstants.WALLET_USER_TYPE).build();
 
         // Log the creation of the entity
         log.debug("UserEntity created for: {}", id);
 
-        return deserializeEntityToString(walletUser);
-    }
-
-    /**
-     * Deserializes an entity object to a JSON string.
-     *
-     * @param entity The entity object to be deserialized.
-     */
-    private Mono<String> deserializeEntityToString(Object entity) {
-        try {
-            return Mono.just(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(entity));
-
-        } catch (JsonProcessingException e) {
-            return Mono.error(new ParseErrorException("Error deserializing entity: " + e));
-        }
+        return Mono.just(walletUser);
     }
 
     /**
@@ -84,7 +80,7 @@ public class DataServiceImpl implements DataService {
      * @param credential The credential response which contain the credential and te format.
      */
     @Override
-    public Mono<String> saveVC(String processId, String userId, CredentialResponse credential) {
+    public Mono<CredentialEntity> saveVC(String processId, String userId, CredentialResponse credential) {
         Map<String, CredentialAttribute> formatMap = new HashMap<>();
         List<String> errors = new ArrayList<>();
 
@@ -97,7 +93,7 @@ public class DataServiceImpl implements DataService {
         // Since only signed formats will be processed, the status is always VALID
         CredentialStatus status = CredentialStatus.VALID;
         // Build and save the credential entity based on the processed data
-        return buildAndSaveCredentialEntity(processId,formatMap, status, userId)
+        return buildAndSaveCredentialEntity(formatMap, status, userId)
                 .doOnSuccess(entity -> log.info("Verifiable Credential saved successfully: {}", entity))
                 .onErrorResume(e -> {
                     log.error("Error saving Verifiable Credential: {}", e.getMessage());
@@ -119,26 +115,18 @@ public class DataServiceImpl implements DataService {
             }
     }
 
-    private Mono<String> buildAndSaveCredentialEntity(String processId, Map<String, CredentialAttribute> formatMap, CredentialStatus status, String userId) {
+    /**
+     * Builds the credential entity holding only the formats received in this issuance. The entity is persisted
+     * through an upsert, so when the credential already exists the broker merges the new format into it and
+     * keeps the formats that were stored before, without reading the entity first.
+     */
+    private Mono<CredentialEntity> buildAndSaveCredentialEntity(Map<String, CredentialAttribute> formatMap, CredentialStatus status, String userId) {
         // Always extract vc_json from a signed format
         return extractVcJsonFromSignedFormat(formatMap)
                 .flatMap(vcJsonAttribute -> extractVerifiableCredentialIdFromVcJson((JsonNode) vcJsonAttribute.value())
-                        .flatMap(vcId -> {
+                        .map(vcId -> {
                             List<String> types = extractCredentialTypes((JsonNode) vcJsonAttribute.value());
-                            String credentialId = ApplicationConstants.CREDENTIAL_ENTITY_PREFIX + vcId;
-                            return brokerService.getEntityById(processId, credentialId)
-                                    .flatMap(optionalEntity -> optionalEntity
-                                            .map(entityJson -> {
-                                                // Update the existing entity with the new format
-                                                String format = formatMap.containsKey(ApplicationConstants.JWT_VC) ? ApplicationConstants.JWT_VC : ApplicationConstants.VC_CWT;
-                                                String credential = formatMap.get(format).value().toString();
-                                                return updateCredentialEntityWithNewFormat(entityJson, credential, format);
-                                            })
-                                            .orElseGet(() -> {
-                                                // Create a new credential entity if it does not exist
-                                                CredentialEntity credentialEntity = buildCredentialEntity(formatMap, status, userId, vcJsonAttribute, vcId, types);
-                                                return deserializeEntityToString(credentialEntity);
-                                            }));
+                            return buildCredentialEntity(formatMap, status, userId, vcJsonAttribute, vcId, types);
                         }));
     }
 
@@ -173,10 +161,12 @@ public class DataServiceImpl implements DataService {
                 .relationshipAttribute(new RelationshipAttribute(ApplicationConstants.RELATIONSHIP_TYPE, ApplicationConstants.USER_ENTITY_PREFIX + userId));
 
         if (formatMap.containsKey(ApplicationConstants.JWT_VC)) {
-            builder.jwtCredentialAttribute(formatMap.get(ApplicationConstants.JWT_VC));
+            builder.jwtCredentialAttribute(formatMap.get(ApplicationConstants.JWT_VC))
+                    .jwtFormatMarker(FORMAT_AVAILABLE);
         }
         if (formatMap.containsKey(ApplicationConstants.VC_CWT)) {
-            builder.cwtCredentialAttribute(formatMap.get(ApplicationConstants.VC_CWT));
+            builder.cwtCredentialAttribute(formatMap.get(ApplicationConstants.VC_CWT))
+                    .cwtFormatMarker(FORMAT_AVAILABLE);
         }
         return builder.build();
     }
@@ -273,108 +263,175 @@ public class DataServiceImpl implements DataService {
         });
     }
 
-    private Mono<String> updateCredentialEntityWithNewFormat(String credentialEntityJson, String credential, String format) {
-        return Mono.just(credentialEntityJson)
-                .flatMap(json -> {
-                    try {
-                        // Deserialize the existing credential entity
-                        CredentialEntity credentialEntity = objectMapper.readValue(json, CredentialEntity.class);
-                        CredentialEntity.CredentialEntityBuilder updatedCredentialEntity = CredentialEntity.builder()
-                                .id(credentialEntity.id())
-                                .type(credentialEntity.type())
-                                .jsonCredentialAttribute(credentialEntity.jsonCredentialAttribute())
-                                .credentialTypeAttribute(credentialEntity.credentialTypeAttribute())
-                                .credentialStatusAttribute(credentialEntity.credentialStatusAttribute())
-                                .relationshipAttribute(credentialEntity.relationshipAttribute());
-
-                        // Maintain existing formats and add new format if not present
-                        addOrUpdateCredentialAttribute(credentialEntity, updatedCredentialEntity, credential, format);
-
-                        // Build the updated credential entity
-                        CredentialEntity updatedEntity = updatedCredentialEntity.build();
-                        // Serialize the updated entity back to JSON
-                        return deserializeEntityToString(updatedEntity);
-                    } catch (JsonProcessingException e) {
-                        // Handle JSON parsing errors
-                        return Mono.error(new FailedDeserializingException("Error processing credential entity JSON:" + e));
-                    }
-                });
-    }
-
-    private void addOrUpdateCredentialAttribute(CredentialEntity existingEntity, CredentialEntity.CredentialEntityBuilder builder, String credential, String format) {
-        // Check and update JWT credential if the format is JWT
-        if (format.equals(ApplicationConstants.JWT_VC) && existingEntity.jwtCredentialAttribute() == null) {
-            builder.jwtCredentialAttribute(new CredentialAttribute(ApplicationConstants.PROPERTY_TYPE, credential));
-        }
-        // Check and update CWT credential if the format is CWT
-        else if (format.equals(ApplicationConstants.VC_CWT) && existingEntity.cwtCredentialAttribute() == null) {
-            builder.cwtCredentialAttribute(new CredentialAttribute(ApplicationConstants.PROPERTY_TYPE, credential));
-        }
-
-        // Maintain existing formats if already present
-        if (existingEntity.jwtCredentialAttribute() != null && !format.equals(ApplicationConstants.JWT_VC)) {
-            builder.jwtCredentialAttribute(existingEntity.jwtCredentialAttribute());
-        }
-        if (existingEntity.cwtCredentialAttribute() != null && !format.equals(ApplicationConstants.VC_CWT)) {
-            builder.cwtCredentialAttribute(existingEntity.cwtCredentialAttribute());
-        }
-    }
-
-
     /**
      * Retrieves the user's Verifiable Credentials in JSON format from a list of credential JSON strings.
-     * This method processes each JSON string to extract credential data and constructs a list of basic credential info.
+     * The list is read in a single streaming pass that emits one basic credential info per entity: the signed
+     * formats are skipped without being materialized and the credentialSubject is passed through as raw JSON.
      *
      * @param credentialsJson The JSON list of credentials as a string.
      * @return A list of basic credential info extracted from the provided JSON strings.
      */
     @Override
     public Mono<List<CredentialsBasicInfo>> getUserVCsInJson(String credentialsJson) {
-        try {
-            List<CredentialEntity> credentials = objectMapper.readValue(credentialsJson, new TypeReference<>() {
-            });
-
+        try (JsonParser parser = objectMapper.getFactory().createParser(credentialsJson)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array of credential entities");
+            }
             List<CredentialsBasicInfo> credentialsInfo = new ArrayList<>();
-            for (CredentialEntity credential : credentials) {
-                List<String> availableFormats = new ArrayList<>();
-                availableFormats.add(ApplicationConstants.VC_JSON);
-                if (credential.jwtCredentialAttribute() != null) {
-                    availableFormats.add(ApplicationConstants.JWT_VC);
-                }
-                if (credential.cwtCredentialAttribute() != null) {
-                    availableFormats.add(ApplicationConstants.VC_CWT);
-                }
-
-                JsonNode jsonCredential = objectMapper.convertValue(credential.jsonCredentialAttribute().value(), JsonNode.class);
-                JsonNode credentialSubject = jsonCredential.get(ApplicationConstants.CREDENTIAL_SUBJECT);
-                ZonedDateTime expirationDate = null;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                credentialsInfo.add(readCredentialBasicInfo(parser, credentialsJson));
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a credential entity");
+            }
+            return Mono.just(credentialsInfo);
+        } catch (InvalidFormatException e) {
+            log.error("Error deserializing Credential list: ", e);
+            return Mono.error(new FailedDeserializingException("Error reading credential: " + e.getOriginalMessage()));
+        } catch (IOException e) {
+            log.error("Error deserializing Credential list: ", e);
+            return Mono.error(new RuntimeException("Error processing credentials JSON: " + e));
+        }
+    }
 
-                if (jsonCredential.has(ApplicationConstants.EXPIRATION_DATE) && !jsonCredential.get(ApplicationConstants.EXPIRATION_DATE).isNull()) {
-                    expirationDate = parseZonedDateTime(jsonCredential.get(ApplicationConstants.EXPIRATION_DATE).asText());
+    private CredentialsBasicInfo readCredentialBasicInfo(JsonParser parser, String source) throws IOException {
+        CredentialsBasicInfo.CredentialsBasicInfoBuilder builder = CredentialsBasicInfo.builder();
+        boolean hasJwt = false;
+        boolean hasCwt = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (fieldName) {
+                case "id" -> builder.id(parser.getValueAsString());
+                case "status" -> builder.credentialStatus(readPropertyValue(parser, DataServiceImpl::readCredentialStatus));
+                case "credentialType" -> builder.vcType(readPropertyValue(parser, DataServiceImpl::readStringList));
+                case ApplicationConstants.JWT_VC, ApplicationConstants.HAS_JWT_VC -> {
+                    hasJwt |= value != JsonToken.VALUE_NULL;
+                    skipValue(parser);
                 }
+                case ApplicationConstants.VC_CWT, ApplicationConstants.HAS_CWT_VC -> {
+                    hasCwt |= value != JsonToken.VALUE_NULL;
+                    skipValue(parser);
+                }
+                case ApplicationConstants.VC_JSON -> readPropertyValue(parser, p -> readVcJsonSummary(p, source, builder));
+                default -> skipValue(parser);
+            }
+        }
 
-                CredentialsBasicInfo info = CredentialsBasicInfo.builder()
-                        .id(credential.id())
-                        .vcType(credential.credentialTypeAttribute().value())
-                        .credentialStatus(credential.credentialStatusAttribute().credentialStatus())
-                        .availableFormats(availableFormats)
-                        .credentialSubject(credentialSubject)
-                        .expirationDate(expirationDate)
-                        .build();
+        List<String> availableFormats = new ArrayList<>();
+        availableFormats.add(ApplicationConstants.VC_JSON);
+        if (hasJwt) {
+            availableFormats.add(ApplicationConstants.JWT_VC);
+        }
+        if (hasCwt) {
+            availableFormats.add(ApplicationConstants.VC_CWT);
+        }
+        return builder.availableFormats(availableFormats).build();
+    }
 
-                credentialsInfo.add(info);
+    /**
+     * Reads the value of an NGSI-LD property with the given reader, skipping the rest of its members.
+     * The parser is expected on the start of the property and is left on its end.
+     */
+    private static <T> T readPropertyValue(JsonParser parser, PropertyValueReader<T> reader) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            skipValue(parser);
+            return null;
+        }
+        T result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if ("value".equals(fieldName)) {
+                result = reader.read(parser);
+            } else {
+                skipValue(parser);
             }
+        }
+        return result;
+    }
 
-            return Mono.just(credentialsInfo);
-        } catch (JsonProcessingException e) {
-            log.error("Error deserializing Credential list: ", e);
-            return Mono.error(new RuntimeException("Error processing credentials JSON: " + e));
+    private static CredentialStatus readCredentialStatus(JsonParser parser) throws IOException {
+        String status = parser.getText();
+        try {
+            return CredentialStatus.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw InvalidFormatException.from(parser, "Unknown credential status " + status, status, CredentialStatus.class);
+        }
+    }
+
+    private static List<String> readStringList(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return List.of(parser.getValueAsString());
+        }
+        List<String> values = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            values.add(parser.getValueAsString());
         }
+        return values;
     }
 
+    private Void readVcJsonSummary(JsonParser parser, String source, CredentialsBasicInfo.CredentialsBasicInfoBuilder builder) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            skipValue(parser);
+            return null;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (ApplicationConstants.CREDENTIAL_SUBJECT.equals(fieldName)) {
+                builder.credentialSubject(readRawValue(parser, source));
+            } else if (ApplicationConstants.EXPIRATION_DATE.equals(fieldName) && value != JsonToken.VALUE_NULL) {
+                builder.expirationDate(parseZonedDateTime(parser.getText()));
+            } else {
+                skipValue(parser);
+            }
+        }
+        return null;
+    }
 
+    /**
+     * Copies a JSON object or array verbatim from the source, so it is written back to the client without
+     * building a tree for it. Scalar values are read as regular nodes.
+     */
+    private JsonNode readRawValue(JsonParser parser, String source) throws IOException {
+        if (!parser.currentToken().isStructStart()) {
+            return objectMapper.readTree(parser);
+        }
+        int start = (int) parser.currentTokenLocation().getCharOffset();
+        skipValue(parser);
+        int end = (int) parser.currentTokenLocation().getCharOffset() + 1;
+        return new POJONode(new RawValue(source.substring(start, end)));
+    }
 
+    /**
+     * Skips the current value, leaving the parser on its last token. Strings are completed instead of skipped:
+     * the reader-based parser skips an unread string char by char, while completing it takes its fast path over
+     * the input buffer without allocating a String, which matters for the signed payloads.
+     */
+    private static void skipValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            parser.getTextLength();
+            return;
+        }
+        int depth = token.isStructStart() ? 1 : 0;
+        while (depth > 0) {
+            token = parser.nextToken();
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            } else if (token == JsonToken.VALUE_STRING) {
+                parser.getTextLength();
+            }
+        }
+    }
 
+    @FunctionalInterface
+    private interface PropertyValueReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
 
     /**
      * This method parses a date-time string into a ZonedDateTime object using a custom DateTimeFormatter.
@@ -390,9 +447,7 @@ public class DataServiceImpl implements DataService {
      */
 
     private ZonedDateTime parseZonedDateTime(String dateString) {
-        // Pattern for "2025-04-02 09:23:22.637345122 +0000 UTC"
-        Pattern pattern1 = Pattern.compile("(\\d{4}-\\d{2}-\\d{2}) (\\d{2}:\\d{2}:\\d{2}\\.\\d+) \\+0000 UTC");
-        Matcher matcher1 = pattern1.matcher(dateString);
+        Matcher matcher1 = UTC_DATE_TIME_PATTERN.matcher(dateString);
         if (matcher1.matches()) {
             String normalized = matcher1.group(1) + "T" + matcher1.group(2) + "Z"; // Convert to "2025-04-02T09:23:22.637345122Z"
             return ZonedDateTime.parse(normalized, DateTimeFormatter.ISO_DATE_TIME);
@@ -494,10 +549,10 @@ public class DataServiceImpl implements DataService {
     }
 
     @Override
-    public Mono<String> saveTransaction(String credentialId, String transactionId, String accessToken, String deferredEndpoint) {
+    public Mono<TransactionEntity> saveTransaction(String credentialId, String transactionId, String accessToken, String deferredEndpoint) {
         // Construct the Transaction Entity
         TransactionEntity transactionEntity = TransactionEntity.builder()
-                .id(ApplicationConstants.TRANSACTION_ENTITY_PREFIX + UUID.randomUUID())
+                .id(ApplicationConstants.TRANSACTION_ENTITY_PREFIX + secureRandomSource.nextUuid())
                 .type(ApplicationConstants.TRANSACTION_TYPE)
                 .transactionDataAttribute(EntityAttribute.<TransactionDataAttribute>builder()
                         .type(ApplicationConstants.PROPERTY_TYPE)
@@ -515,11 +570,16 @@ public class DataServiceImpl implements DataService {
         // Log the creation of the entity
         log.debug("Transaction Entity created for: {}", credentialId);
 
-        return deserializeEntityToString(transactionEntity);
+        return Mono.just(transactionEntity);
     }
 
+    /**
+     * Rebuilds the stored credential entity with the signed format it has just received, keeping the formats it
+     * already had. The broker is only sent the attributes of {@link #buildSignedFormatAttributes}, the rebuilt
+     * entity is used to refresh the credential summary of the owner.
+     */
     @Override
-    public Mono<String> updateVCEntityWithSignedFormat(String credentialEntityJson, CredentialResponse signedCredential) {
+    public Mono<CredentialEntity> updateVCEntityWithSignedFormat(String credentialEntityJson, CredentialResponse signedCredential) {
         return Mono.just(credentialEntityJson)
                 .flatMap(json -> {
                     try {
@@ -532,13 +592,21 @@ public class DataServiceImpl implements DataService {
                                 .credentialTypeAttribute(credentialEntity.credentialTypeAttribute())
                                 .jsonCredentialAttribute(credentialEntity.jsonCredentialAttribute())
                                 .relationshipAttribute(credentialEntity.relationshipAttribute())
-                                // Since only JWT is expected, directly set the JWT credential attribute.
-                                .jwtCredentialAttribute(new CredentialAttribute(ApplicationConstants.PROPERTY_TYPE, signedCredential.credential()))
+                                .jwtCredentialAttribute(credentialEntity.jwtCredentialAttribute())
+                                .jwtFormatMarker(credentialEntity.jwtFormatMarker())
+                                .cwtCredentialAttribute(credentialEntity.cwtCredentialAttribute())
+                                .cwtFormatMarker(credentialEntity.cwtFormatMarker())
                                 // Change the credential status to VALID since it is now signed.
                                 .credentialStatusAttribute(new CredentialStatusAttribute(ApplicationConstants.PROPERTY_TYPE, CredentialStatus.VALID));
 
-                        // Serialize the updated credential entity back to JSON and convert to string.
-                        return deserializeEntityToString(updatedCredentialEntity.build());
+                        CredentialAttribute signedFormat = new CredentialAttribute(ApplicationConstants.PROPERTY_TYPE, signedCredential.credential());
+                        if (ApplicationConstants.VC_CWT.equals(signedCredential.format())) {
+                            updatedCredentialEntity.cwtCredentialAttribute(signedFormat).cwtFormatMarker(FORMAT_AVAILABLE);
+                        } else {
+                            updatedCredentialEntity.jwtCredentialAttribute(signedFormat).jwtFormatMarker(FORMAT_AVAILABLE);
+                        }
+
+                        return Mono.just(updatedCredentialEntity.build());
                     } catch (JsonProcessingException e) {
                         // Handle JSON parsing errors.
                         return Mono.error(new ParseErrorException("Error processing credential entity: " + e));
@@ -546,43 +614,47 @@ public class DataServiceImpl implements DataService {
                 });
     }
 
-
-
-
+    /**
+     * Builds the attributes that change when a credential receives its signed format: the signed payload, its
+     * format marker and the VALID status. The json_vc and the formats stored before are left untouched.
+     */
     @Override
-    public Mono<String> updateTransactionWithNewTransactionId(String transactionEntityJson, String transactionId) {
-        return Mono.just(transactionEntityJson)
-                .flatMap(json -> {
-                    try {
-                        // Deserialize the transaction entity from JSON.
-                        TransactionEntity transactionEntity = objectMapper.readValue(json, TransactionEntity.class);
-
-                        // Build a new transaction entity using the builder pattern with updated transactionId
-                        TransactionEntity updatedTransactionEntity = TransactionEntity.builder()
-                                .id(transactionEntity.id()) // Preserve the original ID
-                                .type(transactionEntity.type()) // Preserve the original type
-                                .transactionDataAttribute(EntityAttribute.<TransactionDataAttribute>builder()
-                                        .type(transactionEntity.transactionDataAttribute().type()) // Preserve the original attribute type
-                                        .value(TransactionDataAttribute.builder() // Build new transaction data
-                                                .transactionId(transactionId) // Update with new transaction ID
-                                                .accessToken(transactionEntity.transactionDataAttribute().value().accessToken()) // Preserve the original access token
-                                                .deferredEndpoint(transactionEntity.transactionDataAttribute().value().deferredEndpoint()) // Preserve the original deferred endpoint
-                                                .build())
-                                        .build())
-                                .relationshipAttribute(transactionEntity.relationshipAttribute()) // Preserve the original relationship attribute
-                                .build();
+    public Mono<Map<String, Object>> buildSignedFormatAttributes(CredentialResponse signedCredential) {
+        return Mono.fromSupplier(() -> {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            CredentialAttribute signedFormat = new CredentialAttribute(ApplicationConstants.PROPERTY_TYPE, signedCredential.credential());
+            if (ApplicationConstants.VC_CWT.equals(signedCredential.format())) {
+                attributes.put(ApplicationConstants.VC_CWT, signedFormat);
+                attributes.put(ApplicationConstants.HAS_CWT_VC, FORMAT_AVAILABLE);
+            } else {
+                attributes.put(ApplicationConstants.JWT_VC, signedFormat);
+                attributes.put(ApplicationConstants.HAS_JWT_VC, FORMAT_AVAILABLE);
+            }
+            attributes.put(ApplicationConstants.CREDENTIAL_STATUS_ATTRIBUTE,
+                    new CredentialStatusAttribute(ApplicationConstants.PROPERTY_TYPE, CredentialStatus.VALID));
+            return attributes;
+        });
+    }
 
-                        // Serialize the updated transaction entity back to JSON
-                        return deserializeEntityToString(updatedTransactionEntity);
-                    } catch (JsonProcessingException e) {
-                        // Handle JSON parsing errors
-                        return Mono.error(new ParseErrorException("Error processing transaction entity: " + e));
-                    }
-                });
+    /**
+     * Builds the transactionData attribute of the transaction with the new transaction id, preserving the
+     * access token and the deferred endpoint. It is the only attribute of the transaction that changes.
+     */
+    @Override
+    public Mono<Map<String, Object>> buildTransactionDataWithNewTransactionId(TransactionEntity transactionEntity, String transactionId) {
+        return Mono.fromSupplier(() -> Map.of(ApplicationConstants.TRANSACTION_DATA_ATTRIBUTE,
+                EntityAttribute.<TransactionDataAttribute>builder()
+                        .type(transactionEntity.transactionDataAttribute().type()) // Preserve the original attribute type
+                        .value(TransactionDataAttribute.builder() // Build new transaction data
+                                .transactionId(transactionId) // Update with new transaction ID
+                                .accessToken(transactionEntity.transactionDataAttribute().value().accessToken()) // Preserve the original access token
+                                .deferredEndpoint(transactionEntity.transactionDataAttribute().value().deferredEndpoint()) // Preserve the original deferred endpoint
+                                .build())
+                        .build()));
     }
 
     @Override
-    public Mono<String> saveDOMEUnsignedCredential(String userId, String credentialJson) {
+    public Mono<CredentialEntity> saveDOMEUnsignedCredential(String userId, String credentialJson) {
         return Mono.just(credentialJson)
                 .flatMap(json -> {
                     try {
@@ -606,8 +678,7 @@ public class DataServiceImpl implements DataService {
                                 .relationshipAttribute(new RelationshipAttribute(ApplicationConstants.RELATIONSHIP_TYPE, ApplicationConstants.USER_ENTITY_PREFIX + userId)) // Set the relationship attribute linking the credential to a user.
                                 .build();
 
-                        // Serialize the updated credential entity back to JSON and convert it to a string.
-                        return deserializeEntityToString(newCredentialEntity);
+                        return Mono.just(newCredentialEntity);
                     } catch (JsonProcessingException e) {
                         // Handle any JSON parsing errors that occur during the process.
                         return Mono.error(new ParseErrorException("Error processing JSON for new credential: " + e));
@@ -615,7 +686,103 @@ public class DataServiceImpl implements DataService {
                 });
     }
 
+    /**
+     * Builds the credential summary entity of a user holding one instance of the credentials attribute for each of
+     * the given credential entities. Every instance uses the id of its credential entity as datasetId, so upserting
+     * the summary adds or replaces only those instances and leaves the rest of the summary untouched.
+     *
+     * @param userId The ID of the user owning the credentials.
+     * @param credentialEntities The credential entities to add to the summary.
+     * @return A Mono with the summary entity.
+     */
+    @Override
+    public Mono<CredentialSummaryEntity> buildCredentialSummaryEntity(String userId, List<CredentialEntity> credentialEntities) {
+        return Mono.fromCallable(() -> buildCredentialSummary(userId,
+                credentialEntities.stream().map(this::toCredentialsBasicInfo).toList(), null));
+    }
 
+    /**
+     * Extracts from a credential entity the same basic information {@link #getUserVCsInJson(String)} reads from
+     * the broker.
+     */
+    private CredentialsBasicInfo toCredentialsBasicInfo(CredentialEntity credentialEntity) {
+        Object vcJsonValue = credentialEntity.jsonCredentialAttribute().value();
+        JsonNode vcJson = vcJsonValue instanceof JsonNode jsonNode ? jsonNode : objectMapper.valueToTree(vcJsonValue);
+
+        List<String> availableFormats = new ArrayList<>();
+        availableFormats.add(ApplicationConstants.VC_JSON);
+        if (credentialEntity.jwtCredentialAttribute() != null || credentialEntity.jwtFormatMarker() != null) {
+            availableFormats.add(ApplicationConstants.JWT_VC);
+        }
+        if (credentialEntity.cwtCredentialAttribute() != null || credentialEntity.cwtFormatMarker() != null) {
+            availableFormats.add(ApplicationConstants.VC_CWT);
+        }
+        JsonNode expirationDate = vcJson.get(ApplicationConstants.EXPIRATION_DATE);
+        return CredentialsBasicInfo.builder()
+                .id(credentialEntity.id())
+                .vcType(credentialEntity.credentialTypeAttribute().value())
+                .credentialStatus(credentialEntity.credentialStatusAttribute().credentialStatus())
+                .availableFormats(availableFormats)
+                .credentialSubject(vcJson.get(ApplicationConstants.CREDENTIAL_SUBJECT))
+                .expirationDate(expirationDate != null && !expirationDate.isNull() ? parseZonedDateTime(expirationDate.asText()) : null)
+                .build();
+    }
 
+    /**
+     * Builds the credential summary entity of a user from the complete list of their credentials and marks it as
+     * complete, so it can be served on its own from then on.
+     *
+     * @param userId The ID of the user owning the credentials.
+     * @param credentials Every credential of the user.
+     * @return A Mono with the summary entity.
+     */
+    @Override
+    public Mono<CredentialSummaryEntity> buildCompleteCredentialSummaryEntity(String userId, List<CredentialsBasicInfo> credentials) {
+        EntityAttribute<Boolean> complete = new EntityAttribute<>(ApplicationConstants.PROPERTY_TYPE, true);
+        return Mono.just(buildCredentialSummary(userId, credentials, complete));
+    }
+
+    private CredentialSummaryEntity buildCredentialSummary(String userId, List<CredentialsBasicInfo> credentials, EntityAttribute<Boolean> complete) {
+        List<CredentialSummaryAttribute> summaryAttributes = credentials.stream()
+                .map(credential -> CredentialSummaryAttribute.builder()
+                        .type(ApplicationConstants.PROPERTY_TYPE)
+                        .datasetId(credential.id())
+                        .value(credential)
+                        .build())
+                .toList();
+        return CredentialSummaryEntity.builder()
+                .id(ApplicationConstants.CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)
+                .type(ApplicationConstants.CREDENTIAL_SUMMARY_TYPE)
+                // The broker rejects attributes without instances, so an empty wallet has no credentials attribute
+                .credentials(summaryAttributes.isEmpty() ? null : summaryAttributes)
+                .complete(complete)
+                .build();
+    }
+
+    /**
+     * Reads the credentials of a user from their credential summary entity.
+     *
+     * @param credentialSummaryEntity The summary entity as returned by the broker.
+     * @return A Mono with the credentials of the summary, or an empty Mono when the summary is not complete yet
+     * and the credentials have to be read from the credential entities instead.
+     */
+    @Override
+    public Mono<List<CredentialsBasicInfo>> getUserVCsFromCredentialSummary(String credentialSummaryEntity) {
+        try {
+            CredentialSummaryEntity summary = objectMapper.readValue(credentialSummaryEntity, CredentialSummaryEntity.class);
+            if (summary.complete() == null || !Boolean.TRUE.equals(summary.complete().value())) {
+                return Mono.empty();
+            }
+            if (summary.credentials() == null) {
+                return Mono.just(List.of());
+            }
+            return Mono.just(summary.credentials().stream()
+                    .map(CredentialSummaryAttribute::value)
+                    .toList());
+        } catch (JsonProcessingException e) {
+            log.error("Error deserializing Credential summary: ", e);
+            return Mono.error(new ParseErrorException("Error processing credential summary entity: " + e));
+        }
+    }
 
 }
@@ -3,11 +3,11 @@ package es.puig.wallet.domain.service.impl;
 import com.nimbusds.jose.Algorithm;
 import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.ECKey;
-import es.puig.wallet.domain.exception.KeyPairGenerationError;
 import es.puig.wallet.domain.exception.ParseErrorException;
 import es.puig.wallet.domain.model.UVarInt;
 import es.puig.wallet.domain.service.DidKeyGeneratorService;
 import es.puig.wallet.application.port.VaultService;
+import es.puig.wallet.infrastructure.core.util.KeyPairPool;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
 import io.ipfs.multibase.Base58;
 import lombok.RequiredArgsConstructor;
@@ -18,11 +18,8 @@ import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.SecureRandom;
 import java.security.interfaces.ECPrivateKey;
 import java.security.interfaces.ECPublicKey;
-import java.security.spec.ECGenParameterSpec;
 
 
 @Service
@@ -30,9 +27,11 @@ import java.security.spec.ECGenParameterSpec;
 public class DidKeyGeneratorServiceImpl implements DidKeyGeneratorService {
 
     private final VaultService vaultService;
+    private final KeyPairPool keyPairPool;
+
     @Override
     public Mono<String> generateDidKeyJwkJcsPub() {
-        return generateES256r1ECKeyPair().flatMap(keyPair -> {
+        return keyPairPool.take().flatMap(keyPair -> {
             String did = generateDidKeyJwkJcsPub(keyPair);
             String privateKey = getPrivateKeyJwkString(keyPair);
             KeyVaultSecret secret = KeyVaultSecret.builder()
@@ -46,14 +45,14 @@ public class DidKeyGeneratorServiceImpl implements DidKeyGeneratorService {
 
     @Override
     public Mono<String> generateDidKey() {
-        return generateES256r1ECKeyPair().flatMap(keyPair -> {
+        return keyPairPool.take().flatMap(keyPair -> {
             String did = generateDidKey(keyPair);
             String privateKey = getPrivateKeyJwkString(keyPair);
             KeyVaultSecret secret = KeyVaultSecret.builder()
                     .value(privateKey)
                     .build();
 
-            return vaultService.saveSecret(did, secret)
+            return vaultService.stageSecret(did, secret)
                     .thenReturn(did);
         });
     }
@@ -129,17 +128,4 @@ public class DidKeyGeneratorServiceImpl implements DidKeyGeneratorService {
        // Encode the combined byte array to Base58
        return Base58.encode(multicodecAndRawKey);
     }
-
-    private Mono<KeyPair> generateES256r1ECKeyPair() {
-        return Mono.fromCallable(() -> {
-            try {
-                KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDSA", "BC");
-                ECGenParameterSpec ecSpec = new ECGenParameterSpec("secp256r1");
-                keyPairGenerator.initialize(ecSpec, new SecureRandom());
-                return keyPairGenerator.generateKeyPair();
-            } catch (Exception e) {
-                throw new KeyPairGenerationError("Error generating EC key pair: " + e);
-            }
-        });
-    }
 }
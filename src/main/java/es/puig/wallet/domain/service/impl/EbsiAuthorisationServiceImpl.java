@@ -7,7 +7,9 @@ import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.EbsiAuthorisationService;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,7 +22,6 @@ import reactor.util.function.Tuples;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -30,7 +31,8 @@ import java.util.stream.Collectors;
 public class EbsiAuthorisationServiceImpl implements EbsiAuthorisationService {
 
     private final ObjectMapper objectMapper;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
+    private final SecureRandomSource secureRandomSource;
 
     @Override
     public Mono<Tuple2<String, String>> getRequestWithOurGeneratedCodeVerifier(String processId, CredentialOffer credentialOffer, AuthorisationServerMetadata authorisationServerMetadata, CredentialIssuerMetadata credentialIssuerMetadata, String did) {
@@ -126,7 +128,7 @@ public class EbsiAuthorisationServiceImpl implements EbsiAuthorisationService {
 
     private Mono<String> sendAuthRequest(AuthorisationServerMetadata authorisationServerMetadata, String authRequestEncodedBody) {
         String urlWithParams = authorisationServerMetadata.authorizationEndpoint() + "?" + authRequestEncodedBody;
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                 .get()
                 .uri(urlWithParams)
                 .exchangeToMono(response -> {
@@ -153,7 +155,7 @@ public class EbsiAuthorisationServiceImpl implements EbsiAuthorisationService {
     private Mono<String> getJwtRequest(Map<String, String> params) {
         if (params.get("request_uri") != null) {
             String requestUri = params.get("request_uri");
-            return webClient.centralizedWebClient()
+            return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                     .get()
                     .uri(requestUri)
                     .exchangeToMono(response -> {
@@ -181,13 +183,8 @@ public class EbsiAuthorisationServiceImpl implements EbsiAuthorisationService {
      */
     private Mono<String> generateCodeVerifier() {
         return Mono.fromCallable(() -> {
-            int length = SecureRandom.getInstanceStrong().nextInt(86) + 43; // Random length between 43 and 128
-            StringBuilder sb = new StringBuilder(length);
-
-            for (int i = 0; i < length; i++) {
-                sb.append(ApplicationConstants.CODE_VERIFIER_ALLOWED_CHARACTERS.charAt(SecureRandom.getInstanceStrong().nextInt(ApplicationConstants.CODE_VERIFIER_ALLOWED_CHARACTERS.length())));
-            }
-            return sb.toString();
+            int length = secureRandomSource.nextInt(86) + 43; // Random length between 43 and 128
+            return secureRandomSource.nextString(length, ApplicationConstants.CODE_VERIFIER_ALLOWED_CHARACTERS);
         });
     }
 
@@ -233,7 +230,7 @@ public class EbsiAuthorisationServiceImpl implements EbsiAuthorisationService {
             // Build URL encoded form data request body
             Map<String, String> formDataMap = Map.of("grant_type", ApplicationConstants.AUTH_CODE_GRANT_TYPE, "client_id", did, "code", code, "code_verifier", codeVerifier);
             String xWwwFormUrlencodedBody = formDataMap.entrySet().stream().map(entry -> URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8)).collect(Collectors.joining("&"));
-            return webClient.centralizedWebClient()
+            return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                     .post()
                     .uri(authorisationServerMetadata.tokenEndpoint())
                     .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_URL_ENCODED_FORM)
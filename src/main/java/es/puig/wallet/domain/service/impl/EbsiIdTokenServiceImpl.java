@@ -10,7 +10,8 @@ import es.puig.wallet.domain.model.AuthorisationServerMetadata;
 import es.puig.wallet.domain.service.EbsiIdTokenService;
 import es.puig.wallet.domain.service.SignerService;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,7 +33,7 @@ import java.util.Objects;
 public class EbsiIdTokenServiceImpl implements EbsiIdTokenService {
     private final ObjectMapper objectMapper;
     private final SignerService signerService;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
     /**
      * Initiates the ID Token Request process by completing the id token exchange with the Authorisation Server.
@@ -90,7 +91,7 @@ public class EbsiIdTokenServiceImpl implements EbsiIdTokenService {
                 + "&state=" + URLEncoder.encode(params.get(1), StandardCharsets.UTF_8);
         String redirectUri = params.get(2);
 
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                 .post()
                 .uri(redirectUri)
                 .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_URL_ENCODED_FORM)
@@ -11,7 +11,9 @@ import es.puig.wallet.domain.service.EbsiVpTokenService;
 import es.puig.wallet.domain.service.PresentationService;
 import es.puig.wallet.domain.util.ApplicationUtils;
 import es.puig.wallet.domain.util.ApplicationConstants;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -30,7 +32,8 @@ public class EbsiVpTokenServiceImpl implements EbsiVpTokenService {
     private final ObjectMapper objectMapper;
     private final PresentationService presentationService;
     private final AttestationExchangeCommonWorkflow attestationExchangeCommonWorkflow;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
+    private final SecureRandomSource secureRandomSource;
     /**
      * Initiates the process to exchange the authorization token and JWT for a VP Token Request,
      * logging the authorization response with the code upon success.
@@ -87,7 +90,7 @@ public class EbsiVpTokenServiceImpl implements EbsiVpTokenService {
                     + "&presentation_submission=" + URLEncoder.encode(objectMapper.writeValueAsString(presentationSubmission), StandardCharsets.UTF_8)
                     + "&state=" + URLEncoder.encode(params.get(1), StandardCharsets.UTF_8);
 
-            return webClient.centralizedWebClient()
+            return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                     .post()
                     .uri(params.get(2))
                     .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_URL_ENCODED_FORM)
@@ -133,7 +136,7 @@ public class EbsiVpTokenServiceImpl implements EbsiVpTokenService {
                 return Mono.just(params);
             } else if (signedJwt.getJWTClaimsSet().getClaim("presentation_definition_uri") != null) {
                 String presentationDefinitionUri = signedJwt.getJWTClaimsSet().getClaim("presentation_definition_uri").toString();
-                return webClient.centralizedWebClient()
+                return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                         .get()
                         .uri(presentationDefinitionUri)
                         .exchangeToMono(response -> {
@@ -270,7 +273,7 @@ public class EbsiVpTokenServiceImpl implements EbsiVpTokenService {
         }
 
         return Mono.just(PresentationSubmission.builder()
-                .id(UUID.randomUUID().toString())
+                .id(secureRandomSource.nextUuid().toString())
                 .definitionId(presentationDefinitionId)
                 .descriptorMap(descriptorMaps).build());
     }
@@ -9,7 +9,8 @@ import es.puig.wallet.domain.model.TokenResponse;
 import es.puig.wallet.domain.model.WebSocketServerMessage;
 import es.puig.wallet.domain.service.PreAuthorizedService;
 import es.puig.wallet.infrastructure.core.config.PinRequestWebSocketHandler;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.infrastructure.core.config.WebSocketSessionManager;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import es.puig.wallet.domain.util.ApplicationUtils;
@@ -34,7 +35,7 @@ public class PreAuthorizedServiceImpl implements PreAuthorizedService {
     private final ObjectMapper objectMapper;
     private final WebSocketSessionManager sessionManager;
     private final PinRequestWebSocketHandler pinRequestWebSocketHandler;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
 
 
     /**
@@ -115,7 +116,7 @@ public class PreAuthorizedServiceImpl implements PreAuthorizedService {
                 .collect(Collectors.joining("&"));
 
         // Post request
-        return webClient.centralizedWebClient()
+        return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                 .post()
                 .uri(tokenURL)
                 .header(ApplicationConstants.CONTENT_TYPE, ApplicationConstants.CONTENT_TYPE_URL_ENCODED_FORM)
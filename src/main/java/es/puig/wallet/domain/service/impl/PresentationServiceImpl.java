@@ -16,6 +16,7 @@ import es.puig.wallet.domain.service.PresentationService;
 import es.puig.wallet.domain.service.SignerService;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import es.puig.wallet.domain.util.ApplicationUtils;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -35,6 +36,7 @@ public class PresentationServiceImpl implements PresentationService {
     private final DataService dataService;
     private final BrokerService brokerService;
     private final SignerService signerService;
+    private final SecureRandomSource secureRandomSource;
 
     private final AppConfig appConfig;
 
@@ -156,7 +158,7 @@ public class PresentationServiceImpl implements PresentationService {
             String nonce,
             String audience) {
         return Mono.fromCallable(() -> {
-            String id = "urn:uuid:" + UUID.randomUUID();
+            String id = "urn:uuid:" + secureRandomSource.nextUuid();
 
             VerifiablePresentation vpBuilder = VerifiablePresentation
                     .builder()
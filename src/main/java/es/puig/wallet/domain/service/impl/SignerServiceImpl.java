@@ -3,18 +3,19 @@ package es.puig.wallet.domain.service.impl;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nimbusds.jose.*;
-import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.JOSEObjectType;
 import com.nimbusds.jose.jwk.ECKey;
 import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
 import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.domain.exception.ParseErrorException;
 import es.puig.wallet.domain.model.JWTSType;
 import es.puig.wallet.domain.service.SignerService;
 import es.puig.wallet.domain.util.ApplicationConstants;
 import es.puig.wallet.domain.util.ApplicationRegexPattern;
+import es.puig.wallet.infrastructure.core.util.CryptoScheduler;
+import es.puig.wallet.infrastructure.vault.util.SignerCache;
+import es.puig.wallet.infrastructure.vault.util.SignerCache.CachedSigner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
@@ -22,8 +23,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static es.puig.wallet.domain.model.JWTSType.*;
 
@@ -34,47 +35,51 @@ public class SignerServiceImpl implements SignerService {
 
     private final ObjectMapper objectMapper;
     private final VaultService vaultService;
+    private final SignerCache signerCache;
+    private final CryptoScheduler cryptoScheduler;
 
     @Override
     public Mono<String> buildJWTSFromJsonNode(JsonNode document, String did, String documentType) {
         String processId = MDC.get(ApplicationConstants.PROCESS_ID);
 
-        return  vaultService.getSecretByKey(did)
-                .flatMap(privateKey -> identifyDocumentType(documentType)
-                    .flatMap(docType -> Mono.fromCallable(() -> {
-                        try {
-                            ECKey ecJWK = JWK.parse(privateKey.value().toString()).toECKey();
-                            log.debug("ECKey: {}", ecJWK);
-
-                            JWSAlgorithm jwsAlgorithm = mapToJWSAlgorithm(ecJWK.getAlgorithm());
-                            JWSSigner signer = new ECDSASigner(ecJWK);
-
-                            JOSEObjectType joseObjectType = docType.equals(PROOF_JWT) ?
-                                    new JOSEObjectType(ApplicationConstants.JWT_PROOF_CLAIM) : JOSEObjectType.JWT;
-
-                            String didWithKey = extractAfterPattern(did);
-                            JWSHeader header = new JWSHeader.Builder(jwsAlgorithm)
-                                    .type(joseObjectType)
-                                    .keyID(didWithKey)
-                                    .build();
-
-                            JWTClaimsSet payload = convertJsonNodeToJWTClaimsSet(document);
-                            SignedJWT signedJWT = new SignedJWT(header, payload);
-                            signedJWT.sign(signer);
-                            log.debug("JWT signed successfully: ");
-                            return signedJWT.serialize();
-                        } catch (Exception e) {
-                            log.error("Error while creating the Signed JWT", e);
-                            throw new ParseErrorException("Error while encoding the JWT: " + e.getMessage());
-                        }
-                    }))
-                )
+        return identifyDocumentType(documentType)
+                .flatMap(docType -> {
+                    JOSEObjectType joseObjectType = docType.equals(PROOF_JWT) ?
+                            new JOSEObjectType(ApplicationConstants.JWT_PROOF_CLAIM) : JOSEObjectType.JWT;
+                    return signerCache.get(did, this::loadSigner)
+                            .flatMap(signer -> sign(signer, joseObjectType, document))
+                            // The signer was released by an eviction racing with this signature
+                            .switchIfEmpty(Mono.defer(() -> loadSigner(did).flatMap(signer -> sign(signer, joseObjectType, document))));
+                })
                 .doOnSuccess(jwt -> log.debug("ProcessID: {} - Created JWT: {}", processId, jwt))
                 .doOnError(throwable -> log.error("ProcessID: {} - Error creating the jwt: {}", processId, throwable.getMessage()));
     }
 
-    private JWSAlgorithm mapToJWSAlgorithm(Algorithm algorithm) {
-        return JWSAlgorithm.parse(algorithm.getName());
+    private Mono<CachedSigner> loadSigner(String did) {
+        return vaultService.getSecretByKey(did)
+                .flatMap(privateKey -> cryptoScheduler.run("parse-key", () -> {
+                    try {
+                        ECKey ecJWK = JWK.parse(privateKey.value().toString()).toECKey();
+                        return new CachedSigner(ecJWK, extractAfterPattern(did));
+                    } catch (Exception e) {
+                        log.error("Error while creating the Signed JWT", e);
+                        throw new ParseErrorException("Error while encoding the JWT: " + e.getMessage());
+                    }
+                }));
+    }
+
+    private Mono<String> sign(CachedSigner signer, JOSEObjectType joseObjectType, JsonNode document) {
+        return cryptoScheduler.run("sign", () -> {
+            try {
+                JWTClaimsSet payload = convertJsonNodeToJWTClaimsSet(document);
+                Optional<String> signedJWT = signer.sign(joseObjectType, payload);
+                signedJWT.ifPresent(jwt -> log.debug("JWT signed successfully: "));
+                return signedJWT.orElse(null);
+            } catch (Exception e) {
+                log.error("Error while creating the Signed JWT", e);
+                throw new ParseErrorException("Error while encoding the JWT: " + e.getMessage());
+            }
+        });
     }
 
     private JWTClaimsSet convertJsonNodeToJWTClaimsSet(JsonNode jsonNode){
@@ -103,8 +108,7 @@ public class SignerServiceImpl implements SignerService {
     }
 
     private String extractAfterPattern(String str) {
-        Pattern pattern = Pattern.compile("did:.*:(.*)");
-        Matcher matcher = pattern.matcher(str);
+        Matcher matcher = ApplicationRegexPattern.DID_KEY_ID_PATTERN.matcher(str);
 
         if (matcher.find()) {
             return str+"#"+matcher.group(1);
@@ -8,6 +8,7 @@ import es.puig.wallet.domain.exception.ParseErrorException;
 import es.puig.wallet.domain.model.UVarInt;
 import es.puig.wallet.domain.service.VerifierValidationService;
 import es.puig.wallet.domain.util.ApplicationConstants;
+import es.puig.wallet.infrastructure.core.util.CryptoScheduler;
 import io.ipfs.multibase.Base58;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +30,9 @@ import java.util.regex.Pattern;
 @Service
 @RequiredArgsConstructor
 public class VerifierValidationServiceImpl implements VerifierValidationService {
+
+    private final CryptoScheduler cryptoScheduler;
+
     @Override
     public Mono<String> verifyIssuerOfTheAuthorizationRequest(String processId, String jwtAuthorizationRequest) {
         // Parse the Authorization Request in JWT format
@@ -82,9 +86,7 @@ public class VerifierValidationServiceImpl implements VerifierValidationService
 
     private Mono<ECPublicKey> getEcPublicKey(String processId, SignedJWT signedJWTAuthorizationRequest) {
         String kid = signedJWTAuthorizationRequest.getHeader().getKeyID();
-        return Mono.fromCallable(() ->
-                   decodeDidKey(kid)
-                )
+        return cryptoScheduler.run("decode-key", () -> decodeDidKey(kid))
                 .doOnSuccess(ecPublicKey -> log.info("ProcessID: {} - Public EC Key: {}", processId, ecPublicKey))
                 .onErrorResume(e -> Mono.error(new ParseErrorException("Error processing JSON" + e)));
     }
@@ -124,14 +126,10 @@ public class VerifierValidationServiceImpl implements VerifierValidationService
     }
 
     private Mono<Void> checkJWSVerifierResponse(SignedJWT signedJWTResponse, JWSVerifier verifier) {
-        try {
-            if (!signedJWTResponse.verify(verifier)) {
-                return Mono.error(new JwtInvalidFormatException("The 'request_token' is not valid"));
-            } else {
-                return Mono.empty();
-            }
-        } catch (Exception e) {
-            return Mono.error(new ParseErrorException("Error verifying Jwt with Public EcKey" + e));
-        }
+        return cryptoScheduler.run("verify", () -> signedJWTResponse.verify(verifier))
+                .onErrorMap(e -> new ParseErrorException("Error verifying Jwt with Public EcKey" + e))
+                .flatMap(valid -> valid
+                        ? Mono.<Void>empty()
+                        : Mono.error(new JwtInvalidFormatException("The 'request_token' is not valid")));
     }
 }
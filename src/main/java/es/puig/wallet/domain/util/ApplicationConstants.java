@@ -15,7 +15,17 @@ public class ApplicationConstants {
     public static final String RELATIONSHIP_TYPE = "Relationship";
     public static final String CREDENTIAL_ENTITY_PREFIX = "urn:entities:credential:";
     public static final String TRANSACTION_ENTITY_PREFIX = "urn:entities:transaction:";
+    public static final String CREDENTIAL_SUMMARY_ENTITY_PREFIX = "urn:entities:credentialSummary:";
+    public static final String CREDENTIAL_SUMMARY_TYPE = "CredentialSummary";
+    public static final String ENCRYPTED_KEY_ENTITY_PREFIX = "urn:entities:encryptedKey:";
+    public static final String ENCRYPTED_KEY_TYPE = "EncryptedKey";
     public static final String ATTRIBUTES = "/attrs";
+    public static final String BATCH_CREATE = "/create";
+    public static final String BATCH_UPSERT = "/upsert";
+    public static final String BATCH_DELETE = "/delete";
+    public static final String UPDATE_OPTION = "?options=update";
+    public static final int CREDENTIALS_PAGE_SIZE = 100;
+    public static final int MAX_CREDENTIALS_PAGE_SIZE = 1000;
     public static final String PROCESS_ID = "ProcessId";
     public static final String DID = "did";
     public static final long MSB = 0x80L;
@@ -25,6 +35,7 @@ public class ApplicationConstants {
     public static final String BEARER = "Bearer ";
     public static final String HEADER_AUTHORIZATION = "Authorization";
     public static final String CREDENTIALS = "credentials";
+    public static final String COMPLETE = "complete";
     public static final String JWT_PROOF_CLAIM = "openid4vci-proof+jwt";
     public static final String JSONLD_CONTEXT_W3C_2018_CREDENTIALS_V1 = "https://www.w3.org/2018/credentials/v1";
     public static final String VERIFIABLE_PRESENTATION = "VerifiablePresentation";
@@ -46,6 +57,11 @@ public class ApplicationConstants {
     public static final String CUSTOMER_PRESENTATION_SUBMISSION = "CustomerPresentationSubmission";
     public static final String JWT_VC = "jwt_vc";
     public static final String JWT_VC_JSON = "jwt_vc_json";
+    public static final String HAS_JWT_VC = "has_jwt_vc";
+    public static final String HAS_CWT_VC = "has_cwt_vc";
+    public static final String CREDENTIAL_STATUS_ATTRIBUTE = "status";
+    public static final String TRANSACTION_DATA_ATTRIBUTE = "transactionData";
+    public static final String CREDENTIAL_SUMMARY_ATTRIBUTES = "json_vc,credentialType,status," + HAS_JWT_VC + "," + HAS_CWT_VC;
     public static final String JWT_VP = "jwt_vp";
     public static final String AVAILABLE_FORMATS = "available_formats";
     public static final String ALLOWED_METHODS = "*";
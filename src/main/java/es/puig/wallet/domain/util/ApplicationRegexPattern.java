@@ -16,4 +16,5 @@ public class ApplicationRegexPattern {
     public static final Pattern DOME_LOGIN_REQUEST_PATTERN = Pattern.compile("\\S*(did:web:dome-marketplace.org)\\S*");
     public static final Pattern DOME_REDIRECT_URI_PATTERN = Pattern.compile("\\S*(dome-marketplace.org)\\S*");
     public static final Pattern OPENID_AUTHENTICATION_REQUEST_PATTERN = Pattern.compile("openid://\\S*");
+    public static final Pattern DID_KEY_ID_PATTERN = Pattern.compile("did:.*:(.*)");
 }
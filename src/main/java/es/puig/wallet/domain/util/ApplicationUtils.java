@@ -1,21 +1,17 @@
 package es.puig.wallet.domain.util;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nimbusds.jwt.SignedJWT;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.resources.ConnectionProvider;
 
 import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,57 +23,50 @@ public class ApplicationUtils {
         throw new IllegalStateException("Utility class");
     }
 
-    /*
-        *
-        * //TODO: This is a temporary solution to the issue
-        * Added connection timeouts configuration due to https://github.com/reactor/reactor-netty/issues/764#issuecomment-1011373248
-        *
-        *
-     */
-
-    private static ConnectionProvider connectionProvider = ConnectionProvider.builder("custom")
-            .maxConnections(500)
-            .maxIdleTime(Duration.ofSeconds(50))
-            .maxLifeTime(Duration.ofSeconds(300))
-            .evictInBackground(Duration.ofSeconds(80))
-            .build();
-    public static final WebClient WEB_CLIENT = WebClient.builder()
-            .clientConnector(new ReactorClientHttpConnector(
-                    HttpClient.create(connectionProvider)
-                            .followRedirect(false)
-            ))
-            .build();
-
     public static Mono<String> getCleanBearerToken(String authorizationHeader) {
         return Mono.just(authorizationHeader)
                 .filter(header -> header.startsWith(BEARER))
                 .map(header -> header.replace(BEARER, "").trim())
                 .switchIfEmpty(Mono.error(new IllegalArgumentException("Invalid")));
     }
+
+    /**
+     * Returns the bearer token of the request, already decoded and validated by the resource server, from the
+     * security context. Empty outside a request authenticated with a bearer JWT.
+     */
+    public static Mono<Jwt> getAuthenticatedJwt() {
+        return ReactiveSecurityContextHolder.getContext()
+                .mapNotNull(SecurityContext::getAuthentication)
+                .filter(JwtAuthenticationToken.class::isInstance)
+                .map(authentication -> ((JwtAuthenticationToken) authentication).getToken());
+    }
+
+    /**
+     * Returns the subject of the token, taken from the decoded token of the request when it is the same token, so it is
+     * not parsed again. Other tokens, such as the ones received outside a request, are parsed.
+     */
     public static Mono<String> getUserIdFromToken(String authorizationToken) {
+        return getAuthenticatedJwt()
+                .filter(jwt -> jwt.getTokenValue().equals(authorizationToken))
+                .map(Jwt::getSubject)
+                .switchIfEmpty(Mono.defer(() -> parseUserIdFromToken(authorizationToken)));
+    }
+
+    public static Mono<String> getCleanBearerAndUserIdFromToken(String authorizationHeader) {
+        return getCleanBearerToken(authorizationHeader)
+                .flatMap(ApplicationUtils::getUserIdFromToken);
+    }
+
+    private static Mono<String> parseUserIdFromToken(String authorizationToken) {
         try {
-            SignedJWT parsedVcJwt = SignedJWT.parse(authorizationToken);
-            JsonNode jsonObject = new ObjectMapper().readTree(parsedVcJwt.getPayload().toString());
-            return Mono.just(jsonObject.get("sub").asText());
-        } catch (ParseException | JsonProcessingException e) {
+            String subject = SignedJWT.parse(authorizationToken).getJWTClaimsSet().getSubject();
+            return subject != null
+                    ? Mono.just(subject)
+                    : Mono.error(new ParseException("The token has no subject", 0));
+        } catch (ParseException e) {
             return Mono.error(e);
         }
     }
-    public static Mono<String> getCleanBearerAndUserIdFromToken(String authorizationHeader) {
-        return Mono.just(authorizationHeader)
-                .filter(header -> header.startsWith(BEARER))
-                .map(header -> header.substring(7))
-                .flatMap(token -> {
-                    try {
-                        SignedJWT parsedVcJwt = SignedJWT.parse(token);
-                        JsonNode jsonObject = new ObjectMapper().readTree(parsedVcJwt.getPayload().toString());
-                        return Mono.just(jsonObject.get("sub").asText());
-                    } catch (ParseException | JsonProcessingException e) {
-                        return Mono.error(e);
-                    }
-                })
-                .switchIfEmpty(Mono.error(new IllegalArgumentException("Invalid")));
-    }
 
     public static Mono<Map<String, String>> extractAllQueryParams(String url) {
         log.debug(url);
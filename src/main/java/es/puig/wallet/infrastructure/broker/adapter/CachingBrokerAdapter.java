@@ -0,0 +1,257 @@
+package es.puig.wallet.infrastructure.broker.adapter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.CREDENTIAL_ENTITY_PREFIX;
+import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
+
+/**
+ * Read-through cache placed in front of the configured broker adapter.
+ * <p>
+ * The credential queries of each user are cached for a bounded time, and concurrent identical queries
+ * share a single call to the broker. Every write that touches the credentials of a user invalidates
+ * the cached queries of that user once the broker has answered, so a wallet always reads its own writes.
+ * <p>
+ * The queries are grouped by user, so a write drops the entry of a single user instead of scanning the cache.
+ * Each instance keeps its own cache and only sees the writes made through it: when several instances share a
+ * broker, a query may be answered by one of them up to the cache TTL after another has changed the credentials.
+ */
+@Slf4j
+public class CachingBrokerAdapter implements GenericBrokerService {
+
+    private static final String CACHE_NAME = "broker.credentials";
+    // Key of the query returning every credential, credential types are never empty
+    private static final String ALL_CREDENTIALS = "";
+
+    private final GenericBrokerService brokerAdapter;
+    private final Cache<String, UserQueries> cache;
+    // Hits and misses are counted per query, the cache itself only sees the users
+    private final ConcurrentStatsCounter stats = new ConcurrentStatsCounter();
+
+    public CachingBrokerAdapter(GenericBrokerService brokerAdapter, BrokerConfig brokerConfig, MeterRegistry meterRegistry) {
+        this.brokerAdapter = brokerAdapter;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(brokerConfig.getCacheMaximumSize())
+                .expireAfterWrite(brokerConfig.getCacheTtl())
+                .recordStats(() -> stats)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Mono<Void> postEntity(String processId, BrokerEntity entity) {
+        return brokerAdapter.postEntity(processId, entity)
+                .doOnTerminate(() -> invalidateOwnerOf(entity));
+    }
+
+    @Override
+    public Mono<Void> upsertEntity(String processId, BrokerEntity entity) {
+        return brokerAdapter.upsertEntity(processId, entity)
+                .doOnTerminate(() -> invalidateOwnerOf(entity));
+    }
+
+    @Override
+    public Mono<Optional<String>> getEntityById(String processId, String id) {
+        return brokerAdapter.getEntityById(processId, id);
+    }
+
+    @Override
+    public Mono<String> getAllCredentialsByUserId(String processId, String userId) {
+        return getOrLoad(userId, ALL_CREDENTIALS,
+                () -> brokerAdapter.getAllCredentialsByUserId(processId, userId));
+    }
+
+    /**
+     * Pages are read straight from the broker, they are requested while a wallet is being streamed
+     * and are rarely asked for twice.
+     */
+    @Override
+    public Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset) {
+        return brokerAdapter.getCredentialsPageByUserId(processId, userId, limit, offset);
+    }
+
+    @Override
+    public Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset) {
+        return brokerAdapter.getCredentialsPageByUserIdFromReadReplica(processId, userId, limit, offset);
+    }
+
+    @Override
+    public Mono<String> queryEntities(String processId, String type, String query, int limit, int offset) {
+        return brokerAdapter.queryEntities(processId, type, query, limit, offset);
+    }
+
+    @Override
+    public Mono<String> getCredentialByIdAndUserId(String processId, String credentialId, String userId) {
+        return brokerAdapter.getCredentialByIdAndUserId(processId, credentialId, userId);
+    }
+
+    @Override
+    public Mono<Void> deleteCredentialByIdAndUserId(String processId, String credentialId, String userId) {
+        return brokerAdapter.deleteCredentialByIdAndUserId(processId, credentialId, userId)
+                .doOnTerminate(() -> invalidate(userId));
+    }
+
+    @Override
+    public Mono<String> getCredentialByCredentialTypeAndUserId(String processId, String credentialType, String userId) {
+        return getOrLoad(userId, credentialType,
+                () -> brokerAdapter.getCredentialByCredentialTypeAndUserId(processId, credentialType, userId));
+    }
+
+    @Override
+    public Mono<String> getTransactionThatIsLinkedToACredential(String processId, String credentialId) {
+        return brokerAdapter.getTransactionThatIsLinkedToACredential(processId, credentialId);
+    }
+
+    @Override
+    public Mono<Void> updateEntityById(String processId, String id, BrokerEntity entity) {
+        return brokerAdapter.updateEntityById(processId, id, entity)
+                .doOnTerminate(() -> invalidateOwnerOf(entity));
+    }
+
+    @Override
+    public Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId) {
+        return brokerAdapter.deleteTransactionByTransactionId(processId, transactionId);
+    }
+
+    @Override
+    public Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId) {
+        return brokerAdapter.deleteEntityAttributeInstance(processId, entityId, attributeName, datasetId);
+    }
+
+    @Override
+    public Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return invalidatingOwnerOfIds(List.of(entityId),
+                () -> brokerAdapter.appendEntityAttributes(processId, entityId, attributes));
+    }
+
+    @Override
+    public Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return invalidatingOwnerOfIds(List.of(entityId),
+                () -> brokerAdapter.updateEntityAttributes(processId, entityId, attributes));
+    }
+
+    @Override
+    public Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities) {
+        return brokerAdapter.batchCreateEntities(processId, entities)
+                .doOnTerminate(() -> entities.forEach(this::invalidateOwnerOf));
+    }
+
+    @Override
+    public Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities) {
+        return brokerAdapter.batchUpsertEntities(processId, entities)
+                .doOnTerminate(() -> entities.forEach(this::invalidateOwnerOf));
+    }
+
+    @Override
+    public Mono<Void> batchDeleteEntities(String processId, List<String> ids) {
+        return invalidatingOwnerOfIds(ids, () -> brokerAdapter.batchDeleteEntities(processId, ids));
+    }
+
+    /**
+     * Returns the cached response of the query, or subscribes to the loader once and shares its result
+     * with every concurrent caller. Failed loads are not cached.
+     */
+    private Mono<String> getOrLoad(String userId, String query, Supplier<Mono<String>> loader) {
+        return Mono.defer(() -> {
+            ConcurrentMap<String, CompletableFuture<String>> responses = queriesOf(userId).responses();
+            CompletableFuture<String> loading = new CompletableFuture<>();
+            CompletableFuture<String> cached = responses.putIfAbsent(query, loading);
+            if (cached != null) {
+                stats.recordHits(1);
+                return Mono.fromFuture(cached, true);
+            }
+            stats.recordMisses(1);
+            loader.get().toFuture().whenComplete((response, error) -> {
+                if (error != null) {
+                    responses.remove(query, loading);
+                    loading.completeExceptionally(error);
+                } else {
+                    loading.complete(response);
+                }
+            });
+            return Mono.fromFuture(loading, true);
+        });
+    }
+
+    /**
+     * Read through the map view, which leaves the statistics to {@link #getOrLoad}. Queries added to the entry of
+     * a user invalidated in the meantime are simply not kept.
+     */
+    private UserQueries queriesOf(String userId) {
+        UserQueries queries = cache.asMap().get(userId);
+        if (queries == null) {
+            UserQueries created = new UserQueries(new ConcurrentHashMap<>());
+            queries = Optional.ofNullable(cache.asMap().putIfAbsent(userId, created)).orElse(created);
+        }
+        return queries;
+    }
+
+    private void invalidate(String userId) {
+        cache.invalidate(userId);
+        log.debug("Broker cache invalidated for user: {}", userId);
+    }
+
+    /**
+     * Writes by id do not carry the belongsTo relationship of the credentials they change. As in the sharding
+     * adapter, their owner is the authenticated user, the only one writing their credentials; a write made outside
+     * of a request, such as a startup task, drops every cached query instead.
+     */
+    private Mono<Void> invalidatingOwnerOfIds(List<String> ids, Supplier<Mono<Void>> write) {
+        if (ids.stream().noneMatch(id -> id.startsWith(CREDENTIAL_ENTITY_PREFIX))) {
+            return Mono.defer(write);
+        }
+        return authenticatedUser()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(owner -> write.get()
+                        .doOnTerminate(() -> owner.ifPresentOrElse(this::invalidate, cache::invalidateAll)));
+    }
+
+    private static Mono<String> authenticatedUser() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName);
+    }
+
+    /**
+     * Credential entities are linked to their owner through the belongsTo relationship, the other entities
+     * do not change the result of any cached query.
+     */
+    private void invalidateOwnerOf(BrokerEntity entity) {
+        if (entity instanceof CredentialEntity credentialEntity && credentialEntity.relationshipAttribute() != null) {
+            String owner = credentialEntity.relationshipAttribute().object();
+            if (owner != null && owner.startsWith(USER_ENTITY_PREFIX)) {
+                invalidate(owner.substring(USER_ENTITY_PREFIX.length()));
+            }
+        }
+    }
+
+    /**
+     * Responses of the queries of a user, keyed by credential type. They expire with the entry of the user, at
+     * most the cache TTL after its first query.
+     */
+    private record UserQueries(ConcurrentMap<String, CompletableFuture<String>> responses) {
+    }
+
+}
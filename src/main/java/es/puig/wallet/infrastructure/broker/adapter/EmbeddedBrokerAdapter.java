@@ -0,0 +1,298 @@
+package es.puig.wallet.infrastructure.broker.adapter;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Broker kept on the local disk of the wallet, selected with the {@code embedded} provider, for edge and
+ * single-tenant deployments that do not run a broker.
+ * <p>
+ * The entities are served from the memory and indexes of {@link InMemoryBrokerAdapter}. Every write appends the new
+ * document of the entity to a journal before it is applied, and each record carries its length and checksum, so a
+ * record torn by a crash is detected and dropped on startup. Once the journal holds the configured number of writes,
+ * the entities are written to a new snapshot that replaces the previous one with an atomic move, and the journal is
+ * started over. Opening the store loads the snapshot and replays the journal on top of it.
+ * <p>
+ * The compaction runs in the background, not on the write that reaches the threshold, but the writes wait for it
+ * while the snapshot is written, a pause that grows with the number of entities: the threshold trades how often it
+ * happens against the length of the journal replayed on startup.
+ */
+@Slf4j
+public class EmbeddedBrokerAdapter extends InMemoryBrokerAdapter implements Closeable {
+
+    static final String SNAPSHOT_FILE = "entities.snapshot";
+    static final String JOURNAL_FILE = "entities.journal";
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final boolean DIRECTORIES_SYNCABLE = !System.getProperty("os.name").startsWith("Windows");
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final boolean syncWrites;
+    private final int compactionThreshold;
+    // Writes share the lock and the compaction takes it alone, so the snapshot holds every write of the journal it replaces
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final AtomicInteger journaledWrites = new AtomicInteger();
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+
+    public EmbeddedBrokerAdapter(ObjectMapper objectMapper, Path directory, boolean syncWrites, int compactionThreshold) {
+        super(objectMapper);
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.syncWrites = syncWrites;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Loads the stored entities and opens the journal, to be called once before using the adapter.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (FileChannel channel = FileChannel.open(snapshot, READ)) {
+                // The snapshot is complete once it is moved into place, it cannot hold a torn record
+                if (replay(channel) != channel.size()) {
+                    throw new IOException("Corrupted embedded broker snapshot: " + snapshot);
+                }
+            }
+        }
+        FileChannel channel = FileChannel.open(directory.resolve(JOURNAL_FILE), CREATE, READ, WRITE);
+        long end = replay(channel);
+        if (end < channel.size()) {
+            log.warn("Dropping {} bytes of the embedded broker journal left by an interrupted write", channel.size() - end);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        channel.position(end);
+        journal = channel;
+        log.info("Embedded broker opened at {} with {} entities", directory, entities().size());
+    }
+
+    /**
+     * Waits for a compaction in progress.
+     */
+    @Override
+    public void close() throws IOException {
+        compactionLock.writeLock().lock();
+        try {
+            synchronized (journalLock) {
+                if (journal != null) {
+                    journal.force(true);
+                    journal.close();
+                    journal = null;
+                }
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every entity to a new snapshot and starts the journal over. Writes wait for the compaction to finish.
+     * The journal is only emptied once the snapshot is durably in place, the move included.
+     */
+    public void compact() throws IOException {
+        compactionLock.writeLock().lock();
+        try {
+            if (journal == null) {
+                return;
+            }
+            Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try (FileChannel snapshot = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                for (Map.Entry<String, ObjectNode> entity : entities().entrySet()) {
+                    writeRecord(snapshot, toRecord(entity.getKey(), entity.getValue()));
+                }
+                snapshot.force(true);
+            }
+            Files.move(temporary, directory.resolve(SNAPSHOT_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+            syncDirectory();
+            synchronized (journalLock) {
+                journal.truncate(0);
+                journal.force(true);
+            }
+            journaledWrites.set(0);
+            log.debug("Embedded broker journal compacted into a snapshot of {} entities", entities().size());
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected ObjectNode write(String id, UnaryOperator<ObjectNode> change) {
+        ObjectNode written;
+        compactionLock.readLock().lock();
+        try {
+            written = super.write(id, change);
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+        compactIfNeeded();
+        return written;
+    }
+
+    /**
+     * Journals the write before the entity is replaced in memory: a write that cannot be journaled fails and leaves
+     * the entity as it was.
+     */
+    @Override
+    protected void onWrite(String id, ObjectNode document) {
+        synchronized (journalLock) {
+            // Writes made while loading the store are already on the disk
+            if (journal == null) {
+                return;
+            }
+            try {
+                byte[] record = toRecord(id, document);
+                long position = journal.position();
+                try {
+                    writeRecord(journal, record);
+                    if (syncWrites) {
+                        journal.force(false);
+                    }
+                } catch (IOException e) {
+                    // Later records must not follow a partial one, it would hide them on the next startup
+                    journal.truncate(position);
+                    throw e;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error writing entity " + id + " to the embedded broker journal", e);
+            }
+        }
+        journaledWrites.incrementAndGet();
+    }
+
+    /**
+     * Writes wait for the disk, so they are moved off the event loop.
+     */
+    @Override
+    protected Scheduler writeScheduler() {
+        return Schedulers.boundedElastic();
+    }
+
+    /**
+     * Hands the compaction over to another thread, the write that reaches the threshold completes without it.
+     */
+    private void compactIfNeeded() {
+        if (journal == null || journaledWrites.get() < compactionThreshold || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The journal still holds every write, the compaction is attempted again on the next write
+                log.error("Error compacting the embedded broker journal", e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Flushes the entries of the directory, so the snapshot moved into it survives a crash. Windows does not open
+     * directories, the move is left to the file system there.
+     */
+    private void syncDirectory() throws IOException {
+        if (!DIRECTORIES_SYNCABLE) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Applies the records of the file in order and returns the position after the last valid one.
+     */
+    private long replay(FileChannel channel) throws IOException {
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (true) {
+            header.clear();
+            if (read(channel, header, position) < RECORD_HEADER_BYTES) {
+                return position;
+            }
+            header.flip();
+            int length = header.getInt();
+            long checksum = header.getLong();
+            if (length < 0 || position + RECORD_HEADER_BYTES + length > channel.size()) {
+                return position;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            read(channel, payload, position + RECORD_HEADER_BYTES);
+            if (checksum(payload.array()) != checksum) {
+                return position;
+            }
+            JournalRecord record = objectMapper.readValue(payload.array(), JournalRecord.class);
+            write(record.id(), stored -> record.entity());
+            position += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    private byte[] toRecord(String id, ObjectNode document) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new JournalRecord(id, document));
+    }
+
+    private static void writeRecord(FileChannel channel, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putLong(checksum(payload))
+                .put(payload)
+                .flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    /**
+     * The document of an entity after a write, without document when the entity was removed.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record JournalRecord(String id, ObjectNode entity) {
+    }
+
+}
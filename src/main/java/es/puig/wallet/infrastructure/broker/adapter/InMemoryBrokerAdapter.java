@@ -0,0 +1,533 @@
+package es.puig.wallet.infrastructure.broker.adapter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import es.puig.wallet.domain.exception.FailedCommunicationException;
+import es.puig.wallet.domain.exception.NoSuchVerifiableCredentialException;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+
+/**
+ * Broker kept in the memory of the wallet, selected with the {@code in-memory} provider. It answers with the same
+ * NGSI-LD documents as Scorpio and Orion-LD, so it stands in for them in benchmarks of the workflows and in
+ * single-node deployments that can afford to lose the wallets on restart.
+ * <p>
+ * The entities are stored as their normalized JSON and never modified in place: every write replaces the stored
+ * document, so readers serialize a consistent snapshot without locking. Concurrent indexes on type,
+ * {@code belongsTo}, {@code linkedTo} and the credential types of each user turn the queries of the wallet into
+ * lookups proportional to their result. Index sets are sorted by entity id, which keeps the pages stable.
+ */
+@Slf4j
+@Component
+public class InMemoryBrokerAdapter implements GenericBrokerService {
+
+    private static final String BELONGS_TO = "belongsTo";
+    private static final String LINKED_TO = "linkedTo";
+    private static final String CREDENTIAL_TYPE_ATTRIBUTE = "credentialType";
+    private static final String DATASET_ID = "datasetId";
+    private static final String DEFAULT_INSTANCE = "";
+    private static final Set<String> SUMMARY_ATTRIBUTES = Set.of(CREDENTIAL_SUMMARY_ATTRIBUTES.split(","));
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, ObjectNode> entities = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> typeIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> belongsToIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> linkedToIndex = new ConcurrentHashMap<>();
+    // Keyed by owner and credential type, each credential is indexed once per type of its credentialType array
+    private final Map<OwnedCredentialType, Set<String>> credentialTypeIndex = new ConcurrentHashMap<>();
+
+    public InMemoryBrokerAdapter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Mono<Void> postEntity(String processId, BrokerEntity entity) {
+        return Mono.defer(() -> {
+            ObjectNode document = toDocument(entity);
+            boolean created = write(entity.id(), stored -> stored == null ? document : stored) == document;
+            return created
+                    ? Mono.<Void>empty()
+                    : Mono.error(new FailedCommunicationException("Entity already exists: " + entity.id()));
+        }).doOnSuccess(v -> log.debug("Entity saved"))
+                .subscribeOn(writeScheduler());
+    }
+
+    /**
+     * Creates the entity or merges its attributes into the stored one, so the caller does not need to check
+     * whether the entity exists beforehand.
+     */
+    @Override
+    public Mono<Void> upsertEntity(String processId, BrokerEntity entity) {
+        return batchUpsertEntities(processId, List.of(entity));
+    }
+
+    @Override
+    public Mono<Optional<String>> getEntityById(String processId, String id) {
+        return Mono.fromCallable(() -> {
+            ObjectNode stored = entities.get(id);
+            return stored == null ? Optional.<String>empty() : Optional.of(objectMapper.writeValueAsString(stored));
+        });
+    }
+
+    @Override
+    public Mono<String> getAllCredentialsByUserId(String processId, String userId) {
+        return Mono.fromCallable(() -> toSummaryArray(lookup(belongsToIndex, USER_ENTITY_PREFIX + userId)
+                .filter(credential -> isOwnedBy(credential, userId))));
+    }
+
+    @Override
+    public Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset) {
+        return Mono.fromCallable(() -> toSummaryArray(lookup(belongsToIndex, USER_ENTITY_PREFIX + userId)
+                .filter(credential -> isOwnedBy(credential, userId))
+                .skip(offset)
+                .limit(limit)));
+    }
+
+    /**
+     * There is no replica of the entities kept in memory.
+     */
+    @Override
+    public Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset) {
+        return getCredentialsPageByUserId(processId, userId, limit, offset);
+    }
+
+    /**
+     * Supports the NGSI-LD queries the wallet sends: equality on attributes joined with {@code ;}. Queries on
+     * {@code belongsTo} or {@code linkedTo} are served from their index, any other from the type index.
+     */
+    @Override
+    public Mono<String> queryEntities(String processId, String type, String query, int limit, int offset) {
+        return Mono.fromCallable(() -> {
+            Map<String, String> conditions = parseQuery(query);
+            Stream<ObjectNode> candidates;
+            if (conditions.containsKey(BELONGS_TO)) {
+                candidates = lookup(belongsToIndex, conditions.get(BELONGS_TO));
+            } else if (conditions.containsKey(LINKED_TO)) {
+                candidates = lookup(linkedToIndex, conditions.get(LINKED_TO));
+            } else {
+                candidates = lookup(typeIndex, type);
+            }
+            return toArray(candidates
+                    .filter(entity -> type.equals(entity.path("type").asText()))
+                    .filter(entity -> conditions.entrySet().stream()
+                            .allMatch(condition -> attributeValues(entity, condition.getKey()).contains(condition.getValue())))
+                    .skip(offset)
+                    .limit(limit));
+        });
+    }
+
+    @Override
+    public Mono<String> getCredentialByIdAndUserId(String processId, String credentialId, String userId) {
+        return Mono.defer(() -> {
+            ObjectNode credential = entities.get(credentialId);
+            if (credential == null || !isOwnedBy(credential, userId)) {
+                return Mono.error(new NoSuchVerifiableCredentialException("Error fetching credential with id: " + credentialId + " from user: " + userId));
+            }
+            return Mono.fromCallable(() -> objectMapper.writeValueAsString(credential));
+        });
+    }
+
+    @Override
+    public Mono<Void> deleteCredentialByIdAndUserId(String processId, String credentialId, String userId) {
+        return Mono.defer(() -> {
+            ObjectNode deleted = remove(credentialId, stored -> isOwnedBy(stored, userId));
+            return deleted != null
+                    ? Mono.<Void>empty()
+                    : Mono.error(new NoSuchVerifiableCredentialException("Error deleting credential with id: " + credentialId + " from user: " + userId));
+        }).subscribeOn(writeScheduler());
+    }
+
+    @Override
+    public Mono<String> getCredentialByCredentialTypeAndUserId(String processId, String credentialType, String userId) {
+        return Mono.fromCallable(() -> toSummaryArray(
+                lookup(credentialTypeIndex, new OwnedCredentialType(USER_ENTITY_PREFIX + userId, credentialType))
+                        .filter(credential -> isOwnedBy(credential, userId)
+                                && attributeValues(credential, CREDENTIAL_TYPE_ATTRIBUTE).contains(credentialType))));
+    }
+
+    @Override
+    public Mono<String> getTransactionThatIsLinkedToACredential(String processId, String credentialId) {
+        return Mono.fromCallable(() -> toArray(lookup(linkedToIndex, credentialId)
+                .filter(transaction -> attributeValues(transaction, LINKED_TO).contains(credentialId))));
+    }
+
+    @Override
+    public Mono<Void> updateEntityById(String processId, String id, BrokerEntity entity) {
+        return appendEntityAttributes(processId, id, toDocument(entity));
+    }
+
+    @Override
+    public Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId) {
+        return Mono.defer(() -> remove(transactionId, stored -> true) != null
+                ? Mono.<Void>empty()
+                : Mono.error(new NoSuchVerifiableCredentialException("Error deleting transaction with id: " + transactionId)))
+                .subscribeOn(writeScheduler());
+    }
+
+    @Override
+    public Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId) {
+        return Mono.fromRunnable(() -> write(entityId, stored -> {
+            if (stored == null || !stored.has(attributeName)) {
+                return stored;
+            }
+            List<JsonNode> remaining = instancesOf(stored.get(attributeName)).stream()
+                    .filter(instance -> !datasetId.equals(datasetIdOf(instance)))
+                    .toList();
+            ObjectNode updated = copyOf(stored);
+            if (remaining.isEmpty()) {
+                updated.remove(attributeName);
+            } else {
+                updated.set(attributeName, toAttribute(remaining));
+            }
+            return updated;
+        })).then().subscribeOn(writeScheduler());
+    }
+
+    @Override
+    public Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return appendEntityAttributes(processId, entityId, toDocument(attributes));
+    }
+
+    /**
+     * Like the PATCH of the attrs endpoint, only the attributes the entity already has are changed and the rest are
+     * reported as failed.
+     */
+    @Override
+    public Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return Mono.defer(() -> {
+            ObjectNode changes = toDocument(attributes);
+            Set<String> missing = new TreeSet<>();
+            ObjectNode updated = write(entityId, stored -> {
+                missing.clear();
+                if (stored == null) {
+                    return null;
+                }
+                ObjectNode existingChanges = objectMapper.createObjectNode();
+                changes.fields().forEachRemaining(change -> {
+                    if (stored.has(change.getKey())) {
+                        existingChanges.set(change.getKey(), change.getValue());
+                    } else {
+                        missing.add(change.getKey());
+                    }
+                });
+                return withAttributes(stored, existingChanges);
+            });
+            if (updated == null) {
+                return Mono.error(new FailedCommunicationException("Entity not found: " + entityId));
+            }
+            return missing.isEmpty()
+                    ? Mono.<Void>empty()
+                    : Mono.error(new FailedCommunicationException("Attributes of entity " + entityId + " partially written: " + missing));
+        }).subscribeOn(writeScheduler());
+    }
+
+    @Override
+    public Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities) {
+        return Mono.defer(() -> {
+            List<String> existing = new ArrayList<>();
+            for (BrokerEntity entity : entities) {
+                ObjectNode document = toDocument(entity);
+                if (write(entity.id(), stored -> stored == null ? document : stored) != document) {
+                    existing.add(entity.id());
+                }
+            }
+            return existing.isEmpty()
+                    ? Mono.<Void>empty()
+                    : Mono.error(new FailedCommunicationException("Batch operation partially failed, entities already exist: " + existing));
+        }).doOnSuccess(v -> log.debug("ProcessId: {}, {} entities created", processId, entities.size()))
+                .subscribeOn(writeScheduler());
+    }
+
+    @Override
+    public Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities) {
+        return Mono.fromRunnable(() -> entities.forEach(entity -> {
+            ObjectNode document = toDocument(entity);
+            write(entity.id(), stored -> stored == null ? document : withAttributes(stored, document));
+        })).then().doOnSuccess(v -> log.debug("ProcessId: {}, {} entities upserted", processId, entities.size()))
+                .subscribeOn(writeScheduler());
+    }
+
+    @Override
+    public Mono<Void> batchDeleteEntities(String processId, List<String> ids) {
+        return Mono.defer(() -> {
+            List<String> missing = ids.stream()
+                    .filter(id -> remove(id, stored -> true) == null)
+                    .toList();
+            return missing.isEmpty()
+                    ? Mono.<Void>empty()
+                    : Mono.error(new FailedCommunicationException("Batch operation partially failed, entities not found: " + missing));
+        }).doOnSuccess(v -> log.debug("ProcessId: {}, {} entities deleted", processId, ids.size()))
+                .subscribeOn(writeScheduler());
+    }
+
+    private Mono<Void> appendEntityAttributes(String processId, String entityId, ObjectNode attributes) {
+        return Mono.defer(() -> write(entityId, stored -> stored == null ? null : withAttributes(stored, attributes)) != null
+                ? Mono.<Void>empty()
+                : Mono.error(new FailedCommunicationException("Entity not found: " + entityId)))
+                .doOnSuccess(v -> log.debug("ProcessId: {}, attributes appended to entity {}", processId, entityId))
+                .subscribeOn(writeScheduler());
+    }
+
+    /**
+     * Replaces the stored document of the entity with the result of the change, null removing it, and moves the
+     * entity between the index entries of its previous and new attributes. The change runs atomically for the
+     * entity; it returns the stored document itself to leave the entity untouched.
+     */
+    protected ObjectNode write(String id, UnaryOperator<ObjectNode> change) {
+        return entities.compute(id, (key, stored) -> {
+            ObjectNode updated = change.apply(stored);
+            if (updated != stored) {
+                onWrite(key, updated);
+                reindex(key, stored, updated);
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Called with the new document of every entity written, or null when it is removed, while the write of the entity
+     * is still in progress, so the calls for the same entity are made in the order of its writes.
+     */
+    protected void onWrite(String id, ObjectNode document) {
+    }
+
+    /**
+     * Scheduler the writes run on, the calling thread unless they have to wait for something other than memory.
+     */
+    protected Scheduler writeScheduler() {
+        return Schedulers.immediate();
+    }
+
+    /**
+     * The stored documents by entity id.
+     */
+    protected Map<String, ObjectNode> entities() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    /**
+     * Removes the entity when it matches the condition and returns the removed document.
+     */
+    private ObjectNode remove(String id, Predicate<ObjectNode> condition) {
+        ObjectNode[] removed = new ObjectNode[1];
+        write(id, stored -> {
+            if (stored == null || !condition.test(stored)) {
+                return stored;
+            }
+            removed[0] = stored;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void reindex(String id, ObjectNode before, ObjectNode after) {
+        reindex(typeIndex, id, keysOf(before, entity -> Stream.of(entity.path("type").asText())),
+                keysOf(after, entity -> Stream.of(entity.path("type").asText())));
+        reindex(belongsToIndex, id, keysOf(before, entity -> attributeValues(entity, BELONGS_TO).stream()),
+                keysOf(after, entity -> attributeValues(entity, BELONGS_TO).stream()));
+        reindex(linkedToIndex, id, keysOf(before, entity -> attributeValues(entity, LINKED_TO).stream()),
+                keysOf(after, entity -> attributeValues(entity, LINKED_TO).stream()));
+        reindex(credentialTypeIndex, id, keysOf(before, this::ownedCredentialTypes), keysOf(after, this::ownedCredentialTypes));
+    }
+
+    private static <K> void reindex(Map<K, Set<String>> index, String id, Set<K> before, Set<K> after) {
+        before.stream()
+                .filter(key -> !after.contains(key))
+                .forEach(key -> index.computeIfPresent(key, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                }));
+        after.stream()
+                .filter(key -> !before.contains(key))
+                .forEach(key -> index.compute(key, (k, ids) -> {
+                    Set<String> updated = ids == null ? new ConcurrentSkipListSet<>() : ids;
+                    updated.add(id);
+                    return updated;
+                }));
+    }
+
+    private static <K> Set<K> keysOf(ObjectNode entity, Function<ObjectNode, Stream<K>> keys) {
+        if (entity == null) {
+            return Set.of();
+        }
+        Set<K> result = new HashSet<>();
+        keys.apply(entity).forEach(result::add);
+        return result;
+    }
+
+    private Stream<OwnedCredentialType> ownedCredentialTypes(ObjectNode entity) {
+        List<String> owners = attributeValues(entity, BELONGS_TO);
+        List<String> credentialTypes = attributeValues(entity, CREDENTIAL_TYPE_ATTRIBUTE);
+        return owners.stream().flatMap(owner -> credentialTypes.stream()
+                .map(credentialType -> new OwnedCredentialType(owner, credentialType)));
+    }
+
+    /**
+     * Ids are read from the index first and resolved afterwards, so an entity changed in between is skipped by the
+     * callers checking that it still matches.
+     */
+    private <K> Stream<ObjectNode> lookup(Map<K, Set<String>> index, K key) {
+        return index.getOrDefault(key, Set.of()).stream()
+                .map(entities::get)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Other entities, such as the encrypted keys of the user, belong to it too but are not credentials.
+     */
+    private boolean isOwnedBy(ObjectNode credential, String userId) {
+        return CREDENTIAL_TYPE.equals(credential.path("type").asText())
+                && attributeValues(credential, BELONGS_TO).contains(USER_ENTITY_PREFIX + userId);
+    }
+
+    /**
+     * The object of a relationship, or the value of a property, flattening arrays, across every instance of the
+     * attribute.
+     */
+    private static List<String> attributeValues(ObjectNode entity, String attributeName) {
+        JsonNode attribute = entity.get(attributeName);
+        if (attribute == null) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>();
+        for (JsonNode instance : instancesOf(attribute)) {
+            JsonNode value = instance.has("object") ? instance.get("object") : instance.get("value");
+            if (value == null) {
+                continue;
+            }
+            if (value.isArray()) {
+                value.forEach(element -> values.add(element.asText()));
+            } else {
+                values.add(value.asText());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Merges the attributes into a copy of the stored document. An attribute replaces the instance with its
+     * datasetId and keeps the others, as the append of NGSI-LD does with multi-attributes.
+     */
+    private ObjectNode withAttributes(ObjectNode stored, ObjectNode attributes) {
+        ObjectNode updated = copyOf(stored);
+        attributes.fields().forEachRemaining(attribute -> {
+            if (attribute.getKey().equals("id") || attribute.getKey().equals("type")) {
+                return;
+            }
+            JsonNode existing = updated.get(attribute.getKey());
+            if (existing == null) {
+                updated.set(attribute.getKey(), attribute.getValue());
+                return;
+            }
+            Map<String, JsonNode> instances = new LinkedHashMap<>();
+            instancesOf(existing).forEach(instance -> instances.put(datasetIdOf(instance), instance));
+            instancesOf(attribute.getValue()).forEach(instance -> instances.put(datasetIdOf(instance), instance));
+            updated.set(attribute.getKey(), toAttribute(new ArrayList<>(instances.values())));
+        });
+        return updated;
+    }
+
+    private static List<JsonNode> instancesOf(JsonNode attribute) {
+        List<JsonNode> instances = new ArrayList<>();
+        if (attribute.isArray()) {
+            attribute.forEach(instances::add);
+        } else {
+            instances.add(attribute);
+        }
+        return instances;
+    }
+
+    private static String datasetIdOf(JsonNode instance) {
+        return instance.has(DATASET_ID) ? instance.get(DATASET_ID).asText() : DEFAULT_INSTANCE;
+    }
+
+    /**
+     * A single instance is returned as an object, like the brokers do.
+     */
+    private JsonNode toAttribute(List<JsonNode> instances) {
+        if (instances.size() == 1) {
+            return instances.get(0);
+        }
+        ArrayNode array = objectMapper.createArrayNode();
+        instances.forEach(array::add);
+        return array;
+    }
+
+    private ObjectNode copyOf(ObjectNode stored) {
+        ObjectNode copy = objectMapper.createObjectNode();
+        copy.setAll(stored);
+        return copy;
+    }
+
+    /**
+     * The entity as the brokers store it: null attributes are left out and a single instance is not wrapped in an
+     * array.
+     */
+    private ObjectNode toDocument(Object entity) {
+        ObjectNode document = objectMapper.createObjectNode();
+        ((ObjectNode) objectMapper.valueToTree(entity)).fields().forEachRemaining(attribute -> {
+            if (attribute.getValue().isNull()) {
+                return;
+            }
+            boolean isAttribute = !attribute.getKey().equals("id") && !attribute.getKey().equals("type");
+            document.set(attribute.getKey(), isAttribute ? toAttribute(instancesOf(attribute.getValue())) : attribute.getValue());
+        });
+        return document;
+    }
+
+    private String toSummaryArray(Stream<ObjectNode> credentials) throws JsonProcessingException {
+        return toArray(credentials.map(credential -> {
+            ObjectNode projected = objectMapper.createObjectNode();
+            credential.fields().forEachRemaining(attribute -> {
+                if (attribute.getKey().equals("id") || attribute.getKey().equals("type")
+                        || SUMMARY_ATTRIBUTES.contains(attribute.getKey())) {
+                    projected.set(attribute.getKey(), attribute.getValue());
+                }
+            });
+            return projected;
+        }));
+    }
+
+    private String toArray(Stream<ObjectNode> documents) throws JsonProcessingException {
+        ArrayNode array = objectMapper.createArrayNode();
+        documents.forEach(array::add);
+        return objectMapper.writeValueAsString(array);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> conditions = new LinkedHashMap<>();
+        if (query == null || query.isBlank()) {
+            return conditions;
+        }
+        for (String condition : query.split(";")) {
+            int separator = condition.indexOf("==");
+            if (separator < 0) {
+                throw new IllegalArgumentException("Unsupported NGSI-LD query: " + query);
+            }
+            conditions.put(condition.substring(0, separator), condition.substring(separator + 2));
+        }
+        return conditions;
+    }
+
+    private record OwnedCredentialType(String owner, String credentialType) {
+    }
+
+}
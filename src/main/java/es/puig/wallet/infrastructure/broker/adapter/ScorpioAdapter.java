@@ -1,27 +1,33 @@
 package es.puig.wallet.infrastructure.broker.adapter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.exception.FailedCommunicationException;
 import es.puig.wallet.domain.exception.JsonReadingException;
 import es.puig.wallet.domain.exception.NoSuchTransactionException;
 import es.puig.wallet.domain.exception.NoSuchVerifiableCredentialException;
-import es.puig.wallet.domain.util.ApplicationUtils;
+import es.puig.wallet.domain.model.BrokerEntity;
 import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
 import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import es.puig.wallet.infrastructure.broker.util.BrokerShardContext;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import static es.puig.wallet.domain.util.ApplicationConstants.ATTRIBUTES;
-import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
 
 
 @Slf4j
@@ -31,23 +37,26 @@ public class ScorpioAdapter implements GenericBrokerService {
 
     private final ObjectMapper objectMapper;
     private final BrokerConfig brokerConfig;
+    private final WebClientFactory webClientFactory;
     private WebClient webClient;
 
     @PostConstruct
     public void init() {
-        this.webClient = ApplicationUtils.WEB_CLIENT;
+        this.webClient = webClientFactory.webClient(HttpDestination.BROKER).mutate()
+                .filter(BrokerShardContext.exchangeFilter())
+                .build();
     }
 
     @Override
-    public Mono<Void> postEntity(String processId, String requestBody) {
-        MediaType mediaType = getContentTypeAndAcceptMediaType(requestBody);
-        return webClient.post()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath())
-                .accept(mediaType)
-                .contentType(mediaType)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(Void.class)
+    public Mono<Void> postEntity(String processId, BrokerEntity entity) {
+        return toRequestBody(entity)
+                .flatMap(requestBody -> webClient.post()
+                        .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(Void.class))
                 .doOnSuccess(v -> log.debug("Entity saved"))
                 .doOnError(e -> log.debug("Error saving entity"))
                 .onErrorResume(Exception.class, Mono::error);
@@ -56,7 +65,7 @@ public class ScorpioAdapter implements GenericBrokerService {
     @Override
     public Mono<Optional<String>> getEntityById(String processId, String id) {
         return webClient.get()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() + "/" + id)
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() + "/" + id)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .onStatus(status -> status != null && status.is4xxClientError(), response -> response.createException().flatMap(Mono::error))
@@ -70,18 +79,50 @@ public class ScorpioAdapter implements GenericBrokerService {
     @Override
     public Mono<String> getAllCredentialsByUserId(String processId, String userId) {
         return webClient.get()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() +
-                        "?type=Credential&q=belongsTo==" + USER_ENTITY_PREFIX + userId)
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
+                        "?type=Credential&q=belongsTo==" + USER_ENTITY_PREFIX + userId + "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .bodyToMono(String.class)
                 .onErrorResume(e -> Mono.error(new NoSuchVerifiableCredentialException("Error fetching credentials from user: " + userId)));
     }
 
+    @Override
+    public Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset) {
+        return getCredentialsPage(brokerConfig.getInternalUrl(), userId, limit, offset);
+    }
+
+    @Override
+    public Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset) {
+        return getCredentialsPage(brokerConfig.getReadUrl(), userId, limit, offset);
+    }
+
+    // Without an explicit order the broker may return the entities in any order, and the offsets would skip or repeat them
+    private Mono<String> getCredentialsPage(String brokerUrl, String userId, int limit, int offset) {
+        return webClient.get()
+                .uri(brokerUrl + brokerConfig.getEntitiesPath() +
+                        "?type=Credential&q=belongsTo==" + USER_ENTITY_PREFIX + userId + "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES + "&orderBy=id&limit=" + limit + "&offset=" + offset)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)
+                .onErrorResume(e -> Mono.error(new NoSuchVerifiableCredentialException("Error fetching credentials from user: " + userId)));
+    }
+
+    @Override
+    public Mono<String> queryEntities(String processId, String type, String query, int limit, int offset) {
+        return webClient.get()
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
+                        "?type=" + type + (query != null ? "&q=" + query : "") + "&orderBy=id&limit=" + limit + "&offset=" + offset)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(String.class)
+                .onErrorResume(e -> Mono.error(new FailedCommunicationException("Error querying entities of type: " + type)));
+    }
+
     @Override
     public Mono<String> getCredentialByIdAndUserId(String processId, String credentialId, String userId) {
         return webClient.get()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() +
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
                         "/" + credentialId + "?q=belongsTo==" + USER_ENTITY_PREFIX + userId)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
@@ -92,7 +133,7 @@ public class ScorpioAdapter implements GenericBrokerService {
     @Override
     public Mono<Void> deleteCredentialByIdAndUserId(String processId, String credentialId, String userId) {
         return webClient.delete()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() +
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
                         "/" + credentialId + "?q=belongsTo==" + USER_ENTITY_PREFIX + userId)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
@@ -103,8 +144,9 @@ public class ScorpioAdapter implements GenericBrokerService {
     @Override
     public Mono<String> getCredentialByCredentialTypeAndUserId(String processId, String credentialType, String userId) {
         return webClient.get()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() +
-                        "?type=Credential&q=belongsTo==" + USER_ENTITY_PREFIX + userId + ";credentialType==" + credentialType)
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
+                        "?type=Credential&q=belongsTo==" + USER_ENTITY_PREFIX + userId + ";credentialType==" + credentialType +
+                        "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .bodyToMono(String.class)
@@ -114,7 +156,7 @@ public class ScorpioAdapter implements GenericBrokerService {
     @Override
     public Mono<String> getTransactionThatIsLinkedToACredential(String processId, String credentialId) {
         return webClient.get()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() + "?type=Transaction&q=linkedTo==" + credentialId)
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() + "?type=Transaction&q=linkedTo==" + credentialId)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .bodyToMono(String.class)
@@ -123,15 +165,15 @@ public class ScorpioAdapter implements GenericBrokerService {
 
 
     @Override
-    public Mono<Void> updateEntityById(String processId, String id, String requestBody) {
-        MediaType mediaType = getContentTypeAndAcceptMediaType(requestBody);
-        return webClient.post()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() + "/" + id + ATTRIBUTES)
-                .accept(mediaType)
-                .contentType(mediaType)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(Void.class)
+    public Mono<Void> updateEntityById(String processId, String id, BrokerEntity entity) {
+        return toRequestBody(entity)
+                .flatMap(requestBody -> webClient.post()
+                        .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() + "/" + id + ATTRIBUTES)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(Void.class))
                 .doOnSuccess(v -> log.debug("Entity updated"))
                 .doOnError(e -> log.debug("Error updating entity"))
                 .onErrorResume(Exception.class, Mono::error);
@@ -140,7 +182,7 @@ public class ScorpioAdapter implements GenericBrokerService {
     @Override
     public Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId) {
         return webClient.delete()
-                .uri(brokerConfig.getExternalUrl() + brokerConfig.getEntitiesPath() +
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
                         "/" + transactionId)
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
@@ -148,17 +190,105 @@ public class ScorpioAdapter implements GenericBrokerService {
                 .onErrorResume(e -> Mono.error(new NoSuchVerifiableCredentialException("Error deleting transaction with id: " + transactionId)));
     }
 
-    private MediaType getContentTypeAndAcceptMediaType(String requestBody) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(requestBody);
-            if (jsonNode.has("@context")) {
-                return MediaType.valueOf("application/ld+json");
-            } else {
-                return MediaType.APPLICATION_JSON;
-            }
-        } catch (JsonProcessingException e) {
-            throw new JsonReadingException(e.getMessage());
-        }
+    @Override
+    public Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId) {
+        return webClient.delete()
+                .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() +
+                        "/" + entityId + "/attrs/" + attributeName + "?datasetId=" + datasetId)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty())
+                .doOnSuccess(v -> log.debug("ProcessId: {}, instance {} of {} deleted from entity {}", processId, datasetId, attributeName, entityId));
+    }
+
+    @Override
+    public Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return sendEntityAttributes(HttpMethod.POST, entityId, attributes)
+                .doOnSuccess(v -> log.debug("ProcessId: {}, attributes {} appended to entity {}", processId, attributes.keySet(), entityId))
+                .doOnError(e -> log.debug("Error appending attributes to entity"));
+    }
+
+    @Override
+    public Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return sendEntityAttributes(HttpMethod.PATCH, entityId, attributes)
+                .doOnSuccess(v -> log.debug("ProcessId: {}, attributes {} updated in entity {}", processId, attributes.keySet(), entityId))
+                .doOnError(e -> log.debug("Error updating entity attributes"));
+    }
+
+    @Override
+    public Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities) {
+        return postBatchOperation(BATCH_CREATE, entities)
+                .doOnSuccess(v -> log.debug("ProcessId: {}, {} entities created", processId, entities.size()))
+                .doOnError(e -> log.debug("Error creating entities"));
+    }
+
+    /**
+     * Creates the entity or merges its attributes into the stored one, so the caller does not need to check
+     * whether the entity exists beforehand.
+     */
+    @Override
+    public Mono<Void> upsertEntity(String processId, BrokerEntity entity) {
+        return batchUpsertEntities(processId, List.of(entity));
+    }
+
+    @Override
+    public Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities) {
+        return postBatchOperation(BATCH_UPSERT + UPDATE_OPTION, entities)
+                .doOnSuccess(v -> log.debug("ProcessId: {}, {} entities upserted", processId, entities.size()))
+                .doOnError(e -> log.debug("Error upserting entities"));
+    }
+
+    @Override
+    public Mono<Void> batchDeleteEntities(String processId, List<String> ids) {
+        return postBatchOperation(BATCH_DELETE, ids)
+                .doOnSuccess(v -> log.debug("ProcessId: {}, {} entities deleted", processId, ids.size()))
+                .doOnError(e -> log.debug("Error deleting entities"));
+    }
+
+    /**
+     * NGSI-LD batch operations answer 207 Multi-Status when only some of the entities could be processed,
+     * so that status is turned into an error with the body describing the failed entities.
+     */
+    private Mono<Void> postBatchOperation(String operation, Object body) {
+        return toRequestBody(body)
+                .flatMap(requestBody -> webClient.post()
+                        .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntityOperationsPath() + operation)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .toEntity(String.class))
+                .flatMap(response -> response.getStatusCode().isSameCodeAs(HttpStatus.MULTI_STATUS)
+                        ? Mono.error(new FailedCommunicationException("Batch operation partially failed: " + response.getBody()))
+                        : Mono.<Void>empty());
+    }
+
+    /**
+     * Sends only the given attributes to the attrs endpoint of the entity. The broker answers 207 Multi-Status
+     * when some of them could not be written, which is turned into an error like in the batch operations.
+     */
+    private Mono<Void> sendEntityAttributes(HttpMethod method, String entityId, Map<String, ?> attributes) {
+        return toRequestBody(attributes)
+                .flatMap(requestBody -> webClient.method(method)
+                        .uri(brokerConfig.getInternalUrl() + brokerConfig.getEntitiesPath() + "/" + entityId + ATTRIBUTES)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .toEntity(String.class))
+                .flatMap(response -> response.getStatusCode().isSameCodeAs(HttpStatus.MULTI_STATUS)
+                        ? Mono.error(new FailedCommunicationException("Attributes of entity " + entityId + " partially written: " + response.getBody()))
+                        : Mono.<Void>empty());
+    }
+
+    /**
+     * Serializes the body once and compactly into the bytes that are written to the request. The entities of
+     * the wallet carry no @context, so they are always sent as application/json.
+     */
+    private Mono<byte[]> toRequestBody(Object body) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsBytes(body))
+                .onErrorMap(JsonProcessingException.class, e -> new JsonReadingException(e.getMessage()));
     }
 
 }
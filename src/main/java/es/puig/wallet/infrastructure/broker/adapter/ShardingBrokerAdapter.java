@@ -0,0 +1,207 @@
+package es.puig.wallet.infrastructure.broker.adapter;
+
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import es.puig.wallet.infrastructure.broker.util.BrokerShard;
+import es.puig.wallet.infrastructure.broker.util.BrokerShardContext;
+import es.puig.wallet.infrastructure.broker.util.ConsistentHashRing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.CREDENTIAL_SUMMARY_ENTITY_PREFIX;
+import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
+
+/**
+ * Distributes the wallet users across several brokers or NGSI-LD tenants, placed in front of the configured broker
+ * adapter.
+ * <p>
+ * Every user belongs to the shard given by the consistent hash of its user id, and all of its entities are stored
+ * there. The user of a call is taken from its userId argument, from the entities or ids it writes (the user and
+ * credential summary ids embed the user id, credentials are linked to their owner through belongsTo) and otherwise
+ * from the authenticated user of the request, which is the owner of every credential and transaction a request
+ * touches. The call is then sent to the shard through {@link BrokerShardContext}.
+ */
+@Slf4j
+public class ShardingBrokerAdapter implements GenericBrokerService {
+
+    private final GenericBrokerService brokerAdapter;
+    private final ConsistentHashRing<BrokerShard> ring;
+
+    public ShardingBrokerAdapter(GenericBrokerService brokerAdapter, List<BrokerShard> shards, int virtualNodes) {
+        this.brokerAdapter = brokerAdapter;
+        this.ring = new ConsistentHashRing<>(shards, BrokerShard::name, virtualNodes);
+    }
+
+    public BrokerShard shardOf(String userId) {
+        return ring.nodeFor(userId);
+    }
+
+    @Override
+    public Mono<Void> postEntity(String processId, BrokerEntity entity) {
+        return forOwner(ownerOf(entity), () -> brokerAdapter.postEntity(processId, entity));
+    }
+
+    @Override
+    public Mono<Void> upsertEntity(String processId, BrokerEntity entity) {
+        return forOwner(ownerOf(entity), () -> brokerAdapter.upsertEntity(processId, entity));
+    }
+
+    @Override
+    public Mono<Optional<String>> getEntityById(String processId, String id) {
+        return forOwner(ownerOfId(id), () -> brokerAdapter.getEntityById(processId, id));
+    }
+
+    @Override
+    public Mono<String> getAllCredentialsByUserId(String processId, String userId) {
+        return forUser(userId, () -> brokerAdapter.getAllCredentialsByUserId(processId, userId));
+    }
+
+    @Override
+    public Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset) {
+        return forUser(userId, () -> brokerAdapter.getCredentialsPageByUserId(processId, userId, limit, offset));
+    }
+
+    /**
+     * The shards have no read replica of their own: the page is read from the broker of the shard, as the other calls.
+     */
+    @Override
+    public Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset) {
+        return forUser(userId, () -> brokerAdapter.getCredentialsPageByUserIdFromReadReplica(processId, userId, limit, offset));
+    }
+
+    /**
+     * Only reaches the shard of the authenticated user, the rebalancing queries every shard through the
+     * unsharded adapter instead.
+     */
+    @Override
+    public Mono<String> queryEntities(String processId, String type, String query, int limit, int offset) {
+        return forOwner(Optional.empty(), () -> brokerAdapter.queryEntities(processId, type, query, limit, offset));
+    }
+
+    @Override
+    public Mono<String> getCredentialByIdAndUserId(String processId, String credentialId, String userId) {
+        return forUser(userId, () -> brokerAdapter.getCredentialByIdAndUserId(processId, credentialId, userId));
+    }
+
+    @Override
+    public Mono<Void> deleteCredentialByIdAndUserId(String processId, String credentialId, String userId) {
+        return forUser(userId, () -> brokerAdapter.deleteCredentialByIdAndUserId(processId, credentialId, userId));
+    }
+
+    @Override
+    public Mono<String> getCredentialByCredentialTypeAndUserId(String processId, String credentialType, String userId) {
+        return forUser(userId, () -> brokerAdapter.getCredentialByCredentialTypeAndUserId(processId, credentialType, userId));
+    }
+
+    @Override
+    public Mono<String> getTransactionThatIsLinkedToACredential(String processId, String credentialId) {
+        return forOwner(Optional.empty(), () -> brokerAdapter.getTransactionThatIsLinkedToACredential(processId, credentialId));
+    }
+
+    @Override
+    public Mono<Void> updateEntityById(String processId, String id, BrokerEntity entity) {
+        return forOwner(ownerOf(entity), () -> brokerAdapter.updateEntityById(processId, id, entity));
+    }
+
+    @Override
+    public Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId) {
+        return forOwner(Optional.empty(), () -> brokerAdapter.deleteTransactionByTransactionId(processId, transactionId));
+    }
+
+    @Override
+    public Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId) {
+        return forOwner(ownerOfId(entityId),
+                () -> brokerAdapter.deleteEntityAttributeInstance(processId, entityId, attributeName, datasetId));
+    }
+
+    @Override
+    public Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return forOwner(ownerOfId(entityId), () -> brokerAdapter.appendEntityAttributes(processId, entityId, attributes));
+    }
+
+    @Override
+    public Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return forOwner(ownerOfId(entityId), () -> brokerAdapter.updateEntityAttributes(processId, entityId, attributes));
+    }
+
+    @Override
+    public Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities) {
+        return Mono.defer(() -> forOwner(singleOwner(entities.stream().map(ShardingBrokerAdapter::ownerOf)),
+                () -> brokerAdapter.batchCreateEntities(processId, entities)));
+    }
+
+    @Override
+    public Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities) {
+        return Mono.defer(() -> forOwner(singleOwner(entities.stream().map(ShardingBrokerAdapter::ownerOf)),
+                () -> brokerAdapter.batchUpsertEntities(processId, entities)));
+    }
+
+    @Override
+    public Mono<Void> batchDeleteEntities(String processId, List<String> ids) {
+        return Mono.defer(() -> forOwner(singleOwner(ids.stream().map(ShardingBrokerAdapter::ownerOfId)),
+                () -> brokerAdapter.batchDeleteEntities(processId, ids)));
+    }
+
+    private <T> Mono<T> forUser(String userId, Supplier<Mono<T>> call) {
+        BrokerShard shard = ring.nodeFor(userId);
+        log.debug("Broker call of user {} routed to shard {}", userId, shard.name());
+        return Mono.defer(call).contextWrite(BrokerShardContext.routeTo(shard));
+    }
+
+    private <T> Mono<T> forOwner(Optional<String> owner, Supplier<Mono<T>> call) {
+        return owner.map(Mono::just)
+                .orElseGet(ShardingBrokerAdapter::authenticatedUser)
+                .switchIfEmpty(Mono.error(new IllegalStateException(
+                        "The broker shard cannot be resolved: the call has no user and there is no authenticated user")))
+                .flatMap(userId -> forUser(userId, call));
+    }
+
+    private static Mono<String> authenticatedUser() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName);
+    }
+
+    /**
+     * A batch is always written by a single user, entities without an owner of their own, such as transactions,
+     * follow the owner of the rest of the batch.
+     */
+    private static Optional<String> singleOwner(Stream<Optional<String>> owners) {
+        Set<String> distinctOwners = owners.flatMap(Optional::stream).collect(Collectors.toSet());
+        if (distinctOwners.size() > 1) {
+            throw new IllegalArgumentException("A broker batch cannot span several users: " + distinctOwners);
+        }
+        return distinctOwners.stream().findFirst();
+    }
+
+    private static Optional<String> ownerOf(BrokerEntity entity) {
+        if (entity instanceof CredentialEntity credentialEntity && credentialEntity.relationshipAttribute() != null
+                && credentialEntity.relationshipAttribute().object() != null) {
+            return ownerOfId(credentialEntity.relationshipAttribute().object());
+        }
+        return ownerOfId(entity.id());
+    }
+
+    private static Optional<String> ownerOfId(String id) {
+        if (id.startsWith(USER_ENTITY_PREFIX)) {
+            return Optional.of(id.substring(USER_ENTITY_PREFIX.length()));
+        }
+        if (id.startsWith(CREDENTIAL_SUMMARY_ENTITY_PREFIX)) {
+            return Optional.of(id.substring(CREDENTIAL_SUMMARY_ENTITY_PREFIX.length()));
+        }
+        return Optional.empty();
+    }
+
+}
@@ -2,9 +2,15 @@ package es.puig.wallet.infrastructure.broker.config;
 
 import es.puig.wallet.infrastructure.appconfiguration.service.GenericConfigAdapter;
 import es.puig.wallet.infrastructure.appconfiguration.util.ConfigAdapterFactory;
+import es.puig.wallet.infrastructure.broker.util.BrokerShard;
+import es.puig.wallet.infrastructure.core.config.properties.UrlProperties;
 import jakarta.annotation.PostConstruct;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
 public class BrokerConfig {
 
@@ -12,10 +18,23 @@ public class BrokerConfig {
     private final GenericConfigAdapter genericConfigAdapter;
 
     private String externalDomain;
+    private String internalDomain;
+    private String readDomain;
+    private List<BrokerShard> shards;
+    private List<BrokerShard> retiredShards;
 
     @PostConstruct
     public void init() {
-        externalDomain = initExternalUrl();
+        externalDomain = formatUrl(brokerProperties.externalUrl());
+        // Without an internal address the broker is reached through the external one, as a read replica falls back
+        // to the internal address
+        internalDomain = isConfigured(brokerProperties.internalUrl()) ? formatUrl(brokerProperties.internalUrl()) : externalDomain;
+        readDomain = isConfigured(brokerProperties.readUrl()) ? formatUrl(brokerProperties.readUrl()) : internalDomain;
+        shards = toShards(brokerProperties.sharding().shards());
+        retiredShards = toShards(brokerProperties.sharding().retiredShards());
+        if (isShardingEnabled() && getShardVirtualNodes() <= 0) {
+            throw new IllegalStateException("broker.sharding.virtual-nodes must be positive, got " + getShardVirtualNodes());
+        }
     }
 
     public BrokerConfig(ConfigAdapterFactory configAdapterFactory, BrokerProperties brokerProperties) {
@@ -27,19 +46,110 @@ public class BrokerConfig {
         return brokerProperties.provider();
     }
 
+    /**
+     * Address the broker is publicly reachable at. The wallet does not send its traffic to it, unless no internal
+     * address is configured.
+     */
     public String getExternalUrl() {
         return externalDomain;
     }
 
-    private String initExternalUrl() {
+    /**
+     * Address the wallet sends its broker traffic to.
+     */
+    public String getInternalUrl() {
+        return internalDomain;
+    }
+
+    /**
+     * Address of the paged credential listing: the read replica when configured, the internal address otherwise.
+     * The other queries always go to the internal address. Not used with sharding, the listing is then read from the
+     * shard of the user.
+     */
+    public String getReadUrl() {
+        return readDomain;
+    }
+
+    public boolean isShardingEnabled() {
+        return brokerProperties.sharding().enabled();
+    }
+
+    public int getShardVirtualNodes() {
+        return brokerProperties.sharding().virtualNodes();
+    }
+
+    public List<BrokerShard> getShards() {
+        return shards;
+    }
+
+    public List<BrokerShard> getRetiredShards() {
+        return retiredShards;
+    }
+
+    public boolean isRebalanceOnStartup() {
+        return brokerProperties.sharding().rebalanceOnStartup();
+    }
+
+    private List<BrokerShard> toShards(List<BrokerProperties.BrokerShardProperties> shardProperties) {
+        return shardProperties.stream()
+                .map(shard -> new BrokerShard(shard.name(),
+                        shard.url() != null && isConfigured(shard.url()) ? formatUrl(shard.url()) + pathOf(shard.url()) : internalDomain,
+                        shard.tenant()))
+                .toList();
+    }
+
+    private boolean isConfigured(UrlProperties url) {
+        return url.domain() != null && !url.domain().isBlank();
+    }
+
+    /**
+     * Only the shards may sit behind a path prefix, such as the route of a gateway.
+     */
+    private String pathOf(UrlProperties url) {
+        return url.path() == null || url.path().isBlank() ? "" : url.path();
+    }
+
+    private String formatUrl(UrlProperties url) {
         return String.format("%s://%s:%d",
-                brokerProperties.externalUrl().scheme(),
-                genericConfigAdapter.getConfiguration(brokerProperties.externalUrl().domain()),
-                brokerProperties.externalUrl().port());
+                url.scheme(),
+                genericConfigAdapter.getConfiguration(url.domain()),
+                url.port());
     }
 
     public String getEntitiesPath() {
         return brokerProperties.paths().entities();
     }
 
+    public String getEntityOperationsPath() {
+        return brokerProperties.paths().entityOperations();
+    }
+
+    public boolean isCacheEnabled() {
+        return brokerProperties.cache().enabled();
+    }
+
+    public long getCacheMaximumSize() {
+        return brokerProperties.cache().maximumSize();
+    }
+
+    public Duration getCacheTtl() {
+        return brokerProperties.cache().ttl();
+    }
+
+    public Duration getKnownUsersTtl() {
+        return brokerProperties.cache().knownUsersTtl();
+    }
+
+    public Path getEmbeddedDirectory() {
+        return Path.of(brokerProperties.embedded().directory());
+    }
+
+    public boolean isEmbeddedSyncWrites() {
+        return brokerProperties.embedded().syncWrites();
+    }
+
+    public int getEmbeddedCompactionThreshold() {
+        return brokerProperties.embedded().compactionThreshold();
+    }
+
 }
@@ -5,6 +5,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -13,23 +15,108 @@ import java.util.Optional;
  * @param provider    - context broker provider
  * @param externalUrl - domain that the broker is externally available. Used for the hashlink.
  * @param internalUrl - internal address of the broker, used to connect from within the connector
+ * @param readUrl     - optional read replica of the broker, used for the paged credential listing instead of the internal address
  * @param paths       - ngis-ld paths to be used when connecting the broker
+ * @param cache       - local cache of the credential queries sent to the broker
+ * @param sharding    - distribution of the users across several brokers or NGSI-LD tenants
+ * @param embedded    - local store of the embedded provider, used instead of a broker
  */
 @ConfigurationProperties(prefix = "broker")
 public record BrokerProperties(String provider, @NestedConfigurationProperty UrlProperties externalUrl,
                                @NestedConfigurationProperty UrlProperties internalUrl,
-                               @NestedConfigurationProperty BrokerPathProperties paths) {
+                               @NestedConfigurationProperty UrlProperties readUrl,
+                               @NestedConfigurationProperty BrokerPathProperties paths,
+                               @NestedConfigurationProperty BrokerCacheProperties cache,
+                               @NestedConfigurationProperty BrokerShardingProperties sharding,
+                               @NestedConfigurationProperty BrokerEmbeddedProperties embedded) {
 
     @ConstructorBinding
-    public BrokerProperties(String provider, UrlProperties externalUrl, UrlProperties internalUrl, BrokerPathProperties paths) {
+    public BrokerProperties(String provider, UrlProperties externalUrl, UrlProperties internalUrl, UrlProperties readUrl,
+                            BrokerPathProperties paths, BrokerCacheProperties cache, BrokerShardingProperties sharding,
+                            BrokerEmbeddedProperties embedded) {
         this.provider = provider;
         this.externalUrl = Optional.ofNullable(externalUrl).orElse(new UrlProperties(null, null, 0, null));
         this.internalUrl = Optional.ofNullable(internalUrl).orElse(new UrlProperties(null, null, 0, null));
-        this.paths = Optional.ofNullable(paths).orElse(new BrokerPathProperties(null));
+        this.readUrl = Optional.ofNullable(readUrl).orElse(new UrlProperties(null, null, 0, null));
+        this.paths = Optional.ofNullable(paths).orElse(new BrokerPathProperties(null, null));
+        this.cache = Optional.ofNullable(cache).orElse(new BrokerCacheProperties(null, null, null, null));
+        this.sharding = Optional.ofNullable(sharding).orElse(new BrokerShardingProperties(null, null, null, null, null));
+        this.embedded = Optional.ofNullable(embedded).orElse(new BrokerEmbeddedProperties(null, null, null));
     }
 
-    public record BrokerPathProperties(String entities) {
+    /**
+     * @param entities         - path of the NGSI-LD entities endpoint
+     * @param entityOperations - path of the NGSI-LD batch entity operations endpoint
+     */
+    public record BrokerPathProperties(String entities, String entityOperations) {
+
+        public BrokerPathProperties(String entities, String entityOperations) {
+            this.entities = entities;
+            this.entityOperations = Optional.ofNullable(entityOperations).orElse("/ngsi-ld/v1/entityOperations");
+        }
+
     }
 
-}
+    /**
+     * @param enabled       - whether the credential queries of each user are cached
+     * @param maximumSize   - maximum number of users whose queries are cached
+     * @param ttl           - time a cached query is served before asking the broker again
+     * @param knownUsersTtl - time a user known to be stored in the broker is remembered
+     */
+    public record BrokerCacheProperties(Boolean enabled, Long maximumSize, Duration ttl, Duration knownUsersTtl) {
 
+        public BrokerCacheProperties(Boolean enabled, Long maximumSize, Duration ttl, Duration knownUsersTtl) {
+            this.enabled = Optional.ofNullable(enabled).orElse(true);
+            this.maximumSize = Optional.ofNullable(maximumSize).orElse(10_000L);
+            this.ttl = Optional.ofNullable(ttl).orElse(Duration.ofSeconds(30));
+            this.knownUsersTtl = Optional.ofNullable(knownUsersTtl).orElse(Duration.ofHours(1));
+        }
+
+    }
+
+    /**
+     * @param enabled            - whether the users are distributed across the configured shards
+     * @param virtualNodes       - points of each shard on the consistent hash ring, more points spread the users more evenly
+     * @param shards             - shards the users are routed to
+     * @param retiredShards      - shards that no longer receive users and whose users are moved by the rebalancing
+     * @param rebalanceOnStartup - whether the users stored in a shard other than their own are moved on startup
+     */
+    public record BrokerShardingProperties(Boolean enabled, Integer virtualNodes, List<BrokerShardProperties> shards,
+                                           List<BrokerShardProperties> retiredShards, Boolean rebalanceOnStartup) {
+
+        public BrokerShardingProperties(Boolean enabled, Integer virtualNodes, List<BrokerShardProperties> shards,
+                                        List<BrokerShardProperties> retiredShards, Boolean rebalanceOnStartup) {
+            this.enabled = Optional.ofNullable(enabled).orElse(false);
+            this.virtualNodes = Optional.ofNullable(virtualNodes).orElse(128);
+            this.shards = Optional.ofNullable(shards).orElse(List.of());
+            this.retiredShards = Optional.ofNullable(retiredShards).orElse(List.of());
+            this.rebalanceOnStartup = Optional.ofNullable(rebalanceOnStartup).orElse(false);
+        }
+
+    }
+
+    /**
+     * @param name   - stable name of the shard, it is the input of the consistent hash so it must not be changed
+     * @param url    - address of the broker of the shard, with its path prefix if any, the internal url of the broker when not set
+     * @param tenant - NGSI-LD tenant of the shard, sent in the NGSILD-Tenant header
+     */
+    public record BrokerShardProperties(String name, @NestedConfigurationProperty UrlProperties url, String tenant) {
+    }
+
+    /**
+     * @param directory           - directory of the snapshot and journal files of the embedded store
+     * @param syncWrites          - whether every write is flushed to the disk before it completes, otherwise a write
+     *                              survives a crash of the wallet but not of the host
+     * @param compactionThreshold - writes journaled before they are compacted into a new snapshot
+     */
+    public record BrokerEmbeddedProperties(String directory, Boolean syncWrites, Integer compactionThreshold) {
+
+        public BrokerEmbeddedProperties(String directory, Boolean syncWrites, Integer compactionThreshold) {
+            this.directory = Optional.ofNullable(directory).orElse("data/broker");
+            this.syncWrites = Optional.ofNullable(syncWrites).orElse(true);
+            this.compactionThreshold = Optional.ofNullable(compactionThreshold).orElse(10_000);
+        }
+
+    }
+
+}
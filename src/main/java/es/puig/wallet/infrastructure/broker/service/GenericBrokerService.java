@@ -1,21 +1,41 @@
 package es.puig.wallet.infrastructure.broker.service;
 
+import es.puig.wallet.domain.model.BrokerEntity;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
 public interface GenericBrokerService {
 
-    Mono<Void> postEntity(String processId, String requestBody);
+    Mono<Void> postEntity(String processId, BrokerEntity entity);
+    Mono<Void> upsertEntity(String processId, BrokerEntity entity);
 
     Mono<Optional<String>> getEntityById(String processId, String id);
+    // Credential list queries project the entities to CREDENTIAL_SUMMARY_ATTRIBUTES, leaving the signed payloads out
     Mono<String> getAllCredentialsByUserId(String processId, String userId);
+    Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset);
+    // Same page from the read replica, when one is configured; it may lag behind, so it never feeds a write
+    Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset);
+    // Raw page of the entities of a type, optionally filtered by an NGSI-LD query, as stored in the broker
+    Mono<String> queryEntities(String processId, String type, String query, int limit, int offset);
     Mono<String> getCredentialByIdAndUserId(String processId, String credentialId, String  userId);
     Mono<Void> deleteCredentialByIdAndUserId(String processId, String credentialId, String  userId);
     Mono<String> getCredentialByCredentialTypeAndUserId(String processId, String credentialType, String  userId);
     Mono<String> getTransactionThatIsLinkedToACredential(String processId, String credentialId);
-    Mono<Void> updateEntityById(String processId, String id, String requestBody);
+    Mono<Void> updateEntityById(String processId, String id, BrokerEntity entity);
     Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId);
+    // Removes the instance of a multi-attribute identified by its datasetId; a missing instance is not an error
+    Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId);
+    // Attribute-level writes sending only the given attributes, keyed by attribute name: append adds or overwrites
+    // them, update only changes the attributes the entity already has
+    Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes);
+    Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes);
+
+    Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities);
+    Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities);
+    Mono<Void> batchDeleteEntities(String processId, List<String> ids);
 
 }
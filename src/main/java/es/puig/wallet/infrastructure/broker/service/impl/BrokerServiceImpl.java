@@ -1,11 +1,14 @@
 package es.puig.wallet.infrastructure.broker.service.impl;
 
 import es.puig.wallet.application.port.BrokerService;
+import es.puig.wallet.domain.model.BrokerEntity;
 import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
 import es.puig.wallet.infrastructure.broker.util.BrokerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,20 +20,26 @@ public class BrokerServiceImpl implements BrokerService {
         this.brokerAdapter = brokerFactory.getBrokerAdapter();
     }
 
-    public Mono<Void> postEntity(String processId, String requestBody) {
-        return brokerAdapter.postEntity(processId, requestBody);
+    public Mono<Void> postEntity(String processId, BrokerEntity entity) {
+        return brokerAdapter.postEntity(processId, entity);
     }
 
     public Mono<Optional<String>> getEntityById(String processId, String id) {
         return brokerAdapter.getEntityById(processId, id);
     }
 
-    public Mono<Void> updateEntity(String processId, String id, String requestBody) {
-        return brokerAdapter.updateEntityById(processId, id, requestBody);
+    public Mono<Void> updateEntity(String processId, String id, BrokerEntity entity) {
+        return brokerAdapter.updateEntityById(processId, id, entity);
     }
     public Mono<String> getAllCredentialsByUserId(String processId, String userId){
         return brokerAdapter.getAllCredentialsByUserId(processId,userId);
     }
+    public Mono<String> getCredentialsPageByUserId(String processId, String userId, int limit, int offset) {
+        return brokerAdapter.getCredentialsPageByUserId(processId, userId, limit, offset);
+    }
+    public Mono<String> getCredentialsPageByUserIdFromReadReplica(String processId, String userId, int limit, int offset) {
+        return brokerAdapter.getCredentialsPageByUserIdFromReadReplica(processId, userId, limit, offset);
+    }
     public Mono<String> getCredentialByIdAndUserId(String processId, String  userId, String credentialId){
         return brokerAdapter.getCredentialByIdAndUserId(processId,userId,credentialId);
     }
@@ -46,5 +55,26 @@ public class BrokerServiceImpl implements BrokerService {
     public Mono<Void> deleteTransactionByTransactionId(String processId, String transactionId){
         return brokerAdapter.deleteTransactionByTransactionId(processId,transactionId);
     }
+    public Mono<Void> deleteEntityAttributeInstance(String processId, String entityId, String attributeName, String datasetId) {
+        return brokerAdapter.deleteEntityAttributeInstance(processId, entityId, attributeName, datasetId);
+    }
+    public Mono<Void> appendEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return brokerAdapter.appendEntityAttributes(processId, entityId, attributes);
+    }
+    public Mono<Void> updateEntityAttributes(String processId, String entityId, Map<String, ?> attributes) {
+        return brokerAdapter.updateEntityAttributes(processId, entityId, attributes);
+    }
+    public Mono<Void> upsertEntity(String processId, BrokerEntity entity) {
+        return brokerAdapter.upsertEntity(processId, entity);
+    }
+    public Mono<Void> batchCreateEntities(String processId, List<? extends BrokerEntity> entities) {
+        return brokerAdapter.batchCreateEntities(processId, entities);
+    }
+    public Mono<Void> batchUpsertEntities(String processId, List<? extends BrokerEntity> entities) {
+        return brokerAdapter.batchUpsertEntities(processId, entities);
+    }
+    public Mono<Void> batchDeleteEntities(String processId, List<String> ids) {
+        return brokerAdapter.batchDeleteEntities(processId, ids);
+    }
     
 }
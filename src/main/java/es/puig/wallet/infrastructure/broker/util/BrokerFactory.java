@@ -1,12 +1,22 @@
 package es.puig.wallet.infrastructure.broker.util;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.infrastructure.broker.adapter.CachingBrokerAdapter;
+import es.puig.wallet.infrastructure.broker.adapter.EmbeddedBrokerAdapter;
+import es.puig.wallet.infrastructure.broker.adapter.InMemoryBrokerAdapter;
 import es.puig.wallet.infrastructure.broker.adapter.OrionLdAdapter;
 import es.puig.wallet.infrastructure.broker.adapter.ScorpioAdapter;
+import es.puig.wallet.infrastructure.broker.adapter.ShardingBrokerAdapter;
 import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
 import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 @Component
 @RequiredArgsConstructor
 public class BrokerFactory {
@@ -14,13 +24,58 @@ public class BrokerFactory {
     private final BrokerConfig brokerConfig;
     private final ScorpioAdapter scorpioAdapter;
     private final OrionLdAdapter orionLdAdapter;
+    private final InMemoryBrokerAdapter inMemoryBrokerAdapter;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
 
-    public GenericBrokerService getBrokerAdapter() {
+    private EmbeddedBrokerAdapter embeddedBrokerAdapter;
+
+    /**
+     * The raw adapter of the configured provider, without the sharding and cache layers.
+     */
+    public GenericBrokerService getProviderAdapter() {
         return switch (brokerConfig.getProvider()) {
             case "scorpio" -> scorpioAdapter;
             case "orion-ld" -> orionLdAdapter;
+            case "in-memory" -> inMemoryBrokerAdapter;
+            case "embedded" -> getEmbeddedBrokerAdapter();
             default -> throw new IllegalArgumentException("Invalid IAM provider: " + brokerConfig.getProvider());
         };
     }
 
+    public GenericBrokerService getBrokerAdapter() {
+        GenericBrokerService brokerAdapter = getProviderAdapter();
+        if (brokerConfig.isShardingEnabled()) {
+            brokerAdapter = new ShardingBrokerAdapter(brokerAdapter, brokerConfig.getShards(), brokerConfig.getShardVirtualNodes());
+        }
+        if (brokerConfig.isCacheEnabled()) {
+            return new CachingBrokerAdapter(brokerAdapter, brokerConfig, meterRegistry);
+        }
+        return brokerAdapter;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (embeddedBrokerAdapter != null) {
+            embeddedBrokerAdapter.close();
+        }
+    }
+
+    /**
+     * The embedded store is only opened, and its files only created, when it is the configured provider.
+     */
+    private synchronized EmbeddedBrokerAdapter getEmbeddedBrokerAdapter() {
+        if (embeddedBrokerAdapter == null) {
+            EmbeddedBrokerAdapter adapter = new EmbeddedBrokerAdapter(objectMapper, brokerConfig.getEmbeddedDirectory(),
+                    brokerConfig.isEmbeddedSyncWrites(), brokerConfig.getEmbeddedCompactionThreshold());
+            try {
+                adapter.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error opening the embedded broker at " + brokerConfig.getEmbeddedDirectory(), e);
+            }
+            embeddedBrokerAdapter = adapter;
+        }
+        return embeddedBrokerAdapter;
+    }
+
 }
@@ -0,0 +1,11 @@
+package es.puig.wallet.infrastructure.broker.util;
+
+/**
+ * A broker, or a tenant of a broker, holding the entities of part of the wallet users.
+ *
+ * @param name   - stable name of the shard, used to place it on the consistent hash ring
+ * @param url    - address of the broker of the shard, with the path prefix it is reached behind if any
+ * @param tenant - NGSI-LD tenant of the shard, null for the default tenant
+ */
+public record BrokerShard(String name, String url, String tenant) {
+}
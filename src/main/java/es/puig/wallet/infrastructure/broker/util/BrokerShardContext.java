@@ -0,0 +1,53 @@
+package es.puig.wallet.infrastructure.broker.util;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.net.URI;
+import java.util.function.Function;
+
+/**
+ * Carries the shard a broker call is routed to in the Reactor context, so the broker adapters build their requests
+ * as usual and the exchange filter of their client sends them to the broker and tenant of the shard.
+ */
+public final class BrokerShardContext {
+
+    public static final String NGSILD_TENANT_HEADER = "NGSILD-Tenant";
+
+    private BrokerShardContext() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static Function<Context, Context> routeTo(BrokerShard shard) {
+        return context -> context.put(BrokerShard.class, shard);
+    }
+
+    /**
+     * Rewrites the requests made within {@link #routeTo(BrokerShard)} to the address of the shard, after the path
+     * prefix it may have, and adds its tenant header. Requests without a shard in their context are left untouched.
+     */
+    public static ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> Mono.deferContextual(context -> next.exchange(
+                context.<BrokerShard>getOrEmpty(BrokerShard.class)
+                        .map(shard -> toShard(request, shard))
+                        .orElse(request)));
+    }
+
+    private static ClientRequest toShard(ClientRequest request, BrokerShard shard) {
+        // The broker addresses the requests are built from carry no path, the request path is the NGSI-LD one
+        URI url = UriComponentsBuilder.fromUriString(shard.url())
+                .path(request.url().getRawPath())
+                .query(request.url().getRawQuery())
+                .build(true)
+                .toUri();
+        ClientRequest.Builder builder = ClientRequest.from(request).url(url);
+        if (shard.tenant() != null) {
+            builder.header(NGSILD_TENANT_HEADER, shard.tenant());
+        }
+        return builder.build();
+    }
+
+}
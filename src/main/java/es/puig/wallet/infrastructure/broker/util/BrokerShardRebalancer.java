@@ -0,0 +1,179 @@
+package es.puig.wallet.infrastructure.broker.util;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.exception.FailedDeserializingException;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+
+/**
+ * Moves the users stored in a shard other than the one the consistent hash assigns them to, which happens to part
+ * of the users when a shard is added and to all the users of a retired shard.
+ * <p>
+ * Every shard, retired ones included, is scanned for its users. The user entity, credential summary, credentials, the
+ * transactions linked to them and the encrypted keys of the user are upserted in their new shard as stored, and only
+ * then deleted from the old one, so an interrupted rebalancing can simply be run again. Users are routed to their new
+ * shard as soon as the shards are reconfigured, so their credentials are not listed until they have been moved.
+ */
+@Slf4j
+@Component
+public class BrokerShardRebalancer {
+
+    private final BrokerConfig brokerConfig;
+    private final BrokerFactory brokerFactory;
+    private final ObjectMapper objectMapper;
+
+    public BrokerShardRebalancer(BrokerConfig brokerConfig, BrokerFactory brokerFactory, ObjectMapper objectMapper) {
+        this.brokerConfig = brokerConfig;
+        this.brokerFactory = brokerFactory;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (brokerConfig.isShardingEnabled() && brokerConfig.isRebalanceOnStartup()) {
+            rebalance(UUID.randomUUID().toString())
+                    .count()
+                    .subscribe(
+                            moved -> log.info("Broker rebalancing completed, {} users moved", moved),
+                            error -> log.error("Broker rebalancing failed", error));
+        }
+    }
+
+    /**
+     * Emits the id of every user moved to its shard.
+     */
+    public Flux<String> rebalance(String processId) {
+        return Flux.defer(() -> {
+            GenericBrokerService brokerAdapter = brokerFactory.getProviderAdapter();
+            ConsistentHashRing<BrokerShard> ring = new ConsistentHashRing<>(brokerConfig.getShards(), BrokerShard::name,
+                    brokerConfig.getShardVirtualNodes());
+            return Flux.fromStream(Stream.concat(brokerConfig.getShards().stream(), brokerConfig.getRetiredShards().stream()))
+                    .concatMap(shard -> queryAll(brokerAdapter, shard, processId, WALLET_USER_TYPE, null)
+                            .map(user -> user.get("id").asText().substring(USER_ENTITY_PREFIX.length()))
+                            .filter(userId -> !ring.nodeFor(userId).name().equals(shard.name()))
+                            // The users of the shard are listed before moving any, moving them shifts the pages
+                            .collectList()
+                            .flatMapMany(Flux::fromIterable)
+                            .concatMap(userId -> move(brokerAdapter, processId, userId, shard, ring.nodeFor(userId))
+                                    .thenReturn(userId)));
+        });
+    }
+
+    private Mono<Void> move(GenericBrokerService brokerAdapter, String processId, String userId, BrokerShard source,
+                            BrokerShard target) {
+        String userEntityId = USER_ENTITY_PREFIX + userId;
+        Mono<List<JsonNode>> userEntities = brokerAdapter.getEntityById(processId, userEntityId)
+                .zipWith(brokerAdapter.getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId))
+                .contextWrite(BrokerShardContext.routeTo(source))
+                .flatMap(tuple -> Flux.fromStream(Stream.of(tuple.getT1(), tuple.getT2()).flatMap(Optional::stream))
+                        .flatMap(this::readTree)
+                        .collectList());
+        Mono<List<JsonNode>> credentialsAndTransactions = queryAll(brokerAdapter, source, processId, CREDENTIAL_TYPE, "belongsTo==" + userEntityId)
+                .collectList()
+                .flatMap(credentials -> Flux.fromIterable(credentials)
+                        .concatMap(credential -> queryAll(brokerAdapter, source, processId, TRANSACTION_TYPE,
+                                "linkedTo==" + credential.get("id").asText()))
+                        .collectList()
+                        .map(transactions -> {
+                            List<JsonNode> entities = new ArrayList<>(credentials);
+                            entities.addAll(transactions);
+                            return entities;
+                        }));
+        // Written by the envelope encryption of the vault, the keys would not be found once the user is moved
+        Mono<List<JsonNode>> encryptedKeys = queryAll(brokerAdapter, source, processId, ENCRYPTED_KEY_TYPE, "belongsTo==" + userEntityId)
+                .collectList();
+        return Mono.zip(userEntities, credentialsAndTransactions, encryptedKeys)
+                .map(tuple -> {
+                    List<StoredEntity> entities = new ArrayList<>();
+                    tuple.getT1().forEach(entity -> entities.add(new StoredEntity(entity)));
+                    tuple.getT2().forEach(entity -> entities.add(new StoredEntity(entity)));
+                    tuple.getT3().forEach(entity -> entities.add(new StoredEntity(entity)));
+                    return entities;
+                })
+                .flatMap(entities -> Flux.fromIterable(entities)
+                        .buffer(CREDENTIALS_PAGE_SIZE)
+                        .concatMap(batch -> brokerAdapter.batchUpsertEntities(processId, batch)
+                                .contextWrite(BrokerShardContext.routeTo(target)))
+                        .thenMany(Flux.fromIterable(entities)
+                                .map(StoredEntity::id)
+                                .buffer(CREDENTIALS_PAGE_SIZE)
+                                .concatMap(ids -> brokerAdapter.batchDeleteEntities(processId, ids)
+                                        .contextWrite(BrokerShardContext.routeTo(source))))
+                        .then(Mono.fromRunnable(() -> log.info("User {} moved from broker shard {} to {} with {} entities",
+                                userId, source.name(), target.name(), entities.size()))));
+    }
+
+    private Flux<JsonNode> queryAll(GenericBrokerService brokerAdapter, BrokerShard shard, String processId, String type,
+                                    String query) {
+        return queryPage(brokerAdapter, shard, processId, type, query, 0)
+                .expand(page -> page.entities().size() < CREDENTIALS_PAGE_SIZE
+                        ? Mono.empty()
+                        : queryPage(brokerAdapter, shard, processId, type, query, page.offset() + CREDENTIALS_PAGE_SIZE))
+                .concatMapIterable(Page::entities);
+    }
+
+    private Mono<Page> queryPage(GenericBrokerService brokerAdapter, BrokerShard shard, String processId, String type,
+                                 String query, int offset) {
+        return brokerAdapter.queryEntities(processId, type, query, CREDENTIALS_PAGE_SIZE, offset)
+                .contextWrite(BrokerShardContext.routeTo(shard))
+                .flatMap(this::readTree)
+                .map(entities -> {
+                    List<JsonNode> page = new ArrayList<>();
+                    entities.forEach(page::add);
+                    return new Page(offset, page);
+                });
+    }
+
+    private Mono<JsonNode> readTree(String json) {
+        try {
+            return Mono.just(objectMapper.readTree(json));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new FailedDeserializingException("Error reading broker entities: " + e.getMessage()));
+        }
+    }
+
+    private record Page(int offset, List<JsonNode> entities) {
+    }
+
+    /**
+     * An entity written back as it was read from the broker, keeping every attribute.
+     */
+    record StoredEntity(JsonNode json) implements BrokerEntity {
+
+        @JsonValue
+        @Override
+        public JsonNode json() {
+            return json;
+        }
+
+        @Override
+        public String id() {
+            return json.get("id").asText();
+        }
+
+        @Override
+        public String type() {
+            return json.get("type").asText();
+        }
+
+    }
+
+}
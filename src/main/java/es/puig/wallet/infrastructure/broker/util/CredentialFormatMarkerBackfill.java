@@ -0,0 +1,169 @@
+package es.puig.wallet.infrastructure.broker.util;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.exception.FailedDeserializingException;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.domain.model.CredentialAttribute;
+import es.puig.wallet.domain.model.EntityAttribute;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+
+/**
+ * Adds the {@code has_jwt_vc} and {@code has_cwt_vc} markers to the credentials stored before they were written next
+ * to each signed format. The credential lists are projected to {@code CREDENTIAL_SUMMARY_ATTRIBUTES}, which leaves the
+ * signed payloads out, so without their markers those credentials are listed in JSON only.
+ * <p>
+ * Runs once on startup for each broker, or each shard, retired ones included: the broker is marked as done with an
+ * entity of its own, so the later startups only read it. The credential summaries of the users owning an updated
+ * credential are marked as not complete, as they may have been built without the formats, and are rebuilt by the
+ * next listing. An interrupted run simply starts again on the next startup.
+ */
+@Slf4j
+@Component
+public class CredentialFormatMarkerBackfill {
+
+    static final String BACKFILL_ENTITY_ID = "urn:entities:migration:credentialFormatMarkers";
+    static final String BACKFILL_ENTITY_TYPE = "Migration";
+    private static final CredentialAttribute FORMAT_AVAILABLE = new CredentialAttribute(PROPERTY_TYPE, true);
+
+    private final BrokerConfig brokerConfig;
+    private final BrokerFactory brokerFactory;
+    private final ObjectMapper objectMapper;
+
+    public CredentialFormatMarkerBackfill(BrokerConfig brokerConfig, BrokerFactory brokerFactory, ObjectMapper objectMapper) {
+        this.brokerConfig = brokerConfig;
+        this.brokerFactory = brokerFactory;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        backfill(UUID.randomUUID().toString())
+                .subscribe(
+                        updated -> log.info("Credential format markers backfilled, {} credentials updated", updated),
+                        error -> log.error("Credential format marker backfill failed", error));
+    }
+
+    /**
+     * Emits the number of credentials updated.
+     */
+    public Mono<Long> backfill(String processId) {
+        return Mono.defer(() -> {
+            GenericBrokerService brokerAdapter = brokerFactory.getProviderAdapter();
+            List<Function<Context, Context>> brokers = brokerConfig.isShardingEnabled()
+                    ? Stream.concat(brokerConfig.getShards().stream(), brokerConfig.getRetiredShards().stream())
+                            .map(BrokerShardContext::routeTo)
+                            .toList()
+                    : List.of(Function.identity());
+            return Flux.fromIterable(brokers)
+                    .concatMap(routing -> backfillBroker(brokerAdapter, processId).contextWrite(routing))
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    private Mono<Long> backfillBroker(GenericBrokerService brokerAdapter, String processId) {
+        return brokerAdapter.getEntityById(processId, BACKFILL_ENTITY_ID)
+                .flatMap(done -> done.isPresent()
+                        ? Mono.just(0L)
+                        : backfillPage(brokerAdapter, processId, 0)
+                                .expand(page -> page.size() < CREDENTIALS_PAGE_SIZE
+                                        ? Mono.empty()
+                                        : backfillPage(brokerAdapter, processId, page.offset() + CREDENTIALS_PAGE_SIZE))
+                                .reduce(0L, (updated, page) -> updated + page.updated())
+                                .flatMap(updated -> brokerAdapter.upsertEntity(processId, new BackfillEntity(BACKFILL_ENTITY_ID, BACKFILL_ENTITY_TYPE))
+                                        .thenReturn(updated)));
+    }
+
+    /**
+     * Adding attributes leaves the credentials in place, so the pages are not shifted by the updates.
+     */
+    private Mono<Page> backfillPage(GenericBrokerService brokerAdapter, String processId, int offset) {
+        return brokerAdapter.queryEntities(processId, CREDENTIAL_TYPE, null, CREDENTIALS_PAGE_SIZE, offset)
+                .flatMap(this::readTree)
+                .flatMap(credentials -> {
+                    List<MarkerUpdate> updates = new ArrayList<>();
+                    credentials.forEach(credential -> {
+                        Map<String, CredentialAttribute> markers = missingMarkers(credential);
+                        if (!markers.isEmpty()) {
+                            updates.add(new MarkerUpdate(credential.get("id").asText(),
+                                    credential.path("belongsTo").path("object").asText(), markers));
+                        }
+                    });
+                    Set<String> owners = new LinkedHashSet<>();
+                    updates.forEach(update -> owners.add(update.owner()));
+                    return Flux.fromIterable(updates)
+                            .concatMap(update -> brokerAdapter.appendEntityAttributes(processId, update.id(), update.markers()))
+                            .thenMany(Flux.fromIterable(owners)
+                                    .filter(owner -> owner.startsWith(USER_ENTITY_PREFIX))
+                                    .concatMap(owner -> markSummaryIncomplete(brokerAdapter, processId,
+                                            owner.substring(USER_ENTITY_PREFIX.length()))))
+                            .then(Mono.just(new Page(offset, credentials.size(), updates.size())));
+                });
+    }
+
+    private Map<String, CredentialAttribute> missingMarkers(JsonNode credential) {
+        Map<String, CredentialAttribute> markers = new HashMap<>();
+        if (credential.has(JWT_VC) && !credential.has(HAS_JWT_VC)) {
+            markers.put(HAS_JWT_VC, FORMAT_AVAILABLE);
+        }
+        if (credential.has(VC_CWT) && !credential.has(HAS_CWT_VC)) {
+            markers.put(HAS_CWT_VC, FORMAT_AVAILABLE);
+        }
+        return markers;
+    }
+
+    /**
+     * A user without a credential summary has nothing to rebuild, the failed update is ignored.
+     */
+    private Mono<Void> markSummaryIncomplete(GenericBrokerService brokerAdapter, String processId, String userId) {
+        return brokerAdapter.updateEntityAttributes(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId,
+                        Map.of(COMPLETE, new EntityAttribute<>(PROPERTY_TYPE, false)))
+                .onErrorResume(e -> {
+                    log.debug("ProcessId: {} - Credential summary of userId: {} not marked as not complete: {}", processId, userId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<JsonNode> readTree(String json) {
+        try {
+            return Mono.just(objectMapper.readTree(json));
+        } catch (JsonProcessingException e) {
+            return Mono.error(new FailedDeserializingException("Error reading broker entities: " + e.getMessage()));
+        }
+    }
+
+    private record Page(int offset, int size, int updated) {
+    }
+
+    private record MarkerUpdate(String id, String owner, Map<String, CredentialAttribute> markers) {
+    }
+
+    /**
+     * Marks a broker whose credentials have all been given their format markers.
+     */
+    record BackfillEntity(@JsonProperty("id") String id, @JsonProperty("type") String type) implements BrokerEntity {
+    }
+
+}
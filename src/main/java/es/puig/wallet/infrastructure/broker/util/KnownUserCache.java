@@ -0,0 +1,40 @@
+package es.puig.wallet.infrastructure.broker.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the users whose entity has already been stored in the broker, so the user entity is only sent
+ * along with the first credential a user stores instead of with every write.
+ * <p>
+ * Forgetting a user is always safe: the user entity is written with an upsert, so sending it again is idempotent.
+ */
+@Component
+public class KnownUserCache {
+
+    private static final String CACHE_NAME = "broker.known-users";
+
+    private final Cache<String, Boolean> knownUsers;
+
+    public KnownUserCache(BrokerConfig brokerConfig, MeterRegistry meterRegistry) {
+        this.knownUsers = Caffeine.newBuilder()
+                .maximumSize(brokerConfig.getCacheMaximumSize())
+                .expireAfterAccess(brokerConfig.getKnownUsersTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, knownUsers, CACHE_NAME);
+    }
+
+    public boolean isKnown(String userId) {
+        return knownUsers.getIfPresent(userId) != null;
+    }
+
+    public void markKnown(String userId) {
+        knownUsers.put(userId, Boolean.TRUE);
+    }
+
+}
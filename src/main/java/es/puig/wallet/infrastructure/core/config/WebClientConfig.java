@@ -1,31 +0,0 @@
-package es.puig.wallet.infrastructure.core.config;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.resources.ConnectionProvider;
-
-import java.time.Duration;
-
-@Configuration
-public class WebClientConfig {
-
-    private static final ConnectionProvider connectionProvider = ConnectionProvider.builder("custom")
-            .maxConnections(500)
-            .maxIdleTime(Duration.ofSeconds(50))
-            .maxLifeTime(Duration.ofSeconds(300))
-            .evictInBackground(Duration.ofSeconds(80))
-            .build();
-
-    @Bean
-    public WebClient centralizedWebClient() {
-        return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(
-                        HttpClient.create(connectionProvider).followRedirect(false))
-                )
-                .build();
-    }
-
-}
@@ -1,6 +1,10 @@
 package es.puig.wallet.infrastructure.core.config;
 
 import es.puig.wallet.application.port.AppConfig;
+import es.puig.wallet.infrastructure.core.config.properties.JwtDecoderProperties;
+import es.puig.wallet.infrastructure.core.util.CachingJwtDecoder;
+import es.puig.wallet.infrastructure.core.util.JwkSetCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
@@ -23,15 +27,22 @@ import static org.springframework.security.config.Customizer.withDefaults;
 @Slf4j
 public class WebSecurityConfig {
     private final AppConfig appConfig;
+    private final JwkSetCache jwkSetCache;
+    private final JwtDecoderProperties jwtDecoderProperties;
+    private final MeterRegistry meterRegistry;
     @Bean
     public ReactiveJwtDecoder jwtDecoder() {
+        // The keys come from the JWK set kept in memory and refreshed in the background, not from the auth server
         NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder
-                .withJwkSetUri(appConfig.getJwtDecoder())
+                .withJwkSource(jwkSetCache::getKeys)
                 .jwsAlgorithm(SignatureAlgorithm.RS256)
                 .build();
         jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(appConfig.getAuthServerExternalUrl()));
         log.debug(appConfig.getJwtDecoder());
         log.debug(appConfig.getAuthServerExternalUrl());
+        if (Boolean.TRUE.equals(jwtDecoderProperties.tokenCacheEnabled())) {
+            return new CachingJwtDecoder(jwtDecoder, jwtDecoderProperties.tokenCacheMaximumSize(), meterRegistry);
+        }
         return jwtDecoder;
     }
     @Bean
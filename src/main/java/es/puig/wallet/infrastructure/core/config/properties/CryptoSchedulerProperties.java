@@ -0,0 +1,26 @@
+package es.puig.wallet.infrastructure.core.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.util.Optional;
+
+/**
+ * Scheduler running the signatures, signature checks and other CPU-bound cryptography off the event loop.
+ *
+ * @param parallelism   - threads running cryptographic work, by default one per available processor
+ * @param queueCapacity - tasks waiting for a thread beyond which new ones are rejected
+ */
+@ConfigurationProperties(prefix = "crypto-scheduler")
+public record CryptoSchedulerProperties(Integer parallelism, Integer queueCapacity) {
+
+    @ConstructorBinding
+    public CryptoSchedulerProperties(Integer parallelism, Integer queueCapacity) {
+        this.parallelism = Optional.ofNullable(parallelism).orElse(Runtime.getRuntime().availableProcessors());
+        this.queueCapacity = Optional.ofNullable(queueCapacity).orElse(10_000);
+        if (this.parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism of the crypto scheduler must be at least 1");
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package es.puig.wallet.infrastructure.core.config.properties;
+
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Connection pools of the outbound HTTP clients, one per kind of destination the wallet talks to.
+ *
+ * @param broker     - pool of the NGSI-LD context broker
+ * @param authServer - pool of the authorization servers: the identity provider of the wallet and those of the issuers
+ * @param issuer     - pool of the credential issuers
+ * @param verifier   - pool of the verifiers the presentations are sent to
+ */
+@ConfigurationProperties(prefix = "http-client")
+public record HttpClientProperties(@NestedConfigurationProperty PoolProperties broker,
+                                   @NestedConfigurationProperty PoolProperties authServer,
+                                   @NestedConfigurationProperty PoolProperties issuer,
+                                   @NestedConfigurationProperty PoolProperties verifier) {
+
+    @ConstructorBinding
+    public HttpClientProperties(PoolProperties broker, PoolProperties authServer, PoolProperties issuer, PoolProperties verifier) {
+        this.broker = Optional.ofNullable(broker).orElseGet(PoolProperties::defaults);
+        this.authServer = Optional.ofNullable(authServer).orElseGet(PoolProperties::defaults);
+        this.issuer = Optional.ofNullable(issuer).orElseGet(PoolProperties::defaults);
+        this.verifier = Optional.ofNullable(verifier).orElseGet(PoolProperties::defaults);
+    }
+
+    public PoolProperties pool(HttpDestination destination) {
+        return switch (destination) {
+            case BROKER -> broker;
+            case AUTH_SERVER -> authServer;
+            case ISSUER -> issuer;
+            case VERIFIER -> verifier;
+        };
+    }
+
+    /**
+     * @param maxConnections         - maximum number of connections per remote host
+     * @param pendingAcquireMaxCount - maximum number of requests waiting for a connection
+     * @param pendingAcquireTimeout  - time a request waits for a connection before failing
+     * @param maxIdleTime            - time an idle connection is kept in the pool
+     * @param maxLifeTime            - time after which a connection is closed once released
+     * @param evictInBackground      - interval of the background eviction of idle and expired connections
+     * @param connectTimeout         - time to establish the TCP connection
+     * @param responseTimeout        - maximum time without receiving data once the request is sent, until the response
+     *                                 is fully read
+     * @param http2                  - whether HTTP/2 is negotiated with the hosts that support it
+     */
+    public record PoolProperties(Integer maxConnections, Integer pendingAcquireMaxCount, Duration pendingAcquireTimeout,
+                                 Duration maxIdleTime, Duration maxLifeTime, Duration evictInBackground,
+                                 Duration connectTimeout, Duration responseTimeout, Boolean http2) {
+
+        public PoolProperties(Integer maxConnections, Integer pendingAcquireMaxCount, Duration pendingAcquireTimeout,
+                              Duration maxIdleTime, Duration maxLifeTime, Duration evictInBackground,
+                              Duration connectTimeout, Duration responseTimeout, Boolean http2) {
+            this.maxConnections = Optional.ofNullable(maxConnections).orElse(500);
+            this.pendingAcquireMaxCount = Optional.ofNullable(pendingAcquireMaxCount).orElse(1000);
+            this.pendingAcquireTimeout = Optional.ofNullable(pendingAcquireTimeout).orElse(Duration.ofSeconds(45));
+            this.maxIdleTime = Optional.ofNullable(maxIdleTime).orElse(Duration.ofSeconds(50));
+            this.maxLifeTime = Optional.ofNullable(maxLifeTime).orElse(Duration.ofSeconds(300));
+            this.evictInBackground = Optional.ofNullable(evictInBackground).orElse(Duration.ofSeconds(80));
+            this.connectTimeout = Optional.ofNullable(connectTimeout).orElse(Duration.ofSeconds(10));
+            this.responseTimeout = Optional.ofNullable(responseTimeout).orElse(Duration.ofSeconds(30));
+            this.http2 = Optional.ofNullable(http2).orElse(false);
+        }
+
+        static PoolProperties defaults() {
+            return new PoolProperties(null, null, null, null, null, null, null, null, null);
+        }
+
+    }
+
+}
@@ -0,0 +1,36 @@
+package es.puig.wallet.infrastructure.core.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Decoder of the bearer tokens of the requests, the keys of the auth server it checks them with and the tokens it
+ * already checked.
+ *
+ * @param jwkSetRefreshInterval    - time between two background refreshes of the keys of the auth server
+ * @param jwkSetTtl                - time the keys are used for without a successful refresh
+ * @param jwkSetMinRefreshInterval - minimum time between two refreshes triggered by a token signed with an unknown key
+ * @param tokenCacheEnabled        - whether the tokens already checked skip the signature check until they expire
+ * @param tokenCacheMaximumSize    - maximum number of checked tokens remembered, by their hash and claims
+ */
+@ConfigurationProperties(prefix = "jwt-decoder")
+public record JwtDecoderProperties(Duration jwkSetRefreshInterval, Duration jwkSetTtl, Duration jwkSetMinRefreshInterval,
+                                   Boolean tokenCacheEnabled, Long tokenCacheMaximumSize) {
+
+    @ConstructorBinding
+    public JwtDecoderProperties(Duration jwkSetRefreshInterval, Duration jwkSetTtl, Duration jwkSetMinRefreshInterval,
+                                Boolean tokenCacheEnabled, Long tokenCacheMaximumSize) {
+        this.jwkSetRefreshInterval = Optional.ofNullable(jwkSetRefreshInterval).orElse(Duration.ofMinutes(5));
+        this.jwkSetTtl = Optional.ofNullable(jwkSetTtl).orElse(Duration.ofHours(1));
+        this.jwkSetMinRefreshInterval = Optional.ofNullable(jwkSetMinRefreshInterval).orElse(Duration.ofSeconds(30));
+        this.tokenCacheEnabled = Optional.ofNullable(tokenCacheEnabled).orElse(false);
+        this.tokenCacheMaximumSize = Optional.ofNullable(tokenCacheMaximumSize).orElse(10_000L);
+        if (this.jwkSetRefreshInterval.compareTo(this.jwkSetTtl) >= 0) {
+            throw new IllegalArgumentException("The JWK set must be refreshed before its TTL is over");
+        }
+    }
+
+}
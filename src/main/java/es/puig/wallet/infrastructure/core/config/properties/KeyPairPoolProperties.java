@@ -0,0 +1,30 @@
+package es.puig.wallet.infrastructure.core.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.util.Optional;
+
+/**
+ * Pool of EC key pairs generated ahead of the issuances that need a new DID.
+ *
+ * @param enabled       - whether key pairs are generated in the background, otherwise each one is generated on demand
+ * @param lowWatermark  - size under which the pool starts being refilled
+ * @param highWatermark - size the pool is refilled up to
+ * @param threads       - threads generating key pairs, for the refill and for the requests that find the pool empty
+ */
+@ConfigurationProperties(prefix = "key-pair-pool")
+public record KeyPairPoolProperties(Boolean enabled, Integer lowWatermark, Integer highWatermark, Integer threads) {
+
+    @ConstructorBinding
+    public KeyPairPoolProperties(Boolean enabled, Integer lowWatermark, Integer highWatermark, Integer threads) {
+        this.enabled = Optional.ofNullable(enabled).orElse(true);
+        this.lowWatermark = Optional.ofNullable(lowWatermark).orElse(16);
+        this.highWatermark = Optional.ofNullable(highWatermark).orElse(64);
+        this.threads = Optional.ofNullable(threads).orElse(2);
+        if (this.lowWatermark > this.highWatermark) {
+            throw new IllegalArgumentException("The low watermark of the key pair pool cannot exceed its high watermark");
+        }
+    }
+
+}
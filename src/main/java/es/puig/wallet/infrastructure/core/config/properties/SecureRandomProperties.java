@@ -0,0 +1,25 @@
+package es.puig.wallet.infrastructure.core.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Random source of the code verifiers, nonces and identifiers generated while serving the requests.
+ *
+ * @param reseedInterval - time between two reseeds of the generator with fresh entropy, zero to never reseed
+ */
+@ConfigurationProperties(prefix = "secure-random")
+public record SecureRandomProperties(Duration reseedInterval) {
+
+    @ConstructorBinding
+    public SecureRandomProperties(Duration reseedInterval) {
+        this.reseedInterval = Optional.ofNullable(reseedInterval).orElse(Duration.ofHours(1));
+        if (this.reseedInterval.isNegative()) {
+            throw new IllegalArgumentException("The reseed interval of the random source must not be negative");
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package es.puig.wallet.infrastructure.core.controller;
 import es.puig.wallet.infrastructure.core.config.SwaggerConfig;
 import es.puig.wallet.domain.model.QrContent;
 import es.puig.wallet.domain.service.QrCodeProcessorService;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,8 +13,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerToken;
 
 @Slf4j
@@ -23,6 +22,7 @@ import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerToken;
 public class QrCodeProcessorController {
 
     private final QrCodeProcessorService qrCodeProcessorService;
+    private final SecureRandomSource secureRandomSource;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -31,7 +31,7 @@ public class QrCodeProcessorController {
     )
     public Mono<Object> executeQrContent(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
                                          @RequestBody QrContent qrContent) {
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
         MDC.put("processId", processId);
         log.info("ProcessID: {} - Executing QR content: {}", processId, qrContent);
         return getCleanBearerToken(authorizationHeader)
@@ -2,6 +2,7 @@ package es.puig.wallet.infrastructure.core.controller;
 
 import es.puig.wallet.application.workflow.issuance.DeferredCredentialDomeProfileWorkflow;
 import es.puig.wallet.infrastructure.core.config.SwaggerConfig;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
@@ -11,8 +12,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerAndUserIdFromToken;
 
 @RestController
@@ -22,6 +21,7 @@ import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerAndUserI
 public class RequestSignedLEARCredentialController {
 
     private final DeferredCredentialDomeProfileWorkflow deferredCredentialDomeProfileWorkflow;
+    private final SecureRandomSource secureRandomSource;
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
@@ -37,7 +37,7 @@ public class RequestSignedLEARCredentialController {
     public Mono<Void> getSignedCredential(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,@RequestParam String credentialId) {
         log.debug("VerifiableCredentialController.getVerifiableCredential()");
 
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
 
         return getCleanBearerAndUserIdFromToken(authorizationHeader)
                 .flatMap(userId ->
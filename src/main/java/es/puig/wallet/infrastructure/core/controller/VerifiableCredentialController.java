@@ -4,18 +4,22 @@ package es.puig.wallet.infrastructure.core.controller;
 import es.puig.wallet.infrastructure.core.config.SwaggerConfig;
 import es.puig.wallet.application.workflow.data.DataWorkflow;
 import es.puig.wallet.domain.model.CredentialsBasicInfo;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
-import java.util.UUID;
 
 import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerAndUserIdFromToken;
 
@@ -26,6 +30,7 @@ import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerAndUserI
 public class VerifiableCredentialController {
 
     private final DataWorkflow dataWorkflow;
+    private final SecureRandomSource secureRandomSource;
 
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
@@ -37,15 +42,42 @@ public class VerifiableCredentialController {
     @ApiResponse(responseCode = "200", description = "Verifiable credentials retrieved successfully.")
     @ApiResponse(responseCode = "400", description = "Invalid request.")
     @ApiResponse(responseCode = "500", description = "Internal server error.")
-    public Mono<List<CredentialsBasicInfo>> getVerifiableCredentialList(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader) {
+    public Mono<List<CredentialsBasicInfo>> getVerifiableCredentialList(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
+                                                                        @RequestParam(required = false) @Positive Integer limit,
+                                                                        @RequestParam(defaultValue = "0") @PositiveOrZero int offset) {
         log.debug("VerifiableCredentialController.getVerifiableCredential()");
 
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
 
         MDC.put("processId", processId);
+        if (limit != null) {
+            return getCleanBearerAndUserIdFromToken(authorizationHeader)
+                    .flatMapMany(userId -> dataWorkflow.getCredentialsPageByUserId(processId, userId, limit, offset))
+                    .collectList();
+        }
         return getCleanBearerAndUserIdFromToken(authorizationHeader)
                 .flatMap(userId -> dataWorkflow.getAllCredentialsByUserId(processId,userId));
     }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(
+            summary = "Stream Verifiable Credentials",
+            description = "Stream the Verifiable Credentials as newline delimited JSON, one credential per line",
+            tags = (SwaggerConfig.TAG_PUBLIC)
+    )
+    @ApiResponse(responseCode = "200", description = "Verifiable credentials streamed successfully.")
+    @ApiResponse(responseCode = "400", description = "Invalid request.")
+    @ApiResponse(responseCode = "500", description = "Internal server error.")
+    public Flux<CredentialsBasicInfo> streamVerifiableCredentialList(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader) {
+        log.debug("VerifiableCredentialController.streamVerifiableCredentialList()");
+
+        String processId = secureRandomSource.nextUuid().toString();
+
+        MDC.put("processId", processId);
+        return getCleanBearerAndUserIdFromToken(authorizationHeader)
+                .flatMapMany(userId -> dataWorkflow.streamAllCredentialsByUserId(processId, userId));
+    }
     @DeleteMapping
     @ResponseStatus(HttpStatus.OK)
     @Operation(
@@ -60,7 +92,7 @@ public class VerifiableCredentialController {
     public Mono<Void> deleteVerifiableCredential(@RequestParam String credentialId, @RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader) {
         log.debug("VerifiableCredentialController.deleteVerifiableCredential()");
 
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
 
         MDC.put("processId", processId);
 
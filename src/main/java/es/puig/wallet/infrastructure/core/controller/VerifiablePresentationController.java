@@ -6,6 +6,7 @@ import es.puig.wallet.application.workflow.presentation.AttestationExchangeTurns
 import es.puig.wallet.domain.model.CredentialsBasicInfo;
 import es.puig.wallet.domain.model.VcSelectorResponse;
 import es.puig.wallet.infrastructure.core.config.SwaggerConfig;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
@@ -16,8 +17,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 import static es.puig.wallet.domain.util.ApplicationRegexPattern.DOME_REDIRECT_URI_PATTERN;
 import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerToken;
 
@@ -30,6 +29,7 @@ public class VerifiablePresentationController {
     private final AttestationExchangeTurnstileWorkflow attestationExchangeTurnstileWorkflow;
     private final AttestationExchangeCommonWorkflow attestationExchangeCommonWorkflow;
     private final AttestationExchangeDOMEWorkflow attestationExchangeDOMEWorkflow;
+    private final SecureRandomSource secureRandomSource;
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(
@@ -39,7 +39,7 @@ public class VerifiablePresentationController {
     )
     public Mono<Void> createVerifiablePresentation(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
                                                    @RequestBody VcSelectorResponse vcSelectorResponse) {
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
         MDC.put("processId", processId);
         return getCleanBearerToken(authorizationHeader)
                 .flatMap(authorizationToken ->{
@@ -68,7 +68,7 @@ public class VerifiablePresentationController {
     public Mono<String> createVerifiablePresentationInCborFormat(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader, @RequestBody CredentialsBasicInfo credentialsBasicInfo) {
         log.debug("VerifiablePresentationController.createVerifiablePresentationInCborFormat()");
 
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
 
         MDC.put("processId", processId);
         return getCleanBearerToken(authorizationHeader)
@@ -0,0 +1,104 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Keeps the tokens already checked by the decoder in memory until they expire, so the calls a client makes with the
+ * same bearer token check its signature once. Only the SHA-256 hash of each token is kept, with its headers and
+ * claims: the token itself is never held, the {@link Jwt} returned for a cached one is rebuilt around the token being
+ * decoded. Only the tokens with an expiry are kept. The statistics are published as the cache {@value #CACHE_NAME}.
+ */
+public class CachingJwtDecoder implements ReactiveJwtDecoder {
+
+    private static final String CACHE_NAME = "jwt.validated-tokens";
+
+    private final ReactiveJwtDecoder jwtDecoder;
+    private final Cache<String, ValidatedToken> validatedTokens;
+
+    public CachingJwtDecoder(ReactiveJwtDecoder jwtDecoder, long maximumSize, MeterRegistry meterRegistry) {
+        this.jwtDecoder = jwtDecoder;
+        this.validatedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, validatedTokens, CACHE_NAME);
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        return Mono.defer(() -> {
+            String hash = hash(token);
+            ValidatedToken cached = validatedTokens.getIfPresent(hash);
+            if (cached != null) {
+                return Mono.just(cached.toJwt(token));
+            }
+            return jwtDecoder.decode(token)
+                    .doOnNext(jwt -> {
+                        if (jwt.getExpiresAt() != null) {
+                            validatedTokens.put(hash, ValidatedToken.of(jwt));
+                        }
+                    });
+        });
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record ValidatedToken(Map<String, Object> headers, Map<String, Object> claims, Instant issuedAt,
+                                  Instant expiresAt) {
+
+        static ValidatedToken of(Jwt jwt) {
+            return new ValidatedToken(jwt.getHeaders(), jwt.getClaims(), jwt.getIssuedAt(), jwt.getExpiresAt());
+        }
+
+        Jwt toJwt(String token) {
+            return new Jwt(token, issuedAt, expiresAt, headers, claims);
+        }
+
+    }
+
+    /**
+     * Drops each token when it expires, the decoder would not accept it anymore.
+     */
+    private static class UntilTokenExpiry implements Expiry<String, ValidatedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, ValidatedToken token, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, ValidatedToken token, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, token, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, ValidatedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.CryptoSchedulerProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the CPU-bound cryptography of the wallet, signing, verifying signatures and parsing keys, on a bounded pool of
+ * named threads instead of the event loop thread of the request, so a burst of signatures does not delay the I/O of
+ * the other requests.
+ * <p>
+ * The tasks waiting for a thread, the tasks running, the time a task waits and the time it runs, per operation, are
+ * published to the meter registry. Once the queue is full new tasks are rejected instead of piling up.
+ */
+@Slf4j
+@Component
+public class CryptoScheduler {
+
+    private static final String METRIC_PREFIX = "crypto.scheduler";
+
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer wait;
+
+    public CryptoScheduler(CryptoSchedulerProperties cryptoSchedulerProperties, MeterRegistry meterRegistry) {
+        this.scheduler = Schedulers.newBoundedElastic(cryptoSchedulerProperties.parallelism(),
+                cryptoSchedulerProperties.queueCapacity(), "crypto");
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(METRIC_PREFIX + ".queued", queued, AtomicInteger::get)
+                .description("Cryptographic tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".active", active, AtomicInteger::get)
+                .description("Cryptographic tasks running")
+                .register(meterRegistry);
+        this.wait = Timer.builder(METRIC_PREFIX + ".wait")
+                .description("Time a cryptographic task waits for a thread")
+                .register(meterRegistry);
+        log.info("Crypto scheduler started with {} threads", cryptoSchedulerProperties.parallelism());
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Runs the task on the crypto scheduler, an empty result completes the Mono empty.
+     *
+     * @param operation the kind of cryptographic work, the tag of its execution time
+     */
+    public <T> Mono<T> run(String operation, Callable<T> task) {
+        Timer execution = Timer.builder(METRIC_PREFIX + ".execution")
+                .description("Time a cryptographic task runs")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        return Mono.defer(() -> {
+            long submitted = System.nanoTime();
+            AtomicBoolean started = new AtomicBoolean();
+            queued.incrementAndGet();
+            return Mono.fromCallable(() -> {
+                        started.set(true);
+                        queued.decrementAndGet();
+                        wait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                        active.incrementAndGet();
+                        try {
+                            return execution.recordCallable(task);
+                        } finally {
+                            active.decrementAndGet();
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    // A task cancelled or rejected before it starts leaves the queue all the same
+                    .doFinally(signal -> {
+                        if (started.compareAndSet(false, true)) {
+                            queued.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+}
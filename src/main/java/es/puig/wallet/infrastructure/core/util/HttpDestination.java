@@ -0,0 +1,23 @@
+package es.puig.wallet.infrastructure.core.util;
+
+/**
+ * Kinds of remote services the wallet calls, each one served by its own connection pool of {@link WebClientFactory}.
+ */
+public enum HttpDestination {
+
+    BROKER("broker"),
+    AUTH_SERVER("auth-server"),
+    ISSUER("issuer"),
+    VERIFIER("verifier");
+
+    private final String poolName;
+
+    HttpDestination(String poolName) {
+        this.poolName = poolName;
+    }
+
+    public String poolName() {
+        return poolName;
+    }
+
+}
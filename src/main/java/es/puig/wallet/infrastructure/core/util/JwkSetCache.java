@@ -0,0 +1,155 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import es.puig.wallet.application.port.AppConfig;
+import es.puig.wallet.domain.exception.ParseErrorException;
+import es.puig.wallet.infrastructure.core.config.properties.JwtDecoderProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the JWK set of the auth server, the keys the bearer tokens of the requests are signed with, in memory. The set
+ * is loaded on startup and refreshed in the background every {@code jwkSetRefreshInterval}, so the requests never
+ * wait for the auth server: a failed refresh keeps the current keys until their TTL is over.
+ * <p>
+ * A token signed with a key not in the set, as after a key rotation, refreshes the set at once, at most once every
+ * {@code jwkSetMinRefreshInterval} so tokens with made-up key ids cannot flood the auth server. The statistics of the
+ * set are published as the cache {@value #CACHE_NAME}, and its number of keys as {@code jwk.set.keys}.
+ */
+@Slf4j
+@Component
+public class JwkSetCache {
+
+    private static final String CACHE_NAME = "jwk.set";
+    private static final String KEY = "auth-server";
+
+    private final AppConfig appConfig;
+    private final WebClientFactory webClientFactory;
+    private final Duration refreshInterval;
+    private final long minRefreshIntervalNanos;
+    private final AsyncLoadingCache<String, JWKSet> jwkSet;
+    private final AtomicLong lastRefresh;
+    private Disposable refreshing;
+
+    public JwkSetCache(AppConfig appConfig, WebClientFactory webClientFactory, JwtDecoderProperties jwtDecoderProperties,
+                       MeterRegistry meterRegistry) {
+        this.appConfig = appConfig;
+        this.webClientFactory = webClientFactory;
+        this.refreshInterval = jwtDecoderProperties.jwkSetRefreshInterval();
+        this.minRefreshIntervalNanos = jwtDecoderProperties.jwkSetMinRefreshInterval().toNanos();
+        this.lastRefresh = new AtomicLong(System.nanoTime() - minRefreshIntervalNanos);
+        this.jwkSet = Caffeine.newBuilder()
+                .expireAfterWrite(jwtDecoderProperties.jwkSetTtl())
+                .recordStats()
+                .buildAsync((key, executor) -> fetch().toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, jwkSet, CACHE_NAME);
+        Gauge.builder(CACHE_NAME + ".keys", this, JwkSetCache::size)
+                .description("Keys of the auth server the bearer tokens are checked with")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        refreshing = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh()
+                        .onErrorResume(e -> {
+                            log.warn("JWK set of the auth server could not be refreshed: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshing != null) {
+            refreshing.dispose();
+        }
+    }
+
+    /**
+     * Returns the keys matching the header of the token, the JWK source of the decoder of the bearer tokens.
+     */
+    public Flux<JWK> getKeys(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null) {
+            return Flux.empty();
+        }
+        JWKSelector selector = new JWKSelector(matcher);
+        return Mono.defer(() -> Mono.fromFuture(jwkSet.get(KEY), true))
+                .flatMap(current -> {
+                    List<JWK> keys = selector.select(current);
+                    if (!keys.isEmpty() || !refreshAllowed()) {
+                        return Mono.just(keys);
+                    }
+                    log.info("Token signed with an unknown key, refreshing the JWK set of the auth server");
+                    return refresh()
+                            .map(selector::select)
+                            .onErrorResume(e -> {
+                                log.warn("JWK set of the auth server could not be refreshed: {}", e.getMessage());
+                                return Mono.just(keys);
+                            });
+                })
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    private boolean refreshAllowed() {
+        long last = lastRefresh.get();
+        long now = System.nanoTime();
+        return now - last >= minRefreshIntervalNanos && lastRefresh.compareAndSet(last, now);
+    }
+
+    /**
+     * Loads the set again, the requests keep using the current one until it is loaded. Concurrent refreshes share the
+     * same load.
+     */
+    private Mono<JWKSet> refresh() {
+        return Mono.defer(() -> {
+            lastRefresh.set(System.nanoTime());
+            return Mono.fromFuture(jwkSet.synchronous().refresh(KEY), true);
+        });
+    }
+
+    private Mono<JWKSet> fetch() {
+        return webClientFactory.webClient(HttpDestination.AUTH_SERVER)
+                .get()
+                .uri(appConfig.getJwtDecoder())
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(JwkSetCache::parse)
+                .doOnNext(keys -> log.debug("JWK set of the auth server loaded with {} keys", keys.getKeys().size()));
+    }
+
+    private static JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException e) {
+            throw new ParseErrorException("The JWK set of the auth server could not be parsed: " + e.getMessage());
+        }
+    }
+
+    private double size() {
+        JWKSet current = jwkSet.synchronous().getIfPresent(KEY);
+        return current != null ? current.getKeys().size() : 0;
+    }
+
+}
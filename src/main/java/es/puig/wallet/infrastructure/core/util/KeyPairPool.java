@@ -0,0 +1,132 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.domain.exception.KeyPairGenerationError;
+import es.puig.wallet.infrastructure.core.config.properties.KeyPairPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps P-256 key pairs generated ahead of the issuances, so creating the DID of a credential takes a ready key
+ * pair instead of generating one on the thread of the request, often an event loop.
+ * <p>
+ * Once the pool drops under its low watermark a background task on a dedicated scheduler refills it up to its
+ * high watermark. A request finding the pool empty generates its key pair on that scheduler too. The key pairs are
+ * only kept in memory: the private key of a DID reaches the vault when the DID is handed out.
+ */
+@Slf4j
+@Component
+public class KeyPairPool {
+
+    private static final String CURVE = "secp256r1";
+    private static final String METRIC_PREFIX = "key.pair.pool";
+
+    private final KeyPairPoolProperties keyPairPoolProperties;
+    private final BouncyCastleProvider bouncyCastleProvider;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Queue<KeyPair> keyPairs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final Scheduler scheduler;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer generation;
+
+    public KeyPairPool(KeyPairPoolProperties keyPairPoolProperties, BouncyCastleProvider bouncyCastleProvider,
+                       MeterRegistry meterRegistry) {
+        this.keyPairPoolProperties = keyPairPoolProperties;
+        this.bouncyCastleProvider = bouncyCastleProvider;
+        this.scheduler = Schedulers.newBoundedElastic(keyPairPoolProperties.threads(), Integer.MAX_VALUE, "key-pair-pool");
+        Gauge.builder(METRIC_PREFIX + ".size", size, AtomicInteger::get)
+                .description("Key pairs ready to be handed out")
+                .register(meterRegistry);
+        this.hits = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss").register(meterRegistry);
+        this.generation = Timer.builder(METRIC_PREFIX + ".generation")
+                .description("Time to generate a key pair")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        refillIfNeeded();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
+
+    /**
+     * Hands out a key pair of the pool, or generates one off the calling thread when the pool is empty.
+     */
+    public Mono<KeyPair> take() {
+        return Mono.defer(() -> {
+            KeyPair keyPair = keyPairs.poll();
+            if (keyPair != null) {
+                size.decrementAndGet();
+                hits.increment();
+                refillIfNeeded();
+                return Mono.just(keyPair);
+            }
+            misses.increment();
+            refillIfNeeded();
+            return Mono.fromCallable(this::generate).subscribeOn(scheduler);
+        });
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private void refillIfNeeded() {
+        if (!keyPairPoolProperties.enabled() || size.get() >= keyPairPoolProperties.lowWatermark()
+                || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            try {
+                while (size.get() < keyPairPoolProperties.highWatermark()) {
+                    keyPairs.add(generate());
+                    size.incrementAndGet();
+                }
+                log.debug("Key pair pool refilled to {} key pairs", size.get());
+            } catch (KeyPairGenerationError e) {
+                log.error("Error refilling the key pair pool", e);
+            } finally {
+                refilling.set(false);
+            }
+        });
+    }
+
+    private KeyPair generate() {
+        return generation.record(() -> {
+            try {
+                KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDSA", bouncyCastleProvider);
+                keyPairGenerator.initialize(new ECGenParameterSpec(CURVE), secureRandom);
+                return keyPairGenerator.generateKeyPair();
+            } catch (Exception e) {
+                throw new KeyPairGenerationError("Error generating EC key pair: " + e);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,142 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Guards the calls made to the dependencies of the wallet (the broker, the vault and the issuers and
+ * authorization servers reached through the centralized WebClient) with a circuit breaker, a bulkhead
+ * and a time limiter, so a slow or failing dependency is rejected fast instead of holding connections
+ * of the shared pool.
+ * <p>
+ * Everything is configured through the {@code resilience4j.*} properties and published to the meter
+ * registry. The circuit breaker and the bulkhead are named after the dependency, while the time limiter
+ * can be set per operation as {@code <dependency>-read} or {@code <dependency>-write}, falling back to
+ * the one of the dependency. The hosts reached through the centralized WebClient get a circuit breaker
+ * and a bulkhead of their own, created from the shared {@value #OUTBOUND_HTTP} configuration. Only the
+ * {@value #MAXIMUM_HOSTS} hosts used last keep theirs: the others are removed from the registries, and with them
+ * from the meter registry, and start over with a closed circuit when they are reached again.
+ */
+@Component
+public class OutboundResilience {
+
+    public static final String BROKER = "broker";
+    public static final String VAULT = "vault";
+    public static final String OUTBOUND_HTTP = "outbound-http";
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    static final int MAXIMUM_HOSTS = 500;
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    // Least recently used first, the instances of a host are created and removed under its lock
+    private final Map<String, Guards> hosts;
+
+    public OutboundResilience(CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                              TimeLimiterRegistry timeLimiterRegistry) {
+        this(circuitBreakerRegistry, bulkheadRegistry, timeLimiterRegistry, MAXIMUM_HOSTS);
+    }
+
+    OutboundResilience(CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                       TimeLimiterRegistry timeLimiterRegistry, int maximumHosts) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+        this.hosts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Guards> eldest) {
+                if (size() <= maximumHosts) {
+                    return false;
+                }
+                circuitBreakerRegistry.remove(eldest.getKey());
+                bulkheadRegistry.remove(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    public <T> Mono<T> decorate(String dependency, String operation, Mono<T> call) {
+        return decorate(dependency, dependency, operation, call);
+    }
+
+    /**
+     * Guards every exchange of a WebClient that only talks to the given dependency.
+     */
+    public ExchangeFilterFunction exchangeFilter(String dependency) {
+        return (request, next) -> decorate(dependency, dependency, operationOf(request), next.exchange(request));
+    }
+
+    /**
+     * Guards every exchange of a WebClient that talks to many hosts, isolating each host from the others.
+     */
+    public ExchangeFilterFunction perHostExchangeFilter() {
+        return (request, next) -> decorate(hostGuards(OUTBOUND_HTTP + "-" + request.url().getHost()),
+                timeLimiter(OUTBOUND_HTTP, operationOf(request)), next.exchange(request));
+    }
+
+    private <T> Mono<T> decorate(String name, String configName, String operation, Mono<T> call) {
+        return decorate(new Guards(circuitBreaker(name, configName), bulkhead(name, configName)),
+                timeLimiter(configName, operation), call);
+    }
+
+    // The time limiter is the innermost operator, so timeouts are recorded by the circuit breaker and
+    // release the bulkhead permit
+    private static <T> Mono<T> decorate(Guards guards, TimeLimiter timeLimiter, Mono<T> call) {
+        return call
+                .transformDeferred(TimeLimiterOperator.of(timeLimiter))
+                .transformDeferred(BulkheadOperator.of(guards.bulkhead()))
+                .transformDeferred(CircuitBreakerOperator.of(guards.circuitBreaker()));
+    }
+
+    /**
+     * The calls in flight when a host is evicted keep the instances they started with.
+     */
+    private Guards hostGuards(String name) {
+        synchronized (hosts) {
+            return hosts.computeIfAbsent(name, key -> new Guards(circuitBreaker(key, OUTBOUND_HTTP), bulkhead(key, OUTBOUND_HTTP)));
+        }
+    }
+
+    private CircuitBreaker circuitBreaker(String name, String configName) {
+        return circuitBreakerRegistry.getConfiguration(configName)
+                .map(config -> circuitBreakerRegistry.circuitBreaker(name, config))
+                .orElseGet(() -> circuitBreakerRegistry.circuitBreaker(name));
+    }
+
+    private Bulkhead bulkhead(String name, String configName) {
+        return bulkheadRegistry.getConfiguration(configName)
+                .map(config -> bulkheadRegistry.bulkhead(name, config))
+                .orElseGet(() -> bulkheadRegistry.bulkhead(name));
+    }
+
+    private TimeLimiter timeLimiter(String configName, String operation) {
+        return timeLimiterRegistry.find(configName + "-" + operation)
+                .orElseGet(() -> timeLimiterRegistry.getConfiguration(configName)
+                        .map(config -> timeLimiterRegistry.timeLimiter(configName, config))
+                        .orElseGet(() -> timeLimiterRegistry.timeLimiter(configName)));
+    }
+
+    private static String operationOf(ClientRequest request) {
+        return HttpMethod.GET.equals(request.method()) ? READ : WRITE;
+    }
+
+    private record Guards(CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+    }
+
+}
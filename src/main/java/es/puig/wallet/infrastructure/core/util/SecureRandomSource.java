@@ -0,0 +1,126 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+import static java.security.DrbgParameters.Capability.RESEED_ONLY;
+
+/**
+ * Shared source of the random values generated while serving the requests: PKCE code verifiers, nonces and the
+ * identifiers of the entities and processes.
+ * <p>
+ * The values come from a DRBG seeded once when the application starts, so generating them is pure computation and
+ * never waits for the entropy of the operating system on an event loop thread, unlike
+ * {@link SecureRandom#getInstanceStrong()}, a {@code NativePRNG} reading {@code /dev/urandom} or
+ * {@link UUID#randomUUID()}. Fresh entropy is mixed in periodically on a worker thread.
+ */
+@Slf4j
+@Component
+public class SecureRandomSource {
+
+    private static final String ALGORITHM = "DRBG";
+    private static final int SECURITY_STRENGTH = 256;
+    private static final byte[] PERSONALIZATION = "wallet-server".getBytes(StandardCharsets.UTF_8);
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final SecureRandom secureRandom;
+    private final Duration reseedInterval;
+    private Disposable reseeding;
+
+    public SecureRandomSource(SecureRandomProperties secureRandomProperties) {
+        try {
+            this.secureRandom = SecureRandom.getInstance(ALGORITHM,
+                    DrbgParameters.instantiation(SECURITY_STRENGTH, RESEED_ONLY, PERSONALIZATION));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("The " + ALGORITHM + " random generator is not available", e);
+        }
+        // The DRBG reads its seed on first use, done here so it never happens while serving a request
+        this.secureRandom.nextBytes(new byte[1]);
+        this.reseedInterval = secureRandomProperties.reseedInterval();
+    }
+
+    @PostConstruct
+    public void startReseeding() {
+        if (!reseedInterval.isZero()) {
+            reseeding = Flux.interval(reseedInterval, reseedInterval, Schedulers.boundedElastic())
+                    .subscribe(tick -> reseed());
+        }
+    }
+
+    @PreDestroy
+    public void stopReseeding() {
+        if (reseeding != null) {
+            reseeding.dispose();
+        }
+    }
+
+    /**
+     * Returns the given number of random bytes, filled with a single call to the generator.
+     */
+    public byte[] nextBytes(int length) {
+        byte[] bytes = new byte[length];
+        secureRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a random number uniformly distributed between zero, included, and the bound, excluded.
+     */
+    public int nextInt(int bound) {
+        return secureRandom.nextInt(bound);
+    }
+
+    /**
+     * Returns a random string of the given length made of the characters of the alphabet, each one drawn uniformly.
+     */
+    public String nextString(int length, String alphabet) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(secureRandom.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the given number of random bytes encoded in base64url without padding, as used for the nonces.
+     */
+    public String nextBase64Url(int byteLength) {
+        return BASE64_URL.encodeToString(nextBytes(byteLength));
+    }
+
+    /**
+     * Returns a random (version 4) UUID, the replacement of {@link UUID#randomUUID()} on the request path.
+     */
+    public UUID nextUuid() {
+        byte[] bytes = nextBytes(16);
+        bytes[6] = (byte) ((bytes[6] & 0x0f) | 0x40);
+        bytes[8] = (byte) ((bytes[8] & 0x3f) | 0x80);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private void reseed() {
+        try {
+            secureRandom.reseed();
+            log.debug("Random source reseeded");
+        } catch (RuntimeException e) {
+            log.warn("Random source could not be reseeded: {}", e.getMessage());
+        }
+    }
+
+}
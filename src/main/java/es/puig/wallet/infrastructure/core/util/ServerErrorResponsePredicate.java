@@ -0,0 +1,19 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import java.util.function.Predicate;
+
+/**
+ * Records the 5xx responses of an exchange as circuit breaker failures. The exchange filters see the
+ * response before the caller turns its status into an error, so without it only connection errors and
+ * timeouts would count as failures. Set as the {@code record-result-predicate} of the circuit breakers.
+ */
+public class ServerErrorResponsePredicate implements Predicate<Object> {
+
+    @Override
+    public boolean test(Object result) {
+        return result instanceof ClientResponse response && response.statusCode().is5xxServerError();
+    }
+
+}
@@ -0,0 +1,139 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.HttpClientProperties;
+import es.puig.wallet.infrastructure.core.config.properties.HttpClientProperties.PoolProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds the {@link WebClient} of every outbound destination of the wallet. Each {@link HttpDestination} has its own
+ * connection pool, sized and timed out by {@link HttpClientProperties}, so a slow issuer cannot starve the connections
+ * to the broker and the other way around.
+ * <p>
+ * The pools publish the gauges {@code http.client.pool.active}, {@code http.client.pool.idle} and
+ * {@code http.client.pool.pending} per pool and remote host. The broker client is guarded by the broker circuit
+ * breaker of {@link OutboundResilience}, the rest by a circuit breaker per host.
+ */
+@Slf4j
+@Component
+public class WebClientFactory {
+
+    private static final String METRIC_PREFIX = "http.client.pool.";
+
+    private final Map<HttpDestination, ConnectionProvider> connectionProviders = new EnumMap<>(HttpDestination.class);
+    private final Map<HttpDestination, WebClient> webClients = new EnumMap<>(HttpDestination.class);
+
+    public WebClientFactory(HttpClientProperties httpClientProperties, OutboundResilience outboundResilience,
+                            MeterRegistry meterRegistry) {
+        PoolGauges poolGauges = new PoolGauges(meterRegistry);
+        for (HttpDestination destination : HttpDestination.values()) {
+            PoolProperties pool = httpClientProperties.pool(destination);
+            ConnectionProvider connectionProvider = buildConnectionProvider(destination, pool, poolGauges);
+            ExchangeFilterFunction resilienceFilter = destination == HttpDestination.BROKER
+                    ? outboundResilience.exchangeFilter(OutboundResilience.BROKER)
+                    : outboundResilience.perHostExchangeFilter();
+            connectionProviders.put(destination, connectionProvider);
+            webClients.put(destination, WebClient.builder()
+                    .clientConnector(new ReactorClientHttpConnector(buildHttpClient(connectionProvider, pool)))
+                    .filter(resilienceFilter)
+                    .build());
+        }
+    }
+
+    public WebClient webClient(HttpDestination destination) {
+        return webClients.get(destination);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+
+    private static ConnectionProvider buildConnectionProvider(HttpDestination destination, PoolProperties pool,
+                                                              PoolGauges poolGauges) {
+        return ConnectionProvider.builder(destination.poolName())
+                .maxConnections(pool.maxConnections())
+                .pendingAcquireMaxCount(pool.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.pendingAcquireTimeout())
+                .maxIdleTime(pool.maxIdleTime())
+                .maxLifeTime(pool.maxLifeTime())
+                .evictInBackground(pool.evictInBackground())
+                .metrics(true, () -> poolGauges)
+                .build();
+    }
+
+    /**
+     * The response timeout is the read timeout of each request: it is armed once the request is sent and applies to
+     * every read until the response is complete, so the connections idling in the pool are not timed out.
+     */
+    private static HttpClient buildHttpClient(ConnectionProvider connectionProvider, PoolProperties pool) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .followRedirect(false)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.connectTimeout().toMillis())
+                .responseTimeout(pool.responseTimeout());
+        // HTTP/2 is negotiated through ALPN, plain http hosts keep being reached through HTTP/1.1
+        return pool.http2() ? httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11) : httpClient;
+    }
+
+    /**
+     * Registers the gauges of every pool created by Reactor Netty, one per remote host, and removes them when the
+     * pool of the host is disposed.
+     */
+    private static class PoolGauges implements ConnectionProvider.MeterRegistrar {
+
+        private final MeterRegistry meterRegistry;
+        private final Map<String, List<Meter>> metersByPoolId = new ConcurrentHashMap<>();
+
+        PoolGauges(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+            Tags tags = Tags.of("pool", poolName, "remote", remoteAddress.toString());
+            metersByPoolId.put(id, List.of(
+                    gauge("active", metrics, ConnectionPoolMetrics::acquiredSize, tags),
+                    gauge("idle", metrics, ConnectionPoolMetrics::idleSize, tags),
+                    gauge("pending", metrics, ConnectionPoolMetrics::pendingAcquireSize, tags)));
+            log.debug("Connection pool {} opened to {}", poolName, remoteAddress);
+        }
+
+        @Override
+        public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+            List<Meter> meters = metersByPoolId.remove(id);
+            if (meters != null) {
+                meters.forEach(meterRegistry::remove);
+            }
+        }
+
+        private Meter gauge(String name, ConnectionPoolMetrics metrics, ToDoubleFunction<ConnectionPoolMetrics> value,
+                            Tags tags) {
+            return Gauge.builder(METRIC_PREFIX + name, metrics, value)
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(meterRegistry);
+        }
+
+    }
+
+}
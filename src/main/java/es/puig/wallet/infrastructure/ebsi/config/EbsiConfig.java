@@ -3,13 +3,16 @@ package es.puig.wallet.infrastructure.ebsi.config;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import es.puig.wallet.application.port.AppConfig;
 import es.puig.wallet.application.port.BrokerService;
-import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.DataService;
 import es.puig.wallet.domain.service.DidKeyGeneratorService;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
@@ -38,7 +41,7 @@ public class EbsiConfig {
     private final DidKeyGeneratorService didKeyGeneratorService;
     private final BrokerService brokerService;
     private final DataService dataService;
-    private final WebClientConfig webClient;
+    private final WebClientFactory webClientFactory;
     private String didForEbsi;
 
     @PostConstruct
@@ -82,7 +85,7 @@ public class EbsiConfig {
                 "&client_secret=" + URLEncoder.encode(decodedSecret, StandardCharsets.UTF_8);
 
         return Mono.delay(Duration.ofSeconds(15))
-                .then(webClient.centralizedWebClient()
+                .then(webClientFactory.webClient(HttpDestination.AUTH_SERVER)
                         .post()
                         .uri(appConfig.getIdentityProviderUrl())
                         .header(CONTENT_TYPE, CONTENT_TYPE_URL_ENCODED_FORM)
@@ -126,36 +129,21 @@ public class EbsiConfig {
     }
 
     private Mono<Void> createAndAddCredentialWithADidToPassEbsiTest(String processId, String userId, String did, String credentialId, String type) {
-        String credentialEntity = String.format("""
-                            {
-                              "id": "%s",
-                              "type": "Credential",
-                              "status": {
-                                "type": "Property",
-                                "value": "ISSUED"
-                              },
-                              "credentialType": {
-                                "type": "Property",
-                                "value": ["%s", "VerifiableCredential"]
-                              },
-                              "json_vc": {
-                                "type": "Property",
-                                "value": {
-                                  "id": "urn:credential:exampleCredential",
-                                  "credentialSubject": {
-                                    "id" : "%s"
-                                  }
-                                }
-                              },
-                              "belongsTo": {
-                                "type": "Relationship",
-                                "object": "urn:entities:walletUser:%s"
-                              }
-                            }
-                            """, credentialId, type, did, userId);
+        ObjectNode vcJson = JsonNodeFactory.instance.objectNode()
+                .put("id", "urn:credential:exampleCredential");
+        vcJson.putObject(CREDENTIAL_SUBJECT).put("id", did);
+        CredentialEntity credentialEntity = CredentialEntity.builder()
+                .id(credentialId)
+                .type(CREDENTIAL_TYPE)
+                .credentialStatusAttribute(new CredentialStatusAttribute(PROPERTY_TYPE, CredentialStatus.ISSUED))
+                .credentialTypeAttribute(new CredentialTypeAttribute(PROPERTY_TYPE, List.of(type, "VerifiableCredential")))
+                .jsonCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE, vcJson))
+                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE, USER_ENTITY_PREFIX + userId))
+                .build();
+        // Written with its instance of the credential summary, as any issued credential, so it stays listed
         return dataService.createUserEntity(userId)
-                .flatMap(createdUserId -> brokerService.postEntity(processId, createdUserId))
-                .then(brokerService.postEntity(processId, credentialEntity));
+                .flatMap(userEntity -> dataService.buildCredentialSummaryEntity(userId, List.of(credentialEntity))
+                        .flatMap(summaryEntity -> brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, summaryEntity))));
     }
 
     private Mono<String> getDidForUserCredential(String processId, String userId, String type) {
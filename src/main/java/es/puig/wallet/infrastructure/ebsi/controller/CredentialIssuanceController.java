@@ -3,6 +3,7 @@ package es.puig.wallet.infrastructure.ebsi.controller;
 import es.puig.wallet.infrastructure.core.config.SwaggerConfig;
 import es.puig.wallet.application.workflow.issuance.CredentialIssuanceEbsiWorkflow;
 import es.puig.wallet.domain.model.EbsiCredentialOfferContent;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,8 +13,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerToken;
 
 
@@ -24,6 +23,7 @@ import static es.puig.wallet.domain.util.ApplicationUtils.getCleanBearerToken;
 public class CredentialIssuanceController {
 
     private final CredentialIssuanceEbsiWorkflow ebsiCredentialIssuanceServiceFacade;
+    private final SecureRandomSource secureRandomSource;
 
     /**
      * Processes a request for a verifiable credential when the credential offer is received via a redirect.
@@ -37,7 +37,7 @@ public class CredentialIssuanceController {
     )
     public Mono<Void> requestVerifiableCredential(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader,
                                                                 @RequestBody EbsiCredentialOfferContent ebsiCredentialOfferContent) {
-        String processId = UUID.randomUUID().toString();
+        String processId = secureRandomSource.nextUuid().toString();
         MDC.put("processId", processId);
         return getCleanBearerToken(authorizationHeader)
                 .flatMap(authorizationToken -> ebsiCredentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, ebsiCredentialOfferContent.credentialOfferUri()));
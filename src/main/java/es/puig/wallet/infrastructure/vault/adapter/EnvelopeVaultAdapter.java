@@ -0,0 +1,200 @@
+package es.puig.wallet.infrastructure.vault.adapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.application.port.BrokerService;
+import es.puig.wallet.domain.exception.KeyEncryptionException;
+import es.puig.wallet.domain.model.EncryptedKeyAttribute;
+import es.puig.wallet.domain.model.EncryptedKeyEntity;
+import es.puig.wallet.domain.model.EntityAttribute;
+import es.puig.wallet.domain.model.RelationshipAttribute;
+import es.puig.wallet.infrastructure.vault.config.properties.EnvelopeEncryptionProperties;
+import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
+import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import es.puig.wallet.infrastructure.vault.util.VaultAdapterUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+
+/**
+ * Stores the private keys of the wallet users encrypted in the broker, next to their credentials, placed in front of
+ * the configured vault adapter. Each key is encrypted with AES-GCM under a data encryption key of its own, and that
+ * key is wrapped by the master key of the wallet, the only secret read from the vault. The master key is read once
+ * and kept for the lifetime of the instance, so signing no longer depends on the throughput of the vault.
+ * <p>
+ * The DID of a key is bound to both ciphertexts as additional authenticated data, so an encrypted key cannot be
+ * passed off as the key of another DID. As with the keyring layout, only the keys of the authenticated user of the
+ * request are stored this way, the rest keep a secret per DID in the vault, and a key not found in the broker is read
+ * from its own secret, where the keys written before this mode was enabled stay.
+ */
+@Slf4j
+public class EnvelopeVaultAdapter implements GenericVaultService {
+
+    private static final String AES = "AES";
+    private static final String AES_GCM = "AES/GCM/NoPadding";
+    private static final int KEY_LENGTH = 32;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private final GenericVaultService vaultAdapter;
+    private final BrokerService brokerService;
+    private final ObjectMapper objectMapper;
+    private final EnvelopeEncryptionProperties envelopeEncryptionProperties;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Mono<SecretKey> masterKey;
+
+    public EnvelopeVaultAdapter(GenericVaultService vaultAdapter, BrokerService brokerService, ObjectMapper objectMapper,
+                                EnvelopeEncryptionProperties envelopeEncryptionProperties) {
+        this.vaultAdapter = vaultAdapter;
+        this.brokerService = brokerService;
+        this.objectMapper = objectMapper;
+        this.envelopeEncryptionProperties = envelopeEncryptionProperties;
+        // Kept once read, a failed read is attempted again by the next call
+        this.masterKey = Mono.defer(this::readMasterKey)
+                .cache(key -> Duration.ofMillis(Long.MAX_VALUE), error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    @Override
+    public Mono<Void> saveSecret(String key, KeyVaultSecret secret) {
+        return VaultAdapterUtils.forUser(userId -> masterKey
+                        .map(wrappingKey -> encrypt(wrappingKey, key, userId, String.valueOf(secret.value())))
+                        .flatMap(entity -> brokerService.upsertEntity(processId(), entity))
+                        .doOnSuccess(result -> log.debug("Secret {} saved encrypted in the broker", key)),
+                () -> vaultAdapter.saveSecret(key, secret));
+    }
+
+    @Override
+    public Mono<KeyVaultSecret> getSecret(String key) {
+        return VaultAdapterUtils.forUser(userId -> brokerService.getEntityById(processId(), ENCRYPTED_KEY_ENTITY_PREFIX + key)
+                        .flatMap(entity -> entity
+                                .map(json -> masterKey.map(wrappingKey -> decrypt(wrappingKey, key, json)))
+                                .orElseGet(() -> vaultAdapter.getSecret(key))),
+                () -> vaultAdapter.getSecret(key));
+    }
+
+    @Override
+    public Mono<Void> deleteSecret(String key) {
+        return VaultAdapterUtils.forUser(userId -> brokerService.getEntityById(processId(), ENCRYPTED_KEY_ENTITY_PREFIX + key)
+                        .flatMap(entity -> entity.isPresent()
+                                ? brokerService.batchDeleteEntities(processId(), List.of(ENCRYPTED_KEY_ENTITY_PREFIX + key))
+                                : vaultAdapter.deleteSecret(key)),
+                () -> vaultAdapter.deleteSecret(key));
+    }
+
+    private Mono<SecretKey> readMasterKey() {
+        String masterKeyName = envelopeEncryptionProperties.masterKeyName();
+        return vaultAdapter.getSecret(masterKeyName)
+                .onErrorResume(VaultAdapterUtils::isNotFound, e -> Mono.empty())
+                .map(secret -> toMasterKey(Base64.getDecoder().decode(String.valueOf(secret.value()))))
+                .switchIfEmpty(Mono.defer(this::createMasterKey))
+                .doOnSuccess(key -> log.info("Master key {} read from the vault", masterKeyName));
+    }
+
+    /**
+     * Creating the master key is meant for a single instance: instances creating it at the same time would each
+     * encrypt with a different one.
+     */
+    private Mono<SecretKey> createMasterKey() {
+        String masterKeyName = envelopeEncryptionProperties.masterKeyName();
+        if (!envelopeEncryptionProperties.createMasterKey()) {
+            return Mono.error(new KeyEncryptionException("The master key " + masterKeyName + " is not in the vault"));
+        }
+        byte[] key = randomBytes(KEY_LENGTH);
+        return vaultAdapter.saveSecret(masterKeyName, KeyVaultSecret.builder().value(Base64.getEncoder().encodeToString(key)).build())
+                .doOnSuccess(result -> log.warn("Master key {} created in the vault", masterKeyName))
+                .then(Mono.fromSupplier(() -> toMasterKey(key)));
+    }
+
+    private EncryptedKeyEntity encrypt(SecretKey wrappingKey, String did, String userId, String privateKey) {
+        byte[] dataKey = randomBytes(KEY_LENGTH);
+        try {
+            byte[] iv = randomBytes(IV_LENGTH);
+            byte[] ciphertext = aesGcm(Cipher.ENCRYPT_MODE, new SecretKeySpec(dataKey, AES), iv, did,
+                    privateKey.getBytes(StandardCharsets.UTF_8));
+            byte[] wrappingIv = randomBytes(IV_LENGTH);
+            byte[] wrappedKey = aesGcm(Cipher.ENCRYPT_MODE, wrappingKey, wrappingIv, did, dataKey);
+            Base64.Encoder encoder = Base64.getEncoder();
+            return EncryptedKeyEntity.builder()
+                    .id(ENCRYPTED_KEY_ENTITY_PREFIX + did)
+                    .type(ENCRYPTED_KEY_TYPE)
+                    .encryptedKeyAttribute(EntityAttribute.<EncryptedKeyAttribute>builder()
+                            .type(PROPERTY_TYPE)
+                            .value(EncryptedKeyAttribute.builder()
+                                    .wrappedKey(encoder.encodeToString(wrappedKey))
+                                    .wrappingIv(encoder.encodeToString(wrappingIv))
+                                    .ciphertext(encoder.encodeToString(ciphertext))
+                                    .iv(encoder.encodeToString(iv))
+                                    .build())
+                            .build())
+                    .relationshipAttribute(RelationshipAttribute.builder()
+                            .type(RELATIONSHIP_TYPE)
+                            .object(USER_ENTITY_PREFIX + userId)
+                            .build())
+                    .build();
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    private KeyVaultSecret decrypt(SecretKey wrappingKey, String did, String json) {
+        EncryptedKeyAttribute encryptedKey;
+        try {
+            encryptedKey = objectMapper.readValue(json, EncryptedKeyEntity.class).encryptedKeyAttribute().value();
+        } catch (Exception e) {
+            throw new KeyEncryptionException("The encrypted key of " + did + " could not be parsed: " + e.getMessage());
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] dataKey = aesGcm(Cipher.DECRYPT_MODE, wrappingKey, decoder.decode(encryptedKey.wrappingIv()), did,
+                decoder.decode(encryptedKey.wrappedKey()));
+        try {
+            byte[] privateKey = aesGcm(Cipher.DECRYPT_MODE, new SecretKeySpec(dataKey, AES),
+                    decoder.decode(encryptedKey.iv()), did, decoder.decode(encryptedKey.ciphertext()));
+            return KeyVaultSecret.builder().value(new String(privateKey, StandardCharsets.UTF_8)).build();
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    private static byte[] aesGcm(int mode, SecretKey key, byte[] iv, String did, byte[] input) {
+        try {
+            Cipher cipher = Cipher.getInstance(AES_GCM);
+            cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            cipher.updateAAD(did.getBytes(StandardCharsets.UTF_8));
+            return cipher.doFinal(input);
+        } catch (GeneralSecurityException e) {
+            throw new KeyEncryptionException("Error " + (mode == Cipher.ENCRYPT_MODE ? "encrypting" : "decrypting")
+                    + " the key of " + did + ": " + e.getMessage());
+        }
+    }
+
+    private static SecretKey toMasterKey(byte[] key) {
+        if (key.length != KEY_LENGTH) {
+            throw new KeyEncryptionException("The master key must be " + KEY_LENGTH + " bytes long");
+        }
+        return new SecretKeySpec(key, AES);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        secureRandom.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String processId() {
+        return MDC.get(PROCESS_ID);
+    }
+
+}
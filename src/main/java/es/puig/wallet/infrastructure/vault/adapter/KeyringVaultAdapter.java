@@ -0,0 +1,186 @@
+package es.puig.wallet.infrastructure.vault.adapter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import es.puig.wallet.domain.exception.ParseErrorException;
+import es.puig.wallet.infrastructure.vault.config.properties.KeyringProperties;
+import es.puig.wallet.infrastructure.vault.exception.VaultConflictException;
+import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
+import es.puig.wallet.infrastructure.vault.model.VersionedSecret;
+import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import es.puig.wallet.infrastructure.vault.service.VersionedVaultService;
+import es.puig.wallet.infrastructure.vault.util.VaultAdapterUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * Stores the private keys of each wallet user in a single secret of the vault, its keyring, placed in front of the
+ * configured vault adapter. The number of secrets and of vault reads then grows with the users instead of with their
+ * credentials: the keyring of a user is read once and kept in memory for every DID of the user.
+ * <p>
+ * The user of a call is the authenticated user of the request, as every key an issuance, presentation or deletion
+ * touches belongs to it. Calls without an authenticated user, such as the DID of the EBSI configuration, keep using a
+ * secret per DID. A key that is not in the keyring is read from its own secret, so the keys written before the keyring
+ * layout was enabled keep working, and moved into the keyring when {@code migrateOnRead} is set.
+ * <p>
+ * The keyring of a user is shared by every instance of the wallet. The keyring kept in memory only serves reads: a
+ * change is applied on top of the keyring read again from the vault and written only if no other instance wrote it in
+ * between, otherwise it is applied again on top of the new one. A key missing from the keyring in memory, such as one
+ * just added by another instance, reads the keyring again before looking for its own secret.
+ */
+@Slf4j
+public class KeyringVaultAdapter implements GenericVaultService {
+
+    public static final String KEYRING_PREFIX = "keyring-";
+    private static final String CACHE_NAME = "vault.keyrings";
+    private static final int MAX_CONFLICT_RETRIES = 10;
+    private static final Duration CONFLICT_BACKOFF = Duration.ofMillis(20);
+    private static final TypeReference<Map<String, String>> KEYRING_TYPE = new TypeReference<>() {
+    };
+
+    private final VersionedVaultService vaultAdapter;
+    private final ObjectMapper objectMapper;
+    private final boolean migrateOnRead;
+    private final AsyncCache<String, Map<String, String>> keyrings;
+
+    public KeyringVaultAdapter(VersionedVaultService vaultAdapter, ObjectMapper objectMapper,
+                               KeyringProperties keyringProperties, MeterRegistry meterRegistry) {
+        this.vaultAdapter = vaultAdapter;
+        this.objectMapper = objectMapper;
+        this.migrateOnRead = keyringProperties.migrateOnRead();
+        this.keyrings = Caffeine.newBuilder()
+                .maximumSize(keyringProperties.maximumSize())
+                .expireAfterWrite(keyringProperties.ttl())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, keyrings, CACHE_NAME);
+    }
+
+    @Override
+    public Mono<Void> saveSecret(String key, KeyVaultSecret secret) {
+        return VaultAdapterUtils.forUser(userId -> updateKeyring(userId, keyring -> with(keyring, key, String.valueOf(secret.value())))
+                        .doOnSuccess(keyring -> log.debug("Secret {} saved in the keyring of {}", key, userId))
+                        .then(),
+                () -> vaultAdapter.saveSecret(key, secret));
+    }
+
+    @Override
+    public Mono<KeyVaultSecret> getSecret(String key) {
+        return VaultAdapterUtils.forUser(userId -> keyringOf(userId)
+                        .flatMap(keyring -> Mono.justOrEmpty(keyring.get(key)))
+                        // The key may have been added by another instance after the keyring was read
+                        .switchIfEmpty(Mono.defer(() -> reloadKeyring(userId).flatMap(keyring -> Mono.justOrEmpty(keyring.get(key)))))
+                        .map(value -> KeyVaultSecret.builder().value(value).build())
+                        .switchIfEmpty(Mono.defer(() -> getSecretOutsideTheKeyring(userId, key))),
+                () -> vaultAdapter.getSecret(key));
+    }
+
+    @Override
+    public Mono<Void> deleteSecret(String key) {
+        return VaultAdapterUtils.forUser(userId -> reloadKeyring(userId)
+                        .flatMap(keyring -> keyring.containsKey(key)
+                                ? updateKeyring(userId, current -> without(current, key)).then()
+                                // Not migrated yet, it is still in a secret of its own
+                                : vaultAdapter.deleteSecret(key)),
+                () -> vaultAdapter.deleteSecret(key));
+    }
+
+    /**
+     * Reads a key written with a secret per DID and moves it into the keyring of the user. A failed move does not
+     * fail the read, the key stays in its own secret and the move is attempted again on the next read.
+     */
+    private Mono<KeyVaultSecret> getSecretOutsideTheKeyring(String userId, String key) {
+        Mono<KeyVaultSecret> secret = vaultAdapter.getSecret(key);
+        if (!migrateOnRead) {
+            return secret;
+        }
+        return secret.flatMap(found -> updateKeyring(userId, keyring -> with(keyring, key, String.valueOf(found.value())))
+                .then(vaultAdapter.deleteSecret(key))
+                .doOnSuccess(result -> log.info("Secret {} moved to the keyring of {}", key, userId))
+                .onErrorResume(e -> {
+                    log.warn("Secret {} could not be moved to the keyring of {}: {}", key, userId, e.getMessage());
+                    return Mono.empty();
+                })
+                .thenReturn(found));
+    }
+
+    private Mono<Map<String, String>> keyringOf(String userId) {
+        return Mono.defer(() -> Mono.fromFuture(keyrings.get(userId, (id, executor) -> readKeyring(id).map(secret -> parse(id, secret)).toFuture()), true));
+    }
+
+    private Mono<Map<String, String>> reloadKeyring(String userId) {
+        return readKeyring(userId)
+                .map(secret -> parse(userId, secret))
+                .doOnNext(keyring -> keyrings.put(userId, CompletableFuture.completedFuture(keyring)));
+    }
+
+    /**
+     * Applies the change on top of the keyring as it is in the vault and writes it only if it was not written in
+     * between, by this instance or another one. A keyring written in between is read again and the change applied
+     * on top of it. The keyring written is the one kept in memory.
+     */
+    private Mono<Map<String, String>> updateKeyring(String userId, UnaryOperator<Map<String, String>> change) {
+        return Mono.defer(() -> readKeyring(userId)
+                        .flatMap(current -> {
+                            Map<String, String> updated = change.apply(parse(userId, current));
+                            return writeKeyring(userId, updated, current.version()).thenReturn(updated);
+                        }))
+                .retryWhen(Retry.backoff(MAX_CONFLICT_RETRIES, CONFLICT_BACKOFF)
+                        .filter(VaultConflictException.class::isInstance)
+                        .doBeforeRetry(signal -> log.debug("Keyring of {} written by another instance, applying the change again", userId))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .doOnNext(keyring -> keyrings.put(userId, CompletableFuture.completedFuture(keyring)))
+                // The keyring in memory may be the one that could not be written
+                .doOnError(e -> keyrings.synchronous().invalidate(userId));
+    }
+
+    private Mono<VersionedSecret> readKeyring(String userId) {
+        return vaultAdapter.getVersionedSecret(KEYRING_PREFIX + userId);
+    }
+
+    /**
+     * A keyring without its last key is written empty rather than deleted, the deletion of a secret cannot be made
+     * conditional on its version.
+     */
+    private Mono<Void> writeKeyring(String userId, Map<String, String> keyring, long version) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(keyring))
+                .flatMap(value -> vaultAdapter.saveSecretIfVersion(KEYRING_PREFIX + userId,
+                        KeyVaultSecret.builder().value(value).build(), version));
+    }
+
+    private Map<String, String> parse(String userId, VersionedSecret secret) {
+        if (secret.secret() == null) {
+            return Map.of();
+        }
+        try {
+            return Map.copyOf(objectMapper.readValue(String.valueOf(secret.secret().value()), KEYRING_TYPE));
+        } catch (JsonProcessingException e) {
+            throw new ParseErrorException("The keyring of " + userId + " could not be parsed: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> with(Map<String, String> keyring, String key, String value) {
+        Map<String, String> updated = new HashMap<>(keyring);
+        updated.put(key, value);
+        return Map.copyOf(updated);
+    }
+
+    private static Map<String, String> without(Map<String, String> keyring, String key) {
+        Map<String, String> updated = new HashMap<>(keyring);
+        updated.remove(key);
+        return Map.copyOf(updated);
+    }
+
+}
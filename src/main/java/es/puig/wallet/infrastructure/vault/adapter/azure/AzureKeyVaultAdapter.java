@@ -1,6 +1,7 @@
 package es.puig.wallet.infrastructure.vault.adapter.azure;
 
 import com.azure.security.keyvault.secrets.SecretAsyncClient;
+import es.puig.wallet.infrastructure.core.util.OutboundResilience;
 import es.puig.wallet.infrastructure.vault.model.VaultProviderEnum;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
 import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
@@ -10,6 +11,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import static es.puig.wallet.infrastructure.core.util.OutboundResilience.*;
+
 
 @Service
 @Slf4j
@@ -17,10 +20,11 @@ import reactor.core.publisher.Mono;
 @VaultProviderAnnotation(provider = VaultProviderEnum.AZURE)
 public class AzureKeyVaultAdapter implements GenericVaultService {
     private final SecretAsyncClient secretClient;
+    private final OutboundResilience outboundResilience;
 
     @Override
     public Mono<Void> saveSecret(String key, KeyVaultSecret secret) {
-        return secretClient.setSecret(sanitazeKey(key), secret.value().toString())
+        return outboundResilience.decorate(VAULT, WRITE, secretClient.setSecret(sanitazeKey(key), secret.value().toString()))
                 .then()
                 .doOnSuccess(voidValue -> log.info("Secret saved successfully"))
                 .onErrorResume(Exception.class, e -> Mono.error(new RuntimeException("Error saving secret in Azure Key Vault", e)));
@@ -28,7 +32,7 @@ public class AzureKeyVaultAdapter implements GenericVaultService {
 
     @Override
     public Mono<KeyVaultSecret> getSecret(String key) {
-        return secretClient.getSecret(sanitazeKey(key))
+        return outboundResilience.decorate(VAULT, READ, secretClient.getSecret(sanitazeKey(key)))
                 .flatMap(secret -> {
                     KeyVaultSecret keyVaultSecret = KeyVaultSecret.builder()
                             .value(secret.getValue())
@@ -42,8 +46,7 @@ public class AzureKeyVaultAdapter implements GenericVaultService {
 
     @Override
     public Mono<Void> deleteSecret(String key) {
-        return  secretClient.beginDeleteSecret(sanitazeKey(key))
-                .then()
+        return outboundResilience.decorate(VAULT, WRITE, secretClient.beginDeleteSecret(sanitazeKey(key)).then())
                 .doOnSuccess(voidValue -> log.info("Secret deleted successfully"))
                 .onErrorResume(Exception.class, Mono::error);
     }
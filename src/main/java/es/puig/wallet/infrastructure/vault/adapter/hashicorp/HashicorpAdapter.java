@@ -1,33 +1,44 @@
 package es.puig.wallet.infrastructure.vault.adapter.hashicorp;
 
+import es.puig.wallet.infrastructure.core.util.OutboundResilience;
+import es.puig.wallet.infrastructure.vault.adapter.hashicorp.model.HashicorpCasSecretRequest;
 import es.puig.wallet.infrastructure.vault.adapter.hashicorp.model.HashicorpSecretRequest;
 import es.puig.wallet.infrastructure.vault.adapter.hashicorp.config.HashicorpConfig;
 import es.puig.wallet.infrastructure.vault.adapter.hashicorp.model.HashicorpSecretResponse;
 import es.puig.wallet.infrastructure.vault.model.VaultProviderEnum;
+import es.puig.wallet.infrastructure.vault.exception.VaultConflictException;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
-import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import es.puig.wallet.infrastructure.vault.model.VersionedSecret;
+import es.puig.wallet.infrastructure.vault.service.VersionedVaultService;
 import es.puig.wallet.infrastructure.vault.util.VaultProviderAnnotation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.vault.core.ReactiveVaultOperations;
+import org.springframework.vault.VaultException;
 import org.springframework.vault.core.SecretNotFoundException;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
 import java.util.Objects;
 
+import static es.puig.wallet.infrastructure.core.util.OutboundResilience.*;
+
 
 @Service
 @Slf4j
 @VaultProviderAnnotation(provider = VaultProviderEnum.HASHICORP)
-public class HashicorpAdapter implements GenericVaultService {
+public class HashicorpAdapter implements VersionedVaultService {
     public static final String DATA = "/data/";
+    private static final String CAS_MISMATCH = "check-and-set parameter did not match";
 
     private final ReactiveVaultOperations vaultOperations;
     private final String hashicorpSecretPath;
+    private final OutboundResilience outboundResilience;
 
-    public HashicorpAdapter(ReactiveVaultOperations vaultOperations, HashicorpConfig hashicorpConfig) {
+    public HashicorpAdapter(ReactiveVaultOperations vaultOperations, HashicorpConfig hashicorpConfig, OutboundResilience outboundResilience) {
         this.vaultOperations = vaultOperations;
         this.hashicorpSecretPath = hashicorpConfig.getSecretPath();
+        this.outboundResilience = outboundResilience;
     }
 
     @Override
@@ -36,7 +47,7 @@ public class HashicorpAdapter implements GenericVaultService {
 
         // data is needed to write data in hashicorp api v2
         // Further information: https://developer.hashicorp.com/vault/api-docs/secret/kv/kv-v2
-        return vaultOperations.write(hashicorpSecretPath + DATA + key, hashicorpSecret)
+        return outboundResilience.decorate(VAULT, WRITE, vaultOperations.write(hashicorpSecretPath + DATA + key, hashicorpSecret))
                 .doOnSuccess(voidValue -> log.debug("Secret saved successfully"))
                 .doOnError(error -> log.error("Error saving secret: {}", error.getMessage(), error))
                 .onErrorResume(Exception.class, Mono::error)
@@ -45,7 +56,7 @@ public class HashicorpAdapter implements GenericVaultService {
 
     @Override
     public Mono<KeyVaultSecret> getSecret(String key) {
-        return vaultOperations.read(hashicorpSecretPath + DATA + key)
+        return outboundResilience.decorate(VAULT, READ, vaultOperations.read(hashicorpSecretPath + DATA + key))
                 .flatMap(response -> {
                     HashicorpSecretResponse hashicorpSecretResponse;
 
@@ -67,9 +78,36 @@ public class HashicorpAdapter implements GenericVaultService {
                 .onErrorResume(Exception.class, Mono::error);
     }
 
+    @Override
+    public Mono<VersionedSecret> getVersionedSecret(String key) {
+        return outboundResilience.decorate(VAULT, READ, vaultOperations.read(hashicorpSecretPath + DATA + key))
+                .map(response -> {
+                    Map<String, Object> body = Objects.requireNonNull(response.getData());
+                    // A deleted secret keeps its version, the next write must be made on top of it
+                    Object version = body.get("metadata") instanceof Map<?, ?> metadata ? metadata.get("version") : null;
+                    Object value = body.get("data") instanceof Map<?, ?> data ? data.get(key) : null;
+                    return VersionedSecret.builder()
+                            .secret(value != null ? KeyVaultSecret.builder().value(value).build() : null)
+                            .version(version instanceof Number number ? number.longValue() : 0)
+                            .build();
+                })
+                .defaultIfEmpty(VersionedSecret.builder().version(0).build())
+                .doOnError(error -> log.error("Error retrieving secret: {}", key, error));
+    }
+
+    @Override
+    public Mono<Void> saveSecretIfVersion(String key, KeyVaultSecret secret, long version) {
+        HashicorpCasSecretRequest hashicorpSecret = new HashicorpCasSecretRequest(key, secret.value(), version);
+        return outboundResilience.decorate(VAULT, WRITE, vaultOperations.write(hashicorpSecretPath + DATA + key, hashicorpSecret))
+                .onErrorMap(e -> e instanceof VaultException && String.valueOf(e.getMessage()).contains(CAS_MISMATCH),
+                        e -> new VaultConflictException("Secret " + key + " changed after version " + version))
+                .doOnSuccess(voidValue -> log.debug("Secret saved successfully on top of version {}", version))
+                .then();
+    }
+
     @Override
     public Mono<Void> deleteSecret(String key) {
-        return vaultOperations.delete(hashicorpSecretPath + DATA + key)
+        return outboundResilience.decorate(VAULT, WRITE, vaultOperations.delete(hashicorpSecretPath + DATA + key))
                 .doOnSuccess(voidValue -> log.debug("Secret deleted successfully"))
                 .onErrorResume(Exception.class, e -> {
                     log.error("Error deleting secret: " + key, e.getMessage(), e);
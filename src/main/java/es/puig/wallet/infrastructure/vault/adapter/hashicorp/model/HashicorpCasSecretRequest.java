@@ -0,0 +1,16 @@
+package es.puig.wallet.infrastructure.vault.adapter.hashicorp.model;
+
+import java.util.Map;
+
+/*
+    *
+    * A write of the Hashicorp API v2 only applied when the current version of the secret is the "cas" option, 0 for a
+    * secret that does not exist yet.
+    * Further information: https://developer.hashicorp.com/vault/api-docs/secret/kv/kv-v2#create-update-secret
+    *
+ */
+public record HashicorpCasSecretRequest(Map<String, Long> options, Map<String, String> data) {
+    public HashicorpCasSecretRequest(String key, Object value, long version) {
+        this(Map.of("cas", version), Map.of(key, value.toString()));
+    }
+}
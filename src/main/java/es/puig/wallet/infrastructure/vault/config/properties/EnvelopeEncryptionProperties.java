@@ -0,0 +1,26 @@
+package es.puig.wallet.infrastructure.vault.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.util.Optional;
+
+/**
+ * Storage of the private keys encrypted in the broker, where only the master key that wraps their data encryption
+ * keys is stored in the vault
+ *
+ * @param enabled         - whether the keys of the authenticated users are stored encrypted in the broker
+ * @param masterKeyName   - name of the secret of the vault holding the master key, 32 bytes encoded in base64
+ * @param createMasterKey - whether a missing master key is created, otherwise it has to be provisioned beforehand
+ */
+@ConfigurationProperties(prefix = "vault.envelope")
+public record EnvelopeEncryptionProperties(Boolean enabled, String masterKeyName, Boolean createMasterKey) {
+
+    @ConstructorBinding
+    public EnvelopeEncryptionProperties(Boolean enabled, String masterKeyName, Boolean createMasterKey) {
+        this.enabled = Optional.ofNullable(enabled).orElse(false);
+        this.masterKeyName = Optional.ofNullable(masterKeyName).orElse("wallet-master-key");
+        this.createMasterKey = Optional.ofNullable(createMasterKey).orElse(false);
+    }
+
+}
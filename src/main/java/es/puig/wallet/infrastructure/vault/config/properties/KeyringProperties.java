@@ -0,0 +1,29 @@
+package es.puig.wallet.infrastructure.vault.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Layout storing all the private keys of a user in a single secret of the vault, its keyring, instead of one secret
+ * per DID
+ *
+ * @param enabled       - whether the keys of the authenticated users are kept in keyrings
+ * @param migrateOnRead - whether a key still stored in its own secret is moved to the keyring of its user when read
+ * @param maximumSize   - maximum number of users whose keyring is kept in memory
+ * @param ttl           - time a keyring is kept in memory after it is read from the vault
+ */
+@ConfigurationProperties(prefix = "vault.keyring")
+public record KeyringProperties(Boolean enabled, Boolean migrateOnRead, Long maximumSize, Duration ttl) {
+
+    @ConstructorBinding
+    public KeyringProperties(Boolean enabled, Boolean migrateOnRead, Long maximumSize, Duration ttl) {
+        this.enabled = Optional.ofNullable(enabled).orElse(false);
+        this.migrateOnRead = Optional.ofNullable(migrateOnRead).orElse(true);
+        this.maximumSize = Optional.ofNullable(maximumSize).orElse(10_000L);
+        this.ttl = Optional.ofNullable(ttl).orElse(Duration.ofMinutes(10));
+    }
+
+}
@@ -0,0 +1,24 @@
+package es.puig.wallet.infrastructure.vault.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Cache of the signers built from the private keys stored in the vault
+ *
+ * @param maximumSize - maximum number of DIDs whose signer is kept
+ * @param ttl         - time a signer is kept after its private key is read from the vault
+ */
+@ConfigurationProperties(prefix = "vault.signer-cache")
+public record SignerCacheProperties(Long maximumSize, Duration ttl) {
+
+    @ConstructorBinding
+    public SignerCacheProperties(Long maximumSize, Duration ttl) {
+        this.maximumSize = Optional.ofNullable(maximumSize).orElse(1_000L);
+        this.ttl = Optional.ofNullable(ttl).orElse(Duration.ofMinutes(10));
+    }
+
+}
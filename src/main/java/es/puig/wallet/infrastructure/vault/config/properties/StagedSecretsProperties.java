@@ -0,0 +1,24 @@
+package es.puig.wallet.infrastructure.vault.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Secrets kept in memory by the flows that create them until they are committed to the vault
+ *
+ * @param maximumSize - maximum number of secrets waiting to be committed, the flows staging more are refused
+ * @param ttl         - time a secret waits to be committed before it is discarded, it bounds the length of a flow
+ */
+@ConfigurationProperties(prefix = "vault.staged-secrets")
+public record StagedSecretsProperties(Long maximumSize, Duration ttl) {
+
+    @ConstructorBinding
+    public StagedSecretsProperties(Long maximumSize, Duration ttl) {
+        this.maximumSize = Optional.ofNullable(maximumSize).orElse(10_000L);
+        this.ttl = Optional.ofNullable(ttl).orElse(Duration.ofMinutes(30));
+    }
+
+}
@@ -0,0 +1,7 @@
+package es.puig.wallet.infrastructure.vault.exception;
+
+public class VaultConflictException extends RuntimeException {
+    public VaultConflictException(String message) {
+        super(message);
+    }
+}
@@ -5,4 +5,7 @@ public class VaultFactoryException extends RuntimeException {
     public VaultFactoryException(int size) {
         super(MESSAGE + size);
     }
+    public VaultFactoryException(String message) {
+        super(message);
+    }
 }
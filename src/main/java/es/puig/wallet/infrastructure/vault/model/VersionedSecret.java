@@ -0,0 +1,12 @@
+package es.puig.wallet.infrastructure.vault.model;
+
+import lombok.Builder;
+
+/**
+ * A secret together with the version of the vault it was read at, {@code secret} is null when the secret does not
+ * exist.
+ */
+@Builder
+public record VersionedSecret(KeyVaultSecret secret, long version) {
+
+}
@@ -0,0 +1,25 @@
+package es.puig.wallet.infrastructure.vault.service;
+
+import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
+import es.puig.wallet.infrastructure.vault.model.VersionedSecret;
+import reactor.core.publisher.Mono;
+
+/**
+ * A vault able to write a secret only when it has not changed since it was read, so secrets shared by several
+ * instances of the wallet can be updated without losing the changes of the others.
+ */
+public interface VersionedVaultService extends GenericVaultService {
+
+    /**
+     * Reads the secret with its current version, a missing secret is read with no value.
+     */
+    Mono<VersionedSecret> getVersionedSecret(String key);
+
+    /**
+     * Writes the secret when its current version is still {@code version}, the version of a secret read with no
+     * value creates it. Fails with a {@link es.puig.wallet.infrastructure.vault.exception.VaultConflictException}
+     * when another write came first.
+     */
+    Mono<Void> saveSecretIfVersion(String key, KeyVaultSecret secret, long version);
+
+}
@@ -1,32 +1,108 @@
 package es.puig.wallet.infrastructure.vault.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import es.puig.wallet.application.port.VaultService;
+import es.puig.wallet.domain.exception.KeyPairGenerationError;
+import es.puig.wallet.domain.exception.NoSuchDidException;
+import es.puig.wallet.infrastructure.vault.config.properties.StagedSecretsProperties;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
 import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import es.puig.wallet.infrastructure.vault.util.SignerCache;
 import es.puig.wallet.infrastructure.vault.util.VaultFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+@Slf4j
 @Service
 public class VaultServiceImpl implements VaultService {
+
+    private static final String STAGED_SECRETS_CACHE_NAME = "vault.staged-secrets";
+
     private final GenericVaultService vaultService;
+    private final SignerCache signerCache;
+    private final Cache<String, KeyVaultSecret> stagedSecrets;
+    private final long maximumStagedSecrets;
 
-    public VaultServiceImpl(VaultFactory vaultFactory) {
+    public VaultServiceImpl(VaultFactory vaultFactory, SignerCache signerCache,
+                            StagedSecretsProperties stagedSecretsProperties, MeterRegistry meterRegistry) {
         this.vaultService = vaultFactory.getVaultService();
+        this.signerCache = signerCache;
+        this.maximumStagedSecrets = stagedSecretsProperties.maximumSize();
+        // Not bounded by size, an evicted secret would be lost by a flow still running: new ones are refused instead
+        this.stagedSecrets = Caffeine.newBuilder()
+                .expireAfterWrite(stagedSecretsProperties.ttl())
+                // A signer may have been built from a secret of an abandoned flow
+                .removalListener((String key, KeyVaultSecret secret, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        signerCache.invalidate(key);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, stagedSecrets, STAGED_SECRETS_CACHE_NAME);
     }
 
     @Override
     public Mono<Void> saveSecret(String key, KeyVaultSecret secret) {
-        return vaultService.saveSecret(key, secret);
+        return vaultService.saveSecret(key, secret)
+                .doFinally(signal -> signerCache.invalidate(key));
     }
 
     @Override
     public Mono<KeyVaultSecret> getSecretByKey(String key) {
-        return vaultService.getSecret(key);
+        return Mono.defer(() -> {
+            KeyVaultSecret stagedSecret = stagedSecrets.getIfPresent(key);
+            return stagedSecret != null ? Mono.just(stagedSecret) : vaultService.getSecret(key);
+        });
     }
 
     @Override
     public Mono<Void> deleteSecretByKey(String key) {
-        return vaultService.deleteSecret(key);
+        // The signer goes even when the deletion fails, the key may be gone from the vault all the same
+        return vaultService.deleteSecret(key)
+                .doFinally(signal -> signerCache.invalidate(key));
+    }
+
+    @Override
+    public Mono<Void> stageSecret(String key, KeyVaultSecret secret) {
+        return Mono.defer(() -> {
+            if (stagedSecrets.estimatedSize() >= maximumStagedSecrets) {
+                return Mono.error(new KeyPairGenerationError("Too many issuances in progress, the key pair of " + key + " is not staged"));
+            }
+            stagedSecrets.put(key, secret);
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * The secret stays staged until the vault has it, so it can still be read while it is being written. The
+     * signer built from it is kept, the key is the same.
+     */
+    @Override
+    public Mono<Void> commitSecret(String key) {
+        return Mono.defer(() -> {
+            KeyVaultSecret stagedSecret = stagedSecrets.getIfPresent(key);
+            if (stagedSecret == null) {
+                return Mono.error(new NoSuchDidException("No staged secret to commit for " + key + ", it may have expired"));
+            }
+            return vaultService.saveSecret(key, stagedSecret)
+                    .doOnSuccess(result -> {
+                        stagedSecrets.invalidate(key);
+                        log.debug("Staged secret of {} committed to the vault", key);
+                    });
+        });
+    }
+
+    @Override
+    public void discardSecret(String key) {
+        if (stagedSecrets.asMap().remove(key) != null) {
+            signerCache.invalidate(key);
+            log.debug("Staged secret of {} discarded", key);
+        }
     }
 }
@@ -0,0 +1,128 @@
+package es.puig.wallet.infrastructure.vault.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.nimbusds.jose.*;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import es.puig.wallet.infrastructure.vault.config.properties.SignerCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.security.auth.DestroyFailedException;
+import java.security.interfaces.ECPrivateKey;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Keeps the signers built from the private keys of the vault, keyed by DID, so signing a proof, ID token or
+ * presentation does not read and parse the private key every time.
+ * <p>
+ * Signers are kept for a bounded time and number of DIDs. Concurrent requests for a DID share a single read of the
+ * vault, and a failed read is not kept. The key material of a signer is released as soon as it leaves the cache, and
+ * writing or deleting the secret of a DID removes its signer.
+ */
+@Slf4j
+@Component
+public class SignerCache {
+
+    private static final String CACHE_NAME = "vault.signers";
+
+    private final AsyncCache<String, CachedSigner> signers;
+
+    public SignerCache(SignerCacheProperties signerCacheProperties, MeterRegistry meterRegistry) {
+        this.signers = Caffeine.newBuilder()
+                .maximumSize(signerCacheProperties.maximumSize())
+                .expireAfterWrite(signerCacheProperties.ttl())
+                .removalListener((String did, CachedSigner signer, RemovalCause cause) -> {
+                    if (signer != null) {
+                        signer.destroy();
+                        log.debug("Signer of {} released: {}", did, cause);
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, signers, CACHE_NAME);
+    }
+
+    /**
+     * The loader runs with the context of the caller, which carries the authenticated user the vault may need.
+     */
+    public Mono<CachedSigner> get(String did, Function<String, Mono<CachedSigner>> loader) {
+        return Mono.deferContextual(context -> Mono.fromFuture(
+                signers.get(did, (key, executor) -> loader.apply(key).contextWrite(context).toFuture()), true));
+    }
+
+    public void invalidate(String did) {
+        signers.synchronous().invalidate(did);
+    }
+
+    /**
+     * A signer ready to sign with the private key of a DID. Signing and releasing the key exclude each other, so a
+     * signature started before the signer is evicted completes with the key.
+     */
+    public static final class CachedSigner {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final JWSAlgorithm algorithm;
+        private final String keyId;
+        private ECPrivateKey privateKey;
+        private JWSSigner signer;
+
+        public CachedSigner(ECKey key, String keyId) throws JOSEException {
+            this.algorithm = JWSAlgorithm.parse(key.getAlgorithm().getName());
+            this.keyId = keyId;
+            this.privateKey = key.toECPrivateKey();
+            this.signer = new ECDSASigner(privateKey, key.getCurve());
+        }
+
+        /**
+         * Signs the claims as a JWT of the given type, or returns empty when the signer has been released.
+         */
+        public Optional<String> sign(JOSEObjectType type, JWTClaimsSet claims) throws JOSEException {
+            lock.readLock().lock();
+            try {
+                if (signer == null) {
+                    return Optional.empty();
+                }
+                JWSHeader header = new JWSHeader.Builder(algorithm)
+                        .type(type)
+                        .keyID(keyId)
+                        .build();
+                SignedJWT signedJWT = new SignedJWT(header, claims);
+                signedJWT.sign(signer);
+                return Optional.of(signedJWT.serialize());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void destroy() {
+            lock.writeLock().lock();
+            try {
+                signer = null;
+                if (privateKey != null && !privateKey.isDestroyed()) {
+                    try {
+                        privateKey.destroy();
+                    } catch (DestroyFailedException e) {
+                        // Most providers cannot wipe their keys, dropping the last reference is all that can be done
+                        log.trace("Private key cannot be destroyed, released for garbage collection");
+                    }
+                }
+                privateKey = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+    }
+
+}
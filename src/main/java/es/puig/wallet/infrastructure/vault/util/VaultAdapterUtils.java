@@ -0,0 +1,40 @@
+package es.puig.wallet.infrastructure.vault.util;
+
+import com.azure.core.exception.ResourceNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.vault.core.SecretNotFoundException;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class VaultAdapterUtils {
+
+    private VaultAdapterUtils() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Runs the call meant for the keys of the authenticated user of the request, or the one of the keys without an
+     * owner, stored in a secret per DID, when there is no authenticated user.
+     */
+    public static <T> Mono<T> forUser(Function<String, Mono<T>> userCall, Supplier<Mono<T>> perDidCall) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(Authentication::getName)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(userId -> userId.map(userCall).orElseGet(perDidCall));
+    }
+
+    /**
+     * Whether the vault answered that the secret does not exist, as opposed to not answering at all.
+     */
+    public static boolean isNotFound(Throwable e) {
+        return e instanceof SecretNotFoundException || e instanceof ResourceNotFoundException;
+    }
+
+}
@@ -1,24 +1,65 @@
 package es.puig.wallet.infrastructure.vault.util;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.application.port.BrokerService;
+import es.puig.wallet.infrastructure.vault.adapter.EnvelopeVaultAdapter;
+import es.puig.wallet.infrastructure.vault.adapter.KeyringVaultAdapter;
+import es.puig.wallet.infrastructure.vault.config.properties.EnvelopeEncryptionProperties;
+import es.puig.wallet.infrastructure.vault.config.properties.KeyringProperties;
 import es.puig.wallet.infrastructure.vault.exception.VaultFactoryException;
 import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import es.puig.wallet.infrastructure.vault.service.VersionedVaultService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class VaultFactory {
 
     private final List<GenericVaultService> vaultServices;
+    private final KeyringProperties keyringProperties;
+    private final EnvelopeEncryptionProperties envelopeEncryptionProperties;
+    private final BrokerService brokerService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
-    public GenericVaultService getVaultService() {
+    private GenericVaultService vaultService;
+
+    /**
+     * The adapter of the configured provider, behind the layout the keys of the users are stored with. Keys stored
+     * encrypted in the broker take precedence over the keyring layout.
+     */
+    public synchronized GenericVaultService getVaultService() {
         if (vaultServices.size() != 1) {
             throw new VaultFactoryException(vaultServices.size());
         }
+        if (vaultService == null) {
+            vaultService = buildVaultService(vaultServices.get(0));
+        }
+        return vaultService;
+    }
 
-        return vaultServices.get(0);
+    private GenericVaultService buildVaultService(GenericVaultService providerAdapter) {
+        if (envelopeEncryptionProperties.enabled()) {
+            if (keyringProperties.enabled()) {
+                log.warn("The keys are stored encrypted in the broker, the keyring layout is ignored");
+            }
+            return new EnvelopeVaultAdapter(providerAdapter, brokerService, objectMapper, envelopeEncryptionProperties);
+        }
+        if (keyringProperties.enabled()) {
+            // The keyring of a user is shared by every instance, it can only be kept where writes can be conditional
+            if (!(providerAdapter instanceof VersionedVaultService versionedAdapter)) {
+                throw new VaultFactoryException("The keyring layout needs a vault with check-and-set writes, "
+                        + providerAdapter.getClass().getSimpleName() + " has none");
+            }
+            return new KeyringVaultAdapter(versionedAdapter, objectMapper, keyringProperties, meterRegistry);
+        }
+        return providerAdapter;
     }
 }
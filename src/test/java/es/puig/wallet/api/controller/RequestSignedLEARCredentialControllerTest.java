@@ -1,12 +1,15 @@
 package es.puig.wallet.api.controller;
 
 import es.puig.wallet.application.workflow.issuance.DeferredCredentialDomeProfileWorkflow;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
 import es.puig.wallet.infrastructure.core.controller.RequestSignedLEARCredentialController;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -22,6 +25,9 @@ class RequestSignedLEARCredentialControllerTest {
     @Mock
     private DeferredCredentialDomeProfileWorkflow deferredCredentialDomeProfileWorkflow;
 
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
+
     @InjectMocks
     private RequestSignedLEARCredentialController requestSignedLEARCredentialController;
 
@@ -5,11 +5,14 @@ import es.puig.wallet.application.workflow.presentation.AttestationExchangeDOMEW
 import es.puig.wallet.application.workflow.presentation.AttestationExchangeTurnstileWorkflow;
 import es.puig.wallet.domain.model.CredentialsBasicInfo;
 import es.puig.wallet.domain.model.VcSelectorResponse;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
 import es.puig.wallet.infrastructure.core.controller.VerifiablePresentationController;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.testcontainers.shaded.com.google.common.net.HttpHeaders;
@@ -26,6 +29,8 @@ class VerifiablePresentationControllerTest {
     private AttestationExchangeCommonWorkflow attestationExchangeCommonWorkflow;
     @Mock
     private AttestationExchangeDOMEWorkflow attestationExchangeDOMEWorkflow;
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
     @InjectMocks
     private VerifiablePresentationController verifiablePresentationController;
 
@@ -6,10 +6,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.application.port.AppConfig;
 import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.CredentialSummaryEntity;
+import es.puig.wallet.domain.model.WalletUser;
 import es.puig.wallet.domain.service.DataService;
 import es.puig.wallet.domain.service.DidKeyGeneratorService;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.infrastructure.ebsi.config.EbsiConfig;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -33,8 +36,7 @@ import static es.puig.wallet.domain.util.ApplicationConstants.CONTENT_TYPE;
 import static es.puig.wallet.domain.util.ApplicationConstants.CONTENT_TYPE_APPLICATION_JSON;
 import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class EbsiConfigTest {
@@ -54,7 +56,7 @@ class EbsiConfigTest {
     @Mock
     private DataService dataService;
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
 
     @InjectMocks
     private EbsiConfig ebsiConfig;
@@ -81,7 +83,7 @@ class EbsiConfigTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             // Invoke the @PostConstruct method manually
             StepVerifier.create(ebsiConfig.init())
@@ -116,7 +118,7 @@ class EbsiConfigTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             Map<String, Object> expectedMap = Map.of("access_token",token);
             when(objectMapper.readValue(eq("token"), any(TypeReference.class)))
@@ -168,7 +170,7 @@ class EbsiConfigTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             Map<String, Object> expectedMap = Map.of("access_token",token);
             when(objectMapper.readValue(eq("token"), any(TypeReference.class)))
@@ -178,9 +180,11 @@ class EbsiConfigTest {
             when(brokerService.getEntityById(anyString(), anyString())).thenReturn(Mono.just(Optional.empty()));
             when(didKeyGeneratorService.generateDidKeyJwkJcsPub()).thenReturn(Mono.just(expectedDid));
 
-            when(dataService.createUserEntity(anyString())).thenReturn(Mono.just("userEntity"));
+            when(dataService.createUserEntity(anyString())).thenReturn(Mono.just(WalletUser.builder().id("userEntity").build()));
 
-            when(brokerService.postEntity(anyString(),anyString()))
+            when(dataService.buildCredentialSummaryEntity(anyString(), anyList()))
+                    .thenReturn(Mono.just(CredentialSummaryEntity.builder().id("summaryEntity").build()));
+            when(brokerService.batchUpsertEntities(anyString(), anyList()))
                     .thenReturn(Mono.empty());
 
             // Invoke the @PostConstruct method manually
@@ -188,7 +192,9 @@ class EbsiConfigTest {
                     .expectNext(expectedDid)
                     .verifyComplete();
 
-
+            verify(brokerService).batchUpsertEntities(anyString(), argThat(entities -> entities.size() == 3
+                    && entities.get(2) instanceof CredentialSummaryEntity));
+            verify(brokerService, never()).postEntity(anyString(), any());
         }
     }
 
@@ -7,7 +7,9 @@ import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.application.workflow.issuance.impl.CredentialIssuanceEbsiWorkflowImpl;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.*;
+import es.puig.wallet.blockhound.SubscribeOnTestThread;
 import es.puig.wallet.domain.util.ApplicationUtils;
+import es.puig.wallet.infrastructure.broker.util.KnownUserCache;
 import es.puig.wallet.infrastructure.ebsi.config.EbsiConfig;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,14 +25,13 @@ import reactor.util.function.Tuples;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
-import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
 import static es.puig.wallet.domain.util.ApplicationUtils.extractResponseType;
 import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
+@SubscribeOnTestThread
 class CredentialIssuanceEbsiWorkflowImplTest {
 
     @Mock
@@ -50,6 +51,8 @@ class CredentialIssuanceEbsiWorkflowImplTest {
     @Mock
     private BrokerService brokerService;
     @Mock
+    private KnownUserCache knownUserCache;
+    @Mock
     private ProofJWTService proofJWTService;
     @Mock
     private SignerService signerService;
@@ -77,8 +80,8 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -93,9 +96,11 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(ebsiCredentialServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -115,8 +120,8 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -131,12 +136,12 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.empty())) //First interaction return empty because it's a new user
-                    .thenReturn(Mono.just(Optional.of(userEntity)));
-            when(dataService.createUserEntity("userId")).thenReturn(Mono.just("NewUserEntity"));
-            when(brokerService.postEntity(processId, "NewUserEntity")).thenReturn(Mono.empty());
+            WalletUser newUserEntity = WalletUser.builder().id("NewUserEntity").build();
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(newUserEntity));
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(newUserEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(ebsiCredentialServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -156,8 +161,8 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -177,9 +182,11 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
             when(dataService.saveVC(processId, "userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(ebsiCredentialServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -199,8 +206,8 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -220,9 +227,11 @@ class CredentialIssuanceEbsiWorkflowImplTest {
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(ebsiCredentialServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -10,13 +10,17 @@ import es.puig.wallet.domain.model.CredentialOffer;
 import es.puig.wallet.domain.model.TokenResponse;
 import es.puig.wallet.domain.service.impl.EbsiAuthorisationServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.ClientResponse;
@@ -42,7 +46,9 @@ class EbsiAuthorisationServiceImplTest {
     @Mock
     private ObjectMapper objectMapper;
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
     @InjectMocks
     private EbsiAuthorisationServiceImpl ebsiAuthorisationService;
 
@@ -73,7 +79,7 @@ class EbsiAuthorisationServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
 
             Map<String, String> map = new HashMap<>();
@@ -120,7 +126,7 @@ class EbsiAuthorisationServiceImplTest {
                     return Mono.just(responseBuilder.body("jwt").build());
                 }
             }).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             Map<String, String> map = new HashMap<>();
             map.put("request_uri","https://resource");
@@ -165,7 +171,7 @@ class EbsiAuthorisationServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
 
             StepVerifier.create(ebsiAuthorisationService.getRequestWithOurGeneratedCodeVerifier(processId, credentialOffer, authorisationServerMetadata, credentialIssuerMetadata, did))
@@ -201,7 +207,7 @@ class EbsiAuthorisationServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             Map<String, String> map = new HashMap<>();
             map.put("not known property","example");
@@ -240,7 +246,7 @@ class EbsiAuthorisationServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             // Execute & Verify
             StepVerifier.create(ebsiAuthorisationService.sendTokenRequest(codeVerifier, did, authorisationServerMetadata, params))
@@ -271,7 +277,7 @@ class EbsiAuthorisationServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             // Execute & Verify
             StepVerifier.create(ebsiAuthorisationService.sendTokenRequest(codeVerifier, did, authorisationServerMetadata, params))
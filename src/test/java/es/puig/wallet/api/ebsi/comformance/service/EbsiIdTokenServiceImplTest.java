@@ -8,7 +8,8 @@ import es.puig.wallet.domain.model.AuthorisationServerMetadata;
 import es.puig.wallet.domain.service.SignerService;
 import es.puig.wallet.domain.service.impl.EbsiIdTokenServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -43,7 +44,7 @@ class EbsiIdTokenServiceImplTest {
     private SignerService signerService;
 
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
 
     @InjectMocks
     private EbsiIdTokenServiceImpl idTokenService;
@@ -76,7 +77,7 @@ class EbsiIdTokenServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             Map<String, String> map = new HashMap<>();
             map.put("code","1234");
@@ -132,7 +133,7 @@ class EbsiIdTokenServiceImplTest {
         when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
         WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-        when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+        when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
         StepVerifier.create(idTokenService.getIdTokenResponse(processId, did, authorisationServerMetadata, jwt))
                 .expectError(RuntimeException.class)
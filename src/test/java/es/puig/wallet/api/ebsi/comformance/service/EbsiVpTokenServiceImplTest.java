@@ -10,13 +10,17 @@ import es.puig.wallet.domain.model.VcSelectorResponse;
 import es.puig.wallet.domain.service.PresentationService;
 import es.puig.wallet.domain.service.impl.EbsiVpTokenServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.ClientResponse;
@@ -44,8 +48,10 @@ class EbsiVpTokenServiceImplTest {
     @Mock
     private PresentationService presentationService;
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
 
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
     @InjectMocks
     private EbsiVpTokenServiceImpl vpTokenService;
 
@@ -291,7 +297,7 @@ class EbsiVpTokenServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             Map<String, String> map = new HashMap<>();
             map.put("code", "1234");
@@ -3,18 +3,22 @@ package es.puig.wallet.api.facade;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.application.workflow.presentation.impl.AttestationExchangeCommonWorkflowImpl;
+import es.puig.wallet.blockhound.SubscribeOnTestThread;
 import es.puig.wallet.domain.model.AuthorizationRequest;
 import es.puig.wallet.domain.model.CredentialsBasicInfo;
 import es.puig.wallet.domain.model.VcSelectorRequest;
 import es.puig.wallet.domain.model.VcSelectorResponse;
 import es.puig.wallet.domain.service.*;
 import es.puig.wallet.domain.util.ApplicationUtils;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -40,10 +44,13 @@ class AttestationExchangeCommonWorkflowImplTest {
     private BrokerService brokerService;
     @Mock
     private PresentationService presentationService;
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
     @InjectMocks
     private AttestationExchangeCommonWorkflowImpl attestationExchangeServiceFacade;
 
     @Test
+    @SubscribeOnTestThread
     void getSelectableCredentialsRequiredToBuildThePresentationTest() {
         try (MockedStatic<ApplicationUtils> ignored = Mockito.mockStatic(ApplicationUtils.class)){
             String processId = "123";
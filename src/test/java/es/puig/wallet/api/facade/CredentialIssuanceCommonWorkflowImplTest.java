@@ -4,12 +4,16 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.application.port.BrokerService;
+import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.application.workflow.issuance.impl.CredentialIssuanceCommonWorkflowImpl;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.*;
+import es.puig.wallet.blockhound.SubscribeOnTestThread;
 import es.puig.wallet.domain.util.ApplicationUtils;
+import es.puig.wallet.infrastructure.broker.util.KnownUserCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
@@ -27,10 +31,12 @@ import java.util.Optional;
 import static es.puig.wallet.domain.util.ApplicationConstants.*;
 import static es.puig.wallet.domain.util.ApplicationUtils.extractResponseType;
 import static es.puig.wallet.domain.util.ApplicationUtils.getUserIdFromToken;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
+@SubscribeOnTestThread
 class CredentialIssuanceCommonWorkflowImplTest {
 
     @Mock
@@ -50,6 +56,10 @@ class CredentialIssuanceCommonWorkflowImplTest {
     @Mock
     private BrokerService brokerService;
     @Mock
+    private VaultService vaultService;
+    @Mock
+    private KnownUserCache knownUserCache;
+    @Mock
     private ProofJWTService proofJWTService;
     @Mock
     private SignerService signerService;
@@ -79,8 +89,49 @@ class CredentialIssuanceCommonWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
+            String json = "{\"credential_request\":\"example\"}";
+            ObjectMapper objectMapper2 = new ObjectMapper();
+            JsonNode jsonNode = objectMapper2.readTree(json);
+            String jwtProof = "jwt";
+
+            when(getUserIdFromToken(authorizationToken)).thenReturn(Mono.just("userId"));
+            when(credentialOfferService.getCredentialOfferFromCredentialOfferUri(processId, qrContent)).thenReturn(Mono.just(credentialOffer));
+            when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
+            when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
+            when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
+            when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
+            when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
+            when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
+            when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
+            when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
+
+            StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
+            verify(knownUserCache).markKnown("userId");
+        }
+    }
+
+    @Test
+    void getCredentialWithPreAuthorizedCode_KnownUser_UpsertsWithoutTheUserEntity() throws JsonProcessingException {
+        try (MockedStatic<ApplicationUtils> ignored = Mockito.mockStatic(ApplicationUtils.class)) {
+            String processId = "processId";
+            String authorizationToken = "authToken";
+            String qrContent = "qrContent";
+            CredentialOffer.Credential credential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LEARCredential")).build();
+            CredentialOffer.Grant grant = CredentialOffer.Grant.builder().preAuthorizedCodeGrant(CredentialOffer.Grant.PreAuthorizedCodeGrant.builder().build()).build();
+            CredentialOffer credentialOffer = CredentialOffer.builder().grant(grant).credentials(List.of(credential)).build();
+            AuthorisationServerMetadata authorisationServerMetadata = AuthorisationServerMetadata.builder().build();
+            CredentialIssuerMetadata credentialIssuerMetadata = CredentialIssuerMetadata.builder().credentialIssuer("issuer").build();
+            TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
+            CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
+            String did = "did:ebsi:123";
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -91,15 +142,244 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
             when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
             when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
             when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(knownUserCache.isKnown("userId")).thenReturn(true);
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
+            verify(dataService, never()).createUserEntity(anyString());
+        }
+    }
+
+    @Test
+    void getCredentialWithPreAuthorizedCode_NoCredentialObtained_DiscardsTheKeyWithoutWritingTheVault() throws JsonProcessingException {
+        String processId = "processId";
+        String authorizationToken = "authToken";
+        String qrContent = "qrContent";
+        CredentialOffer.Credential credential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LEARCredential")).build();
+        CredentialOffer.Grant grant = CredentialOffer.Grant.builder().preAuthorizedCodeGrant(CredentialOffer.Grant.PreAuthorizedCodeGrant.builder().build()).build();
+        CredentialOffer credentialOffer = CredentialOffer.builder().grant(grant).credentials(List.of(credential)).build();
+        AuthorisationServerMetadata authorisationServerMetadata = AuthorisationServerMetadata.builder().build();
+        CredentialIssuerMetadata credentialIssuerMetadata = CredentialIssuerMetadata.builder().credentialIssuer("issuer").build();
+        TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
+        String did = "did:ebsi:123";
+        JsonNode jsonNode = new ObjectMapper().readTree("{\"credential_request\":\"example\"}");
+        String jwtProof = "jwt";
+
+        when(credentialOfferService.getCredentialOfferFromCredentialOfferUri(processId, qrContent)).thenReturn(Mono.just(credentialOffer));
+        when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
+        when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
+        when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+        when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
+        when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
+        when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
+        when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credential.format(), credential.types()))
+                .thenReturn(Mono.error(new RuntimeException("Invalid PIN")));
+
+        StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
+        verify(vaultService, never()).commitSecret(anyString());
+        verify(vaultService).discardSecret(did);
+        verify(brokerService, never()).batchUpsertEntities(anyString(), anyList());
+    }
+
+    @Test
+    void getCredentialWithPreAuthorizedCode_MultipleCredentials_PersistsEachCredentialAsItIsObtained() throws JsonProcessingException {
+        try (MockedStatic<ApplicationUtils> ignored = Mockito.mockStatic(ApplicationUtils.class)) {
+            String processId = "processId";
+            String authorizationToken = "authToken";
+            String qrContent = "qrContent";
+            CredentialOffer.Credential learCredential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LEARCredential")).build();
+            CredentialOffer.Credential legalPersonCredential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LegalPersonCredential")).build();
+            CredentialOffer.Grant grant = CredentialOffer.Grant.builder().preAuthorizedCodeGrant(CredentialOffer.Grant.PreAuthorizedCodeGrant.builder().build()).build();
+            CredentialOffer credentialOffer = CredentialOffer.builder().grant(grant).credentials(List.of(learCredential, legalPersonCredential)).build();
+            AuthorisationServerMetadata authorisationServerMetadata = AuthorisationServerMetadata.builder().build();
+            CredentialIssuerMetadata credentialIssuerMetadata = CredentialIssuerMetadata.builder().credentialIssuer("issuer").build();
+            TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
+            CredentialResponse learCredentialResponse = CredentialResponse.builder().credential("ey1234").build();
+            CredentialResponse legalPersonCredentialResponse = CredentialResponse.builder().credential("ey5678").build();
+            String did = "did:ebsi:123";
+            WalletUser userEntity = WalletUser.builder().id("userEntity").build();
+            String json = "{\"credential_request\":\"example\"}";
+            ObjectMapper objectMapper2 = new ObjectMapper();
+            JsonNode jsonNode = objectMapper2.readTree(json);
+            String jwtProof = "jwt";
+
+            when(getUserIdFromToken(authorizationToken)).thenReturn(Mono.just("userId"));
+            when(credentialOfferService.getCredentialOfferFromCredentialOfferUri(processId, qrContent)).thenReturn(Mono.just(credentialOffer));
+            when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
+            when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
+            when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
+            when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
+            when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
+            when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
+            when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, "jwt_vc", List.of("LEARCredential"))).thenReturn(Mono.just(learCredentialResponse));
+            when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, "jwt_vc", List.of("LegalPersonCredential"))).thenReturn(Mono.just(legalPersonCredentialResponse));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
+            CredentialEntity learCredentialEntity = CredentialEntity.builder().id("learCredentialEntity").build();
+            CredentialEntity legalPersonCredentialEntity = CredentialEntity.builder().id("legalPersonCredentialEntity").build();
+            when(dataService.saveVC(processId, "userId", learCredentialResponse)).thenReturn(Mono.just(learCredentialEntity));
+            when(dataService.saveVC(processId, "userId", legalPersonCredentialResponse)).thenReturn(Mono.just(legalPersonCredentialEntity));
+            CredentialSummaryEntity learSummaryEntity = CredentialSummaryEntity.builder().id("learSummaryEntity").build();
+            CredentialSummaryEntity legalPersonSummaryEntity = CredentialSummaryEntity.builder().id("legalPersonSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(learCredentialEntity))).thenReturn(Mono.just(learSummaryEntity));
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(legalPersonCredentialEntity))).thenReturn(Mono.just(legalPersonSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, learCredentialEntity, learSummaryEntity))).thenReturn(Mono.empty());
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, legalPersonCredentialEntity, legalPersonSummaryEntity)))
+                    .thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+
+            StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent))
+                    .expectError(RuntimeException.class)
+                    .verify();
+
+            // The key is committed before the first credential is stored, and kept although the second one could not be saved
+            InOrder inOrder = inOrder(brokerService, vaultService);
+            inOrder.verify(vaultService).commitSecret(did);
+            inOrder.verify(brokerService).batchUpsertEntities(processId, List.of(userEntity, learCredentialEntity, learSummaryEntity));
+            inOrder.verify(brokerService).batchUpsertEntities(processId, List.of(userEntity, legalPersonCredentialEntity, legalPersonSummaryEntity));
+            verify(vaultService, times(1)).commitSecret(did);
+            verify(vaultService, never()).deleteSecretByKey(anyString());
+        }
+    }
+
+    @Test
+    void getCredentialWithPreAuthorizedCode_FailedSave_DeletesTheCommittedKey() throws JsonProcessingException {
+        try (MockedStatic<ApplicationUtils> ignored = Mockito.mockStatic(ApplicationUtils.class)) {
+            String processId = "processId";
+            String authorizationToken = "authToken";
+            String qrContent = "qrContent";
+            CredentialOffer.Credential credential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LEARCredential")).build();
+            CredentialOffer.Grant grant = CredentialOffer.Grant.builder().preAuthorizedCodeGrant(CredentialOffer.Grant.PreAuthorizedCodeGrant.builder().build()).build();
+            CredentialOffer credentialOffer = CredentialOffer.builder().grant(grant).credentials(List.of(credential)).build();
+            AuthorisationServerMetadata authorisationServerMetadata = AuthorisationServerMetadata.builder().build();
+            CredentialIssuerMetadata credentialIssuerMetadata = CredentialIssuerMetadata.builder().credentialIssuer("issuer").build();
+            TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
+            CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
+            String did = "did:ebsi:123";
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
+            JsonNode jsonNode = new ObjectMapper().readTree("{\"credential_request\":\"example\"}");
+            String jwtProof = "jwt";
+
+            when(getUserIdFromToken(authorizationToken)).thenReturn(Mono.just("userId"));
+            when(credentialOfferService.getCredentialOfferFromCredentialOfferUri(processId, qrContent)).thenReturn(Mono.just(credentialOffer));
+            when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
+            when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
+            when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
+            when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
+            when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
+            when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credential.format(), credential.types())).thenReturn(Mono.just(credentialResponse));
+            when(knownUserCache.isKnown("userId")).thenReturn(true);
+            when(dataService.saveVC(processId, "userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
+            when(brokerService.batchUpsertEntities(processId, List.of(credentialEntity, credentialSummaryEntity)))
+                    .thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+            when(brokerService.getEntityById(processId, "credentialEntity")).thenReturn(Mono.just(Optional.empty()));
+            when(vaultService.deleteSecretByKey(did)).thenReturn(Mono.empty());
+
+            StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent))
+                    .expectError(RuntimeException.class)
+                    .verify();
+
+            InOrder inOrder = inOrder(brokerService, vaultService);
+            inOrder.verify(vaultService).commitSecret(did);
+            inOrder.verify(brokerService).batchUpsertEntities(processId, List.of(credentialEntity, credentialSummaryEntity));
+            inOrder.verify(vaultService).deleteSecretByKey(did);
+        }
+    }
+
+    @Test
+    void getCredentialWithPreAuthorizedCode_FailedSaveOfAStoredCredential_KeepsTheCommittedKey() throws JsonProcessingException {
+        try (MockedStatic<ApplicationUtils> ignored = Mockito.mockStatic(ApplicationUtils.class)) {
+            String processId = "processId";
+            String authorizationToken = "authToken";
+            String qrContent = "qrContent";
+            CredentialOffer.Credential credential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LEARCredential")).build();
+            CredentialOffer.Grant grant = CredentialOffer.Grant.builder().preAuthorizedCodeGrant(CredentialOffer.Grant.PreAuthorizedCodeGrant.builder().build()).build();
+            CredentialOffer credentialOffer = CredentialOffer.builder().grant(grant).credentials(List.of(credential)).build();
+            AuthorisationServerMetadata authorisationServerMetadata = AuthorisationServerMetadata.builder().build();
+            CredentialIssuerMetadata credentialIssuerMetadata = CredentialIssuerMetadata.builder().credentialIssuer("issuer").build();
+            TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
+            CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
+            String did = "did:ebsi:123";
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
+            JsonNode jsonNode = new ObjectMapper().readTree("{\"credential_request\":\"example\"}");
+            String jwtProof = "jwt";
+
+            when(getUserIdFromToken(authorizationToken)).thenReturn(Mono.just("userId"));
+            when(credentialOfferService.getCredentialOfferFromCredentialOfferUri(processId, qrContent)).thenReturn(Mono.just(credentialOffer));
+            when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
+            when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
+            when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
+            when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
+            when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
+            when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credential.format(), credential.types())).thenReturn(Mono.just(credentialResponse));
+            when(knownUserCache.isKnown("userId")).thenReturn(true);
+            when(dataService.saveVC(processId, "userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
+            when(brokerService.batchUpsertEntities(processId, List.of(credentialEntity, credentialSummaryEntity)))
+                    .thenReturn(Mono.error(new RuntimeException("Broker unavailable")));
+            when(brokerService.getEntityById(processId, "credentialEntity")).thenReturn(Mono.just(Optional.of("{}")));
+
+            StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent))
+                    .expectError(RuntimeException.class)
+                    .verify();
+
+            verify(vaultService).commitSecret(did);
+            verify(vaultService, never()).deleteSecretByKey(anyString());
+        }
+    }
+
+    @Test
+    void getCredentialWithPreAuthorizedCode_FailedCommit_DoesNotSaveTheCredential() throws JsonProcessingException {
+        try (MockedStatic<ApplicationUtils> ignored = Mockito.mockStatic(ApplicationUtils.class)) {
+            String processId = "processId";
+            String authorizationToken = "authToken";
+            String qrContent = "qrContent";
+            CredentialOffer.Credential credential = CredentialOffer.Credential.builder().format("jwt_vc").types(List.of("LEARCredential")).build();
+            CredentialOffer.Grant grant = CredentialOffer.Grant.builder().preAuthorizedCodeGrant(CredentialOffer.Grant.PreAuthorizedCodeGrant.builder().build()).build();
+            CredentialOffer credentialOffer = CredentialOffer.builder().grant(grant).credentials(List.of(credential)).build();
+            AuthorisationServerMetadata authorisationServerMetadata = AuthorisationServerMetadata.builder().build();
+            CredentialIssuerMetadata credentialIssuerMetadata = CredentialIssuerMetadata.builder().credentialIssuer("issuer").build();
+            TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
+            CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
+            String did = "did:ebsi:123";
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
+            JsonNode jsonNode = new ObjectMapper().readTree("{\"credential_request\":\"example\"}");
+            String jwtProof = "jwt";
+
+            when(getUserIdFromToken(authorizationToken)).thenReturn(Mono.just("userId"));
+            when(credentialOfferService.getCredentialOfferFromCredentialOfferUri(processId, qrContent)).thenReturn(Mono.just(credentialOffer));
+            when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
+            when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
+            when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
+            when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
+            when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
+            when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credential.format(), credential.types())).thenReturn(Mono.just(credentialResponse));
+            when(dataService.saveVC(processId, "userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.error(new RuntimeException("Vault unavailable")));
+
+            StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent))
+                    .expectError(RuntimeException.class)
+                    .verify();
+
+            verify(brokerService, never()).batchUpsertEntities(anyString(), anyList());
+            verify(vaultService).discardSecret(did);
         }
     }
 
@@ -117,8 +397,8 @@ class CredentialIssuanceCommonWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -129,16 +409,17 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
             when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
             when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
             when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.empty())) //First interaction return empty because it's a new user
-                    .thenReturn(Mono.just(Optional.of(userEntity)));
-            when(dataService.createUserEntity("userId")).thenReturn(Mono.just("NewUserEntity"));
-            when(brokerService.postEntity(processId, "NewUserEntity")).thenReturn(Mono.empty());
+            WalletUser newUserEntity = WalletUser.builder().id("NewUserEntity").build();
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(newUserEntity));
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(newUserEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -158,8 +439,8 @@ class CredentialIssuanceCommonWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -172,6 +453,7 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
             when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
             when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
             when(ebsiAuthorisationService.getRequestWithOurGeneratedCodeVerifier(processId, credentialOffer, authorisationServerMetadata, credentialIssuerMetadata, did)).thenReturn(Mono.just(Tuples.of("jwt", "codeVerifier")));
             when(extractResponseType("jwt")).thenReturn(Mono.just("id_token"));
             when(ebsiIdTokenService.getIdTokenResponse(processId, did, authorisationServerMetadata, "jwt")).thenReturn(Mono.just(mockedMap));
@@ -179,9 +461,11 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -201,8 +485,8 @@ class CredentialIssuanceCommonWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().credential("ey1234").build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -215,6 +499,7 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
             when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
             when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
             when(ebsiAuthorisationService.getRequestWithOurGeneratedCodeVerifier(processId, credentialOffer, authorisationServerMetadata, credentialIssuerMetadata, did)).thenReturn(Mono.just(Tuples.of("jwt", "codeVerifier")));
             when(extractResponseType("jwt")).thenReturn(Mono.just("vp_token"));
             when(ebsiVpTokenService.getVpRequest(processId, authorizationToken, authorisationServerMetadata, "jwt")).thenReturn(Mono.just(mockedMap));
@@ -222,9 +507,11 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, credentialOffer.credentials().get(0).format(), credentialOffer.credentials().get(0).types())).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
             when(dataService.saveVC(processId,"userId", credentialResponse)).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
@@ -250,8 +537,8 @@ class CredentialIssuanceCommonWorkflowImplTest {
             TokenResponse tokenResponse = TokenResponse.builder().cNonce("123").build();
             CredentialResponse credentialResponse = CredentialResponse.builder().credential("unsigned_credential").format(VC_JSON).transactionId("123").build();
             String did = "did:ebsi:123";
-            String userEntity = "existingUserEntity";
-            String credentialEntity = "credentialEntity";
+            WalletUser userEntity = WalletUser.builder().id("existingUserEntity").build();
+            CredentialEntity credentialEntity = CredentialEntity.builder().id("credentialEntity").build();
             String json = "{\"credential_request\":\"example\"}";
             ObjectMapper objectMapper2 = new ObjectMapper();
             JsonNode jsonNode = objectMapper2.readTree(json);
@@ -307,21 +594,24 @@ class CredentialIssuanceCommonWorkflowImplTest {
             when(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer)).thenReturn(Mono.just(credentialIssuerMetadata));
             when(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata)).thenReturn(Mono.just(authorisationServerMetadata));
             when(didKeyGeneratorService.generateDidKey()).thenReturn(Mono.just(did));
+            when(vaultService.commitSecret(did)).thenReturn(Mono.empty());
             when(preAuthorizedService.getPreAuthorizedToken(processId, credentialOffer, authorisationServerMetadata, authorizationToken)).thenReturn(Mono.just(tokenResponse));
             when(proofJWTService.buildCredentialRequest(tokenResponse.cNonce(), credentialIssuerMetadata.credentialIssuer(), did)).thenReturn(Mono.just(jsonNode));
             when(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof")).thenReturn(Mono.just(jwtProof));
             when(credentialService.getCredential(jwtProof, tokenResponse, credentialIssuerMetadata, JWT_VC, null)).thenReturn(Mono.just(credentialResponse));
-            when(brokerService.getEntityById(processId, USER_ENTITY_PREFIX + "userId")).thenReturn(Mono.just(Optional.of(userEntity)));
+            when(dataService.createUserEntity("userId")).thenReturn(Mono.just(userEntity));
             when(dataService.saveDOMEUnsignedCredential("userId", credentialResponse.credential())).thenReturn(Mono.just(credentialEntity));
-            when(brokerService.postEntity(processId, credentialEntity)).thenReturn(Mono.empty());
             when(objectMapper.readTree(anyString())).thenReturn(jsonNodeCredential);
+            TransactionEntity transactionEntity = TransactionEntity.builder().id("transaction entity").build();
             when(dataService.saveTransaction(
                     "urn:uuid:8700bee5-4621-4720-94de-e866fb7197e9",
                     credentialResponse.transactionId(),
                     tokenResponse.accessToken(),
                     credentialIssuerMetadata.deferredCredentialEndpoint()))
-                    .thenReturn(Mono.just("transaction entity"));
-            when(brokerService.postEntity(processId, "transaction entity")).thenReturn(Mono.empty());
+                    .thenReturn(Mono.just(transactionEntity));
+            CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummaryEntity").build();
+            when(dataService.buildCredentialSummaryEntity("userId", List.of(credentialEntity))).thenReturn(Mono.just(credentialSummaryEntity));
+            when(brokerService.batchUpsertEntities(processId, List.of(userEntity, credentialEntity, transactionEntity, credentialSummaryEntity))).thenReturn(Mono.empty());
 
             StepVerifier.create(credentialIssuanceServiceFacade.identifyAuthMethod(processId, authorizationToken, qrContent)).verifyComplete();
         }
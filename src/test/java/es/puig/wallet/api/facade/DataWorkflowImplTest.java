@@ -7,10 +7,13 @@ import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.application.workflow.data.impl.DataWorkflowImpl;
 import es.puig.wallet.domain.model.CredentialStatus;
+import es.puig.wallet.domain.model.CredentialSummaryEntity;
 import es.puig.wallet.domain.model.CredentialsBasicInfo;
+import es.puig.wallet.domain.model.EntityAttribute;
 import es.puig.wallet.domain.service.DataService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -19,9 +22,13 @@ import reactor.test.StepVerifier;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
 
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class DataWorkflowImplTest {
@@ -57,17 +64,121 @@ class DataWorkflowImplTest {
 
         List<CredentialsBasicInfo> expectedCredentials = List.of(new CredentialsBasicInfo("id1", List.of("type"), CredentialStatus.VALID,List.of("jwt_vc","cwt_vc"),credentialSubject, ZonedDateTime.now()));
 
-        when(brokerService.getAllCredentialsByUserId(processId, userId)).thenReturn(Mono.just(credentials));
-        when(dataService.getUserVCsInJson(credentials)).thenReturn(Mono.just(expectedCredentials));
+        when(brokerService.getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)).thenReturn(Mono.just(Optional.of(credentials)));
+        when(dataService.getUserVCsFromCredentialSummary(credentials)).thenReturn(Mono.just(expectedCredentials));
 
         StepVerifier.create(userDataFacadeService.getAllCredentialsByUserId(processId, userId))
                 .expectNext(expectedCredentials)
                 .verifyComplete();
 
-        verify(brokerService).getAllCredentialsByUserId(processId, userId);
-        verify(dataService).getUserVCsInJson(credentials);
+        verify(brokerService).getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId);
+        verify(brokerService, never()).getCredentialsPageByUserId(anyString(), anyString(), anyInt(), anyInt());
     }
 
+    @Test
+    void getUserVCs_SummaryMissing_ReadsTheCredentialEntitiesAndRebuildsTheSummary() {
+        String processId = "process1";
+        String userId = "user1";
+        List<CredentialsBasicInfo> credentials = List.of(CredentialsBasicInfo.builder().id("id1").build());
+
+        when(brokerService.getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)).thenReturn(Mono.just(Optional.empty()));
+        when(brokerService.getCredentialsPageByUserId(processId, userId, CREDENTIALS_PAGE_SIZE, 0)).thenReturn(Mono.just("page"));
+        when(dataService.getUserVCsInJson("page")).thenReturn(Mono.just(credentials));
+        CredentialSummaryEntity summary = CredentialSummaryEntity.builder().id(CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId).build();
+        when(dataService.buildCompleteCredentialSummaryEntity(userId, credentials)).thenReturn(Mono.just(summary));
+        when(brokerService.upsertEntity(processId, summary)).thenReturn(Mono.error(new RuntimeException("broker unavailable")));
+
+        StepVerifier.create(userDataFacadeService.getAllCredentialsByUserId(processId, userId))
+                .expectNext(credentials)
+                .verifyComplete();
+
+        verify(brokerService).upsertEntity(processId, summary);
+        // The summary is never rebuilt from the read replica, it may not have the latest credentials yet
+        verify(brokerService, never()).getCredentialsPageByUserIdFromReadReplica(anyString(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getUserVCs_SummaryNotComplete_ReadsTheCredentialEntities() {
+        String processId = "process1";
+        String userId = "user1";
+        List<CredentialsBasicInfo> credentials = List.of(CredentialsBasicInfo.builder().id("id1").build());
+
+        when(brokerService.getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)).thenReturn(Mono.just(Optional.of("partial summary")));
+        when(dataService.getUserVCsFromCredentialSummary("partial summary")).thenReturn(Mono.empty());
+        when(brokerService.getCredentialsPageByUserId(processId, userId, CREDENTIALS_PAGE_SIZE, 0)).thenReturn(Mono.just("page"));
+        when(dataService.getUserVCsInJson("page")).thenReturn(Mono.just(credentials));
+        CredentialSummaryEntity summary = CredentialSummaryEntity.builder().id(CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId).build();
+        when(dataService.buildCompleteCredentialSummaryEntity(userId, credentials)).thenReturn(Mono.just(summary));
+        when(brokerService.upsertEntity(processId, summary)).thenReturn(Mono.empty());
+
+        StepVerifier.create(userDataFacadeService.getAllCredentialsByUserId(processId, userId))
+                .expectNext(credentials)
+                .verifyComplete();
+    }
+
+    @Test
+    void getUserVCs_CredentialDeletedDuringTheRebuild_IsRemovedFromTheStoredSummary() {
+        String processId = "process1";
+        String userId = "user1";
+        CredentialsBasicInfo kept = CredentialsBasicInfo.builder().id("id1").build();
+        CredentialsBasicInfo deleted = CredentialsBasicInfo.builder().id("id2").build();
+        List<CredentialsBasicInfo> credentials = List.of(kept, deleted);
+
+        when(brokerService.getEntityById(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)).thenReturn(Mono.just(Optional.empty()));
+        when(brokerService.getCredentialsPageByUserId(processId, userId, CREDENTIALS_PAGE_SIZE, 0))
+                .thenReturn(Mono.just("page"))
+                .thenReturn(Mono.just("page without id2"));
+        when(dataService.getUserVCsInJson("page")).thenReturn(Mono.just(credentials));
+        when(dataService.getUserVCsInJson("page without id2")).thenReturn(Mono.just(List.of(kept)));
+        CredentialSummaryEntity summary = CredentialSummaryEntity.builder().id(CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId).build();
+        when(dataService.buildCompleteCredentialSummaryEntity(userId, credentials)).thenReturn(Mono.just(summary));
+        when(brokerService.upsertEntity(processId, summary)).thenReturn(Mono.empty());
+        when(brokerService.deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, "id2")).thenReturn(Mono.empty());
+
+        StepVerifier.create(userDataFacadeService.getAllCredentialsByUserId(processId, userId))
+                .expectNext(List.of(kept))
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(brokerService);
+        inOrder.verify(brokerService).upsertEntity(processId, summary);
+        inOrder.verify(brokerService).deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, "id2");
+    }
+
+    @Test
+    void streamAllCredentialsByUserId_RequestsPagesUntilTheLastOneIsNotFull() {
+        String processId = "process1";
+        String userId = "user1";
+        List<CredentialsBasicInfo> fullPage = IntStream.range(0, CREDENTIALS_PAGE_SIZE)
+                .mapToObj(i -> CredentialsBasicInfo.builder().id("id" + i).build())
+                .toList();
+        List<CredentialsBasicInfo> lastPage = List.of(CredentialsBasicInfo.builder().id("last").build());
+
+        when(brokerService.getCredentialsPageByUserId(processId, userId, CREDENTIALS_PAGE_SIZE, 0)).thenReturn(Mono.just("page1"));
+        when(brokerService.getCredentialsPageByUserId(processId, userId, CREDENTIALS_PAGE_SIZE, CREDENTIALS_PAGE_SIZE)).thenReturn(Mono.just("page2"));
+        when(dataService.getUserVCsInJson("page1")).thenReturn(Mono.just(fullPage));
+        when(dataService.getUserVCsInJson("page2")).thenReturn(Mono.just(lastPage));
+
+        StepVerifier.create(userDataFacadeService.streamAllCredentialsByUserId(processId, userId))
+                .expectNextSequence(fullPage)
+                .expectNext(lastPage.get(0))
+                .verifyComplete();
+
+        verify(brokerService, times(2)).getCredentialsPageByUserId(eq(processId), eq(userId), anyInt(), anyInt());
+    }
+
+    @Test
+    void getCredentialsPageByUserId_CapsThePageSize_andReadsFromTheReadReplica() {
+        String processId = "process1";
+        String userId = "user1";
+        List<CredentialsBasicInfo> page = List.of(CredentialsBasicInfo.builder().id("id1").build());
+
+        when(brokerService.getCredentialsPageByUserIdFromReadReplica(processId, userId, MAX_CREDENTIALS_PAGE_SIZE, 10)).thenReturn(Mono.just("page"));
+        when(dataService.getUserVCsInJson("page")).thenReturn(Mono.just(page));
+
+        StepVerifier.create(userDataFacadeService.getCredentialsPageByUserId(processId, userId, MAX_CREDENTIALS_PAGE_SIZE + 1, 10))
+                .expectNext(page.get(0))
+                .verifyComplete();
+    }
 
     @Test
     void deleteVerifiableCredentialById_CredentialExists_DeletesCredential() {
@@ -81,6 +192,7 @@ class DataWorkflowImplTest {
         when(dataService.extractDidFromVerifiableCredential(credentialEntity)).thenReturn(Mono.just(did));
         when(vaultService.deleteSecretByKey(did)).thenReturn(Mono.empty());
         when(brokerService.deleteCredentialByIdAndUserId(processId, credentialId, userId)).thenReturn(Mono.empty());
+        when(brokerService.deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credentialId)).thenReturn(Mono.empty());
 
         StepVerifier.create(userDataFacadeService.deleteCredentialByIdAndUserId(processId, credentialId, userId))
                 .verifyComplete();
@@ -88,7 +200,36 @@ class DataWorkflowImplTest {
         verify(brokerService).getCredentialByIdAndUserId(processId, credentialId,userId);
         verify(dataService).extractDidFromVerifiableCredential(credentialEntity);
         verify(vaultService).deleteSecretByKey(did);
-        verify(brokerService).deleteCredentialByIdAndUserId(processId, credentialId, userId);
+        InOrder inOrder = inOrder(brokerService);
+        inOrder.verify(brokerService).deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credentialId);
+        inOrder.verify(brokerService).deleteCredentialByIdAndUserId(processId, credentialId, userId);
+        // Removed again in case a summary rebuilt meanwhile stored it back
+        inOrder.verify(brokerService).deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credentialId);
+        verify(brokerService, never()).updateEntityAttributes(anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    void deleteVerifiableCredentialById_CredentialDeletionFails_MarksSummaryIncomplete() {
+        String processId = "process1";
+        String userId = "user1";
+        String credentialId = "cred1";
+        String did = "did:example:123";
+        String credentialEntity = "credential";
+        RuntimeException brokerError = new RuntimeException("broker unavailable");
+
+        when(brokerService.getCredentialByIdAndUserId(processId, credentialId,userId)).thenReturn(Mono.just(credentialEntity));
+        when(dataService.extractDidFromVerifiableCredential(credentialEntity)).thenReturn(Mono.just(did));
+        when(vaultService.deleteSecretByKey(did)).thenReturn(Mono.empty());
+        when(brokerService.deleteEntityAttributeInstance(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId, CREDENTIALS, credentialId)).thenReturn(Mono.empty());
+        when(brokerService.deleteCredentialByIdAndUserId(processId, credentialId, userId)).thenReturn(Mono.error(brokerError));
+        when(brokerService.updateEntityAttributes(eq(processId), eq(CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId), anyMap())).thenReturn(Mono.empty());
+
+        StepVerifier.create(userDataFacadeService.deleteCredentialByIdAndUserId(processId, credentialId, userId))
+                .expectErrorMatches(e -> e == brokerError)
+                .verify();
+
+        verify(brokerService).updateEntityAttributes(processId, CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId,
+                Map.of(COMPLETE, new EntityAttribute<>(PROPERTY_TYPE, false)));
     }
 
 }
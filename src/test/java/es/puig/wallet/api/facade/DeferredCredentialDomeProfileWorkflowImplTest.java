@@ -3,12 +3,13 @@ package es.puig.wallet.api.facade;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import es.puig.wallet.application.port.BrokerService;
 import es.puig.wallet.application.workflow.issuance.impl.DeferredCredentialDomeProfileWorkflowImpl;
 import es.puig.wallet.domain.exception.CredentialNotAvailableException;
 import es.puig.wallet.domain.exception.FailedDeserializingException;
+import es.puig.wallet.domain.model.CredentialEntity;
 import es.puig.wallet.domain.model.CredentialResponse;
+import es.puig.wallet.domain.model.CredentialSummaryEntity;
 import es.puig.wallet.domain.model.EntityAttribute;
 import es.puig.wallet.domain.model.TransactionDataAttribute;
 import es.puig.wallet.domain.model.TransactionEntity;
@@ -23,12 +24,13 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.Map;
 
 import static es.puig.wallet.domain.util.ApplicationConstants.JWT_VC;
 import static es.puig.wallet.domain.util.ApplicationConstants.PROPERTY_TYPE;
+import static es.puig.wallet.domain.util.ApplicationConstants.TRANSACTION_DATA_ATTRIBUTE;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -81,10 +83,19 @@ class DeferredCredentialDomeProfileWorkflowImplTest {
         when(brokerService.getCredentialByIdAndUserId(processId,credentialId, userId))
                 .thenReturn(Mono.just(credentialJson));
 
+        CredentialEntity updatedCredentialEntity = CredentialEntity.builder().id(credentialId).build();
+        CredentialSummaryEntity credentialSummaryEntity = CredentialSummaryEntity.builder().id("credentialSummary").build();
         when(dataService.updateVCEntityWithSignedFormat(credentialJson,credentialResponse))
-                .thenReturn(Mono.just("UpdatedCredentialEntity"));
+                .thenReturn(Mono.just(updatedCredentialEntity));
 
-        when(brokerService.updateEntity(processId, credentialId, "UpdatedCredentialEntity"))
+        when(dataService.buildCredentialSummaryEntity(userId, List.of(updatedCredentialEntity)))
+                .thenReturn(Mono.just(credentialSummaryEntity));
+        when(brokerService.upsertEntity(processId, credentialSummaryEntity))
+                .thenReturn(Mono.empty());
+        Map<String, Object> signedFormatAttributes = Map.of(JWT_VC, "credential");
+        when(dataService.buildSignedFormatAttributes(credentialResponse))
+                .thenReturn(Mono.just(signedFormatAttributes));
+        when(brokerService.appendEntityAttributes(processId, credentialId, signedFormatAttributes))
                 .thenReturn(Mono.empty());
         when(brokerService.deleteTransactionByTransactionId(processId,transactionEntity.id()))
                 .thenReturn(Mono.empty());
@@ -99,7 +110,7 @@ class DeferredCredentialDomeProfileWorkflowImplTest {
         String userId = "userId";
         String credentialId = "credentialId";
         String transactionJson = "transaction";
-        String updatedTransactionJson = "updatedTransaction";
+        Map<String, Object> updatedTransactionData = Map.of(TRANSACTION_DATA_ATTRIBUTE, "transactionData");
 
         TransactionEntity transactionEntity = TransactionEntity.builder()
                 .id("trans123")
@@ -124,9 +135,6 @@ class DeferredCredentialDomeProfileWorkflowImplTest {
                 .thenReturn(Mono.just(transactionJson));
         when(objectMapper.readValue(eq(transactionJson), any(TypeReference.class)))
                 .thenReturn(transactions);
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(transactionEntity)).thenReturn("transaction entity");
         when(credentialService.getCredentialDomeDeferredCase(
                 transactionEntity.transactionDataAttribute().value().transactionId(),
                 transactionEntity.transactionDataAttribute().value().accessToken(),
@@ -134,9 +142,9 @@ class DeferredCredentialDomeProfileWorkflowImplTest {
         ))
                 .thenReturn(Mono.just(credentialResponse));
 
-        when(dataService.updateTransactionWithNewTransactionId("transaction entity", "newTransId"))
-                .thenReturn(Mono.just(updatedTransactionJson));
-        when(brokerService.updateEntity(processId, transactionEntity.id(), updatedTransactionJson))
+        when(dataService.buildTransactionDataWithNewTransactionId(transactionEntity, "newTransId"))
+                .thenReturn(Mono.just(updatedTransactionData));
+        when(brokerService.updateEntityAttributes(processId, transactionEntity.id(), updatedTransactionData))
                 .thenReturn(Mono.empty());
 
         StepVerifier.create(service.requestDeferredCredential(processId, userId, credentialId))
@@ -7,7 +7,8 @@ import es.puig.wallet.domain.model.AuthorisationServerMetadata;
 import es.puig.wallet.domain.model.CredentialIssuerMetadata;
 import es.puig.wallet.domain.service.impl.AuthorisationServerMetadataServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -35,7 +36,7 @@ class AuthorisationServerMetadataServiceImplTest {
     @Mock
     private AppConfig appConfig;
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
     @InjectMocks
     private AuthorisationServerMetadataServiceImpl authorisationServerMetadataService;
 
@@ -63,7 +64,7 @@ class AuthorisationServerMetadataServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             when(objectMapper.readValue("response", AuthorisationServerMetadata.class)).thenReturn(authorizationServerMetadata);
 
@@ -91,7 +92,7 @@ class AuthorisationServerMetadataServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             StepVerifier.create(authorisationServerMetadataService.getAuthorizationServerMetadataFromCredentialIssuerMetadata(processId, credentialIssuerMetadata))
                     .expectError(RuntimeException.class)
@@ -2,7 +2,8 @@ package es.puig.wallet.api.service;
 
 import es.puig.wallet.domain.model.AuthorizationRequest;
 import es.puig.wallet.domain.service.impl.AuthorizationRequestServiceImpl;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -25,7 +26,7 @@ import static org.mockito.Mockito.when;
 class AuthorizationRequestServiceImplTest {
 
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
     @InjectMocks
     private AuthorizationRequestServiceImpl authorizationRequestService;
 
@@ -47,7 +48,7 @@ class AuthorizationRequestServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.VERIFIER)).thenReturn(webClient);
 
 
             StepVerifier.create(authorizationRequestService.getAuthorizationRequestFromVcLoginRequest(processId,qrContent,authorizationToken))
@@ -74,7 +75,7 @@ class AuthorizationRequestServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.VERIFIER)).thenReturn(webClient);
 
             StepVerifier.create(authorizationRequestService.getAuthorizationRequestFromVcLoginRequest(processId,qrContent,authorizationToken))
                     .expectError(RuntimeException.class)
@@ -1,9 +1,12 @@
 package es.puig.wallet.api.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.domain.service.impl.CborGenerationServiceImpl;
+import es.puig.wallet.infrastructure.core.config.properties.CryptoSchedulerProperties;
+import es.puig.wallet.infrastructure.core.util.CryptoScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.test.StepVerifier;
 
@@ -13,8 +16,8 @@ import java.util.Objects;
 @ExtendWith(MockitoExtension.class)
 class CborGenerationServiceImplTest {
 
-    @InjectMocks
-    private CborGenerationServiceImpl cborGenerationService;
+    private final CborGenerationServiceImpl cborGenerationService = new CborGenerationServiceImpl(new ObjectMapper(),
+            new CryptoScheduler(new CryptoSchedulerProperties(2, null), new SimpleMeterRegistry()));
 
     @Test
     void generateCborTest() throws ParseException {
@@ -8,7 +8,8 @@ import es.puig.wallet.domain.model.CredentialIssuerMetadata;
 import es.puig.wallet.domain.model.CredentialOffer;
 import es.puig.wallet.domain.service.impl.CredentialIssuerMetadataServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -36,7 +37,7 @@ class CredentialIssuerMetadataServiceImplTest {
     @Mock
     private AppConfig appConfig;
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
     @InjectMocks
     private CredentialIssuerMetadataServiceImpl credentialIssuerMetadataService;
 
@@ -64,7 +65,7 @@ class CredentialIssuerMetadataServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             when(objectMapper.readTree("response")).thenReturn(jsonNode);
             when(objectMapper.treeToValue(jsonNode, CredentialIssuerMetadata.class)).thenReturn(credentialIssuerMetadataWithoutTheHardcodedEndpoint);
@@ -97,7 +98,7 @@ class CredentialIssuerMetadataServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
             when(objectMapper.readTree("response")).thenReturn(jsonNode);
             when(objectMapper.readValue("response", CredentialIssuerMetadata.class)).thenReturn(expectedCredentialIssuerMetadata);
 
@@ -124,7 +125,7 @@ class CredentialIssuerMetadataServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
             StepVerifier.create(credentialIssuerMetadataService.getCredentialIssuerMetadataFromCredentialOffer(processId, credentialOffer))
                     .expectError(RuntimeException.class)
                     .verify();
@@ -149,7 +150,7 @@ class CredentialIssuerMetadataServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
             when(objectMapper.readTree("response")).thenThrow(new JsonProcessingException("Deserialization error") {
             });
 
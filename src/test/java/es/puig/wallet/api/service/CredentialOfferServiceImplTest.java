@@ -5,7 +5,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.domain.model.CredentialOffer;
 import es.puig.wallet.domain.service.impl.CredentialOfferServiceImpl;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -31,7 +32,7 @@ class CredentialOfferServiceImplTest {
     private ObjectMapper objectMapper;
 
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
 
     @InjectMocks
     private CredentialOfferServiceImpl credentialOfferService;
@@ -87,7 +88,7 @@ class CredentialOfferServiceImplTest {
         when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
         WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-        when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+        when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
         ObjectMapper objectMapper1 = new ObjectMapper();
         JsonNode jsonNode = objectMapper1.readTree(credentialOfferJsonNode);
@@ -149,7 +150,7 @@ class CredentialOfferServiceImplTest {
         when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
         WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-        when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+        when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
         ObjectMapper objectMapper1 = new ObjectMapper();
         JsonNode jsonNode = objectMapper1.readTree(credentialOfferJsonNode);
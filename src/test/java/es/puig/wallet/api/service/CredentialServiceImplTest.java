@@ -9,7 +9,8 @@ import es.puig.wallet.domain.model.CredentialOffer;
 import es.puig.wallet.domain.model.CredentialResponse;
 import es.puig.wallet.domain.model.TokenResponse;
 import es.puig.wallet.domain.service.impl.CredentialServiceImpl;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -37,7 +38,7 @@ class CredentialServiceImplTest {
     private ObjectMapper objectMapper;
 
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
     @InjectMocks
     private CredentialServiceImpl credentialService;
 
@@ -68,7 +69,7 @@ class CredentialServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             StepVerifier.create(credentialService.getCredential(jwt,tokenResponse, credentialIssuerMetadata,JWT_VC, List.of("VerifiableCredential","LEARCredential")))
                     .expectNext(mockCredentialResponse)
@@ -98,7 +99,7 @@ class CredentialServiceImplTest {
         when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
         WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-        when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+        when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
         StepVerifier.create(credentialService.getCredential(jwt,tokenResponse, credentialIssuerMetadata,JWT_VC, List.of("VerifiableCredential","LEARCredential")))
                 .expectError(RuntimeException.class)
@@ -130,7 +131,7 @@ class CredentialServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             StepVerifier.create(credentialService.getCredential(jwt,tokenResponse, credentialIssuerMetadata,JWT_VC, null))
                     .expectNext(mockCredentialResponse)
@@ -163,7 +164,7 @@ class CredentialServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             StepVerifier.create(credentialService.getCredential(jwt,tokenResponse, credentialIssuerMetadata,JWT_VC, List.of("LEARCredential")))
                     .expectNext(mockCredentialResponse)
@@ -192,7 +193,7 @@ class CredentialServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             StepVerifier.create(credentialService.getCredential(jwt,tokenResponse, credentialIssuerMetadata ,JWT_VC, List.of("LEARCredential")))
                     .expectError(RuntimeException.class)
@@ -223,7 +224,7 @@ class CredentialServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             StepVerifier.create(credentialService.getCredential(jwt,tokenResponse, credentialIssuerMetadata ,JWT_VC, List.of("LEARCredential")))
                     .expectError(FailedDeserializingException.class)
@@ -240,7 +241,7 @@ class CredentialServiceImplTest {
 
             ExchangeFunction exchangeFunction = mock(ExchangeFunction.class);
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             when(objectMapper.writeValueAsString(any()))
                     .thenThrow(new JsonProcessingException("Serialization error") {});
@@ -305,7 +306,7 @@ class CredentialServiceImplTest {
                 }
                 return Mono.just(responseBuilder.build());
             }).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
             when(objectMapper.writeValueAsString(any())).thenReturn("credentialRequest");
             when(objectMapper.readValue("deferredResponse", CredentialResponse.class)).thenReturn(mockDeferredResponse1);
@@ -354,7 +355,7 @@ class CredentialServiceImplTest {
                 }
                 return Mono.just(responseBuilder.build());
             }).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
 
             when(objectMapper.writeValueAsString(any())).thenReturn("credentialRequest");
@@ -400,7 +401,7 @@ class CredentialServiceImplTest {
             }
             return Mono.just(responseBuilder.build());
         }).build();
-        when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+        when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
 
 
         when(objectMapper.writeValueAsString(any())).thenReturn("credentialRequest");
@@ -437,7 +438,7 @@ class CredentialServiceImplTest {
             when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
             // Configure ObjectMapper to parse the mocked response
             when(objectMapper.readValue("credential", CredentialResponse.class)).thenReturn(expectedCredentialResponse);
 
@@ -467,7 +468,7 @@ class CredentialServiceImplTest {
         when(exchangeFunction.exchange(any())).thenReturn(Mono.just(clientResponse));
 
         WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
-        when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+        when(webClientFactory.webClient(HttpDestination.ISSUER)).thenReturn(webClient);
         // Configure ObjectMapper to parse the mocked response
         when(objectMapper.readValue("invalid body", CredentialResponse.class))
                 .thenThrow(new IllegalStateException("The response have a invalid format") {});
@@ -1,27 +1,29 @@
 package es.puig.wallet.api.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import es.puig.wallet.application.port.BrokerService;
-import es.puig.wallet.domain.exception.ParseErrorException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import es.puig.wallet.domain.exception.FailedDeserializingException;
 import es.puig.wallet.domain.model.*;
 import es.puig.wallet.domain.service.impl.DataServiceImpl;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 
 import static es.puig.wallet.domain.util.ApplicationConstants.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,43 +36,24 @@ class DataImplTest {
     @Mock
     private ObjectMapper objectMapper;
 
-    @Mock
-    private BrokerService brokerService;
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
 
     @InjectMocks
     private DataServiceImpl userDataServiceImpl;
 
     @Test
-    void testRegisterUserInContextBroker() throws JsonProcessingException {
+    void testRegisterUserInContextBroker() {
         String id = "123";
 
         WalletUser expectedWalletUser = WalletUser.builder().id(USER_ENTITY_PREFIX + id).type(WALLET_USER_TYPE).build();
 
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(expectedWalletUser)).thenReturn("user entity");
-
         // Executing the method under test
         StepVerifier.create(userDataServiceImpl.createUserEntity(id))
-                .expectNext("user entity")
+                .expectNext(expectedWalletUser)
                 .verifyComplete();
     }
     @Test
-    void testRegisterUserInContextBrokerErrorWhileDeserializingEntity() throws JsonProcessingException {
-        String id = "123";
-
-        WalletUser expectedWalletUser = WalletUser.builder().id(USER_ENTITY_PREFIX + id).type(WALLET_USER_TYPE).build();
-
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(expectedWalletUser)).thenThrow(new JsonProcessingException("Error") {});
-
-        // Executing the method under test
-        StepVerifier.create(userDataServiceImpl.createUserEntity(id))
-                .expectError(ParseErrorException.class)
-                .verify();
-    }
-    @Test
     void testSaveVCWithJwtFormatNewEntity() throws JsonProcessingException {
         String processId = "123";
         // Sample JWT token for a verifiable credential
@@ -132,11 +115,6 @@ class DataImplTest {
 
         CredentialResponse credentials= CredentialResponse.builder().credential(vcJwt).format(JWT_VC).build();
 
-        when(brokerService.getEntityById(eq(processId),anyString())).thenReturn(Mono.just(Optional.empty()));
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(any())).thenReturn("user entity with updated credential");
-
         ObjectMapper objectMapper2 = new ObjectMapper();
         JsonNode jsonNode = objectMapper2.readTree(jwtPayload);
 
@@ -145,7 +123,11 @@ class DataImplTest {
 
         // Executing the method under test
         StepVerifier.create(userDataServiceImpl.saveVC(processId,"entity not updated", credentials))
-                .expectNext("user entity with updated credential")
+                .assertNext(credentialEntity -> {
+                    assertEquals(CREDENTIAL_ENTITY_PREFIX + "urn:uuid:8700bee5-4621-4720-94de-e866fb7197e9", credentialEntity.id());
+                    assertEquals(vcJwt, credentialEntity.jwtCredentialAttribute().value());
+                    assertEquals(USER_ENTITY_PREFIX + "entity not updated", credentialEntity.relationshipAttribute().object());
+                })
                 .verifyComplete();
     }
 
@@ -163,98 +145,6 @@ class DataImplTest {
                 .verify();
     }
 
-    @Test
-    void testSaveVCWithJwtFormatWhenEntityCredentialAlreadyExist() throws JsonProcessingException {
-        String processId = "123";
-        String vcCbor = "dsadsadasd";
-        // Sample JWT token for a verifiable credential
-        String vcJwt = "eyJraWQiOiJkaWQ6a2V5OnpRM3NodGNFUVAzeXV4YmtaMVNqTjUxVDhmUW1SeVhuanJYbThFODRXTFhLRFFiUm4jelEzc2h0Y0VRUDN5dXhia1oxU2pONTFUOGZRbVJ5WG5qclhtOEU4NFdMWEtEUWJSbiIsInR5cCI6IkpXVCIsImFsZyI6IkVTMjU2SyJ9.eyJzdWIiOiJkaWQ6a2V5OnpEbmFlZnk3amhwY0ZCanp0TXJFSktFVHdFU0NoUXd4cEpuVUpLb3ZzWUQ1ZkpabXAiLCJuYmYiOjE2OTgxMzQ4NTUsImlzcyI6ImRpZDprZXk6elEzc2h0Y0VRUDN5dXhia1oxU2pONTFUOGZRbVJ5WG5qclhtOEU4NFdMWEtEUWJSbiIsImV4cCI6MTcwMDcyNjg1NSwiaWF0IjoxNjk4MTM0ODU1LCJ2YyI6eyJ0eXBlIjpbIlZlcmlmaWFibGVDcmVkZW50aWFsIiwiTEVBUkNyZWRlbnRpYWwiXSwiQGNvbnRleHQiOlsiaHR0cHM6Ly93d3cudzMub3JnLzIwMTgvY3JlZGVudGlhbHMvdjEiLCJodHRwczovL2RvbWUtbWFya2V0cGxhY2UuZXUvLzIwMjIvY3JlZGVudGlhbHMvbGVhcmNyZWRlbnRpYWwvdjEiXSwiaWQiOiJ1cm46dXVpZDo4NzAwYmVlNS00NjIxLTQ3MjAtOTRkZS1lODY2ZmI3MTk3ZTkiLCJpc3N1ZXIiOnsiaWQiOiJkaWQ6a2V5OnpRM3NodGNFUVAzeXV4YmtaMVNqTjUxVDhmUW1SeVhuanJYbThFODRXTFhLRFFiUm4ifSwiaXNzdWFuY2VEYXRlIjoiMjAyMy0xMC0yNFQwODowNzozNVoiLCJpc3N1ZWQiOiIyMDIzLTEwLTI0VDA4OjA3OjM1WiIsInZhbGlkRnJvbSI6IjIwMjMtMTAtMjRUMDg6MDc6MzVaIiwiZXhwaXJhdGlvbkRhdGUiOiIyMDIzLTExLTIzVDA4OjA3OjM1WiIsImNyZWRlbnRpYWxTdWJqZWN0Ijp7ImlkIjoiZGlkOmtleTp6RG5hZWZ5N2pocGNGQmp6dE1yRUpLRVR3RVNDaFF3eHBKblVKS292c1lENWZKWm1wIiwidGl0bGUiOiJNci4iLCJmaXJzdF9uYW1lIjoiSm9obiIsImxhc3RfbmFtZSI6IkRvZSIsImdlbmRlciI6Ik0iLCJwb3N0YWxfYWRkcmVzcyI6IiIsImVtYWlsIjoiam9obmRvZUBnb29kYWlyLmNvbSIsInRlbGVwaG9uZSI6IiIsImZheCI6IiIsIm1vYmlsZV9waG9uZSI6IiszNDc4NzQyNjYyMyIsImxlZ2FsUmVwcmVzZW50YXRpdmUiOnsiY24iOiI1NjU2NTY1NlYgSmVzdXMgUnVpeiIsInNlcmlhbE51bWJlciI6IjU2NTY1NjU2ViIsIm9yZ2FuaXphdGlvbklkZW50aWZpZXIiOiJWQVRFUy0xMjM0NTY3OCIsIm8iOiJHb29kQWlyIiwiYyI6IkVTIn0sInJvbGVzQW5kRHV0aWVzIjpbeyJ0eXBlIjoiTEVBUkNyZWRlbnRpYWwiLCJpZCI6Imh0dHBzOi8vZG9tZS1tYXJrZXRwbGFjZS5ldS8vbGVhci92MS82NDg0OTk0bjRyOWU5OTA0OTQifV0sImtleSI6InZhbHVlIn19LCJqdGkiOiJ1cm46dXVpZDo4NzAwYmVlNS00NjIxLTQ3MjAtOTRkZS1lODY2ZmI3MTk3ZTkifQ.2_YNY515CaohirD4AHDBMvzDagEn-p8uAsaiMT0H4ltK2uVfG8IWWqV_OOR6lFlXMzUhJd7nKsaWkhnAQY8kyA";
-        String jwtPayload = """
-                        {
-                          "sub": "did:key:zDnaefy7jhpcFBjztMrEJKETwESChQwxpJnUJKovsYD5fJZmp",
-                          "nbf": 1698134855,
-                          "iss": "did:key:zQ3shtcEQP3yuxbkZ1SjN51T8fQmRyXnjrXm8E84WLXKDQbRn",
-                          "exp": 1700726855,
-                          "iat": 1698134855,
-                          "vc": {
-                            "type": [
-                              "VerifiableCredential",
-                              "LEARCredential"
-                            ],
-                            "@context": [
-                              "https://www.w3.org/2018/credentials/v1",
-                              "https://dome-marketplace.eu//2022/credentials/learcredential/v1"
-                            ],
-                            "id": "urn:uuid:8700bee5-4621-4720-94de-e866fb7197e9",
-                            "issuer": {
-                              "id": "did:key:zQ3shtcEQP3yuxbkZ1SjN51T8fQmRyXnjrXm8E84WLXKDQbRn"
-                            },
-                            "issuanceDate": "2023-10-24T08:07:35Z",
-                            "issued": "2023-10-24T08:07:35Z",
-                            "validFrom": "2023-10-24T08:07:35Z",
-                            "expirationDate": "2023-11-23T08:07:35Z",
-                            "credentialSubject": {
-                              "id": "did:key:zDnaefy7jhpcFBjztMrEJKETwESChQwxpJnUJKovsYD5fJZmp",
-                              "title": "Mr.",
-                              "first_name": "John",
-                              "last_name": "Doe",
-                              "gender": "M",
-                              "postal_address": "",
-                              "email": "johndoe@goodair.com",
-                              "telephone": "",
-                              "fax": "",
-                              "mobile_phone": "+34787426623",
-                              "legalRepresentative": {
-                                "cn": "56565656V Jesus Ruiz",
-                                "serialNumber": "56565656V",
-                                "organizationIdentifier": "VATES-12345678",
-                                "o": "GoodAir",
-                                "c": "ES"
-                              },
-                              "rolesAndDuties": [
-                                {
-                                  "type": "LEARCredential",
-                                  "id": "https://dome-marketplace.eu//lear/v1/6484994n4r9e990494"
-                                }
-                              ],
-                              "key": "value"
-                            }
-                          },
-                          "jti": "urn:uuid:8700bee5-4621-4720-94de-e866fb7197e9"
-                        }
-                """;
-
-        CredentialResponse credentials= CredentialResponse.builder().credential(vcJwt).format(JWT_VC).build();
-
-        when(brokerService.getEntityById(eq(processId),anyString())).thenReturn(Mono.just(Optional.of("credential entity")));
-
-        ObjectMapper objectMapper2 = new ObjectMapper();
-        JsonNode jsonNode = objectMapper2.readTree(jwtPayload);
-
-        when(objectMapper.readTree(anyString())).thenReturn(jsonNode);
-
-        CredentialEntity existentCredentialEntity = CredentialEntity.builder()
-                .id("123")
-                .type(CREDENTIAL_TYPE)
-                .jsonCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE,jwtPayload))
-                .cwtCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE,vcCbor))
-                .credentialTypeAttribute(new CredentialTypeAttribute(PROPERTY_TYPE,List.of("VerifiableCredential",
-                        "LEARCredential")))
-                .credentialStatusAttribute(new CredentialStatusAttribute(PROPERTY_TYPE,CredentialStatus.VALID))
-                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE,"walletUser:1234"))
-                .build();
-        when(objectMapper.readValue("credential entity", CredentialEntity.class)).thenReturn(existentCredentialEntity);
-
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(any())).thenReturn("user entity with updated credential");
-
-        // Executing the method under test
-        StepVerifier.create(userDataServiceImpl.saveVC(processId,"entity not updated", credentials))
-                .expectNext("user entity with updated credential")
-                .verifyComplete();
-    }
-
     @Test
     void testExtractDidFromVerifiableCredential() throws JsonProcessingException {
         String credential = "credentialEntity";
@@ -385,7 +275,8 @@ class DataImplTest {
 
     @Test
     void testGetUserVCsInJson() throws Exception {
-        String credentialsJson = "credentialsJson";
+        ObjectMapper realObjectMapper = new ObjectMapper();
+        DataServiceImpl dataService = new DataServiceImpl(realObjectMapper, secureRandomSource);
         String userEntityId = "urn:walletUser:f517af8f-954e-47c2-a778-dd312154dc2d";
 
         String jwtCredential = "eysdasda";
@@ -424,7 +315,7 @@ class DataImplTest {
                         .type(PROPERTY_TYPE)
                         .value(List.of("VerifiableCredential","LEARCredentialEmployee"))
                         .build())
-                .jsonCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE,jsonCredential))
+                .jsonCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE, realObjectMapper.readTree(jsonCredential)))
                 .credentialStatusAttribute(CredentialStatusAttribute.builder()
                         .type(PROPERTY_TYPE)
                         .credentialStatus(CredentialStatus.VALID).build())
@@ -432,14 +323,9 @@ class DataImplTest {
                 .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE,userEntityId))
                 .build();
 
-        List<CredentialEntity> credentials = List.of(credentialEntity);
+        String credentialsJson = realObjectMapper.writeValueAsString(List.of(credentialEntity));
 
-        JsonNode jsonNode = new ObjectMapper().readTree(jsonCredential);
-        when(objectMapper.readValue(eq(credentialsJson), any(TypeReference.class))).thenReturn(credentials);
-        when(objectMapper.convertValue(credentialEntity.jsonCredentialAttribute().value(), JsonNode.class)).thenReturn(jsonNode);
-
-
-        StepVerifier.create(userDataServiceImpl.getUserVCsInJson(credentialsJson))
+        StepVerifier.create(dataService.getUserVCsInJson(credentialsJson))
                 .assertNext(credentialsBasicInfoWithExpiredDate -> {
                     assertEquals(1, credentialsBasicInfoWithExpiredDate.size());
                     CredentialsBasicInfo credentialsInfo = credentialsBasicInfoWithExpiredDate.get(0);
@@ -447,23 +333,139 @@ class DataImplTest {
                     assertEquals(List.of("VerifiableCredential", "LEARCredentialEmployee"), credentialsInfo.vcType());
                     assertEquals(List.of(VC_JSON,JWT_VC), credentialsInfo.availableFormats());
                     assertEquals(CredentialStatus.VALID, credentialsInfo.credentialStatus());
-                    assertEquals("did:example:123", credentialsInfo.credentialSubject().get("id").asText());
+                    assertEquals("{\"id\":\"did:example:123\"}", writeAsString(realObjectMapper, credentialsInfo.credentialSubject()));
                     assertEquals(ZonedDateTime.parse("2023-11-23T08:07:35Z"), credentialsInfo.expirationDate());
-                    assertEquals(userEntityId, credentialEntity.relationshipAttribute().object());
                 })
                 .verifyComplete();
     }
+
+    @Test
+    void testGetUserVCsInJsonWithProjectedEntityReportsFormatsFromMarkers() {
+        DataServiceImpl dataService = new DataServiceImpl(new ObjectMapper(), secureRandomSource);
+        // The signed payloads are projected away, only their markers are returned by the broker
+        String credentialsJson = """
+                [
+                  {
+                    "id": "vc1",
+                    "type": "Credential",
+                    "status": {"type": "Property", "value": "VALID"},
+                    "credentialType": {"type": "Property", "value": ["VerifiableCredential", "LEARCredentialEmployee"]},
+                    "has_cwt_vc": {"type": "Property", "value": true},
+                    "json_vc": {
+                      "type": "Property",
+                      "value": {
+                        "id": "urn:uuid:8700bee5-4621-4720-94de-e866fb7197e9",
+                        "expirationDate": null,
+                        "credentialSubject": {"id": "did:example:123", "mandate": {"roles": [1, 2]}}
+                      }
+                    }
+                  }
+                ]
+                """;
+
+        StepVerifier.create(dataService.getUserVCsInJson(credentialsJson))
+                .assertNext(credentialsBasicInfo -> {
+                    assertEquals(List.of(VC_JSON, VC_CWT), credentialsBasicInfo.get(0).availableFormats());
+                    assertNull(credentialsBasicInfo.get(0).expirationDate());
+                    assertEquals("{\"id\": \"did:example:123\", \"mandate\": {\"roles\": [1, 2]}}",
+                            writeAsString(new ObjectMapper(), credentialsBasicInfo.get(0).credentialSubject()));
+                })
+                .verifyComplete();
+    }
+
     @Test
-    void testGetUserVCsInJsonProcessingError() throws Exception {
-        String credentialsJson = "credentialsJson";
-        when(objectMapper.readValue(eq(credentialsJson), any(TypeReference.class))).thenThrow(new JsonProcessingException("Error") {});
+    void testGetUserVCsInJsonWithUnknownStatusFailsToDeserialize() {
+        DataServiceImpl dataService = new DataServiceImpl(new ObjectMapper(), secureRandomSource);
+        String credentialsJson = """
+                [{"id": "vc1", "type": "Credential", "status": {"type": "Property", "value": "SUSPENDED"}}]
+                """;
 
+        StepVerifier.create(dataService.getUserVCsInJson(credentialsJson))
+                .expectError(FailedDeserializingException.class)
+                .verify();
+    }
 
-        StepVerifier.create(userDataServiceImpl.getUserVCsInJson(credentialsJson))
+    @Test
+    void testGetUserVCsInJsonProcessingError() {
+        DataServiceImpl dataService = new DataServiceImpl(new ObjectMapper(), secureRandomSource);
+
+        StepVerifier.create(dataService.getUserVCsInJson("credentialsJson"))
                 .expectError(RuntimeException.class)
                 .verify();
     }
 
+    @Test
+    void testCredentialSummaryEntityRoundTrip() throws JsonProcessingException {
+        ObjectMapper realObjectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        DataServiceImpl dataService = new DataServiceImpl(realObjectMapper, secureRandomSource);
+        String credentialEntityJson = """
+                {
+                  "id": "urn:entities:credential:vc1",
+                  "type": "Credential",
+                  "status": {"type": "Property", "value": "VALID"},
+                  "credentialType": {"type": "Property", "value": ["VerifiableCredential", "LEARCredentialEmployee"]},
+                  "jwt_vc": {"type": "Property", "value": "ey..."},
+                  "json_vc": {
+                    "type": "Property",
+                    "value": {
+                      "id": "vc1",
+                      "expirationDate": "2025-04-21T09:29:30Z",
+                      "credentialSubject": {"id": "did:example:123"}
+                    }
+                  }
+                }
+                """;
+
+        CredentialEntity credentialEntity = realObjectMapper.readValue(credentialEntityJson, CredentialEntity.class);
+        String summaryEntity = realObjectMapper.writeValueAsString(
+                dataService.buildCredentialSummaryEntity("user1", List.of(credentialEntity)).block());
+        JsonNode summary = realObjectMapper.readTree(summaryEntity);
+        assertEquals(CREDENTIAL_SUMMARY_ENTITY_PREFIX + "user1", summary.get("id").asText());
+        assertEquals("urn:entities:credential:vc1", summary.get(CREDENTIALS).get(0).get("datasetId").asText());
+        assertFalse(summary.has("complete"));
+
+        // A summary that has not been completed yet cannot be served on its own
+        StepVerifier.create(dataService.getUserVCsFromCredentialSummary(summaryEntity))
+                .verifyComplete();
+
+        List<CredentialsBasicInfo> credentials = dataService.getUserVCsInJson("[" + credentialEntityJson + "]").block();
+        // The broker returns a single instance of the attribute as an object
+        ObjectNode completeSummary = realObjectMapper.valueToTree(dataService.buildCompleteCredentialSummaryEntity("user1", credentials).block());
+        completeSummary.set(CREDENTIALS, completeSummary.get(CREDENTIALS).get(0));
+
+        StepVerifier.create(dataService.getUserVCsFromCredentialSummary(realObjectMapper.writeValueAsString(completeSummary)))
+                .assertNext(summaryCredentials -> {
+                    assertEquals(1, summaryCredentials.size());
+                    CredentialsBasicInfo credential = summaryCredentials.get(0);
+                    assertEquals("urn:entities:credential:vc1", credential.id());
+                    assertEquals(List.of(VC_JSON, JWT_VC), credential.availableFormats());
+                    assertEquals(CredentialStatus.VALID, credential.credentialStatus());
+                    assertEquals(ZonedDateTime.parse("2025-04-21T09:29:30Z").toInstant(), credential.expirationDate().toInstant());
+                    assertEquals("did:example:123", credential.credentialSubject().get("id").asText());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testCompleteCredentialSummaryOfAnEmptyWallet() {
+        ObjectMapper realObjectMapper = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+        DataServiceImpl dataService = new DataServiceImpl(realObjectMapper, secureRandomSource);
+
+        StepVerifier.create(dataService.buildCompleteCredentialSummaryEntity("user1", List.of())
+                        .map(summary -> realObjectMapper.valueToTree(summary).toString())
+                        .flatMap(dataService::getUserVCsFromCredentialSummary))
+                .expectNext(List.of())
+                .verifyComplete();
+    }
+
+    private static String writeAsString(ObjectMapper objectMapper, JsonNode node) {
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Test
     void testGetVerifiableCredentialOnSupportedFormat() throws JsonProcessingException {
         String credentialJson = "credentialsJson";
@@ -575,24 +577,17 @@ class DataImplTest {
         String accessToken = "access789";
         String deferredEndpoint = "https://example.com/callback";
 
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(any(TransactionEntity.class))).thenReturn("transaction entity");
-
         StepVerifier.create(userDataServiceImpl.saveTransaction(credentialId, transactionId, accessToken, deferredEndpoint))
-                .expectNext("transaction entity")
+                .assertNext(capturedEntity -> {
+                    assertNotNull(capturedEntity.id());
+                    assertTrue(capturedEntity.id().startsWith(TRANSACTION_ENTITY_PREFIX));
+                    assertEquals(TRANSACTION_TYPE, capturedEntity.type());
+                    assertEquals(transactionId, capturedEntity.transactionDataAttribute().value().transactionId());
+                    assertEquals(accessToken, capturedEntity.transactionDataAttribute().value().accessToken());
+                    assertEquals(deferredEndpoint, capturedEntity.transactionDataAttribute().value().deferredEndpoint());
+                    assertEquals(CREDENTIAL_ENTITY_PREFIX + credentialId, capturedEntity.relationshipAttribute().object());
+                })
                 .verifyComplete();
-
-        ArgumentCaptor<TransactionEntity> captor = ArgumentCaptor.forClass(TransactionEntity.class);
-        verify(mockWriter).writeValueAsString(captor.capture());
-        TransactionEntity capturedEntity = captor.getValue();
-        assertNotNull(capturedEntity.id());
-        assertTrue(capturedEntity.id().startsWith(TRANSACTION_ENTITY_PREFIX));
-        assertEquals(TRANSACTION_TYPE, capturedEntity.type());
-        assertEquals(transactionId, capturedEntity.transactionDataAttribute().value().transactionId());
-        assertEquals(accessToken, capturedEntity.transactionDataAttribute().value().accessToken());
-        assertEquals(deferredEndpoint, capturedEntity.transactionDataAttribute().value().deferredEndpoint());
-        assertEquals(CREDENTIAL_ENTITY_PREFIX + credentialId, capturedEntity.relationshipAttribute().object());
     }
 
     @Test
@@ -607,12 +602,11 @@ class DataImplTest {
                 .build();
 
         when(objectMapper.readValue(credentialEntityJson, CredentialEntity.class)).thenReturn(credentialEntity);
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(any(CredentialEntity.class))).thenReturn("updatedEntityJson");
-
         StepVerifier.create(userDataServiceImpl.updateVCEntityWithSignedFormat(credentialEntityJson, signedCredential))
-                .expectNext("updatedEntityJson")
+                .assertNext(updatedEntity -> {
+                    assertEquals("cred123", updatedEntity.id());
+                    assertEquals(signedJwt, updatedEntity.jwtCredentialAttribute().value());
+                })
                 .verifyComplete();
 
         verify(objectMapper).readValue(credentialEntityJson, CredentialEntity.class);
@@ -630,20 +624,18 @@ class DataImplTest {
                 .build();
 
         when(objectMapper.readValue(credentialEntityJson, CredentialEntity.class)).thenReturn(credentialEntity);
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(any(CredentialEntity.class))).thenReturn("updatedEntityJson");
-
         StepVerifier.create(userDataServiceImpl.updateVCEntityWithSignedFormat(credentialEntityJson, signedCredential))
-                .expectNext("updatedEntityJson")
+                .assertNext(updatedEntity -> {
+                    assertEquals("cred123", updatedEntity.id());
+                    assertEquals(signedCwt, updatedEntity.cwtCredentialAttribute().value());
+                })
                 .verifyComplete();
 
         verify(objectMapper).readValue(credentialEntityJson, CredentialEntity.class);
     }
 
     @Test
-    void testUpdateTransactionWithNewTransactionId() throws JsonProcessingException {
-        String transactionEntityJson = "{\"id\":\"trans123\", \"type\":\"Transaction\", \"transactionDataAttribute\":{\"type\":\"Property\", \"value\":{\"transactionId\":\"oldTransId\", \"accessToken\":\"access123\", \"deferredEndpoint\":\"https://example.com/callback\"}}, \"relationshipAttribute\":{\"type\":\"Relationship\", \"object\":\"cred123\"}}";
+    void testBuildTransactionDataWithNewTransactionId() {
         String newTransactionId = "newTransId";
         TransactionEntity transactionEntity = TransactionEntity.builder()
                 .id("trans123")
@@ -662,47 +654,32 @@ class DataImplTest {
                         .build())
                 .build();
 
-        TransactionEntity updatedTransactionEntity = TransactionEntity.builder()
-                .id("trans123")
-                .type("Transaction")
-                .transactionDataAttribute(EntityAttribute.<TransactionDataAttribute>builder()
-                        .type("Property")
-                        .value(TransactionDataAttribute.builder()
-                                .transactionId(newTransactionId)
-                                .accessToken("access123")
-                                .deferredEndpoint("https://example.com/callback")
-                                .build())
-                        .build())
-                .relationshipAttribute(RelationshipAttribute.builder()
-                        .type("Relationship")
-                        .object("cred123")
+        EntityAttribute<TransactionDataAttribute> updatedTransactionData = EntityAttribute.<TransactionDataAttribute>builder()
+                .type("Property")
+                .value(TransactionDataAttribute.builder()
+                        .transactionId(newTransactionId)
+                        .accessToken("access123")
+                        .deferredEndpoint("https://example.com/callback")
                         .build())
                 .build();
 
-        when(objectMapper.readValue(transactionEntityJson, TransactionEntity.class)).thenReturn(transactionEntity);
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(updatedTransactionEntity)).thenReturn("updatedTransactionJson");
-
-        StepVerifier.create(userDataServiceImpl.updateTransactionWithNewTransactionId(transactionEntityJson, newTransactionId))
-                .expectNext("updatedTransactionJson")
+        // Only the transactionData attribute is sent to the broker
+        StepVerifier.create(userDataServiceImpl.buildTransactionDataWithNewTransactionId(transactionEntity, newTransactionId))
+                .expectNext(Map.of(TRANSACTION_DATA_ATTRIBUTE, updatedTransactionData))
                 .verifyComplete();
-
-        verify(objectMapper).readValue(transactionEntityJson, TransactionEntity.class);
     }
 
     @Test
-    void testUpdateTransactionWithNewTransactionIdJsonProcessingException() throws JsonProcessingException {
-        String transactionEntityJson = "{\"id\":\"trans123\"}";
-        String newTransactionId = "newTransId";
-
-        when(objectMapper.readValue(transactionEntityJson, TransactionEntity.class)).thenThrow(new JsonProcessingException("Error processing JSON") {});
-
-        StepVerifier.create(userDataServiceImpl.updateTransactionWithNewTransactionId(transactionEntityJson, newTransactionId))
-                .expectError(ParseErrorException.class)
-                .verify();
-
-        verify(objectMapper).readValue(transactionEntityJson, TransactionEntity.class);
+    void testBuildSignedFormatAttributes() {
+        CredentialResponse signedCredential = CredentialResponse.builder().credential("signedJwtExample").format(JWT_VC).build();
+
+        StepVerifier.create(userDataServiceImpl.buildSignedFormatAttributes(signedCredential))
+                .assertNext(attributes -> {
+                    assertEquals(List.of(JWT_VC, HAS_JWT_VC, CREDENTIAL_STATUS_ATTRIBUTE), List.copyOf(attributes.keySet()));
+                    assertEquals(new CredentialAttribute(PROPERTY_TYPE, "signedJwtExample"), attributes.get(JWT_VC));
+                    assertEquals(new CredentialStatusAttribute(PROPERTY_TYPE, CredentialStatus.VALID), attributes.get(CREDENTIAL_STATUS_ATTRIBUTE));
+                })
+                .verifyComplete();
     }
 
     @Test
@@ -748,12 +725,8 @@ class DataImplTest {
 
         when(objectMapper.readTree(jsonCredential)).thenReturn(jsonNode);
 
-        ObjectWriter mockWriter = mock(ObjectWriter.class);
-        when(objectMapper.writerWithDefaultPrettyPrinter()).thenReturn(mockWriter);
-        when(mockWriter.writeValueAsString(credentialEntity)).thenReturn("CredentialEntity");
-
         StepVerifier.create(userDataServiceImpl.saveDOMEUnsignedCredential(userId, jsonCredential))
-                .expectNext("CredentialEntity")
+                .expectNext(credentialEntity)
                 .verifyComplete();
 
     }
@@ -3,9 +3,14 @@ package es.puig.wallet.api.service;
 import es.puig.wallet.infrastructure.core.config.CryptoConfig;
 import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.domain.service.impl.DidKeyGeneratorServiceImpl;
+import es.puig.wallet.infrastructure.core.config.properties.KeyPairPoolProperties;
+import es.puig.wallet.infrastructure.core.util.KeyPairPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -21,9 +26,21 @@ class DidKeyGeneratorServiceImplTest {
     @Mock
     private VaultService vaultService;
 
-    @InjectMocks
+    private KeyPairPool keyPairPool;
     private DidKeyGeneratorServiceImpl didKeyGeneratorService;
 
+    @BeforeEach
+    void setUp() {
+        keyPairPool = new KeyPairPool(new KeyPairPoolProperties(false, null, null, null), new BouncyCastleProvider(),
+                new SimpleMeterRegistry());
+        didKeyGeneratorService = new DidKeyGeneratorServiceImpl(vaultService, keyPairPool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyPairPool.dispose();
+    }
+
     @Test
     void testGenerateDidKeyJwkJcsPubWithFromKeyPair() {
         when(vaultService.saveSecret(any(), any())).thenReturn(Mono.empty());
@@ -40,7 +57,7 @@ class DidKeyGeneratorServiceImplTest {
 
     @Test
     void testGenerateDidKeyWithFromKeyPair() {
-        when(vaultService.saveSecret(any(), any())).thenReturn(Mono.empty());
+        when(vaultService.stageSecret(any(), any())).thenReturn(Mono.empty());
 
         StepVerifier.create(didKeyGeneratorService.generateDidKey())
                 .assertNext(did -> {
@@ -49,6 +66,7 @@ class DidKeyGeneratorServiceImplTest {
                 })
                 .verifyComplete();
 
-        verify(vaultService, times(1)).saveSecret(any(), any());
+        verify(vaultService, times(1)).stageSecret(any(), any());
+        verify(vaultService, never()).saveSecret(any(), any());
     }
 }
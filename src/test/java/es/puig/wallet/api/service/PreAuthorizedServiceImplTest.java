@@ -10,7 +10,8 @@ import es.puig.wallet.domain.model.TokenResponse;
 import es.puig.wallet.domain.service.impl.PreAuthorizedServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
 import es.puig.wallet.infrastructure.core.config.PinRequestWebSocketHandler;
-import es.puig.wallet.infrastructure.core.config.WebClientConfig;
+import es.puig.wallet.infrastructure.core.util.HttpDestination;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import es.puig.wallet.infrastructure.core.config.WebSocketSessionManager;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -45,7 +46,7 @@ class PreAuthorizedServiceImplTest {
     @Mock
     private PinRequestWebSocketHandler pinRequestWebSocketHandler;
     @Mock
-    private WebClientConfig webClientConfig;
+    private WebClientFactory webClientFactory;
 
     @Mock
     private WebSocketSession mockSession;
@@ -76,7 +77,7 @@ class PreAuthorizedServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
             when(objectMapper.readValue("token response", TokenResponse.class)).thenReturn(expectedTokenResponse);
 
             StepVerifier.create(tokenService.getPreAuthorizedToken(processId,credentialOffer,authorisationServerMetadata,token))
@@ -106,7 +107,7 @@ class PreAuthorizedServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             StepVerifier.create(tokenService.getPreAuthorizedToken(processId,credentialOffer,authorisationServerMetadata,token))
                     .expectError(InvalidPinException.class)
@@ -145,7 +146,7 @@ class PreAuthorizedServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             when(objectMapper.readValue("token response", TokenResponse.class)).thenReturn(expectedTokenResponse);
 
@@ -184,7 +185,7 @@ class PreAuthorizedServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             when(objectMapper.readValue("token response", TokenResponse.class)).thenThrow(new RuntimeException());
 
@@ -227,7 +228,7 @@ class PreAuthorizedServiceImplTest {
 
             WebClient webClient = WebClient.builder().exchangeFunction(exchangeFunction).build();
 
-            when(webClientConfig.centralizedWebClient()).thenReturn(webClient);
+            when(webClientFactory.webClient(HttpDestination.AUTH_SERVER)).thenReturn(webClient);
 
             when(objectMapper.readValue("token response", TokenResponse.class)).thenReturn(expectedTokenResponse);
 
@@ -12,12 +12,15 @@ import es.puig.wallet.domain.service.DataService;
 import es.puig.wallet.domain.service.SignerService;
 import es.puig.wallet.domain.service.impl.PresentationServiceImpl;
 import es.puig.wallet.domain.util.ApplicationUtils;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import es.puig.wallet.infrastructure.core.util.SecureRandomSource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -51,6 +54,9 @@ class PresentationServiceImplTest {
     @Mock
     private AppConfig appConfig;
 
+    @Spy
+    private SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
+
     @InjectMocks
     private PresentationServiceImpl presentationService;
 
@@ -7,33 +7,49 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import es.puig.wallet.domain.exception.ParseErrorException;
 import es.puig.wallet.application.port.VaultService;
 import es.puig.wallet.domain.service.impl.SignerServiceImpl;
+import es.puig.wallet.infrastructure.core.config.properties.CryptoSchedulerProperties;
+import es.puig.wallet.infrastructure.core.util.CryptoScheduler;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
+import es.puig.wallet.infrastructure.vault.config.properties.SignerCacheProperties;
+import es.puig.wallet.infrastructure.vault.util.SignerCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class SignerServiceImplTest {
 
+    private static final String PRIVATE_KEY = "{\"kty\":\"EC\",\"d\":\"MDtaBGOjN0SY0NtX2hFvv4uJNLrUGUWHvquqNZHwi5s\",\"use\":\"sig\",\"crv\":\"P-256\",\"kid\":\"75bb28ac9f4247248c73348f890e050c\",\"x\":\"E9pfJi7I29gtdofnJJBvC_DK3KH1eTialAMOoX6CfZw\",\"y\":\"hDfdnEyabkB-9Hf1PFYaYomSdYVwJ0NSM5CzxhOUIr0\",\"alg\":\"ES256\"}";
+
     @Mock
     private ObjectMapper mockedObjectMapper;
 
     @Mock
     private VaultService vaultService;
-    @InjectMocks
+
     private SignerServiceImpl signerService;
 
+    @BeforeEach
+    void setUp() {
+        SignerCache signerCache = new SignerCache(new SignerCacheProperties(null, null), new SimpleMeterRegistry());
+        CryptoScheduler cryptoScheduler = new CryptoScheduler(new CryptoSchedulerProperties(2, null), new SimpleMeterRegistry());
+        signerService = new SignerServiceImpl(mockedObjectMapper, vaultService, signerCache, cryptoScheduler);
+    }
+
     @SuppressWarnings("unchecked")
     @ParameterizedTest
     @ValueSource(strings = {"proof", "vp", "jwt"})
@@ -108,4 +124,29 @@ class SignerServiceImplTest {
                 .verify();
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void concurrentSignatures_readThePrivateKeyOnce_andReuseTheSigner() throws JsonProcessingException {
+        JsonNode jsonNode = new ObjectMapper().readTree("{\"document\":\"sign this document\"}");
+        String did = "did:key:zDnae";
+        Sinks.One<KeyVaultSecret> vaultResponse = Sinks.one();
+        when(vaultService.getSecretByKey(did)).thenReturn(vaultResponse.asMono());
+        when(mockedObjectMapper.convertValue(any(JsonNode.class), any(TypeReference.class))).thenReturn(Map.of("someKey", "someValue"));
+
+        StepVerifier.create(Mono.zip(signerService.buildJWTSFromJsonNode(jsonNode, did, "proof"),
+                        signerService.buildJWTSFromJsonNode(jsonNode, did, "vp")))
+                .then(() -> vaultResponse.tryEmitValue(KeyVaultSecret.builder().value(PRIVATE_KEY).build()))
+                .assertNext(signedDocuments -> {
+                    assert signedDocuments.getT1() != null && signedDocuments.getT2() != null;
+                })
+                .verifyComplete();
+        StepVerifier.create(signerService.buildJWTSFromJsonNode(jsonNode, did, "jwt"))
+                .assertNext(signedDocument -> {
+                    assert signedDocument.startsWith("ey");
+                })
+                .verifyComplete();
+
+        verify(vaultService, times(1)).getSecretByKey(did);
+    }
+
 }
@@ -1,19 +1,24 @@
 package es.puig.wallet.api.service;
 
+import es.puig.wallet.domain.exception.KeyPairGenerationError;
+import es.puig.wallet.domain.exception.NoSuchDidException;
+import es.puig.wallet.infrastructure.vault.config.properties.StagedSecretsProperties;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
 import es.puig.wallet.infrastructure.vault.service.impl.VaultServiceImpl;
 import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import es.puig.wallet.infrastructure.vault.util.SignerCache;
 import es.puig.wallet.infrastructure.vault.util.VaultFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class VaultServiceImplTest {
@@ -21,13 +26,14 @@ class VaultServiceImplTest {
     private GenericVaultService genericVaultService;
     @Mock
     private VaultFactory vaultFactory;
-    @InjectMocks
+    @Mock
+    private SignerCache signerCache;
     private VaultServiceImpl vaultService;
 
     @BeforeEach
     public void setup() {
         when(vaultFactory.getVaultService()).thenReturn(genericVaultService);
-        vaultService = new VaultServiceImpl(vaultFactory);
+        vaultService = new VaultServiceImpl(vaultFactory, signerCache, new StagedSecretsProperties(null, null), new SimpleMeterRegistry());
     }
 
     @Test
@@ -67,5 +73,58 @@ class VaultServiceImplTest {
         StepVerifier.create(vaultService.deleteSecretByKey(key))
                 .expectComplete()
                 .verify();
+
+        verify(signerCache).invalidate(key);
+    }
+
+    @Test
+    void stagedSecret_isReadableWithoutReachingTheVault_untilCommitted() {
+        String key = "did:key:z123";
+        KeyVaultSecret secret = KeyVaultSecret.builder().value("private key").build();
+        when(genericVaultService.saveSecret(key, secret)).thenReturn(Mono.empty());
+
+        StepVerifier.create(vaultService.stageSecret(key, secret)).verifyComplete();
+        StepVerifier.create(vaultService.getSecretByKey(key)).expectNext(secret).verifyComplete();
+        verify(genericVaultService, never()).saveSecret(any(), any());
+        verify(genericVaultService, never()).getSecret(any());
+
+        StepVerifier.create(vaultService.commitSecret(key)).verifyComplete();
+        verify(genericVaultService).saveSecret(key, secret);
+
+        // Once committed the secret is read from the vault and there is nothing left to discard
+        when(genericVaultService.getSecret(key)).thenReturn(Mono.just(secret));
+        vaultService.discardSecret(key);
+        StepVerifier.create(vaultService.getSecretByKey(key)).expectNext(secret).verifyComplete();
+        verify(genericVaultService).getSecret(key);
+        verify(signerCache, never()).invalidate(key);
+    }
+
+    @Test
+    void discardedSecret_neverReachesTheVault() {
+        String key = "did:key:z123";
+        KeyVaultSecret secret = KeyVaultSecret.builder().value("private key").build();
+
+        StepVerifier.create(vaultService.stageSecret(key, secret)).verifyComplete();
+        vaultService.discardSecret(key);
+
+        StepVerifier.create(vaultService.commitSecret(key))
+                .expectError(NoSuchDidException.class)
+                .verify();
+        verify(signerCache).invalidate(key);
+        verify(genericVaultService, never()).saveSecret(any(), any());
+    }
+
+    @Test
+    void stagedSecrets_areNotEvictedToStageMore_theNewOnesAreRefused() {
+        vaultService = new VaultServiceImpl(vaultFactory, signerCache, new StagedSecretsProperties(1L, null), new SimpleMeterRegistry());
+        KeyVaultSecret secret = KeyVaultSecret.builder().value("private key").build();
+
+        StepVerifier.create(vaultService.stageSecret("did:key:z1", secret)).verifyComplete();
+        StepVerifier.create(vaultService.stageSecret("did:key:z2", secret))
+                .expectError(KeyPairGenerationError.class)
+                .verify();
+
+        StepVerifier.create(vaultService.getSecretByKey("did:key:z1")).expectNext(secret).verifyComplete();
+        verify(signerCache, never()).invalidate(any());
     }
 }
@@ -3,16 +3,18 @@ package es.puig.wallet.api.service;
 import es.puig.wallet.domain.exception.JwtInvalidFormatException;
 import es.puig.wallet.domain.exception.ParseErrorException;
 import es.puig.wallet.domain.service.impl.VerifierValidationServiceImpl;
+import es.puig.wallet.infrastructure.core.config.properties.CryptoSchedulerProperties;
+import es.puig.wallet.infrastructure.core.util.CryptoScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
 class VerifierValidationServiceImplTest {
-    @InjectMocks
-    private VerifierValidationServiceImpl verifierValidationService;
+    private final VerifierValidationServiceImpl verifierValidationService = new VerifierValidationServiceImpl(
+            new CryptoScheduler(new CryptoSchedulerProperties(2, null), new SimpleMeterRegistry()));
 
     @Test
     void testParseAuthorizationRequestError() {
@@ -0,0 +1,67 @@
+package es.puig.wallet.api.util;
+
+import es.puig.wallet.domain.util.ApplicationUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+
+class ApplicationUtilsTest {
+
+    // Not a JWT, it can only be resolved from the security context
+    private static final String DECODED_TOKEN = "decoded-token";
+
+    @Test
+    void userIdOfTheTokenOfTheRequest_isTakenFromTheDecodedToken() {
+        StepVerifier.create(authenticated(ApplicationUtils.getCleanBearerAndUserIdFromToken("Bearer " + DECODED_TOKEN)))
+                .expectNext("user1")
+                .verifyComplete();
+        StepVerifier.create(authenticated(ApplicationUtils.getAuthenticatedJwt().map(Jwt::getTokenValue)))
+                .expectNext(DECODED_TOKEN)
+                .verifyComplete();
+    }
+
+    @Test
+    void userIdOfAnotherToken_isParsedFromTheToken() {
+        String token = unsignedJwt("{\"sub\":\"user2\"}");
+
+        StepVerifier.create(ApplicationUtils.getUserIdFromToken(token))
+                .expectNext("user2")
+                .verifyComplete();
+        StepVerifier.create(authenticated(ApplicationUtils.getUserIdFromToken(token)))
+                .expectNext("user2")
+                .verifyComplete();
+    }
+
+    @Test
+    void tokenWithoutSubject_orNotAJwt_isRejected() {
+        StepVerifier.create(ApplicationUtils.getUserIdFromToken(unsignedJwt("{\"iss\":\"issuer\"}")))
+                .expectError(ParseException.class)
+                .verify();
+        StepVerifier.create(ApplicationUtils.getUserIdFromToken(DECODED_TOKEN))
+                .expectError(ParseException.class)
+                .verify();
+        StepVerifier.create(ApplicationUtils.getCleanBearerAndUserIdFromToken(DECODED_TOKEN))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    private static <T> Mono<T> authenticated(Mono<T> call) {
+        Jwt jwt = Jwt.withTokenValue(DECODED_TOKEN).header("alg", "ES256").subject("user1").build();
+        return call.contextWrite(ReactiveSecurityContextHolder.withAuthentication(new JwtAuthenticationToken(jwt)));
+    }
+
+    private static String unsignedJwt(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"ES256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString("signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,179 @@
+package es.puig.wallet.blockhound;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.reactivestreams.Publisher;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Installs BlockHound for the tests run by the {@code blockHoundTest} task, where it is registered for every test
+ * class through the JUnit extension auto-detection.
+ * <p>
+ * Every publisher a test subscribes to is subscribed on {@link Schedulers#parallel()}, so the workflows under test run
+ * on Reactor non-blocking threads even when their collaborators are synchronous mocks. A blocking call made on such a
+ * thread fails the call with a {@link BlockingOperationError}, is written to the report, and fails the test even when
+ * the error is swallowed by the code under test. The tests relying on thread-bound state are marked with
+ * {@link SubscribeOnTestThread}.
+ * <p>
+ * The methods allowed to block are listed in {@value #ALLOW_LIST}, one {@code class#method} per line.
+ */
+public class BlockHoundExtension implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback {
+
+    static final String ALLOW_LIST = "blockhound/allow-list.txt";
+    private static final String REPORT_PROPERTY = "blockhound.report";
+    private static final String HOOK_KEY = "blockhound";
+    private static final int MAX_FRAMES = 25;
+    // A call failed by BlockHound may leave a publisher without signal, the test fails instead of hanging
+    private static final Duration VERIFY_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final AtomicBoolean installed = new AtomicBoolean();
+    private static final Queue<BlockingCall> blockingCalls = new ConcurrentLinkedQueue<>();
+
+    /**
+     * A blocking call found on a non-blocking thread.
+     *
+     * @param method - the blocking method
+     * @param thread - the non-blocking thread it was called on
+     * @param frames - the calls leading to it, innermost first
+     */
+    public record BlockingCall(String method, String thread, List<String> frames) {
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        if (installed.compareAndSet(false, true)) {
+            BlockHound.Builder builder = BlockHound.builder().loadIntegrations();
+            readAllowList().forEach(allowed -> builder.allowBlockingCallsInside(allowed[0], allowed[1]));
+            builder.blockingMethodCallback(method -> {
+                blockingCalls.add(new BlockingCall(method.toString(), Thread.currentThread().getName(), frames()));
+                throw new BlockingOperationError(method);
+            });
+            builder.install();
+            StepVerifier.setDefaultTimeout(VERIFY_TIMEOUT);
+        }
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        boolean onTestThread = AnnotationSupport.isAnnotated(context.getElement(), SubscribeOnTestThread.class)
+                || AnnotationSupport.isAnnotated(context.getRequiredTestClass(), SubscribeOnTestThread.class);
+        if (onTestThread) {
+            Hooks.resetOnLastOperator(HOOK_KEY);
+        } else {
+            Hooks.onLastOperator(HOOK_KEY, BlockHoundExtension::subscribeOnParallel);
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        List<BlockingCall> found = takeBlockingCalls();
+        if (!found.isEmpty()) {
+            report(context.getRequiredTestClass().getName() + "#" + context.getDisplayName(), found);
+            throw new AssertionError(found.size() + " blocking call(s) on non-blocking threads, the first one "
+                    + found.get(0).method() + " on " + found.get(0).thread() + ", see the BlockHound report");
+        }
+    }
+
+    /**
+     * Returns and forgets the blocking calls found since the last call, for the tests expecting one.
+     */
+    public static List<BlockingCall> takeBlockingCalls() {
+        List<BlockingCall> found = new ArrayList<>();
+        BlockingCall call;
+        while ((call = blockingCalls.poll()) != null) {
+            found.add(call);
+        }
+        return found;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Publisher<Object> subscribeOnParallel(Publisher<Object> publisher) {
+        // Only the subscriptions of the test move, the ones made on a parallel thread stay there
+        if (Schedulers.isInNonBlockingThread()) {
+            return publisher;
+        }
+        if (publisher instanceof Mono<?> mono) {
+            return (Publisher<Object>) mono.subscribeOn(Schedulers.parallel());
+        }
+        if (publisher instanceof Flux<?> flux) {
+            return (Publisher<Object>) flux.subscribeOn(Schedulers.parallel());
+        }
+        return publisher;
+    }
+
+    private static List<String[]> readAllowList() {
+        InputStream allowList = BlockHoundExtension.class.getClassLoader().getResourceAsStream(ALLOW_LIST);
+        if (allowList == null) {
+            return List.of();
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(allowList, StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .map(line -> line.replaceFirst("#\\s.*$", "").trim())
+                    .filter(line -> !line.isEmpty())
+                    .map(line -> {
+                        String[] allowed = line.split("#", 2);
+                        if (allowed.length != 2) {
+                            throw new IllegalArgumentException("Entry of the BlockHound allow list is not class#method: " + line);
+                        }
+                        return allowed;
+                    })
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> frames() {
+        return Arrays.stream(new Throwable().getStackTrace())
+                .map(StackTraceElement::toString)
+                .filter(frame -> !frame.startsWith("reactor.blockhound.") && !frame.startsWith(BlockHoundExtension.class.getName()))
+                .limit(MAX_FRAMES)
+                .toList();
+    }
+
+    private static void report(String test, List<BlockingCall> found) {
+        String location = System.getProperty(REPORT_PROPERTY);
+        if (location == null) {
+            return;
+        }
+        StringBuilder entry = new StringBuilder(test).append(System.lineSeparator());
+        for (BlockingCall call : found) {
+            entry.append("  ").append(call.method()).append(" on ").append(call.thread()).append(System.lineSeparator());
+            call.frames().forEach(frame -> entry.append("    at ").append(frame).append(System.lineSeparator()));
+        }
+        try {
+            Path report = Path.of(location);
+            Files.createDirectories(report.getParent());
+            Files.writeString(report, entry, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
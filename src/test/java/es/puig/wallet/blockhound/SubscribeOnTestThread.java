@@ -0,0 +1,16 @@
+package es.puig.wallet.blockhound;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the publishers of a test, or of every test of a class, subscribed on the test thread when run by the
+ * {@code blockHoundTest} task, for the tests relying on thread-bound state such as the static mocks of Mockito.
+ * BlockHound then only checks the threads the code under test switches to.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SubscribeOnTestThread {
+}
@@ -0,0 +1,184 @@
+package es.puig.wallet.broker.adapter;
+
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.RelationshipAttribute;
+import es.puig.wallet.infrastructure.broker.adapter.CachingBrokerAdapter;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.RELATIONSHIP_TYPE;
+import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingBrokerAdapterTest {
+
+    @Mock
+    private GenericBrokerService brokerAdapter;
+    @Mock
+    private BrokerConfig brokerConfig;
+
+    private CachingBrokerAdapter cachingBrokerAdapter;
+
+    @BeforeEach
+    void setUp() {
+        when(brokerConfig.getCacheMaximumSize()).thenReturn(100L);
+        when(brokerConfig.getCacheTtl()).thenReturn(Duration.ofMinutes(1));
+        cachingBrokerAdapter = new CachingBrokerAdapter(brokerAdapter, brokerConfig, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void getAllCredentialsByUserId_isServedFromCacheOnSecondCall() {
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user1")).thenReturn(Mono.just("[]"));
+
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext("[]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext("[]")
+                .verifyComplete();
+
+        verify(brokerAdapter, times(1)).getAllCredentialsByUserId("p1", "user1");
+    }
+
+    @Test
+    void concurrentIdenticalQueries_shareASingleBrokerCall() {
+        Sinks.One<String> response = Sinks.one();
+        when(brokerAdapter.getCredentialByCredentialTypeAndUserId("p1", "LEARCredentialEmployee", "user1"))
+                .thenReturn(response.asMono());
+
+        Mono<String> first = cachingBrokerAdapter.getCredentialByCredentialTypeAndUserId("p1", "LEARCredentialEmployee", "user1");
+        Mono<String> second = cachingBrokerAdapter.getCredentialByCredentialTypeAndUserId("p2", "LEARCredentialEmployee", "user1");
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> response.tryEmitValue("[{}]"))
+                .expectNextMatches(tuple -> tuple.getT1().equals("[{}]") && tuple.getT2().equals("[{}]"))
+                .verifyComplete();
+
+        verify(brokerAdapter, times(1)).getCredentialByCredentialTypeAndUserId(anyString(), eq("LEARCredentialEmployee"), eq("user1"));
+    }
+
+    @Test
+    void failedQueries_areNotCached() {
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .thenReturn(Mono.error(new RuntimeException("broker down")))
+                .thenReturn(Mono.just("[]"));
+
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectErrorMessage("broker down")
+                .verify();
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext("[]")
+                .verifyComplete();
+    }
+
+    @Test
+    void postEntity_invalidatesTheQueriesOfTheOwner() {
+        CredentialEntity credentialEntity = CredentialEntity.builder()
+                .id("urn:entities:credential:1")
+                .type("Credential")
+                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE, USER_ENTITY_PREFIX + "user1"))
+                .build();
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .thenReturn(Mono.just("[]"))
+                .thenReturn(Mono.just("[{\"id\":\"urn:entities:credential:1\"}]"));
+        when(brokerAdapter.postEntity("p1", credentialEntity)).thenReturn(Mono.empty());
+
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext("[]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.postEntity("p1", credentialEntity)
+                        .then(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1")))
+                .expectNext("[{\"id\":\"urn:entities:credential:1\"}]")
+                .verifyComplete();
+
+        verify(brokerAdapter, times(2)).getAllCredentialsByUserId("p1", "user1");
+    }
+
+    @Test
+    void appendingAttributesToACredential_invalidatesTheCachedQueriesOfTheAuthenticatedUserOnly() {
+        Map<String, Object> attributes = Map.of("status", "VALID");
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .thenReturn(Mono.just("[]"))
+                .thenReturn(Mono.just("[{}]"));
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user2")).thenReturn(Mono.just("[{}]"));
+        when(brokerAdapter.appendEntityAttributes("p1", "urn:entities:credential:1", attributes)).thenReturn(Mono.empty());
+
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext("[]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user2"))
+                .expectNext("[{}]")
+                .verifyComplete();
+        StepVerifier.create(asUser("user1", cachingBrokerAdapter.appendEntityAttributes("p1", "urn:entities:credential:1", attributes))
+                        .then(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1")))
+                .expectNext("[{}]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user2"))
+                .expectNext("[{}]")
+                .verifyComplete();
+
+        verify(brokerAdapter, times(1)).getAllCredentialsByUserId("p1", "user2");
+    }
+
+    @Test
+    void deletingCredentialsOutsideOfARequest_invalidatesEveryCachedQuery() {
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .thenReturn(Mono.just("[{}]"))
+                .thenReturn(Mono.just("[]"));
+        when(brokerAdapter.batchDeleteEntities("p1", List.of("urn:entities:credential:1"))).thenReturn(Mono.empty());
+
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext("[{}]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.batchDeleteEntities("p1", List.of("urn:entities:credential:1"))
+                        .then(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user1")))
+                .expectNext("[]")
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteCredentialByIdAndUserId_invalidatesTheQueriesOfTheUser() {
+        when(brokerAdapter.getCredentialByCredentialTypeAndUserId("p1", "VerifiableCredential", "user1"))
+                .thenReturn(Mono.just("[{}]"))
+                .thenReturn(Mono.just("[]"));
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user2")).thenReturn(Mono.just("[{}]"));
+        when(brokerAdapter.deleteCredentialByIdAndUserId("p1", "cred1", "user1")).thenReturn(Mono.empty());
+
+        StepVerifier.create(cachingBrokerAdapter.getCredentialByCredentialTypeAndUserId("p1", "VerifiableCredential", "user1"))
+                .expectNext("[{}]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user2"))
+                .expectNext("[{}]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.deleteCredentialByIdAndUserId("p1", "cred1", "user1")
+                        .then(cachingBrokerAdapter.getCredentialByCredentialTypeAndUserId("p1", "VerifiableCredential", "user1")))
+                .expectNext("[]")
+                .verifyComplete();
+        StepVerifier.create(cachingBrokerAdapter.getAllCredentialsByUserId("p1", "user2"))
+                .expectNext("[{}]")
+                .verifyComplete();
+
+        verify(brokerAdapter, times(1)).getAllCredentialsByUserId("p1", "user2");
+    }
+
+    private static <T> Mono<T> asUser(String userId, Mono<T> call) {
+        return call.contextWrite(ReactiveSecurityContextHolder.withAuthentication(new TestingAuthenticationToken(userId, null)));
+    }
+
+}
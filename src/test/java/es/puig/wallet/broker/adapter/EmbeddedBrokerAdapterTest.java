@@ -0,0 +1,115 @@
+package es.puig.wallet.broker.adapter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.model.CredentialAttribute;
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.CredentialTypeAttribute;
+import es.puig.wallet.domain.model.RelationshipAttribute;
+import es.puig.wallet.infrastructure.broker.adapter.EmbeddedBrokerAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedBrokerAdapterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<EmbeddedBrokerAdapter> openedAdapters = new ArrayList<>();
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (EmbeddedBrokerAdapter adapter : openedAdapters) {
+            adapter.close();
+        }
+    }
+
+    @Test
+    void entities_andTheirIndexes_surviveAReopening() throws Exception {
+        EmbeddedBrokerAdapter adapter = open(100);
+        StepVerifier.create(adapter.batchCreateEntities("p1", List.of(credential("1", "user1"), credential("2", "user1"))))
+                .verifyComplete();
+        StepVerifier.create(adapter.deleteCredentialByIdAndUserId("p1", CREDENTIAL_ENTITY_PREFIX + "2", "user1"))
+                .verifyComplete();
+        adapter.close();
+
+        EmbeddedBrokerAdapter reopened = open(100);
+
+        JsonNode credentials = objectMapper.readTree(reopened
+                .getCredentialByCredentialTypeAndUserId("p1", "LEARCredentialEmployee", "user1").block());
+        assertEquals(1, credentials.size());
+        assertEquals(CREDENTIAL_ENTITY_PREFIX + "1", credentials.get(0).get("id").asText());
+    }
+
+    @Test
+    void aRecordTornByACrash_isDroppedWithoutLosingThePreviousOnes() throws Exception {
+        EmbeddedBrokerAdapter adapter = open(100);
+        StepVerifier.create(adapter.postEntity("p1", credential("1", "user1"))).verifyComplete();
+        adapter.close();
+        // Header of a record longer than what made it to the disk
+        Files.write(directory.resolve("entities.journal"), new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        EmbeddedBrokerAdapter reopened = open(100);
+        StepVerifier.create(reopened.postEntity("p1", credential("2", "user1"))).verifyComplete();
+        reopened.close();
+
+        EmbeddedBrokerAdapter recovered = open(100);
+        assertEquals(2, objectMapper.readTree(recovered.getAllCredentialsByUserId("p1", "user1").block()).size());
+    }
+
+    @Test
+    void compaction_replacesTheJournalWithASnapshot() throws Exception {
+        EmbeddedBrokerAdapter adapter = open(3);
+        StepVerifier.create(adapter.postEntity("p1", credential("1", "user1"))).verifyComplete();
+        StepVerifier.create(adapter.postEntity("p1", credential("2", "user1"))).verifyComplete();
+        StepVerifier.create(adapter.updateEntityAttributes("p1", CREDENTIAL_ENTITY_PREFIX + "1",
+                        Map.of("json_vc", new CredentialAttribute(PROPERTY_TYPE, "updated"))))
+                .verifyComplete();
+
+        // The compaction runs in the background
+        await().atMost(Duration.ofSeconds(5)).until(() -> Files.exists(directory.resolve("entities.snapshot"))
+                && Files.size(directory.resolve("entities.journal")) == 0);
+
+        StepVerifier.create(adapter.postEntity("p1", credential("3", "user1"))).verifyComplete();
+        adapter.close();
+
+        EmbeddedBrokerAdapter reopened = open(3);
+        JsonNode credential = objectMapper.readTree(reopened.getEntityById("p1", CREDENTIAL_ENTITY_PREFIX + "1").block().orElseThrow());
+        assertEquals("updated", credential.get("json_vc").get("value").asText());
+        assertEquals(3, objectMapper.readTree(reopened.getAllCredentialsByUserId("p1", "user1").block()).size());
+    }
+
+    private EmbeddedBrokerAdapter open(int compactionThreshold) throws IOException {
+        EmbeddedBrokerAdapter adapter = new EmbeddedBrokerAdapter(objectMapper, directory, true, compactionThreshold);
+        adapter.open();
+        openedAdapters.add(adapter);
+        return adapter;
+    }
+
+    private static CredentialEntity credential(String id, String userId) {
+        return CredentialEntity.builder()
+                .id(CREDENTIAL_ENTITY_PREFIX + id)
+                .type(CREDENTIAL_TYPE)
+                .credentialTypeAttribute(new CredentialTypeAttribute(PROPERTY_TYPE, List.of("VerifiableCredential", "LEARCredentialEmployee")))
+                .jsonCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE, Map.of("id", id)))
+                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE, USER_ENTITY_PREFIX + userId))
+                .build();
+    }
+
+}
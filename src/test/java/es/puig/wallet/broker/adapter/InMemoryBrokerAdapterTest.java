@@ -0,0 +1,178 @@
+package es.puig.wallet.broker.adapter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.exception.FailedCommunicationException;
+import es.puig.wallet.domain.exception.NoSuchVerifiableCredentialException;
+import es.puig.wallet.domain.model.*;
+import es.puig.wallet.infrastructure.broker.adapter.InMemoryBrokerAdapter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryBrokerAdapterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private InMemoryBrokerAdapter inMemoryBrokerAdapter;
+
+    @BeforeEach
+    void setUp() {
+        inMemoryBrokerAdapter = new InMemoryBrokerAdapter(objectMapper);
+    }
+
+    @Test
+    void credentialsByType_onlyListTheCredentialsOfTheUserWithThatType() throws Exception {
+        StepVerifier.create(inMemoryBrokerAdapter.batchCreateEntities("p1", List.of(
+                        credential("1", "user1", "LEARCredentialEmployee"),
+                        credential("2", "user1", "VerifiableCertification"),
+                        credential("3", "user2", "LEARCredentialEmployee"))))
+                .verifyComplete();
+
+        JsonNode credentials = objectMapper.readTree(inMemoryBrokerAdapter
+                .getCredentialByCredentialTypeAndUserId("p1", "LEARCredentialEmployee", "user1").block());
+
+        assertEquals(1, credentials.size());
+        assertEquals(CREDENTIAL_ENTITY_PREFIX + "1", credentials.get(0).get("id").asText());
+        // List queries are projected like the ones sent to the brokers
+        assertTrue(credentials.get(0).has("json_vc"));
+        assertFalse(credentials.get(0).has("jwt_vc"));
+    }
+
+    @Test
+    void updatingTheCredentialType_movesTheCredentialBetweenIndexes() throws Exception {
+        StepVerifier.create(inMemoryBrokerAdapter.postEntity("p1", credential("1", "user1", "LEARCredentialEmployee")))
+                .verifyComplete();
+        StepVerifier.create(inMemoryBrokerAdapter.updateEntityAttributes("p1", CREDENTIAL_ENTITY_PREFIX + "1",
+                        Map.of("credentialType", new CredentialTypeAttribute(PROPERTY_TYPE, List.of("VerifiableCertification")))))
+                .verifyComplete();
+
+        assertEquals("[]", inMemoryBrokerAdapter.getCredentialByCredentialTypeAndUserId("p1", "LEARCredentialEmployee", "user1").block());
+        assertEquals(1, objectMapper.readTree(inMemoryBrokerAdapter
+                .getCredentialByCredentialTypeAndUserId("p1", "VerifiableCertification", "user1").block()).size());
+    }
+
+    @Test
+    void transactions_areFoundThroughTheCredentialTheyAreLinkedTo() throws Exception {
+        TransactionEntity transaction = TransactionEntity.builder()
+                .id(TRANSACTION_ENTITY_PREFIX + "1")
+                .type(TRANSACTION_TYPE)
+                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE, CREDENTIAL_ENTITY_PREFIX + "1"))
+                .build();
+        StepVerifier.create(inMemoryBrokerAdapter.upsertEntity("p1", transaction)).verifyComplete();
+
+        JsonNode transactions = objectMapper.readTree(inMemoryBrokerAdapter
+                .getTransactionThatIsLinkedToACredential("p1", CREDENTIAL_ENTITY_PREFIX + "1").block());
+        assertEquals(TRANSACTION_ENTITY_PREFIX + "1", transactions.get(0).get("id").asText());
+
+        StepVerifier.create(inMemoryBrokerAdapter.deleteTransactionByTransactionId("p1", TRANSACTION_ENTITY_PREFIX + "1"))
+                .verifyComplete();
+        assertEquals("[]", inMemoryBrokerAdapter.getTransactionThatIsLinkedToACredential("p1", CREDENTIAL_ENTITY_PREFIX + "1").block());
+    }
+
+    @Test
+    void credentialsOfAnotherUser_areNotFound() {
+        StepVerifier.create(inMemoryBrokerAdapter.postEntity("p1", credential("1", "user1", "LEARCredentialEmployee")))
+                .verifyComplete();
+
+        StepVerifier.create(inMemoryBrokerAdapter.getCredentialByIdAndUserId("p1", CREDENTIAL_ENTITY_PREFIX + "1", "user2"))
+                .expectError(NoSuchVerifiableCredentialException.class)
+                .verify();
+        StepVerifier.create(inMemoryBrokerAdapter.deleteCredentialByIdAndUserId("p1", CREDENTIAL_ENTITY_PREFIX + "1", "user2"))
+                .expectError(NoSuchVerifiableCredentialException.class)
+                .verify();
+    }
+
+    @Test
+    void postingAnExistingEntity_fails() {
+        StepVerifier.create(inMemoryBrokerAdapter.postEntity("p1", credential("1", "user1", "LEARCredentialEmployee")))
+                .verifyComplete();
+
+        StepVerifier.create(inMemoryBrokerAdapter.postEntity("p1", credential("1", "user1", "LEARCredentialEmployee")))
+                .expectError(FailedCommunicationException.class)
+                .verify();
+    }
+
+    @Test
+    void summaryInstances_areMergedByDatasetIdAndDeletedOneByOne() throws Exception {
+        String summaryId = CREDENTIAL_SUMMARY_ENTITY_PREFIX + "user1";
+        StepVerifier.create(inMemoryBrokerAdapter.upsertEntity("p1", summary(summaryId, "1", "2"))).verifyComplete();
+        StepVerifier.create(inMemoryBrokerAdapter.upsertEntity("p1", summary(summaryId, "2", "3"))).verifyComplete();
+
+        JsonNode stored = objectMapper.readTree(inMemoryBrokerAdapter.getEntityById("p1", summaryId).block().orElseThrow());
+        assertEquals(3, stored.get("credentials").size());
+
+        StepVerifier.create(inMemoryBrokerAdapter.deleteEntityAttributeInstance("p1", summaryId, "credentials", CREDENTIAL_ENTITY_PREFIX + "1"))
+                .verifyComplete();
+        StepVerifier.create(inMemoryBrokerAdapter.deleteEntityAttributeInstance("p1", summaryId, "credentials", CREDENTIAL_ENTITY_PREFIX + "2"))
+                .verifyComplete();
+
+        stored = objectMapper.readTree(inMemoryBrokerAdapter.getEntityById("p1", summaryId).block().orElseThrow());
+        // A single instance is returned as an object, like the brokers do
+        assertTrue(stored.get("credentials").isObject());
+        assertEquals(CREDENTIAL_ENTITY_PREFIX + "3", stored.get("credentials").get("datasetId").asText());
+    }
+
+    @Test
+    void credentialsPages_andQueries_followTheOrderOfTheIds() throws Exception {
+        StepVerifier.create(inMemoryBrokerAdapter.batchUpsertEntities("p1", List.of(
+                        credential("1", "user1", "LEARCredentialEmployee"),
+                        credential("2", "user1", "LEARCredentialEmployee"),
+                        credential("3", "user1", "LEARCredentialEmployee"))))
+                .verifyComplete();
+
+        JsonNode page = objectMapper.readTree(inMemoryBrokerAdapter.getCredentialsPageByUserId("p1", "user1", 2, 1).block());
+        assertEquals(CREDENTIAL_ENTITY_PREFIX + "2", page.get(0).get("id").asText());
+        assertEquals(CREDENTIAL_ENTITY_PREFIX + "3", page.get(1).get("id").asText());
+
+        JsonNode queried = objectMapper.readTree(inMemoryBrokerAdapter.queryEntities("p1", CREDENTIAL_TYPE,
+                "belongsTo==" + USER_ENTITY_PREFIX + "user1", 10, 0).block());
+        assertEquals(3, queried.size());
+        // Queries return the complete entities
+        assertTrue(queried.get(0).has("jwt_vc"));
+    }
+
+    @Test
+    void batchDelete_ofMissingEntities_failsAfterDeletingTheRest() {
+        StepVerifier.create(inMemoryBrokerAdapter.postEntity("p1", credential("1", "user1", "LEARCredentialEmployee")))
+                .verifyComplete();
+
+        StepVerifier.create(inMemoryBrokerAdapter.batchDeleteEntities("p1", List.of(CREDENTIAL_ENTITY_PREFIX + "1", CREDENTIAL_ENTITY_PREFIX + "2")))
+                .expectError(FailedCommunicationException.class)
+                .verify();
+
+        assertEquals("[]", inMemoryBrokerAdapter.getAllCredentialsByUserId("p1", "user1").block());
+    }
+
+    private static CredentialEntity credential(String id, String userId, String credentialType) {
+        return CredentialEntity.builder()
+                .id(CREDENTIAL_ENTITY_PREFIX + id)
+                .type(CREDENTIAL_TYPE)
+                .credentialTypeAttribute(new CredentialTypeAttribute(PROPERTY_TYPE, List.of("VerifiableCredential", credentialType)))
+                .jsonCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE, Map.of("id", id)))
+                .jwtCredentialAttribute(new CredentialAttribute(PROPERTY_TYPE, "eyJ"))
+                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE, USER_ENTITY_PREFIX + userId))
+                .build();
+    }
+
+    private static CredentialSummaryEntity summary(String summaryId, String... credentialIds) {
+        return CredentialSummaryEntity.builder()
+                .id(summaryId)
+                .type(CREDENTIAL_SUMMARY_TYPE)
+                .credentials(Arrays.stream(credentialIds)
+                        .map(credentialId -> CredentialSummaryAttribute.builder()
+                                .type(PROPERTY_TYPE)
+                                .datasetId(CREDENTIAL_ENTITY_PREFIX + credentialId)
+                                .build())
+                        .toList())
+                .build();
+    }
+
+}
@@ -1,7 +1,15 @@
 package es.puig.wallet.broker.adapter;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import es.puig.wallet.domain.exception.FailedCommunicationException;
+import es.puig.wallet.domain.model.CredentialAttribute;
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.WalletUser;
 import es.puig.wallet.infrastructure.broker.adapter.OrionLdAdapter;
 import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.core.util.WebClientFactory;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -21,11 +29,18 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
 import static es.puig.wallet.domain.util.ApplicationConstants.ATTRIBUTES;
+import static es.puig.wallet.domain.util.ApplicationConstants.CREDENTIAL_SUMMARY_ATTRIBUTES;
+import static es.puig.wallet.domain.util.ApplicationConstants.JWT_VC;
+import static es.puig.wallet.domain.util.ApplicationConstants.PROPERTY_TYPE;
+import static es.puig.wallet.domain.util.ApplicationConstants.TRANSACTION_DATA_ATTRIBUTE;
 import static es.puig.wallet.domain.util.ApplicationConstants.USER_ENTITY_PREFIX;
+import static es.puig.wallet.domain.util.ApplicationConstants.WALLET_USER_TYPE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +48,12 @@ class OrionLdAdapterTest {
 
     @Mock
     private BrokerConfig brokerConfig;
+    @Mock
+    private WebClientFactory webClientFactory;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
 
     @Mock
     private MockWebServer mockWebServer;
@@ -43,15 +64,17 @@ class OrionLdAdapterTest {
     @BeforeEach
     void setUp() throws IOException, NoSuchFieldException, IllegalAccessException {
         // Mock the behavior of broker properties to return predefined paths
-        when(brokerConfig.getEntitiesPath()).thenReturn("/entities");
-        when(brokerConfig.getExternalUrl()).thenReturn("/external");
+        lenient().when(brokerConfig.getEntitiesPath()).thenReturn("/entities");
+        lenient().when(brokerConfig.getEntityOperationsPath()).thenReturn("/entityOperations");
+        lenient().when(brokerConfig.getInternalUrl()).thenReturn("/internal");
+        lenient().when(brokerConfig.getReadUrl()).thenReturn("/replica");
 
         // Initialize and start MockWebServer
         mockWebServer = new MockWebServer();
         mockWebServer.start();
 
         // Initialize OrionLdAdapter with mocked properties
-        orionLdAdapter = new OrionLdAdapter(brokerConfig);
+        orionLdAdapter = new OrionLdAdapter(objectMapper, brokerConfig, webClientFactory);
 
         // Create a WebClient that points to the MockWebServer
         WebClient webClient = WebClient.builder()
@@ -74,7 +97,7 @@ class OrionLdAdapterTest {
     void postEntityTest() throws Exception {
         // Prepare test data
         String processId = "processId123";
-        String requestBody = "{\"key\":\"value\"}";
+        WalletUser requestBody = WalletUser.builder().id(USER_ENTITY_PREFIX + "123").type(WALLET_USER_TYPE).build();
 
         // Enqueue a mock response for the POST request
         mockWebServer.enqueue(new MockResponse().setResponseCode(200));
@@ -85,10 +108,11 @@ class OrionLdAdapterTest {
 
         // Verify the POST request was made correctly
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities", recordedRequest.getPath());
+        assertEquals("/internal/entities", recordedRequest.getPath());
         assertEquals("POST", recordedRequest.getMethod());
         assertEquals(MediaType.APPLICATION_JSON_VALUE, recordedRequest.getHeader(HttpHeaders.CONTENT_TYPE));
-        assertNotNull(recordedRequest.getBody().readUtf8()); // Ensure the request body was sent
+        // Null attributes are left out of the body, since NGSI-LD reads them as attribute deletions
+        assertEquals("{\"id\":\"" + requestBody.id() + "\",\"type\":\"" + WALLET_USER_TYPE + "\"}", recordedRequest.getBody().readUtf8());
     }
 
     @Test
@@ -112,7 +136,7 @@ class OrionLdAdapterTest {
 
         // Verify the GET request was made correctly
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities" + "/" + USER_ENTITY_PREFIX + userId, recordedRequest.getPath());
+        assertEquals("/internal/entities" + "/" + USER_ENTITY_PREFIX + userId, recordedRequest.getPath());
         assertEquals("GET", recordedRequest.getMethod());
     }
 
@@ -121,7 +145,7 @@ class OrionLdAdapterTest {
         // Prepare test data and mock response
         String entityId = USER_ENTITY_PREFIX +  "123";
         String processId = "processId123";
-        String requestBody = "{\"newKey\":\"newValue\"}";
+        WalletUser requestBody = WalletUser.builder().id(entityId).type(WALLET_USER_TYPE).build();
 
         // Enqueue a mock response for the POST request
         mockWebServer.enqueue(new MockResponse().setResponseCode(200));
@@ -132,10 +156,11 @@ class OrionLdAdapterTest {
 
         // Verify the POST request was made correctly
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities" + "/" + entityId + ATTRIBUTES, recordedRequest.getPath());
+        assertEquals("/internal/entities" + "/" + entityId + ATTRIBUTES, recordedRequest.getPath());
         assertEquals("POST", recordedRequest.getMethod());
         assertEquals(MediaType.APPLICATION_JSON_VALUE, recordedRequest.getHeader(HttpHeaders.CONTENT_TYPE));
-        assertNotNull(recordedRequest.getBody().readUtf8()); // Ensure the request body was sent
+        // Null attributes are left out of the body, since NGSI-LD reads them as attribute deletions
+        assertEquals("{\"id\":\"" + requestBody.id() + "\",\"type\":\"" + WALLET_USER_TYPE + "\"}", recordedRequest.getBody().readUtf8());
     }
 
     @Test
@@ -158,7 +183,7 @@ class OrionLdAdapterTest {
                 .verifyComplete();
 
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities?type=Credential&q=" + path, recordedRequest.getPath());
+        assertEquals("/internal/entities?type=Credential&q=" + path + "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES, recordedRequest.getPath());
     }
 
     @Test
@@ -180,7 +205,7 @@ class OrionLdAdapterTest {
                 .verifyComplete();
 
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities/" + credentialId + "?q=" + encodedQuery, recordedRequest.getPath());
+        assertEquals("/internal/entities/" + credentialId + "?q=" + encodedQuery, recordedRequest.getPath());
     }
 
     @Test
@@ -197,10 +222,35 @@ class OrionLdAdapterTest {
                 .verifyComplete();
 
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities/" + credentialId + "?q=" + encodedQuery, recordedRequest.getPath());
+        assertEquals("/internal/entities/" + credentialId + "?q=" + encodedQuery, recordedRequest.getPath());
         assertEquals("DELETE", recordedRequest.getMethod());
     }
 
+    @Test
+    void getCredentialsPageFromTheReadReplicaTest() throws Exception {
+        String processId = "processId123";
+        String userId = "userId123";
+        String encodedQuery = URLEncoder.encode("belongsTo==", StandardCharsets.UTF_8) + USER_ENTITY_PREFIX + userId;
+        String expectedResponse = "[{\"id\":\"credentialId3\"}]";
+
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody(expectedResponse));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody(expectedResponse));
+
+        StepVerifier.create(orionLdAdapter.getCredentialsPageByUserIdFromReadReplica(processId, userId, 2, 2))
+                .expectNext(expectedResponse)
+                .verifyComplete();
+        StepVerifier.create(orionLdAdapter.getCredentialsPageByUserId(processId, userId, 2, 2))
+                .expectNext(expectedResponse)
+                .verifyComplete();
+
+        assertEquals("/replica/entities?type=Credential&q=" + encodedQuery + "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES + "&orderBy=id&limit=2&offset=2", mockWebServer.takeRequest().getPath());
+        assertEquals("/internal/entities?type=Credential&q=" + encodedQuery + "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES + "&orderBy=id&limit=2&offset=2", mockWebServer.takeRequest().getPath());
+    }
+
     @Test
     void getCredentialByCredentialTypeThatBelongToUserTest() throws Exception {
         String processId = "processId123";
@@ -221,7 +271,7 @@ class OrionLdAdapterTest {
                 .verifyComplete();
 
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities?type=Credential&q=" + encodedQuery, recordedRequest.getPath());
+        assertEquals("/internal/entities?type=Credential&q=" + encodedQuery + "&attrs=" + CREDENTIAL_SUMMARY_ATTRIBUTES, recordedRequest.getPath());
     }
 
     @Test
@@ -240,8 +290,68 @@ class OrionLdAdapterTest {
                 .verifyComplete();
 
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
-        assertEquals("/external/entities?type=Transaction&q=" + encodedQuery, recordedRequest.getPath());
+        assertEquals("/internal/entities?type=Transaction&q=" + encodedQuery, recordedRequest.getPath());
+    }
+    @Test
+    void deleteEntityAttributeInstanceTest() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(orionLdAdapter.deleteEntityAttributeInstance("process1", "urn:entities:credentialSummary:user1", "credentials", "urn:entities:credential:1"))
+                .verifyComplete();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("DELETE", recordedRequest.getMethod());
+        assertEquals("/internal/entities/urn:entities:credentialSummary:user1/attrs/credentials?datasetId=urn:entities:credential:1", recordedRequest.getPath());
     }
+
+    @Test
+    void deleteEntityAttributeInstanceNotFoundTest() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+
+        StepVerifier.create(orionLdAdapter.deleteEntityAttributeInstance("process1", "urn:entities:credentialSummary:user1", "credentials", "urn:entities:credential:1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void appendEntityAttributesTest() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(orionLdAdapter.appendEntityAttributes("process1", "urn:entities:credential:1",
+                        Map.of(JWT_VC, new CredentialAttribute(PROPERTY_TYPE, "ey..."))))
+                .verifyComplete();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("POST", recordedRequest.getMethod());
+        assertEquals("/internal/entities/urn:entities:credential:1" + ATTRIBUTES, recordedRequest.getPath());
+        assertEquals("{\"jwt_vc\":{\"type\":\"Property\",\"value\":\"ey...\"}}", recordedRequest.getBody().readUtf8());
+    }
+
+    @Test
+    void updateEntityAttributesTest() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(orionLdAdapter.updateEntityAttributes("process1", "urn:entities:transaction:1",
+                        Map.of(TRANSACTION_DATA_ATTRIBUTE, new CredentialAttribute(PROPERTY_TYPE, "tx"))))
+                .verifyComplete();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("PATCH", recordedRequest.getMethod());
+        assertEquals("/internal/entities/urn:entities:transaction:1" + ATTRIBUTES, recordedRequest.getPath());
+        assertEquals("{\"transactionData\":{\"type\":\"Property\",\"value\":\"tx\"}}", recordedRequest.getBody().readUtf8());
+    }
+
+    @Test
+    void updateEntityAttributesPartialFailureTest() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(207)
+                .setBody("{\"updated\":[],\"notUpdated\":[{\"attributeName\":\"transactionData\"}]}"));
+
+        StepVerifier.create(orionLdAdapter.updateEntityAttributes("process1", "urn:entities:transaction:1",
+                        Map.of(TRANSACTION_DATA_ATTRIBUTE, new CredentialAttribute(PROPERTY_TYPE, "tx"))))
+                .expectError(FailedCommunicationException.class)
+                .verify();
+    }
+
     @Test
     void deleteTransactionByTransactionIdTest() throws Exception {
         mockWebServer.enqueue(new MockResponse().setResponseCode(204));
@@ -254,9 +364,52 @@ class OrionLdAdapterTest {
 
         RecordedRequest recordedRequest = mockWebServer.takeRequest();
         assertEquals("DELETE", recordedRequest.getMethod());
-        assertEquals("/external/entities/" + transactionId, recordedRequest.getPath());
+        assertEquals("/internal/entities/" + transactionId, recordedRequest.getPath());
     }
 
-}
+    @Test
+    void batchUpsertEntitiesTest() throws Exception {
+        String processId = "processId123";
+        CredentialEntity entity = CredentialEntity.builder().id("urn:entities:credential:1").type("Credential").build();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
 
+        StepVerifier.create(orionLdAdapter.batchUpsertEntities(processId, List.of(entity)))
+                .verifyComplete();
 
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("POST", recordedRequest.getMethod());
+        assertEquals("/internal/entityOperations/upsert?options=update", recordedRequest.getPath());
+        assertEquals("[{\"id\":\"urn:entities:credential:1\",\"type\":\"Credential\"}]", recordedRequest.getBody().readUtf8());
+    }
+
+    @Test
+    void batchCreateEntitiesPartialFailureTest() throws Exception {
+        String processId = "processId123";
+        CredentialEntity entity = CredentialEntity.builder().id("urn:entities:credential:1").type("Credential").build();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(207)
+                .setBody("{\"success\":[],\"errors\":[{\"entityId\":\"urn:entities:credential:1\"}]}"));
+
+        StepVerifier.create(orionLdAdapter.batchCreateEntities(processId, List.of(entity)))
+                .expectError(FailedCommunicationException.class)
+                .verify();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("/internal/entityOperations/create", recordedRequest.getPath());
+    }
+
+    @Test
+    void batchDeleteEntitiesTest() throws Exception {
+        String processId = "processId123";
+        List<String> ids = List.of("urn:entities:credential:1", "urn:entities:transaction:1");
+        mockWebServer.enqueue(new MockResponse().setResponseCode(204));
+
+        StepVerifier.create(orionLdAdapter.batchDeleteEntities(processId, ids))
+                .verifyComplete();
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        assertEquals("/internal/entityOperations/delete", recordedRequest.getPath());
+        assertEquals("[\"urn:entities:credential:1\",\"urn:entities:transaction:1\"]", recordedRequest.getBody().readUtf8());
+    }
+
+}
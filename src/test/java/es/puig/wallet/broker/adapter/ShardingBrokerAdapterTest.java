@@ -0,0 +1,132 @@
+package es.puig.wallet.broker.adapter;
+
+import es.puig.wallet.domain.model.CredentialEntity;
+import es.puig.wallet.domain.model.RelationshipAttribute;
+import es.puig.wallet.domain.model.TransactionEntity;
+import es.puig.wallet.domain.model.WalletUser;
+import es.puig.wallet.infrastructure.broker.adapter.ShardingBrokerAdapter;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import es.puig.wallet.infrastructure.broker.util.BrokerShard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShardingBrokerAdapterTest {
+
+    private final List<BrokerShard> shards = List.of(
+            new BrokerShard("shard-a", "http://broker-a:9090", null),
+            new BrokerShard("shard-b", "http://broker-b:9090", "wallet-b"),
+            new BrokerShard("shard-c", "http://broker-c:9090", null));
+
+    @Mock
+    private GenericBrokerService brokerAdapter;
+
+    private ShardingBrokerAdapter shardingBrokerAdapter;
+
+    @BeforeEach
+    void setUp() {
+        shardingBrokerAdapter = new ShardingBrokerAdapter(brokerAdapter, shards, 128);
+    }
+
+    @Test
+    void userQueries_areSentToTheShardOfTheUser() {
+        when(brokerAdapter.getAllCredentialsByUserId("p1", "user1")).thenReturn(shardOfCall());
+
+        StepVerifier.create(shardingBrokerAdapter.getAllCredentialsByUserId("p1", "user1"))
+                .expectNext(shardingBrokerAdapter.shardOf("user1").name())
+                .verifyComplete();
+    }
+
+    @Test
+    void credentialWrites_followTheOwnerTheCredentialBelongsTo() {
+        CredentialEntity credential = CredentialEntity.builder()
+                .id(CREDENTIAL_ENTITY_PREFIX + "1")
+                .type(CREDENTIAL_TYPE)
+                .relationshipAttribute(new RelationshipAttribute(RELATIONSHIP_TYPE, USER_ENTITY_PREFIX + "user2"))
+                .build();
+        TransactionEntity transaction = TransactionEntity.builder()
+                .id(TRANSACTION_ENTITY_PREFIX + "1")
+                .type(TRANSACTION_TYPE)
+                .build();
+        WalletUser user = WalletUser.builder().id(USER_ENTITY_PREFIX + "user2").type(WALLET_USER_TYPE).build();
+        AtomicReference<String> shardName = new AtomicReference<>();
+        when(brokerAdapter.batchUpsertEntities(eq("p1"), anyList())).thenReturn(shardOfCall().doOnNext(shardName::set).then());
+
+        StepVerifier.create(shardingBrokerAdapter.batchUpsertEntities("p1", List.of(user, credential, transaction)))
+                .verifyComplete();
+
+        assertEquals(shardingBrokerAdapter.shardOf("user2").name(), shardName.get());
+    }
+
+    @Test
+    void callsWithoutOwner_areSentToTheShardOfTheAuthenticatedUser() {
+        when(brokerAdapter.getTransactionThatIsLinkedToACredential("p1", CREDENTIAL_ENTITY_PREFIX + "1")).thenReturn(shardOfCall());
+
+        StepVerifier.create(shardingBrokerAdapter.getTransactionThatIsLinkedToACredential("p1", CREDENTIAL_ENTITY_PREFIX + "1")
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(new TestingAuthenticationToken("user3", null))))
+                .expectNext(shardingBrokerAdapter.shardOf("user3").name())
+                .verifyComplete();
+    }
+
+    @Test
+    void callsWithoutOwnerNorAuthenticatedUser_fail() {
+        StepVerifier.create(shardingBrokerAdapter.appendEntityAttributes("p1", CREDENTIAL_ENTITY_PREFIX + "1", Map.of()))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verifyNoInteractions(brokerAdapter);
+    }
+
+    @Test
+    void batchesOfSeveralUsers_areRejected() {
+        List<WalletUser> users = List.of(
+                WalletUser.builder().id(USER_ENTITY_PREFIX + "user1").type(WALLET_USER_TYPE).build(),
+                WalletUser.builder().id(USER_ENTITY_PREFIX + "user2").type(WALLET_USER_TYPE).build());
+
+        StepVerifier.create(shardingBrokerAdapter.batchCreateEntities("p1", users))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+
+    @Test
+    void addingAShard_onlyMovesTheUsersOfTheNewShard() {
+        List<BrokerShard> moreShards = new ArrayList<>(shards);
+        moreShards.add(new BrokerShard("shard-d", "http://broker-d:9090", null));
+        ShardingBrokerAdapter grown = new ShardingBrokerAdapter(brokerAdapter, moreShards, 128);
+
+        List<String> users = IntStream.range(0, 4000).mapToObj(i -> "user" + i).toList();
+        long moved = users.stream()
+                .filter(userId -> !grown.shardOf(userId).equals(shardingBrokerAdapter.shardOf(userId)))
+                .peek(userId -> assertEquals("shard-d", grown.shardOf(userId).name()))
+                .count();
+
+        // A fourth shard should take about a quarter of the users
+        assertTrue(moved > 700 && moved < 1300, "moved users: " + moved);
+    }
+
+    private static Mono<String> shardOfCall() {
+        return Mono.deferContextual(context -> Mono.just(context.get(BrokerShard.class).name()));
+    }
+
+}
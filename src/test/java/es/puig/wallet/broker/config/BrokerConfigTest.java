@@ -0,0 +1,93 @@
+package es.puig.wallet.broker.config;
+
+import es.puig.wallet.infrastructure.appconfiguration.service.GenericConfigAdapter;
+import es.puig.wallet.infrastructure.appconfiguration.util.ConfigAdapterFactory;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.config.BrokerProperties;
+import es.puig.wallet.infrastructure.core.config.properties.UrlProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BrokerConfigTest {
+
+    @Mock
+    private ConfigAdapterFactory configAdapterFactory;
+    @Mock
+    private GenericConfigAdapter genericConfigAdapter;
+
+    private final UrlProperties externalUrl = new UrlProperties("https", "broker.example.com", 443, null);
+    private final UrlProperties internalUrl = new UrlProperties("http", "scorpio", 9090, null);
+
+    @BeforeEach
+    void setUp() {
+        when(configAdapterFactory.getAdapter()).thenReturn(genericConfigAdapter);
+        when(genericConfigAdapter.getConfiguration(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void brokerTraffic_goesOverTheInternalAddressAndTheExternalOneIsKept() {
+        BrokerConfig brokerConfig = brokerConfig(new BrokerProperties("scorpio", externalUrl, internalUrl, null, null, null, null, null));
+
+        assertEquals("https://broker.example.com:443", brokerConfig.getExternalUrl());
+        assertEquals("http://scorpio:9090", brokerConfig.getInternalUrl());
+        assertEquals("http://scorpio:9090", brokerConfig.getReadUrl());
+    }
+
+    @Test
+    void pagedListing_goesToTheReadReplicaWhenConfigured() {
+        UrlProperties readUrl = new UrlProperties("http", "scorpio-replica", 9090, null);
+        BrokerConfig brokerConfig = brokerConfig(new BrokerProperties("scorpio", externalUrl, internalUrl, readUrl, null, null, null, null));
+
+        assertEquals("http://scorpio:9090", brokerConfig.getInternalUrl());
+        assertEquals("http://scorpio-replica:9090", brokerConfig.getReadUrl());
+    }
+
+    @Test
+    void withoutInternalAddress_theExternalOneIsUsed() {
+        BrokerConfig brokerConfig = brokerConfig(new BrokerProperties("scorpio", externalUrl, null, null, null, null, null, null));
+
+        assertEquals("https://broker.example.com:443", brokerConfig.getInternalUrl());
+        assertEquals("https://broker.example.com:443", brokerConfig.getReadUrl());
+    }
+
+    @Test
+    void shardUrls_keepTheirPathPrefix() {
+        UrlProperties shardUrl = new UrlProperties("http", "gateway", 8080, "/shard-0");
+        BrokerProperties.BrokerShardingProperties sharding = new BrokerProperties.BrokerShardingProperties(true, null,
+                List.of(new BrokerProperties.BrokerShardProperties("shard-0", shardUrl, null),
+                        new BrokerProperties.BrokerShardProperties("shard-1", null, "wallet-shard-1")),
+                null, null);
+        BrokerConfig brokerConfig = brokerConfig(new BrokerProperties("scorpio", externalUrl, internalUrl, null, null, null, sharding, null));
+
+        assertEquals("http://gateway:8080/shard-0", brokerConfig.getShards().get(0).url());
+        assertEquals("http://scorpio:9090", brokerConfig.getShards().get(1).url());
+    }
+
+    @Test
+    void shardingWithoutVirtualNodes_isRejected() {
+        BrokerProperties.BrokerShardingProperties sharding = new BrokerProperties.BrokerShardingProperties(true, 0,
+                List.of(new BrokerProperties.BrokerShardProperties("shard-0", null, null)), null, null);
+        BrokerConfig brokerConfig = new BrokerConfig(configAdapterFactory,
+                new BrokerProperties("scorpio", externalUrl, internalUrl, null, null, null, sharding, null));
+
+        assertThrows(IllegalStateException.class, brokerConfig::init);
+    }
+
+    private BrokerConfig brokerConfig(BrokerProperties brokerProperties) {
+        BrokerConfig brokerConfig = new BrokerConfig(configAdapterFactory, brokerProperties);
+        brokerConfig.init();
+        return brokerConfig;
+    }
+
+}
@@ -0,0 +1,68 @@
+package es.puig.wallet.broker.util;
+
+import es.puig.wallet.infrastructure.broker.util.BrokerShard;
+import es.puig.wallet.infrastructure.broker.util.BrokerShardContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class BrokerShardContextTest {
+
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET,
+            URI.create("http://scorpio:9090/ngsi-ld/v1/entities?type=Credential&q=belongsTo%3D%3Durn:entities:walletUser:user1")).build();
+    private final AtomicReference<ClientRequest> sentRequest = new AtomicReference<>();
+    private final ExchangeFunction exchange = sent -> {
+        sentRequest.set(sent);
+        return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+    };
+
+    @Test
+    void requestsRoutedToAShard_goToItsBrokerAndTenant() {
+        BrokerShard shard = new BrokerShard("shard-b", "https://broker-b:8443", "wallet-b");
+
+        StepVerifier.create(BrokerShardContext.exchangeFilter().filter(request, exchange)
+                        .contextWrite(BrokerShardContext.routeTo(shard)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals("https://broker-b:8443/ngsi-ld/v1/entities?type=Credential&q=belongsTo%3D%3Durn:entities:walletUser:user1",
+                sentRequest.get().url().toString());
+        assertEquals("wallet-b", sentRequest.get().headers().getFirst(BrokerShardContext.NGSILD_TENANT_HEADER));
+    }
+
+    @Test
+    void requestsRoutedToAShardBehindAPathPrefix_keepThePrefix() {
+        BrokerShard shard = new BrokerShard("shard-b", "https://gateway:8443/shard-b", null);
+
+        StepVerifier.create(BrokerShardContext.exchangeFilter().filter(request, exchange)
+                        .contextWrite(BrokerShardContext.routeTo(shard)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals("https://gateway:8443/shard-b/ngsi-ld/v1/entities?type=Credential&q=belongsTo%3D%3Durn:entities:walletUser:user1",
+                sentRequest.get().url().toString());
+        assertFalse(sentRequest.get().headers().containsKey(BrokerShardContext.NGSILD_TENANT_HEADER));
+    }
+
+    @Test
+    void requestsWithoutShard_areLeftUntouched() {
+        StepVerifier.create(BrokerShardContext.exchangeFilter().filter(request, exchange))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(request.url(), sentRequest.get().url());
+        assertFalse(sentRequest.get().headers().containsKey(BrokerShardContext.NGSILD_TENANT_HEADER));
+    }
+
+}
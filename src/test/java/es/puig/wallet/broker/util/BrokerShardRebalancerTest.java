@@ -0,0 +1,141 @@
+package es.puig.wallet.broker.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.service.GenericBrokerService;
+import es.puig.wallet.infrastructure.broker.util.BrokerFactory;
+import es.puig.wallet.infrastructure.broker.util.BrokerShard;
+import es.puig.wallet.infrastructure.broker.util.BrokerShardRebalancer;
+import es.puig.wallet.infrastructure.broker.util.ConsistentHashRing;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BrokerShardRebalancerTest {
+
+    private final BrokerShard shardA = new BrokerShard("shard-a", "http://broker-a:9090", null);
+    private final BrokerShard shardB = new BrokerShard("shard-b", "http://broker-b:9090", null);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private BrokerConfig brokerConfig;
+    @Mock
+    private BrokerFactory brokerFactory;
+    @Mock
+    private GenericBrokerService brokerAdapter;
+
+    private BrokerShardRebalancer rebalancer;
+
+    @BeforeEach
+    void setUp() {
+        when(brokerConfig.getShards()).thenReturn(List.of(shardA, shardB));
+        when(brokerConfig.getRetiredShards()).thenReturn(List.of());
+        when(brokerConfig.getShardVirtualNodes()).thenReturn(128);
+        when(brokerFactory.getProviderAdapter()).thenReturn(brokerAdapter);
+        rebalancer = new BrokerShardRebalancer(brokerConfig, brokerFactory, objectMapper);
+    }
+
+    @Test
+    void usersStoredInAnotherShard_areMovedWithAllTheirEntities() {
+        String userId = userOfShardB();
+        String userJson = "{\"id\":\"" + USER_ENTITY_PREFIX + userId + "\",\"type\":\"WalletUser\"}";
+        String credentialJson = "{\"id\":\"" + CREDENTIAL_ENTITY_PREFIX + "1\",\"type\":\"Credential\",\"jwt_vc\":{\"type\":\"Property\",\"value\":\"jwt\"}}";
+        String transactionJson = "{\"id\":\"" + TRANSACTION_ENTITY_PREFIX + "1\",\"type\":\"Transaction\"}";
+
+        storeUserOnShardA(userId, userJson, "[" + credentialJson + "]", "[]");
+        when(brokerAdapter.queryEntities(eq("p1"), eq(TRANSACTION_TYPE), eq("linkedTo==" + CREDENTIAL_ENTITY_PREFIX + "1"), anyInt(), eq(0)))
+                .thenReturn(Mono.just("[" + transactionJson + "]"));
+        List<String> writes = recordWrites();
+
+        StepVerifier.create(rebalancer.rebalance("p1"))
+                .expectNext(userId)
+                .verifyComplete();
+
+        assertEquals(List.of(
+                "upsert shard-b [" + userJson + "," + credentialJson + "," + transactionJson + "]",
+                "delete shard-a [" + USER_ENTITY_PREFIX + userId + ", " + CREDENTIAL_ENTITY_PREFIX + "1, " + TRANSACTION_ENTITY_PREFIX + "1]"),
+                writes);
+    }
+
+    @Test
+    void usersStoredInAnotherShard_areMovedWithTheirEncryptedKeys() {
+        String userId = userOfShardB();
+        String userJson = "{\"id\":\"" + USER_ENTITY_PREFIX + userId + "\",\"type\":\"WalletUser\"}";
+        String encryptedKeyJson = "{\"id\":\"" + ENCRYPTED_KEY_ENTITY_PREFIX + "did:key:1\",\"type\":\"EncryptedKey\","
+                + "\"belongsTo\":{\"type\":\"Relationship\",\"object\":\"" + USER_ENTITY_PREFIX + userId + "\"}}";
+
+        storeUserOnShardA(userId, userJson, "[]", "[" + encryptedKeyJson + "]");
+        List<String> writes = recordWrites();
+
+        StepVerifier.create(rebalancer.rebalance("p1"))
+                .expectNext(userId)
+                .verifyComplete();
+
+        assertEquals(List.of(
+                "upsert shard-b [" + userJson + "," + encryptedKeyJson + "]",
+                "delete shard-a [" + USER_ENTITY_PREFIX + userId + ", " + ENCRYPTED_KEY_ENTITY_PREFIX + "did:key:1]"),
+                writes);
+    }
+
+    private String userOfShardB() {
+        ConsistentHashRing<BrokerShard> ring = new ConsistentHashRing<>(List.of(shardA, shardB), BrokerShard::name, 128);
+        return IntStream.range(0, 100).mapToObj(i -> "user" + i)
+                .filter(candidate -> ring.nodeFor(candidate).equals(shardB))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private void storeUserOnShardA(String userId, String userJson, String credentialsJson, String encryptedKeysJson) {
+        when(brokerAdapter.queryEntities(eq("p1"), eq(WALLET_USER_TYPE), isNull(), anyInt(), eq(0)))
+                .thenAnswer(invocation -> onShard(shardA, "[" + userJson + "]", "[]"));
+        when(brokerAdapter.getEntityById("p1", USER_ENTITY_PREFIX + userId)).thenReturn(Mono.just(Optional.of(userJson)));
+        when(brokerAdapter.getEntityById("p1", CREDENTIAL_SUMMARY_ENTITY_PREFIX + userId)).thenReturn(Mono.just(Optional.empty()));
+        when(brokerAdapter.queryEntities(eq("p1"), eq(CREDENTIAL_TYPE), eq("belongsTo==" + USER_ENTITY_PREFIX + userId), anyInt(), eq(0)))
+                .thenReturn(Mono.just(credentialsJson));
+        when(brokerAdapter.queryEntities(eq("p1"), eq(ENCRYPTED_KEY_TYPE), eq("belongsTo==" + USER_ENTITY_PREFIX + userId), anyInt(), eq(0)))
+                .thenAnswer(invocation -> onShard(shardA, encryptedKeysJson, "[]"));
+    }
+
+    private List<String> recordWrites() {
+        List<String> writes = new ArrayList<>();
+        when(brokerAdapter.batchUpsertEntities(eq("p1"), anyList())).thenAnswer(invocation -> {
+            List<BrokerEntity> entities = invocation.getArgument(1);
+            return Mono.deferContextual(context -> {
+                writes.add("upsert " + context.get(BrokerShard.class).name() + " " + objectMapper.valueToTree(entities));
+                return Mono.empty();
+            });
+        });
+        when(brokerAdapter.batchDeleteEntities(eq("p1"), anyList())).thenAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(1);
+            return Mono.deferContextual(context -> {
+                writes.add("delete " + context.get(BrokerShard.class).name() + " " + ids);
+                return Mono.empty();
+            });
+        });
+        return writes;
+    }
+
+    private static Mono<String> onShard(BrokerShard shard, String body, String otherwise) {
+        return Mono.deferContextual(context -> Mono.just(context.get(BrokerShard.class).equals(shard) ? body : otherwise));
+    }
+
+}
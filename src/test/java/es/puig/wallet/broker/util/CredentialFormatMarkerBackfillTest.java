@@ -0,0 +1,109 @@
+package es.puig.wallet.broker.util;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.infrastructure.broker.adapter.InMemoryBrokerAdapter;
+import es.puig.wallet.infrastructure.broker.config.BrokerConfig;
+import es.puig.wallet.infrastructure.broker.util.BrokerFactory;
+import es.puig.wallet.infrastructure.broker.util.CredentialFormatMarkerBackfill;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CredentialFormatMarkerBackfillTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InMemoryBrokerAdapter brokerAdapter = spy(new InMemoryBrokerAdapter(objectMapper));
+
+    @Mock
+    private BrokerConfig brokerConfig;
+    @Mock
+    private BrokerFactory brokerFactory;
+
+    private CredentialFormatMarkerBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        when(brokerConfig.isShardingEnabled()).thenReturn(false);
+        when(brokerFactory.getProviderAdapter()).thenReturn(brokerAdapter);
+        backfill = new CredentialFormatMarkerBackfill(brokerConfig, brokerFactory, objectMapper);
+    }
+
+    @Test
+    void credentialsStoredWithoutTheirMarkers_getThemAndTheSummaryOfTheirOwnerIsRebuilt() throws Exception {
+        store("{\"id\":\"" + USER_ENTITY_PREFIX + "user1\",\"type\":\"WalletUser\"}");
+        store("{\"id\":\"" + CREDENTIAL_ENTITY_PREFIX + "legacy\",\"type\":\"Credential\","
+                + "\"jwt_vc\":{\"type\":\"Property\",\"value\":\"jwt\"},\"cwt_vc\":{\"type\":\"Property\",\"value\":\"cwt\"},"
+                + "\"belongsTo\":{\"type\":\"Relationship\",\"object\":\"" + USER_ENTITY_PREFIX + "user1\"}}");
+        store("{\"id\":\"" + CREDENTIAL_ENTITY_PREFIX + "current\",\"type\":\"Credential\","
+                + "\"jwt_vc\":{\"type\":\"Property\",\"value\":\"jwt\"},\"has_jwt_vc\":{\"type\":\"Property\",\"value\":true},"
+                + "\"belongsTo\":{\"type\":\"Relationship\",\"object\":\"" + USER_ENTITY_PREFIX + "user1\"}}");
+        store("{\"id\":\"" + CREDENTIAL_SUMMARY_ENTITY_PREFIX + "user1\",\"type\":\"CredentialSummary\","
+                + "\"complete\":{\"type\":\"Property\",\"value\":true}}");
+
+        StepVerifier.create(backfill.backfill("p1"))
+                .expectNext(1L)
+                .verifyComplete();
+
+        JsonNode legacy = read(CREDENTIAL_ENTITY_PREFIX + "legacy");
+        assertTrue(legacy.path(HAS_JWT_VC).path("value").asBoolean());
+        assertTrue(legacy.path(HAS_CWT_VC).path("value").asBoolean());
+        assertEquals("jwt", legacy.path(JWT_VC).path("value").asText());
+        assertFalse(read(CREDENTIAL_SUMMARY_ENTITY_PREFIX + "user1").path(COMPLETE).path("value").asBoolean());
+    }
+
+    @Test
+    void brokerAlreadyBackfilled_isNotScannedAgain() {
+        store("{\"id\":\"" + CREDENTIAL_ENTITY_PREFIX + "legacy\",\"type\":\"Credential\","
+                + "\"jwt_vc\":{\"type\":\"Property\",\"value\":\"jwt\"}}");
+
+        StepVerifier.create(backfill.backfill("p1").then(backfill.backfill("p1")))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(brokerAdapter).queryEntities("p1", CREDENTIAL_TYPE, null, CREDENTIALS_PAGE_SIZE, 0);
+    }
+
+    private void store(String json) {
+        try {
+            brokerAdapter.batchUpsertEntities("p1", List.of(new StoredEntity(objectMapper.readTree(json)))).block();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode read(String id) throws Exception {
+        return objectMapper.readTree(brokerAdapter.getEntityById("p1", id).block().orElseThrow());
+    }
+
+    private record StoredEntity(@JsonValue JsonNode json) implements BrokerEntity {
+
+        @Override
+        public String id() {
+            return json.get("id").asText();
+        }
+
+        @Override
+        public String type() {
+            return json.get("type").asText();
+        }
+
+    }
+
+}
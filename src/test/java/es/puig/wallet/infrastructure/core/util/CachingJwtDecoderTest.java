@@ -0,0 +1,64 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.mockito.Mockito.*;
+
+class CachingJwtDecoderTest {
+
+    private final ReactiveJwtDecoder delegate = mock(ReactiveJwtDecoder.class);
+    private final CachingJwtDecoder jwtDecoder = new CachingJwtDecoder(delegate, 100, new SimpleMeterRegistry());
+
+    @Test
+    void checkedToken_isNotCheckedAgainUntilItExpires() {
+        Jwt jwt = jwt("token", Instant.now().plusSeconds(300));
+        when(delegate.decode("token")).thenReturn(Mono.just(jwt));
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(jwtDecoder.decode("token")).expectNext(jwt).verifyComplete();
+        }
+
+        verify(delegate, times(1)).decode("token");
+    }
+
+    @Test
+    void expiredToken_orTokenWithoutExpiry_isCheckedEveryTime() {
+        when(delegate.decode("expired")).thenReturn(Mono.just(jwt("expired", Instant.now().minusSeconds(1))));
+        when(delegate.decode("no-exp")).thenReturn(Mono.just(jwt("no-exp", null)));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(jwtDecoder.decode("expired")).expectNextCount(1).verifyComplete();
+            StepVerifier.create(jwtDecoder.decode("no-exp")).expectNextCount(1).verifyComplete();
+        }
+
+        verify(delegate, times(2)).decode("expired");
+        verify(delegate, times(2)).decode("no-exp");
+    }
+
+    @Test
+    void rejectedToken_isNotCached() {
+        when(delegate.decode("bad")).thenReturn(Mono.error(new BadJwtException("Invalid signature")));
+
+        StepVerifier.create(jwtDecoder.decode("bad")).expectError(BadJwtException.class).verify();
+        StepVerifier.create(jwtDecoder.decode("bad")).expectError(BadJwtException.class).verify();
+
+        verify(delegate, times(2)).decode("bad");
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        Jwt.Builder builder = Jwt.withTokenValue(token).header("alg", "RS256").subject("user1");
+        if (expiresAt != null) {
+            builder.expiresAt(expiresAt).issuedAt(expiresAt.minusSeconds(600));
+        }
+        return builder.build();
+    }
+
+}
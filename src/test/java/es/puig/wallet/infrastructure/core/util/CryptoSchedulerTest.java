@@ -0,0 +1,66 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.CryptoSchedulerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CryptoSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CryptoScheduler cryptoScheduler = new CryptoScheduler(new CryptoSchedulerProperties(1, 10), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        cryptoScheduler.dispose();
+    }
+
+    @Test
+    void tasks_runOnTheCryptoThreads_andAreTimedPerOperation() {
+        StepVerifier.create(cryptoScheduler.run("sign", () -> Thread.currentThread().getName()))
+                .assertNext(threadName -> assertTrue(threadName.startsWith("crypto-"), threadName))
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.get("crypto.scheduler.execution").tag("operation", "sign").timer().count());
+        assertEquals(1, meterRegistry.get("crypto.scheduler.wait").timer().count());
+    }
+
+    @Test
+    void waitingTasks_areCountedUntilTheyRunOrAreCancelled() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Disposable blocking = cryptoScheduler.run("sign", () -> {
+            running.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }).subscribe();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        Disposable waiting = cryptoScheduler.run("verify", () -> true).subscribe();
+        assertEquals(1.0, meterRegistry.get("crypto.scheduler.queued").gauge().value());
+        assertEquals(1.0, meterRegistry.get("crypto.scheduler.active").gauge().value());
+
+        waiting.dispose();
+        assertEquals(0.0, meterRegistry.get("crypto.scheduler.queued").gauge().value());
+        release.countDown();
+        blocking.dispose();
+    }
+
+    @Test
+    void emptyResults_completeEmpty_andErrorsArePropagated() {
+        StepVerifier.create(cryptoScheduler.run("sign", () -> null)).verifyComplete();
+        StepVerifier.create(Mono.defer(() -> cryptoScheduler.run("sign", () -> {
+                    throw new IllegalStateException("bad key");
+                })))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+}
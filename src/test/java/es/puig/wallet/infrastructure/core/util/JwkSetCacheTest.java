@@ -0,0 +1,133 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import es.puig.wallet.application.port.AppConfig;
+import es.puig.wallet.infrastructure.core.config.properties.HttpClientProperties;
+import es.puig.wallet.infrastructure.core.config.properties.JwtDecoderProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwkSetCacheTest {
+
+    private MockWebServer mockWebServer;
+    private SimpleMeterRegistry meterRegistry;
+    private WebClientFactory webClientFactory;
+    private JwkSetCache jwkSetCache;
+    private RSAKey key1;
+    private RSAKey key2;
+
+    @BeforeEach
+    void setUp() throws IOException, JOSEException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        meterRegistry = new SimpleMeterRegistry();
+        webClientFactory = new WebClientFactory(new HttpClientProperties(null, null, null, null),
+                new OutboundResilience(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                        TimeLimiterRegistry.ofDefaults()), meterRegistry);
+        key1 = new RSAKeyGenerator(2048).keyID("key1").generate();
+        key2 = new RSAKeyGenerator(2048).keyID("key2").generate();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (jwkSetCache != null) {
+            jwkSetCache.stop();
+        }
+        webClientFactory.dispose();
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void keys_areLoadedOnStartup_andSharedByTheRequests() throws Exception {
+        mockWebServer.enqueue(jwkSetResponse(key1));
+        jwkSetCache = jwkSetCache(Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+        jwkSetCache.start();
+        assertNotNull(mockWebServer.takeRequest(5, TimeUnit.SECONDS));
+
+        SignedJWT jwt = signedBy(key1);
+        StepVerifier.create(Flux.range(0, 20).flatMap(i -> jwkSetCache.getKeys(jwt)).map(JWK::getKeyID))
+                .expectNextCount(20)
+                .verifyComplete();
+        assertEquals(1, mockWebServer.getRequestCount());
+        assertEquals(1.0, meterRegistry.get("jwk.set.keys").gauge().value());
+    }
+
+    @Test
+    void unknownKey_refreshesTheKeysOnce_withinTheMinimumInterval() throws Exception {
+        mockWebServer.enqueue(jwkSetResponse(key1));
+        mockWebServer.enqueue(jwkSetResponse(key1, key2));
+        jwkSetCache = jwkSetCache(Duration.ofMinutes(5), Duration.ofHours(1));
+
+        StepVerifier.create(jwkSetCache.getKeys(signedBy(key1)).map(JWK::getKeyID))
+                .expectNext("key1")
+                .verifyComplete();
+        StepVerifier.create(jwkSetCache.getKeys(signedBy(key2)).map(JWK::getKeyID))
+                .expectNext("key2")
+                .verifyComplete();
+        StepVerifier.create(jwkSetCache.getKeys(signedBy(new RSAKeyGenerator(2048).keyID("key3").generate())))
+                .verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void failedRefresh_keepsTheCurrentKeys() throws Exception {
+        mockWebServer.enqueue(jwkSetResponse(key1));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        jwkSetCache = jwkSetCache(Duration.ofMinutes(5), Duration.ZERO);
+
+        StepVerifier.create(jwkSetCache.getKeys(signedBy(key1))).expectNextCount(1).verifyComplete();
+        StepVerifier.create(jwkSetCache.getKeys(signedBy(key2))).verifyComplete();
+        StepVerifier.create(jwkSetCache.getKeys(signedBy(key1))).expectNextCount(1).verifyComplete();
+
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+
+    private JwkSetCache jwkSetCache(Duration refreshInterval, Duration minRefreshInterval) {
+        AppConfig appConfig = mock(AppConfig.class);
+        when(appConfig.getJwtDecoder()).thenReturn(mockWebServer.url("/certs").toString());
+        return new JwkSetCache(appConfig, webClientFactory,
+                new JwtDecoderProperties(refreshInterval, null, minRefreshInterval, null, null), meterRegistry);
+    }
+
+    private static MockResponse jwkSetResponse(RSAKey... keys) {
+        JWKSet jwkSet = new JWKSet(List.of(keys).stream().map(RSAKey::toPublicJWK).map(JWK.class::cast).toList());
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(jwkSet.toString());
+    }
+
+    private static SignedJWT signedBy(RSAKey key) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder().subject("user1").build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt;
+    }
+
+}
@@ -0,0 +1,73 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.KeyPairPoolProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyPairPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private KeyPairPool keyPairPool;
+
+    @AfterEach
+    void tearDown() {
+        keyPairPool.dispose();
+    }
+
+    @Test
+    void pool_isRefilledUpToItsHighWatermark_andHandsOutReadyKeyPairs() throws InterruptedException {
+        keyPairPool = new KeyPairPool(new KeyPairPoolProperties(true, 2, 4, 1), new BouncyCastleProvider(), meterRegistry);
+        keyPairPool.init();
+        awaitSize(4);
+
+        StepVerifier.create(keyPairPool.take())
+                .assertNext(keyPair -> assertInstanceOf(ECPublicKey.class, keyPair.getPublic()))
+                .verifyComplete();
+        StepVerifier.create(keyPairPool.take()).expectNextCount(1).verifyComplete();
+        StepVerifier.create(keyPairPool.take()).expectNextCount(1).verifyComplete();
+
+        // Under the low watermark the pool is refilled again
+        awaitSize(4);
+        assertEquals(3.0, meterRegistry.get("key.pair.pool.requests").tag("result", "hit").counter().count());
+        assertEquals(4.0, meterRegistry.get("key.pair.pool.size").gauge().value());
+    }
+
+    @Test
+    void disabledPool_generatesEveryKeyPairOnDemand() {
+        keyPairPool = new KeyPairPool(new KeyPairPoolProperties(false, null, null, null), new BouncyCastleProvider(), meterRegistry);
+        keyPairPool.init();
+
+        KeyPair first = keyPairPool.take().block(Duration.ofSeconds(5));
+        KeyPair second = keyPairPool.take().block(Duration.ofSeconds(5));
+
+        assertNotNull(first);
+        assertNotEquals(first.getPublic(), second.getPublic());
+        assertEquals(0, keyPairPool.size());
+        assertEquals(2.0, meterRegistry.get("key.pair.pool.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void lowWatermarkAboveTheHighOne_isRejected() {
+        keyPairPool = new KeyPairPool(new KeyPairPoolProperties(false, null, null, null), new BouncyCastleProvider(), meterRegistry);
+
+        assertThrows(IllegalArgumentException.class, () -> new KeyPairPoolProperties(true, 10, 5, 1));
+    }
+
+    private void awaitSize(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (keyPairPool.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, keyPairPool.size());
+    }
+
+}
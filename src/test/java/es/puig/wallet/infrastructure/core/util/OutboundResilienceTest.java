@@ -0,0 +1,139 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.puig.wallet.infrastructure.core.util.OutboundResilience.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundResilienceTest {
+
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private BulkheadRegistry bulkheadRegistry;
+    private TimeLimiterRegistry timeLimiterRegistry;
+    private OutboundResilience outboundResilience;
+
+    @BeforeEach
+    void setUp() {
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .recordResult(new ServerErrorResponsePredicate())
+                .build();
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        circuitBreakerRegistry.addConfiguration(OUTBOUND_HTTP, circuitBreakerConfig);
+
+        bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+
+        timeLimiterRegistry = TimeLimiterRegistry.of(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofSeconds(5))
+                .build());
+        timeLimiterRegistry.timeLimiter(BROKER + "-" + READ, TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofMillis(50))
+                .build());
+
+        outboundResilience = new OutboundResilience(circuitBreakerRegistry, bulkheadRegistry, timeLimiterRegistry);
+    }
+
+    @Test
+    void failingDependency_opensItsCircuitAndIsNoLongerCalled() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> failingCall = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("vault down"));
+        });
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(outboundResilience.decorate(VAULT, READ, failingCall))
+                    .expectError(IllegalStateException.class)
+                    .verify();
+        }
+        StepVerifier.create(outboundResilience.decorate(VAULT, READ, failingCall))
+                .expectError(CallNotPermittedException.class)
+                .verify();
+
+        assertEquals(2, calls.get());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakerRegistry.circuitBreaker(VAULT).getState());
+    }
+
+    @Test
+    void slowCall_isCutByTheTimeLimiterOfItsOperation() {
+        StepVerifier.create(outboundResilience.decorate(BROKER, READ, Mono.never()))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void concurrentCallsBeyondTheBulkhead_areRejected() {
+        StepVerifier.create(outboundResilience.decorate(BROKER, WRITE, Mono.never()))
+                .expectSubscription()
+                .then(() -> StepVerifier.create(outboundResilience.decorate(BROKER, WRITE, Mono.just("second")))
+                        .expectError(BulkheadFullException.class)
+                        .verify())
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void serverErrorResponses_areRecordedPerHostAndStillReturned() {
+        ExchangeFunction exchange = request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("https://issuer.example.com/credential")).build();
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(outboundResilience.perHostExchangeFilter().filter(request, exchange))
+                    .expectNextMatches(response -> response.statusCode().is5xxServerError())
+                    .verifyComplete();
+        }
+
+        assertTrue(circuitBreakerRegistry.find(OUTBOUND_HTTP + "-issuer.example.com").isPresent());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakerRegistry.circuitBreaker(OUTBOUND_HTTP + "-issuer.example.com").getState());
+        assertTrue(circuitBreakerRegistry.find(OUTBOUND_HTTP + "-other.example.com").isEmpty());
+    }
+
+    @Test
+    void leastRecentlyUsedHosts_areRemovedFromTheRegistries() {
+        OutboundResilience boundedResilience = new OutboundResilience(circuitBreakerRegistry, bulkheadRegistry, timeLimiterRegistry, 2);
+        ExchangeFunction exchange = request -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+
+        for (String host : List.of("first.example.com", "second.example.com", "first.example.com", "third.example.com")) {
+            ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("https://" + host + "/credential")).build();
+            StepVerifier.create(boundedResilience.perHostExchangeFilter().filter(request, exchange))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        assertTrue(circuitBreakerRegistry.find(OUTBOUND_HTTP + "-first.example.com").isPresent());
+        assertTrue(circuitBreakerRegistry.find(OUTBOUND_HTTP + "-third.example.com").isPresent());
+        assertTrue(circuitBreakerRegistry.find(OUTBOUND_HTTP + "-second.example.com").isEmpty());
+        // The metric binders of the registries drop the meters of the removed instances
+        assertTrue(bulkheadRegistry.find(OUTBOUND_HTTP + "-second.example.com").isEmpty());
+    }
+
+}
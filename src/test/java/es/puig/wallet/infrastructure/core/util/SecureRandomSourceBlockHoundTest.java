@@ -0,0 +1,59 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.blockhound.BlockHoundExtension;
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.List;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.CODE_VERIFIER_ALLOWED_CHARACTERS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs with BlockHound installed, by the {@code blockHoundTest} task: any blocking call made on a non-blocking
+ * thread, such as reading the entropy of the operating system, fails the call with a {@link BlockingOperationError}.
+ */
+@Tag("blockhound")
+@ExtendWith(BlockHoundExtension.class)
+class SecureRandomSourceBlockHoundTest {
+
+    private final SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(Duration.ZERO));
+
+    @Test
+    void randomValues_areGeneratedOnANonBlockingThreadWithoutBlocking() {
+        StepVerifier.create(Mono.fromCallable(() -> List.of(
+                                secureRandomSource.nextString(secureRandomSource.nextInt(86) + 43, CODE_VERIFIER_ALLOWED_CHARACTERS),
+                                secureRandomSource.nextBase64Url(16),
+                                secureRandomSource.nextUuid().toString(),
+                                secureRandomSource.nextBytes(64 * 1024)))
+                        .subscribeOn(Schedulers.parallel()))
+                .assertNext(values -> assertEquals(4, values.size()))
+                .verifyComplete();
+    }
+
+    @Test
+    void strongInstance_isReportedAsBlockingOnANonBlockingThread() {
+        StepVerifier.create(Mono.fromCallable(() -> {
+                            SecureRandom.getInstanceStrong().nextBytes(new byte[32]);
+                            return true;
+                        })
+                        .subscribeOn(Schedulers.parallel()))
+                .expectError(BlockingOperationError.class)
+                .verify();
+
+        List<BlockHoundExtension.BlockingCall> found = BlockHoundExtension.takeBlockingCalls();
+        // The frames of the JDK classes are prefixed by their module, as in java.base/java.security.SecureRandom.nextBytes
+        assertTrue(found.stream().anyMatch(call -> call.frames().stream().anyMatch(frame -> frame.contains("java.security.SecureRandom.nextBytes("))),
+                found::toString);
+    }
+
+}
@@ -0,0 +1,63 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.SecureRandomProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.CODE_VERIFIER_ALLOWED_CHARACTERS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecureRandomSourceTest {
+
+    private final SecureRandomSource secureRandomSource = new SecureRandomSource(new SecureRandomProperties(null));
+
+    @Test
+    void bytes_areGeneratedInBulk_andDifferOnEveryCall() {
+        byte[] first = secureRandomSource.nextBytes(4096);
+        byte[] second = secureRandomSource.nextBytes(4096);
+
+        assertEquals(4096, first.length);
+        assertFalse(Arrays.equals(first, second));
+        assertEquals(0, secureRandomSource.nextBytes(0).length);
+    }
+
+    @Test
+    void strings_onlyUseTheCharactersOfTheAlphabet() {
+        String codeVerifier = secureRandomSource.nextString(128, CODE_VERIFIER_ALLOWED_CHARACTERS);
+
+        assertEquals(128, codeVerifier.length());
+        assertTrue(codeVerifier.chars().allMatch(c -> CODE_VERIFIER_ALLOWED_CHARACTERS.indexOf(c) >= 0), codeVerifier);
+    }
+
+    @Test
+    void nonces_areBase64UrlWithoutPadding() {
+        String nonce = secureRandomSource.nextBase64Url(16);
+
+        assertEquals(22, nonce.length());
+        assertEquals(16, Base64.getUrlDecoder().decode(nonce).length);
+    }
+
+    @Test
+    void uuids_areRandomUuidsOfVersion4() {
+        Set<UUID> uuids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = secureRandomSource.nextUuid();
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            uuids.add(uuid);
+        }
+        assertEquals(1000, uuids.size());
+    }
+
+    @Test
+    void negativeReseedInterval_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SecureRandomProperties(Duration.ofSeconds(-1)));
+    }
+
+}
@@ -0,0 +1,129 @@
+package es.puig.wallet.infrastructure.core.util;
+
+import es.puig.wallet.infrastructure.core.config.properties.HttpClientProperties;
+import es.puig.wallet.infrastructure.core.config.properties.HttpClientProperties.PoolProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebClientFactoryTest {
+
+    private MockWebServer mockWebServer;
+    private SimpleMeterRegistry meterRegistry;
+    private WebClientFactory webClientFactory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        meterRegistry = new SimpleMeterRegistry();
+        PoolProperties verifierPool = new PoolProperties(1, null, null, null, null, null,
+                null, Duration.ofMillis(200), true);
+        HttpClientProperties properties = new HttpClientProperties(null, null, null, verifierPool);
+        OutboundResilience outboundResilience = new OutboundResilience(CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults());
+        webClientFactory = new WebClientFactory(properties, outboundResilience, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        webClientFactory.dispose();
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    void everyDestination_hasItsOwnClient() {
+        assertNotSame(webClientFactory.webClient(HttpDestination.BROKER), webClientFactory.webClient(HttpDestination.ISSUER));
+        assertNotSame(webClientFactory.webClient(HttpDestination.AUTH_SERVER), webClientFactory.webClient(HttpDestination.VERIFIER));
+        assertSame(webClientFactory.webClient(HttpDestination.ISSUER), webClientFactory.webClient(HttpDestination.ISSUER));
+    }
+
+    @Test
+    void requests_publishTheGaugesOfThePoolOfTheirDestination() {
+        mockWebServer.enqueue(new MockResponse().setBody("metadata"));
+
+        StepVerifier.create(webClientFactory.webClient(HttpDestination.ISSUER).get()
+                        .uri(mockWebServer.url("/.well-known/openid-credential-issuer").toString())
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .expectNext("metadata")
+                .verifyComplete();
+
+        Gauge idle = meterRegistry.find("http.client.pool.idle").tag("pool", "issuer").gauge();
+        assertNotNull(idle);
+        assertEquals(1.0, idle.value());
+        assertEquals(0.0, meterRegistry.get("http.client.pool.active").tag("pool", "issuer").gauge().value());
+        assertEquals(0.0, meterRegistry.get("http.client.pool.pending").tag("pool", "issuer").gauge().value());
+        assertNull(meterRegistry.find("http.client.pool.idle").tag("pool", "broker").gauge());
+    }
+
+    @Test
+    void slowResponses_areCutByTheResponseTimeoutOfThePool() {
+        mockWebServer.enqueue(new MockResponse().setBody("late").setHeadersDelay(2, TimeUnit.SECONDS));
+
+        StepVerifier.create(webClientFactory.webClient(HttpDestination.VERIFIER).get()
+                        .uri(mockWebServer.url("/response").toString())
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .expectError(WebClientRequestException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void stalledResponseBodies_areCutByTheResponseTimeoutOfThePool() {
+        mockWebServer.enqueue(new MockResponse().setBody("x".repeat(1024)).throttleBody(512, 2, TimeUnit.SECONDS));
+
+        StepVerifier.create(webClientFactory.webClient(HttpDestination.VERIFIER).get()
+                        .uri(mockWebServer.url("/response").toString())
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .expectErrorMatches(e -> hasCause(e, ReadTimeoutException.class))
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void pooledConnections_areReusedAfterIdlingLongerThanTheResponseTimeout() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse().setBody("first"));
+        mockWebServer.enqueue(new MockResponse().setBody("second"));
+        WebClient webClient = webClientFactory.webClient(HttpDestination.VERIFIER);
+
+        StepVerifier.create(webClient.get().uri(mockWebServer.url("/first").toString()).retrieve().bodyToMono(String.class))
+                .expectNext("first")
+                .verifyComplete();
+        Thread.sleep(500);
+        StepVerifier.create(webClient.get().uri(mockWebServer.url("/second").toString()).retrieve().bodyToMono(String.class))
+                .expectNext("second")
+                .verifyComplete();
+
+        assertEquals(0, mockWebServer.takeRequest().getSequenceNumber());
+        // The second request went through the connection of the first one
+        assertEquals(1, mockWebServer.takeRequest().getSequenceNumber());
+    }
+
+    private static boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
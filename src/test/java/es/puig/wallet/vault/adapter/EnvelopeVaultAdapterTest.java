@@ -0,0 +1,156 @@
+package es.puig.wallet.vault.adapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.application.port.BrokerService;
+import es.puig.wallet.domain.exception.KeyEncryptionException;
+import es.puig.wallet.domain.model.BrokerEntity;
+import es.puig.wallet.infrastructure.vault.adapter.EnvelopeVaultAdapter;
+import es.puig.wallet.infrastructure.vault.config.properties.EnvelopeEncryptionProperties;
+import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
+import es.puig.wallet.infrastructure.vault.service.GenericVaultService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.puig.wallet.domain.util.ApplicationConstants.ENCRYPTED_KEY_ENTITY_PREFIX;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class EnvelopeVaultAdapterTest {
+
+    private static final String MASTER_KEY_NAME = "wallet-master-key";
+    private static final String PRIVATE_KEY = "{\"kty\":\"EC\",\"d\":\"MDtaBGOjN0SY0NtX2hFvv4uJNLrUGUWHvquqNZHwi5s\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InMemoryVault vault = new InMemoryVault();
+    private final Map<String, String> brokerEntities = new ConcurrentHashMap<>();
+
+    @Mock
+    private BrokerService brokerService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(brokerService.upsertEntity(any(), any())).thenAnswer(invocation -> Mono.fromRunnable(() -> {
+            BrokerEntity entity = invocation.getArgument(1);
+            try {
+                brokerEntities.put(entity.id(), objectMapper.writeValueAsString(entity));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        lenient().when(brokerService.getEntityById(any(), any())).thenAnswer(invocation ->
+                Mono.fromSupplier(() -> Optional.ofNullable(brokerEntities.get(invocation.<String>getArgument(1)))));
+        lenient().when(brokerService.batchDeleteEntities(any(), anyList())).thenAnswer(invocation ->
+                Mono.fromRunnable(() -> invocation.<List<String>>getArgument(1).forEach(brokerEntities::remove)));
+    }
+
+    @Test
+    void keysOfTheUsers_areStoredEncryptedInTheBroker_andOnlyTheMasterKeyIsRead() {
+        vault.secrets.put(MASTER_KEY_NAME, Base64.getEncoder().encodeToString(new byte[32]));
+        EnvelopeVaultAdapter adapter = adapter(false);
+
+        StepVerifier.create(asUser("user1", adapter.saveSecret("did:key:z1", secret(PRIVATE_KEY)))).verifyComplete();
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(asUser("user1", adapter.getSecret("did:key:z1")))
+                    .expectNext(secret(PRIVATE_KEY))
+                    .verifyComplete();
+        }
+
+        assertEquals(Set.of(MASTER_KEY_NAME), vault.secrets.keySet());
+        assertEquals(1, vault.reads.get());
+        assertFalse(brokerEntities.get(ENCRYPTED_KEY_ENTITY_PREFIX + "did:key:z1").contains("MDtaBGOjN0SY0NtX2hFvv4uJNLrUGUWHvquqNZHwi5s"));
+    }
+
+    @Test
+    void encryptedKey_cannotBeUsedAsTheKeyOfAnotherDid() {
+        EnvelopeVaultAdapter adapter = adapter(true);
+        StepVerifier.create(asUser("user1", adapter.saveSecret("did:key:z1", secret(PRIVATE_KEY)))).verifyComplete();
+        brokerEntities.put(ENCRYPTED_KEY_ENTITY_PREFIX + "did:key:z2", brokerEntities.get(ENCRYPTED_KEY_ENTITY_PREFIX + "did:key:z1"));
+
+        StepVerifier.create(asUser("user1", adapter.getSecret("did:key:z2")))
+                .expectError(KeyEncryptionException.class)
+                .verify();
+    }
+
+    @Test
+    void missingMasterKey_isOnlyCreatedWhenAllowed() {
+        StepVerifier.create(asUser("user1", adapter(false).saveSecret("did:key:z1", secret(PRIVATE_KEY))))
+                .expectError(KeyEncryptionException.class)
+                .verify();
+        assertTrue(brokerEntities.isEmpty());
+
+        StepVerifier.create(asUser("user1", adapter(true).saveSecret("did:key:z1", secret(PRIVATE_KEY)))).verifyComplete();
+        assertEquals(32, Base64.getDecoder().decode(vault.secrets.get(MASTER_KEY_NAME)).length);
+    }
+
+    @Test
+    void keysWithoutAnAuthenticatedUser_orWrittenBeforeTheSwitch_stayInTheVault() {
+        vault.secrets.put("did:key:old", PRIVATE_KEY);
+        EnvelopeVaultAdapter adapter = adapter(true);
+
+        StepVerifier.create(adapter.saveSecret("did:key:ebsi", secret(PRIVATE_KEY))).verifyComplete();
+        StepVerifier.create(asUser("user1", adapter.getSecret("did:key:old")))
+                .expectNext(secret(PRIVATE_KEY))
+                .verifyComplete();
+        StepVerifier.create(asUser("user1", adapter.deleteSecret("did:key:old"))).verifyComplete();
+
+        assertEquals(Set.of("did:key:ebsi"), vault.secrets.keySet());
+        assertTrue(brokerEntities.isEmpty());
+    }
+
+    private EnvelopeVaultAdapter adapter(boolean createMasterKey) {
+        return new EnvelopeVaultAdapter(vault, brokerService, objectMapper,
+                new EnvelopeEncryptionProperties(true, MASTER_KEY_NAME, createMasterKey));
+    }
+
+    private static <T> Mono<T> asUser(String userId, Mono<T> call) {
+        return call.contextWrite(ReactiveSecurityContextHolder.withAuthentication(new TestingAuthenticationToken(userId, null)));
+    }
+
+    private static KeyVaultSecret secret(String value) {
+        return KeyVaultSecret.builder().value(value).build();
+    }
+
+    private static class InMemoryVault implements GenericVaultService {
+
+        private final Map<String, String> secrets = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public Mono<Void> saveSecret(String key, KeyVaultSecret secret) {
+            return Mono.fromRunnable(() -> secrets.put(key, secret.value().toString()));
+        }
+
+        @Override
+        public Mono<KeyVaultSecret> getSecret(String key) {
+            return Mono.fromCallable(() -> {
+                reads.incrementAndGet();
+                return secrets.get(key);
+            }).map(EnvelopeVaultAdapterTest::secret);
+        }
+
+        @Override
+        public Mono<Void> deleteSecret(String key) {
+            return Mono.fromRunnable(() -> secrets.remove(key));
+        }
+
+    }
+
+}
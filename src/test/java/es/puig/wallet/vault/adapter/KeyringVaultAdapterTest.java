@@ -0,0 +1,200 @@
+package es.puig.wallet.vault.adapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.puig.wallet.infrastructure.vault.adapter.KeyringVaultAdapter;
+import es.puig.wallet.infrastructure.vault.config.properties.KeyringProperties;
+import es.puig.wallet.infrastructure.vault.exception.VaultConflictException;
+import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
+import es.puig.wallet.infrastructure.vault.model.VersionedSecret;
+import es.puig.wallet.infrastructure.vault.service.VersionedVaultService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeyringVaultAdapterTest {
+
+    private final InMemoryVault vault = new InMemoryVault();
+
+    @Test
+    void keysOfAUser_shareOneSecret_readOnceForEveryDid() {
+        KeyringVaultAdapter adapter = adapter(true);
+        StepVerifier.create(asUser("user1", adapter.saveSecret("did:key:z1", secret("key1")))).verifyComplete();
+        StepVerifier.create(asUser("user1", adapter.saveSecret("did:key:z2", secret("key2")))).verifyComplete();
+        assertEquals(Set.of(KeyringVaultAdapter.KEYRING_PREFIX + "user1"), vault.secrets.keySet());
+
+        KeyringVaultAdapter restarted = adapter(true);
+        vault.reads.set(0);
+        StepVerifier.create(asUser("user1", restarted.getSecret("did:key:z1")))
+                .expectNext(secret("key1"))
+                .verifyComplete();
+        StepVerifier.create(asUser("user1", restarted.getSecret("did:key:z2")))
+                .expectNext(secret("key2"))
+                .verifyComplete();
+        assertEquals(1, vault.reads.get());
+    }
+
+    @Test
+    void keyOfThePerDidLayout_isMovedToTheKeyringWhenRead() {
+        vault.secrets.put("did:key:old", "old key");
+        KeyringVaultAdapter adapter = adapter(true);
+
+        StepVerifier.create(asUser("user1", adapter.getSecret("did:key:old")))
+                .expectNext(secret("old key"))
+                .verifyComplete();
+
+        assertEquals(Set.of(KeyringVaultAdapter.KEYRING_PREFIX + "user1"), vault.secrets.keySet());
+        StepVerifier.create(asUser("user1", adapter(true).getSecret("did:key:old")))
+                .expectNext(secret("old key"))
+                .verifyComplete();
+    }
+
+    @Test
+    void keyOfThePerDidLayout_staysInPlaceWithoutMigration() {
+        vault.secrets.put("did:key:old", "old key");
+
+        StepVerifier.create(asUser("user1", adapter(false).getSecret("did:key:old")))
+                .expectNext(secret("old key"))
+                .verifyComplete();
+
+        assertEquals(Set.of("did:key:old"), vault.secrets.keySet());
+    }
+
+    @Test
+    void deletingTheLastKey_leavesAnEmptyKeyring() {
+        KeyringVaultAdapter adapter = adapter(true);
+        StepVerifier.create(asUser("user1", adapter.saveSecret("did:key:z1", secret("key1")))).verifyComplete();
+
+        StepVerifier.create(asUser("user1", adapter.deleteSecret("did:key:z1"))).verifyComplete();
+
+        assertEquals(Map.of(KeyringVaultAdapter.KEYRING_PREFIX + "user1", "{}"), vault.secrets);
+        StepVerifier.create(asUser("user1", adapter.getSecret("did:key:z1"))).verifyComplete();
+    }
+
+    @Test
+    void keysAddedByAnotherInstance_areReadAndKeptByTheNextWrite() {
+        KeyringVaultAdapter replicaA = adapter(true);
+        KeyringVaultAdapter replicaB = adapter(true);
+        StepVerifier.create(asUser("user1", replicaA.saveSecret("did:key:z1", secret("key1")))).verifyComplete();
+        StepVerifier.create(asUser("user1", replicaB.getSecret("did:key:z1"))).expectNext(secret("key1")).verifyComplete();
+
+        StepVerifier.create(asUser("user1", replicaA.saveSecret("did:key:z2", secret("key2")))).verifyComplete();
+        StepVerifier.create(asUser("user1", replicaB.getSecret("did:key:z2"))).expectNext(secret("key2")).verifyComplete();
+        StepVerifier.create(asUser("user1", replicaB.saveSecret("did:key:z3", secret("key3")))).verifyComplete();
+
+        KeyringVaultAdapter restarted = adapter(true);
+        for (String did : Set.of("did:key:z1", "did:key:z2", "did:key:z3")) {
+            StepVerifier.create(asUser("user1", restarted.getSecret(did))).expectNextCount(1).verifyComplete();
+        }
+    }
+
+    @Test
+    void keyringWrittenBetweenTheReadAndTheWrite_getsTheChangeAppliedOnTopOfIt() {
+        KeyringVaultAdapter replicaA = adapter(true);
+        KeyringVaultAdapter replicaB = adapter(true);
+        vault.beforeNextWrite = () -> replicaB.saveSecret("did:key:z1", secret("key1"))
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(new TestingAuthenticationToken("user1", null)))
+                .block();
+
+        StepVerifier.create(asUser("user1", replicaA.saveSecret("did:key:z2", secret("key2")))).verifyComplete();
+
+        assertEquals(1, vault.conflicts.get());
+        KeyringVaultAdapter restarted = adapter(true);
+        StepVerifier.create(asUser("user1", restarted.getSecret("did:key:z1"))).expectNext(secret("key1")).verifyComplete();
+        StepVerifier.create(asUser("user1", restarted.getSecret("did:key:z2"))).expectNext(secret("key2")).verifyComplete();
+    }
+
+    @Test
+    void callsWithoutAnAuthenticatedUser_keepASecretPerDid() {
+        KeyringVaultAdapter adapter = adapter(true);
+
+        StepVerifier.create(adapter.saveSecret("did:key:ebsi", secret("ebsi key"))).verifyComplete();
+
+        assertEquals(Map.of("did:key:ebsi", "ebsi key"), vault.secrets);
+        StepVerifier.create(adapter.getSecret("did:key:ebsi"))
+                .expectNext(secret("ebsi key"))
+                .verifyComplete();
+    }
+
+    private KeyringVaultAdapter adapter(boolean migrateOnRead) {
+        return new KeyringVaultAdapter(vault, new ObjectMapper(),
+                new KeyringProperties(true, migrateOnRead, null, null), new SimpleMeterRegistry());
+    }
+
+    private static <T> Mono<T> asUser(String userId, Mono<T> call) {
+        return call.contextWrite(ReactiveSecurityContextHolder.withAuthentication(new TestingAuthenticationToken(userId, null)));
+    }
+
+    private static KeyVaultSecret secret(String value) {
+        return KeyVaultSecret.builder().value(value).build();
+    }
+
+    private static class InMemoryVault implements VersionedVaultService {
+
+        private final Map<String, String> secrets = new ConcurrentHashMap<>();
+        private final Map<String, Long> versions = new ConcurrentHashMap<>();
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger conflicts = new AtomicInteger();
+        private Runnable beforeNextWrite;
+
+        @Override
+        public Mono<Void> saveSecret(String key, KeyVaultSecret secret) {
+            return Mono.fromRunnable(() -> {
+                secrets.put(key, secret.value().toString());
+                versions.merge(key, 1L, Long::sum);
+            });
+        }
+
+        @Override
+        public Mono<KeyVaultSecret> getSecret(String key) {
+            return Mono.fromCallable(() -> {
+                reads.incrementAndGet();
+                return secrets.get(key);
+            }).map(KeyringVaultAdapterTest::secret);
+        }
+
+        @Override
+        public Mono<Void> deleteSecret(String key) {
+            return Mono.fromRunnable(() -> secrets.remove(key));
+        }
+
+        @Override
+        public Mono<VersionedSecret> getVersionedSecret(String key) {
+            return Mono.fromCallable(() -> {
+                reads.incrementAndGet();
+                String value = secrets.get(key);
+                return new VersionedSecret(value != null ? secret(value) : null, versions.getOrDefault(key, 0L));
+            });
+        }
+
+        @Override
+        public Mono<Void> saveSecretIfVersion(String key, KeyVaultSecret secret, long version) {
+            return Mono.fromRunnable(() -> {
+                Runnable concurrentWrite = beforeNextWrite;
+                beforeNextWrite = null;
+                if (concurrentWrite != null) {
+                    concurrentWrite.run();
+                }
+                synchronized (this) {
+                    if (versions.getOrDefault(key, 0L) != version) {
+                        conflicts.incrementAndGet();
+                        throw new VaultConflictException("Secret " + key + " changed after version " + version);
+                    }
+                    secrets.put(key, secret.value().toString());
+                    versions.put(key, version + 1);
+                }
+            });
+        }
+
+    }
+
+}
@@ -2,12 +2,17 @@ package es.puig.wallet.vault.adapter.azure;
 
 import com.azure.core.util.polling.PollerFlux;
 import com.azure.security.keyvault.secrets.SecretAsyncClient;
+import es.puig.wallet.infrastructure.core.util.OutboundResilience;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import es.puig.wallet.infrastructure.vault.adapter.azure.AzureKeyVaultAdapter;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -17,6 +22,8 @@ import static org.mockito.Mockito.when;
 class AzureKeyVaultAdapterTest {
     @Mock
     private SecretAsyncClient secretClient;
+    @Spy
+    private OutboundResilience outboundResilience = new OutboundResilience(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults());
     @InjectMocks
     private AzureKeyVaultAdapter azureKeyVaultAdapter;
 
@@ -1,8 +1,15 @@
 package es.puig.wallet.vault.adapter.hashicorp;
 
+import es.puig.wallet.infrastructure.core.util.OutboundResilience;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
 import es.puig.wallet.infrastructure.vault.adapter.hashicorp.HashicorpAdapter;
 import es.puig.wallet.infrastructure.vault.adapter.hashicorp.config.HashicorpConfig;
+import es.puig.wallet.infrastructure.vault.adapter.hashicorp.model.HashicorpCasSecretRequest;
 import es.puig.wallet.infrastructure.vault.adapter.hashicorp.model.HashicorpSecretRequest;
+import es.puig.wallet.infrastructure.vault.exception.VaultConflictException;
+import es.puig.wallet.infrastructure.vault.model.VersionedSecret;
 import es.puig.wallet.infrastructure.vault.model.KeyVaultSecret;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +17,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.vault.VaultException;
 import org.springframework.vault.core.ReactiveVaultOperations;
 import org.springframework.vault.support.VaultResponse;
 import reactor.core.publisher.Mono;
@@ -20,6 +28,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,7 +46,8 @@ class HashicorpAdapterTest {
         when(hashicorpConfig.getSecretPath()).thenReturn("/paths");
 
         // Create an instance of HashicorpAdapter with the mocked dependencies
-        hashicorpAdapter = new HashicorpAdapter(vaultOperations, hashicorpConfig);
+        hashicorpAdapter = new HashicorpAdapter(vaultOperations, hashicorpConfig,
+                new OutboundResilience(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults()));
     }
 
     @Test
@@ -128,4 +138,33 @@ class HashicorpAdapterTest {
                 .expectError(RuntimeException.class)
                 .verify();
     }
+
+    @Test
+    void getVersionedSecret_readsTheVersionOfTheSecret_orVersionZeroWhenMissing() {
+        VaultResponse vaultResponse = new VaultResponse();
+        vaultResponse.setData(Map.of("data", Map.of("key", "value"), "metadata", Map.of("version", 3)));
+        when(vaultOperations.read("/paths/data/key")).thenReturn(Mono.just(vaultResponse));
+        when(vaultOperations.read("/paths/data/missing")).thenReturn(Mono.empty());
+
+        StepVerifier.create(hashicorpAdapter.getVersionedSecret("key"))
+                .expectNext(new VersionedSecret(KeyVaultSecret.builder().value("value").build(), 3))
+                .verifyComplete();
+        StepVerifier.create(hashicorpAdapter.getVersionedSecret("missing"))
+                .expectNext(new VersionedSecret(null, 0))
+                .verifyComplete();
+    }
+
+    @Test
+    void saveSecretIfVersion_sendsTheVersionAsCheckAndSet_andReportsConflicts() {
+        HashicorpCasSecretRequest request = new HashicorpCasSecretRequest("key", "value", 3);
+        when(vaultOperations.write(eq("/paths/data/key"), eq(request)))
+                .thenReturn(Mono.empty())
+                .thenReturn(Mono.error(new VaultException("Status 400 Bad Request [paths/data/key]: check-and-set parameter did not match the current version")));
+
+        StepVerifier.create(hashicorpAdapter.saveSecretIfVersion("key", KeyVaultSecret.builder().value("value").build(), 3))
+                .verifyComplete();
+        StepVerifier.create(hashicorpAdapter.saveSecretIfVersion("key", KeyVaultSecret.builder().value("value").build(), 3))
+                .expectError(VaultConflictException.class)
+                .verify();
+    }
 }